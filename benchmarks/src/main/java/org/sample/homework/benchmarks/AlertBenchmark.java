@@ -0,0 +1,43 @@
+package org.sample.homework.benchmarks;
+
+import com.google.common.eventbus.EventBus;
+import org.openjdk.jmh.annotations.*;
+import org.sample.homework.alerts.TrafficAlertManager;
+import org.sample.homework.stats.TrafficStatistics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of a {@link TrafficAlertManager} tick, alerts being triggered and recovered now and then.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class AlertBenchmark {
+
+    private static final int TICKS = 1024;
+
+    private final TrafficStatistics[] statistics = new TrafficStatistics[TICKS];
+    private TrafficAlertManager alertManager;
+    private int index;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < TICKS; i++) {
+            statistics[i] = new TrafficStatistics();
+            // Alternates between 100 ticks below and 100 ticks above the threshold.
+            statistics[i].setTotalRequestCount((i / 100) % 2 == 0 ? 500 : 1500);
+        }
+        alertManager = new TrafficAlertManager(12, 100, 120, new EventBus());
+    }
+
+    @Benchmark
+    public boolean tick() {
+        alertManager.handleTrafficStatistics(statistics[index++ & (TICKS - 1)]);
+        return alertManager.isHighTraffic();
+    }
+
+}
@@ -0,0 +1,89 @@
+package org.sample.homework.benchmarks;
+
+import lombok.experimental.UtilityClass;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generates representative Common Log Format lines.
+ * <p>
+ * The corpus is deterministic: hosts come from a pool of a few thousand addresses, most requests hit a handful of
+ * sections, and methods, status codes and sizes follow a skewed distribution.
+ */
+@UtilityClass
+class Corpus {
+
+    static final Instant START = Instant.parse("2019-05-09T16:00:00Z");
+
+    private static final DateTimeFormatter FORMATTER =
+            DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.ENGLISH).withZone(ZoneOffset.UTC);
+
+    private static final String[] SECTIONS = {"/api", "/api", "/api", "/static", "/static", "/report", "/user",
+            "/admin", "/search", "/login"};
+
+    private static final String[] METHODS = {"GET", "GET", "GET", "GET", "GET", "GET", "POST", "POST", "PUT",
+            "DELETE"};
+
+    private static final int[] STATUSES = {200, 200, 200, 200, 200, 200, 200, 201, 204, 301, 304, 304, 400, 401,
+            403, 404, 404, 500, 502, 503};
+
+    private static final String[] USERS = {"-", "-", "-", "-", "james", "jill", "frank", "mary"};
+
+    /**
+     * Generates lines, about one hundred per second of log time.
+     *
+     * @param count the number of lines
+     * @param seed  the random seed
+     * @return the lines, in time order
+     */
+    static String[] lines(int count, long seed) {
+        Random random = new Random(seed);
+        String[] lines = new String[count];
+        for (int i = 0; i < count; i++) {
+            lines[i] = line(random, START.plusSeconds(i / 100));
+        }
+        return lines;
+    }
+
+    /**
+     * Generates lines whose timestamps are all within the same second.
+     *
+     * @param count the number of lines
+     * @param seed  the random seed
+     * @param time  the timestamp of the lines
+     * @return the lines
+     */
+    static String[] linesAt(int count, long seed, Instant time) {
+        Random random = new Random(seed);
+        String[] lines = new String[count];
+        for (int i = 0; i < count; i++) {
+            lines[i] = line(random, time);
+        }
+        return lines;
+    }
+
+    private static String line(Random random, Instant time) {
+        // Most of the traffic comes from a few hosts.
+        int host = random.nextInt(random.nextBoolean() ? 50 : 5000);
+        StringBuilder endpoint = new StringBuilder(SECTIONS[random.nextInt(SECTIONS.length)]);
+        int depth = random.nextInt(4);
+        for (int i = 0; i < depth; i++) {
+            endpoint.append('/').append(Integer.toString(random.nextInt(1000), 36));
+        }
+        if (random.nextInt(4) == 0) {
+            endpoint.append("?id=").append(random.nextInt(100_000));
+        }
+        int status = STATUSES[random.nextInt(STATUSES.length)];
+        String size = status == 204 || status == 304 ? "-" : Integer.toString(random.nextInt(50_000));
+        return "10." + (host >> 8) + "." + (host & 0xFF) + "." + (1 + random.nextInt(250))
+                + " - " + USERS[random.nextInt(USERS.length)]
+                + " [" + FORMATTER.format(time) + "] \""
+                + METHODS[random.nextInt(METHODS.length)] + " " + endpoint + " HTTP/1.1\" "
+                + status + " " + size;
+    }
+
+}
@@ -0,0 +1,59 @@
+package org.sample.homework.benchmarks;
+
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import org.openjdk.jmh.annotations.*;
+import org.sample.homework.clf.AccessLogParseException;
+import org.sample.homework.clf.AccessLogRecord;
+import org.sample.homework.clf.RegexAccessLogParser;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of publishing a record to a number of subscribers through the {@link EventBus}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class EventBusBenchmark {
+
+    @Param({"1", "4", "16"})
+    public int subscriberCount;
+
+    private final EventBus eventBus = new EventBus();
+    private AccessLogRecord record;
+    private Subscriber[] subscribers;
+
+    /**
+     * A subscriber doing the least possible work.
+     */
+    public static class Subscriber {
+
+        private long received;
+
+        @Subscribe
+        public void handleAccessLogRecord(AccessLogRecord record) {
+            ++received;
+        }
+    }
+
+    @Setup
+    public void setup() throws AccessLogParseException {
+        record = new RegexAccessLogParser().parse(Corpus.lines(1, 42)[0]);
+        subscribers = new Subscriber[subscriberCount];
+        for (int i = 0; i < subscriberCount; i++) {
+            subscribers[i] = new Subscriber();
+            eventBus.register(subscribers[i]);
+        }
+    }
+
+    @Benchmark
+    public long post() {
+        eventBus.post(record);
+        return subscribers[0].received;
+    }
+
+}
@@ -0,0 +1,115 @@
+package org.sample.homework.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sample.homework.clf.AccessLogParseException;
+import org.sample.homework.clf.AccessLogRecord;
+import org.sample.homework.clf.CombinedLogFormat;
+import org.sample.homework.clf.CommonLogFormatUtils;
+import org.sample.homework.clf.LazyAccessLogRecord;
+import org.sample.homework.clf.RegexAccessLogParser;
+import org.sample.homework.stats.TrafficStatisticsManager;
+import org.sample.homework.util.DateTimeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-line parsing costs.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ParserBenchmark {
+
+    private static final int CORPUS_SIZE = 1 << 14;
+
+    private final RegexAccessLogParser parser = new RegexAccessLogParser();
+
+    private final LazyAccessLogRecord record = new LazyAccessLogRecord();
+
+    private final LazyAccessLogRecord combinedRecord = new LazyAccessLogRecord(StandardCharsets.UTF_8,
+            new CombinedLogFormat(TrafficStatisticsManager.FIELDS));
+
+    private static final String[] USER_AGENTS = {
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/75.0.3770.100 "
+                    + "Safari/537.36",
+            "Mozilla/5.0 (X11; Linux x86_64; rv:67.0) Gecko/20100101 Firefox/67.0",
+            "curl/7.64.1"};
+
+    private String[] lines;
+    private byte[][] lineBytes;
+    private byte[][] combinedLineBytes;
+    private String[] dates;
+    private String[] endpoints;
+    private int index;
+
+    @Setup
+    public void setup() throws AccessLogParseException {
+        lines = Corpus.lines(CORPUS_SIZE, 42);
+        dates = new String[CORPUS_SIZE];
+        endpoints = new String[CORPUS_SIZE];
+        lineBytes = new byte[CORPUS_SIZE][];
+        combinedLineBytes = new byte[CORPUS_SIZE][];
+        for (int i = 0; i < CORPUS_SIZE; i++) {
+            lineBytes[i] = lines[i].getBytes(StandardCharsets.UTF_8);
+            combinedLineBytes[i] = (lines[i] + " \"https://www.example.com/\" \"" + USER_AGENTS[i % USER_AGENTS.length]
+                    + '"').getBytes(StandardCharsets.UTF_8);
+            dates[i] = lines[i].substring(lines[i].indexOf('[') + 1, lines[i].indexOf(']'));
+            endpoints[i] = parser.parse(lines[i]).getEndpoint();
+        }
+    }
+
+    @Benchmark
+    public AccessLogRecord parse() throws AccessLogParseException {
+        return parser.parse(lines[index++ & (CORPUS_SIZE - 1)]);
+    }
+
+    /**
+     * Scans a line and decodes the fields used by the statistics, as the ingest path does.
+     */
+    @Benchmark
+    public void scan(Blackhole blackhole) throws AccessLogParseException {
+        byte[] line = lineBytes[index++ & (CORPUS_SIZE - 1)];
+        record.reset(line, 0, line.length);
+        blackhole.consume(record.getTimestamp());
+        blackhole.consume(record.getStatus());
+        blackhole.consume(record.getBytes());
+        blackhole.consume(record.getHost());
+        blackhole.consume(record.getSection());
+        blackhole.consume(record.getMethod());
+    }
+
+    /**
+     * Scans a Combined Log Format line and decodes the fields used by the statistics, including the user agent family
+     * and the referer domain.
+     */
+    @Benchmark
+    public void scanCombined(Blackhole blackhole) throws AccessLogParseException {
+        byte[] line = combinedLineBytes[index++ & (CORPUS_SIZE - 1)];
+        combinedRecord.reset(line, 0, line.length);
+        blackhole.consume(combinedRecord.getTimestamp());
+        blackhole.consume(combinedRecord.getStatus());
+        blackhole.consume(combinedRecord.getBytes());
+        blackhole.consume(combinedRecord.getHost());
+        blackhole.consume(combinedRecord.getSection());
+        blackhole.consume(combinedRecord.getMethod());
+        blackhole.consume(combinedRecord.getUserAgentFamily());
+        blackhole.consume(combinedRecord.getRefererDomain());
+    }
+
+    @Benchmark
+    public ZonedDateTime parseDateTime() {
+        return DateTimeUtils.parseDateTime(dates[index++ & (CORPUS_SIZE - 1)]);
+    }
+
+    @Benchmark
+    public String extractSection() {
+        return CommonLogFormatUtils.extractSection(endpoints[index++ & (CORPUS_SIZE - 1)]);
+    }
+
+}
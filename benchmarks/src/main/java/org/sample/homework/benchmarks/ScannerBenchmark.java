@@ -0,0 +1,97 @@
+package org.sample.homework.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.sample.homework.util.DelimiterIndex;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of locating the line feeds, then the spaces, quotes and brackets, of a read buffer of Combined Log
+ * Format lines: decoded into strings and split, checked byte by byte, or checked 8 bytes at a time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ScannerBenchmark {
+
+    /**
+     * The size of the read buffer of the file watcher.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final DelimiterIndex delimiters = new DelimiterIndex((byte) ' ', (byte) '"', (byte) '[', (byte) ']');
+
+    private final DelimiterIndex lineFeeds = new DelimiterIndex((byte) '\n');
+
+    private final int[] offsets = new int[BUFFER_SIZE];
+
+    private byte[] buffer;
+
+    @Setup
+    public void setup() {
+        StringBuilder text = new StringBuilder(BUFFER_SIZE);
+        for (String line : Corpus.lines(BUFFER_SIZE / 64, 42)) {
+            String combined = line + " \"https://www.example.com/\" \"Mozilla/5.0 (X11; Linux x86_64; rv:67.0) "
+                    + "Gecko/20100101 Firefox/67.0\"\n";
+            if (text.length() + combined.length() > BUFFER_SIZE) {
+                break;
+            }
+            text.append(combined);
+        }
+        buffer = text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The string-based path: decodes the buffer, then splits it into lines and the lines into tokens.
+     */
+    @Benchmark
+    public int splitStrings() {
+        String text = new String(buffer, StandardCharsets.UTF_8);
+        int count = 0;
+        int lineStart = 0;
+        int lineEnd;
+        while ((lineEnd = text.indexOf('\n', lineStart)) >= 0) {
+            count += text.substring(lineStart, lineEnd).split("[ \"\\[\\]]").length;
+            lineStart = lineEnd + 1;
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int byteLoop() {
+        int count = 0;
+        for (int i = 0; i < buffer.length; i++) {
+            byte b = buffer[i];
+            if (b == ' ' || b == '"' || b == '[' || b == ']') {
+                offsets[count++] = i;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int swar() {
+        return delimiters.index(buffer, 0, buffer.length).getSize();
+    }
+
+    @Benchmark
+    public int byteLoopLineFeeds() {
+        int count = 0;
+        for (int i = 0; i < buffer.length; i++) {
+            if (buffer[i] == '\n') {
+                offsets[count++] = i;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int swarLineFeeds() {
+        return lineFeeds.index(buffer, 0, buffer.length).getSize();
+    }
+
+}
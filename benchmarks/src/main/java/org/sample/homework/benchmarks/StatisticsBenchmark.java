@@ -0,0 +1,72 @@
+package org.sample.homework.benchmarks;
+
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import org.openjdk.jmh.annotations.*;
+import org.sample.homework.clf.AccessLogParseException;
+import org.sample.homework.clf.AccessLogRecord;
+import org.sample.homework.clf.RegexAccessLogParser;
+import org.sample.homework.stats.TrafficStatistics;
+import org.sample.homework.stats.TrafficStatisticsManager;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of buffering the records of a window frame and aggregating them when the window is closed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class StatisticsBenchmark {
+
+    /**
+     * Number of records buffered during a window frame.
+     */
+    @Param({"100", "10000", "100000"})
+    public int recordCount;
+
+    private AccessLogRecord[] records;
+    private TrafficStatisticsManager manager;
+    private final StatisticsSink sink = new StatisticsSink();
+
+    /**
+     * Consumes the published statistics.
+     */
+    public static class StatisticsSink {
+
+        private TrafficStatistics latest;
+
+        @Subscribe
+        public void handleTrafficStatistics(TrafficStatistics statistics) {
+            latest = statistics;
+        }
+    }
+
+    @Setup
+    public void setup() throws AccessLogParseException {
+        RegexAccessLogParser parser = new RegexAccessLogParser();
+        String[] lines = Corpus.linesAt(recordCount, 42, Corpus.START);
+        records = new AccessLogRecord[recordCount];
+        for (int i = 0; i < recordCount; i++) {
+            records[i] = parser.parse(lines[i]);
+        }
+        EventBus eventBus = new EventBus();
+        eventBus.register(sink);
+        manager = new TrafficStatisticsManager(10, eventBus);
+        // Opens the first window frame, every record belongs to it or to a previous one.
+        manager.advanceTo(Corpus.START);
+    }
+
+    @Benchmark
+    public TrafficStatistics ingestAndCloseWindow() {
+        for (AccessLogRecord record : records) {
+            manager.handleAccessLogRecord(record);
+        }
+        manager.flush();
+        return sink.latest;
+    }
+
+}
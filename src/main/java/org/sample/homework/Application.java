@@ -4,12 +4,52 @@ import com.google.common.eventbus.EventBus;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.cli.*;
 import org.sample.homework.alerts.TrafficAlertManager;
+import org.sample.homework.checkpoint.Checkpoint;
+import org.sample.homework.checkpoint.CheckpointManager;
+import org.sample.homework.checkpoint.CheckpointStore;
+import org.sample.homework.cluster.ClusterAgent;
+import org.sample.homework.cluster.ClusterAggregator;
+import org.sample.homework.clf.AccessLogField;
 import org.sample.homework.clf.AccessLogRecordProducer;
+import org.sample.homework.clf.LineFilter;
+import org.sample.homework.clf.LoadShedder;
+import org.sample.homework.clf.LogFormat;
+import org.sample.homework.clf.LogFormatDetector;
+import org.sample.homework.clf.MalformedLineHandler;
+import org.sample.homework.history.HistoryWriter;
+import org.sample.homework.metrics.MemoryBudget;
+import org.sample.homework.metrics.PipelineMetrics;
+import org.sample.homework.metrics.PrometheusExporter;
+import org.sample.homework.output.DeadLetterWriter;
+import org.sample.homework.output.JsonLinesWriter;
+import org.sample.homework.reader.PollingFileWatcher;
+import org.sample.homework.replay.LogReplayer;
+import org.sample.homework.replay.LogSeeker;
+import org.sample.homework.replay.VirtualClock;
+import org.sample.homework.series.MetricSeriesStore;
+import org.sample.homework.stats.TrafficStatistics;
 import org.sample.homework.stats.TrafficStatisticsManager;
+import org.sample.homework.tenant.TenantEngine;
 import org.sample.homework.ui.ConsoleGui;
 
-import java.io.IOException;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 /**
  * Starter class.
@@ -17,6 +57,11 @@ import java.nio.file.Paths;
 @Slf4j
 public class Application {
 
+    /**
+     * How long the compressed metric series are kept in memory.
+     */
+    private static final Duration SERIES_RETENTION = Duration.ofHours(24);
+
     /**
      * Application entry point.
      *
@@ -43,23 +88,204 @@ public class Application {
             System.exit(1);
         }
 
+        // Expose the pipeline health through JMX.
+        PipelineMetrics.get().registerMBean();
+
+        // Cap the memory held by the buffers of the pipeline if requested.
+        if (options.getMemoryBudget() > 0) {
+            MemoryBudget.get().setLimit(options.getMemoryBudget() * 1024L * 1024L);
+        }
+
         // Implements a central event bus used for high level communication between application components.
         EventBus eventBus = new EventBus();
 
-        TrafficStatisticsManager stats = new TrafficStatisticsManager(options.getReportInterval(), eventBus);
+        // Agents ship the sketches needed to merge their statistics with the ones of the other nodes.
+        TrafficStatisticsManager stats = new TrafficStatisticsManager(options.getReportInterval(), eventBus,
+                options.getAggregatorHost() != null, options.getSectionDepth());
+
+        // When replaying, time is given by the record timestamps instead of the wall clock.
+        VirtualClock replayClock = options.isReplay() ? new VirtualClock(Instant.EPOCH, ZoneId.systemDefault()) : null;
 
         // Initialise the traffic alerting manager.
         TrafficAlertManager monitoringStore =
                 new TrafficAlertManager(options.getMonitorDuration() / options.getReportInterval(),
-                        options.getAlertThreshold(), options.getMonitorDuration(), eventBus);
+                        options.getAlertThreshold(), options.getMonitorDuration(), options.getBurstThreshold(),
+                        eventBus, replayClock != null ? replayClock : Clock.systemDefaultZone());
 
         // We can subscribe to an event by registering our components on the EventBus.
         eventBus.register(stats);
         eventBus.register(monitoringStore);
 
+        // Monitor every log file or virtual host apart if requested, besides the whole traffic.
+        TenantEngine tenants = null;
+        if (options.getTenantKey() != null) {
+            tenants = new TenantEngine(options.getTenantKey(), options.getReportInterval(),
+                    options.getMonitorDuration(), options.getAlertThreshold(), options.getTenantAlertThresholds(),
+                    eventBus);
+            eventBus.register(tenants);
+        }
+
+        // Keep the numeric metrics in compressed in-memory series.
+        MetricSeriesStore seriesStore = new MetricSeriesStore(SERIES_RETENTION);
+        eventBus.register(seriesStore);
+
+        // Persist traffic statistics and alerts history if requested.
+        if (options.getHistoryDirectory() != null) {
+            try {
+                HistoryWriter historyWriter = new HistoryWriter(Paths.get(options.getHistoryDirectory()));
+                eventBus.register(historyWriter);
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        historyWriter.close();
+                    } catch (IOException e) {
+                        log.warn("Failed to close history.", e);
+                    }
+                }, "history-shutdown"));
+            } catch (IOException e) {
+                log.error(e.getMessage(), e);
+                System.exit(1);
+            }
+        }
+
+        // Expose metrics to Prometheus if requested.
+        if (options.getMetricsPort() > 0) {
+            try {
+                PrometheusExporter exporter =
+                        new PrometheusExporter(options.getMetricsPort(), monitoringStore, PipelineMetrics.get());
+                eventBus.register(exporter);
+                exporter.start();
+            } catch (IOException e) {
+                log.error(e.getMessage(), e);
+                System.exit(1);
+            }
+        }
+
+        if (options.getAggregatePort() > 0) {
+            // The fleet statistics are merged from the partials of the agents instead of being read from a log file.
+            if (options.isHeadless()) {
+                startJsonLinesWriter(options, eventBus);
+            } else {
+                startConsoleGui(eventBus, seriesStore);
+            }
+            try {
+                new ClusterAggregator(options.getAggregatePort(), options.getReportInterval(), eventBus).start();
+            } catch (IOException e) {
+                log.error(e.getMessage(), e);
+                System.exit(1);
+            }
+            return;
+        }
+
+        // Ship the statistics of every window frame to the aggregator if requested.
+        if (options.getAggregatorHost() != null) {
+            ClusterAgent agent = new ClusterAgent(getAgentName(options), options.getAggregatorHost(),
+                    options.getAggregatorPort());
+            eventBus.register(agent);
+            agent.start();
+        }
+
+        MalformedLineHandler malformedLineHandler = createMalformedLineHandler(options);
+
+        if (options.isHeadless()) {
+            startJsonLinesWriter(options, eventBus);
+        } else {
+            startConsoleGui(eventBus, seriesStore);
+        }
+
+        if (!options.getTenantFiles().isEmpty()) {
+            // Every file is polled by the workers of the tenants, the threads of the engine keep the application alive.
+            for (String file : options.getTenantFiles()) {
+                tenants.follow(new AccessLogRecordProducer(file, eventBus, PollingFileWatcher.END_OF_FILE,
+                        malformedLineHandler, createLogFormat(options, file), createLoadShedder(options)));
+            }
+            stats.start();
+            tenants.start();
+            return;
+        }
+
+        // The format is shared by the replayed and followed lines, since it may be described by header lines.
+        LogFormat logFormat = createLogFormat(options, options.getFileLocation());
+
+        if (replayClock != null) {
+            try {
+                replay(options, eventBus, stats, replayClock, malformedLineHandler, logFormat);
+            } catch (IOException e) {
+                log.error(e.getMessage(), e);
+                System.exit(1);
+            }
+            if (options.isHeadless()) {
+                // Nothing is left to show.
+                System.exit(0);
+            }
+            return;
+        }
+
+        // Sample the lines while the ingestion is behind or the memory budget is under pressure if requested.
+        LoadShedder loadShedder = createLoadShedder(options);
+
+        if (options.isSyslog()) {
+            try {
+                stats.start();
+                if (tenants != null) {
+                    tenants.start();
+                }
+                // Receive the syslog messages (this is blocking).
+                new AccessLogRecordProducer(eventBus, malformedLineHandler, logFormat,
+                        options.getSyslogUdpPort() > 0 ? new InetSocketAddress(options.getSyslogUdpPort()) : null,
+                        options.getSyslogTcpPort() > 0 ? new InetSocketAddress(options.getSyslogTcpPort()) : null,
+                        loadShedder).start();
+            } catch (IOException e) {
+                log.error(e.getMessage(), e);
+                System.exit(1);
+            }
+            return;
+        }
+
+        try {
+            long startPosition = PollingFileWatcher.END_OF_FILE;
+            CheckpointStore checkpointStore = null;
+            if (options.getCheckpointFile() != null) {
+                checkpointStore = new CheckpointStore(Paths.get(options.getCheckpointFile()));
+                startPosition = restoreCheckpoint(checkpointStore, options, eventBus, stats, monitoringStore,
+                        malformedLineHandler, logFormat);
+            }
+            if (startPosition == PollingFileWatcher.END_OF_FILE && options.isBackfill()) {
+                startPosition = backfill(options, eventBus, stats, malformedLineHandler, logFormat);
+            }
+            stats.start();
+            if (tenants != null) {
+                tenants.start();
+            }
+
+            // Create the access log record producer, resuming from the checkpoint if any.
+            AccessLogRecordProducer producer =
+                    new AccessLogRecordProducer(options.getFileLocation(), eventBus, startPosition,
+                            malformedLineHandler, logFormat, loadShedder);
+            if (checkpointStore != null) {
+                new CheckpointManager(checkpointStore, monitoringStore, producer::getPosition)
+                        .start(options.getReportInterval());
+            }
+            // Start the access log record producer (this is blocking).
+            producer.start();
+        } catch (IOException e) {
+            log.error(e.getMessage(), e);
+            System.exit(1);
+        }
+
+    }
+
+    /**
+     * Starts the console UI.
+     * <p>
+     * This is kept in a separate method so that the UI classes are only loaded when the UI is used.
+     *
+     * @param eventBus    the central event bus, not <tt>null</tt>
+     * @param seriesStore the metric series drawn by the UI, not <tt>null</tt>
+     */
+    private static void startConsoleGui(EventBus eventBus, MetricSeriesStore seriesStore) {
         // The UI execution is performed asynchronously using a separate thread.
         new Thread(() -> {
-            ConsoleGui gui = new ConsoleGui();
+            ConsoleGui gui = new ConsoleGui(seriesStore);
             eventBus.register(gui);
             try {
                 gui.start(() -> System.exit(0));
@@ -68,15 +294,211 @@ public class Application {
                 System.exit(1);
             }
         }, "ui-thread").start();
+    }
 
+    /**
+     * Writes traffic statistics and alerts as JSON lines to the output file or to the standard output.
+     *
+     * @param options  the application options, not <tt>null</tt>
+     * @param eventBus the central event bus, not <tt>null</tt>
+     */
+    private static void startJsonLinesWriter(ApplicationOptions options, EventBus eventBus) {
+        Writer writer;
         try {
-            // Create and start the access log record producer (this is blocking).
-            new AccessLogRecordProducer(options.getFileLocation(), eventBus);
+            OutputStream out = options.getOutputFile() == null
+                    ? System.out
+                    : new FileOutputStream(options.getOutputFile(), true);
+            writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
         } catch (IOException e) {
             log.error(e.getMessage(), e);
             System.exit(1);
+            return;
         }
+        JsonLinesWriter jsonLinesWriter = new JsonLinesWriter(writer);
+        eventBus.register(jsonLinesWriter);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                jsonLinesWriter.close();
+            } catch (IOException e) {
+                log.warn("Failed to close JSON lines output.", e);
+            }
+        }, "output-shutdown"));
+    }
 
+    /**
+     * Returns the name this node reports to the aggregator.
+     *
+     * @param options the application options, not <tt>null</tt>
+     * @return the agent name option, or the local host name
+     */
+    private static String getAgentName(ApplicationOptions options) {
+        if (options.getAgentName() != null) {
+            return options.getAgentName();
+        }
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            log.warn("Can't resolve the local host name, naming this agent after its process.", e);
+            return java.lang.management.ManagementFactory.getRuntimeMXBean().getName();
+        }
+    }
+
+    /**
+     * Creates the handler of unparsable lines, keeping them in the quarantine file if requested.
+     *
+     * @param options the application options, not <tt>null</tt>
+     * @return the handler to use, not <tt>null</tt>
+     */
+    private static MalformedLineHandler createMalformedLineHandler(ApplicationOptions options) {
+        if (options.getQuarantineFile() == null) {
+            return new MalformedLineHandler();
+        }
+        DeadLetterWriter deadLetters;
+        try {
+            deadLetters = new DeadLetterWriter(Paths.get(options.getQuarantineFile()));
+        } catch (IOException e) {
+            log.error(e.getMessage(), e);
+            System.exit(1);
+            return null;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                deadLetters.close();
+            } catch (IOException e) {
+                log.warn("Failed to close quarantine file.", e);
+            }
+        }, "quarantine-shutdown"));
+        return new MalformedLineHandler(deadLetters);
+    }
+
+    /**
+     * Creates the format of a log file, only scanning the fields used by the statistics (and the virtual host when the
+     * tenants are the virtual hosts).
+     * <p>
+     * The format is primed with the beginning of the log file, so that lines can be scanned from anywhere in the file.
+     * Syslog messages are only scanned from the time they are received, W3C headers included. The exclusion filters
+     * wrap the primed format, so that the lines read while priming are not counted as filtered.
+     *
+     * @param options the application options, not <tt>null</tt>
+     * @param file    the log file, not <tt>null</tt>
+     * @return the format to use, not <tt>null</tt>
+     */
+    private static LogFormat createLogFormat(ApplicationOptions options, String file) {
+        Set<AccessLogField> projection = EnumSet.copyOf(TrafficStatisticsManager.FIELDS);
+        if (options.getTenantKey() == TenantEngine.TenantKey.VHOST) {
+            projection.add(AccessLogField.VIRTUAL_HOST);
+        }
+        LogFormat format = LogFormatDetector.forName(options.getLogFormat(), projection);
+        if (!options.isSyslog()) {
+            try {
+                LogFormatDetector.prime(format, Paths.get(file));
+            } catch (IOException e) {
+                log.error(e.getMessage(), e);
+                System.exit(1);
+            }
+        }
+        // There is no file to prime the format with in syslog mode.
+        return options.getExcludeFilters().isEmpty() ? format : new LineFilter(format, options.getExcludeFilters());
+    }
+
+    /**
+     * Creates the load shedder which samples the lines while the ingestion is behind the lag budget or the memory
+     * budget is under pressure.
+     *
+     * @param options the application options, not <tt>null</tt>
+     * @return the load shedder, or <tt>null</tt> if there is neither a lag budget nor a memory budget
+     */
+    private static LoadShedder createLoadShedder(ApplicationOptions options) {
+        if (options.getLagBudget() == 0 && options.getMemoryBudget() == 0) {
+            return null;
+        }
+        return new LoadShedder(Duration.ofSeconds(options.getLagBudget()));
+    }
+
+    /**
+     * Restores the state saved by a previous run and catches up with the lines written since then.
+     *
+     * @param store        the checkpoint store, not <tt>null</tt>
+     * @param options      the application options, not <tt>null</tt>
+     * @param eventBus     the central event bus, not <tt>null</tt>
+     * @param stats        the statistics manager, not <tt>null</tt>
+     * @param alertManager the alert manager, not <tt>null</tt>
+     * @param malformed    handles the lines which can't be parsed, not <tt>null</tt>
+     * @param format       the format of the log file, not <tt>null</tt>
+     * @return the position at which to start following the log file
+     * @throws IOException if the checkpoint or the log file can't be read
+     */
+    private static long restoreCheckpoint(CheckpointStore store,
+                                          ApplicationOptions options,
+                                          EventBus eventBus,
+                                          TrafficStatisticsManager stats,
+                                          TrafficAlertManager alertManager,
+                                          MalformedLineHandler malformed,
+                                          LogFormat format) throws IOException {
+        Optional<Checkpoint> checkpoint = store.load();
+        if (!checkpoint.isPresent()) {
+            log.info("No checkpoint found at {}.", store.getPath());
+            return PollingFileWatcher.END_OF_FILE;
+        }
+        TrafficAlertManager.Snapshot alertState = checkpoint.get().getAlertState();
+        alertManager.restore(alertState);
+        List<TrafficStatistics> trafficStatistics = alertState.getTrafficStatistics();
+        if (!trafficStatistics.isEmpty()) {
+            stats.resumeFrom(trafficStatistics.get(trafficStatistics.size() - 1).getWindowEnd());
+        }
+
+        // The lines of the window frame which was still open are replayed along with the ones written since then.
+        Path logFile = Paths.get(options.getFileLocation());
+        long offset = checkpoint.get().catchUpOffset(logFile);
+        log.info("Restored checkpoint of {}, catching up from offset {}.", checkpoint.get().getPosition(), offset);
+        return new LogReplayer(eventBus, stats, malformed, format).replay(logFile, offset);
+    }
+
+    /**
+     * Replays the lines of the log file written during the last monitor duration.
+     *
+     * @param options   the application options, not <tt>null</tt>
+     * @param eventBus  the central event bus, not <tt>null</tt>
+     * @param stats     the statistics manager, not <tt>null</tt>
+     * @param malformed handles the lines which can't be parsed, not <tt>null</tt>
+     * @param format    the format of the log file, not <tt>null</tt>
+     * @return the position at which to start following the log file
+     * @throws IOException if the log file can't be read
+     */
+    private static long backfill(ApplicationOptions options,
+                                 EventBus eventBus,
+                                 TrafficStatisticsManager stats,
+                                 MalformedLineHandler malformed,
+                                 LogFormat format) throws IOException {
+        Path logFile = Paths.get(options.getFileLocation());
+        long offset = LogSeeker.seek(logFile, Instant.now().minusSeconds(options.getMonitorDuration()));
+        log.info("Backfilling from offset {} of {}.", offset, logFile);
+        return new LogReplayer(eventBus, stats, malformed, format).replay(logFile, offset);
+    }
+
+    /**
+     * Replays the whole log file, driving window frames and alerts from the record timestamps.
+     *
+     * @param options   the application options, not <tt>null</tt>
+     * @param eventBus  the central event bus, not <tt>null</tt>
+     * @param stats     the statistics manager, not <tt>null</tt>
+     * @param clock     the clock advanced by the record timestamps, not <tt>null</tt>
+     * @param malformed handles the lines which can't be parsed, not <tt>null</tt>
+     * @param format    the format of the log file, not <tt>null</tt>
+     * @throws IOException if the log file can't be read
+     */
+    private static void replay(ApplicationOptions options,
+                               EventBus eventBus,
+                               TrafficStatisticsManager stats,
+                               VirtualClock clock,
+                               MalformedLineHandler malformed,
+                               LogFormat format) throws IOException {
+        Path logFile = Paths.get(options.getFileLocation());
+        log.info("Replaying {} at speed {}.", logFile, options.getReplaySpeed() > 0 ? options.getReplaySpeed() : "max");
+        new LogReplayer(eventBus, stats, clock, options.getReplaySpeed(), malformed, format).replay(logFile, 0);
+        // Publish the last window frame, no record will close it.
+        stats.flush(clock::advanceTo);
+        log.info("Replay of {} finished at {}.", logFile, clock.instant());
     }
 
     /**
@@ -106,8 +528,86 @@ public class Application {
             options.setFileLocation(logFile);
         }
 
+        // Validate the tenants, several log files can only be followed as tenants.
+        String tenantBy = commandLine.getOptionValue("tenant-by");
+        if (tenantBy != null) {
+            try {
+                options.setTenantKey(TenantEngine.TenantKey.valueOf(tenantBy.toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException("Invalid 'tenant-by' argument value: " + tenantBy);
+            }
+            if (commandLine.hasOption("aggregate") || commandLine.hasOption("replay")
+                    || commandLine.hasOption("backfill") || commandLine.hasOption("checkpoint-file")) {
+                throw new IllegalArgumentException(
+                        "'tenant-by' can't be combined with 'aggregate', 'replay', 'backfill' or 'checkpoint-file'!");
+            }
+        }
+        String[] logFiles = commandLine.getOptionValues("log-file");
+        if (options.getTenantKey() == TenantEngine.TenantKey.FILE) {
+            if (commandLine.hasOption("syslog-udp") || commandLine.hasOption("syslog-tcp")) {
+                throw new IllegalArgumentException("Syslog ports can't be combined with 'tenant-by file'!");
+            }
+            options.setTenantFiles(logFiles == null
+                    ? Arrays.asList(options.getFileLocation())
+                    : Arrays.asList(logFiles));
+            for (String file : options.getTenantFiles()) {
+                if (!Paths.get(file).toFile().isFile()) {
+                    throw new IllegalArgumentException(file + " doesn't exist or is not a regular file!");
+                }
+            }
+        } else if (logFiles != null && logFiles.length > 1) {
+            throw new IllegalArgumentException("Several log files can only be followed with 'tenant-by file'!");
+        }
+        String[] tenantThresholds = commandLine.getOptionValues("tenant-threshold");
+        if (tenantThresholds != null) {
+            if (options.getTenantKey() == null) {
+                throw new IllegalArgumentException("'tenant-threshold' is only supported with 'tenant-by'!");
+            }
+            Map<String, Integer> thresholds = new HashMap<>();
+            for (String tenantThreshold : tenantThresholds) {
+                int separator = tenantThreshold.lastIndexOf('=');
+                try {
+                    int result = separator <= 0 ? -1 : Integer.parseInt(tenantThreshold.substring(separator + 1));
+                    if (result < 1) {
+                        throw new IllegalArgumentException("Invalid 'tenant-threshold' argument value: "
+                                + tenantThreshold);
+                    }
+                    thresholds.put(tenantThreshold.substring(0, separator), result);
+                } catch (NumberFormatException ex) {
+                    throw new IllegalArgumentException("Invalid 'tenant-threshold' argument value: " + tenantThreshold);
+                }
+            }
+            options.setTenantAlertThresholds(thresholds);
+        }
+
+        // Validate the aggregator port, the aggregator doesn't read any log file.
+        String aggregatePort = commandLine.getOptionValue("aggregate");
+        if (aggregatePort != null) {
+            options.setAggregatePort(parsePort("aggregate", aggregatePort));
+            if (commandLine.hasOption("aggregator") || commandLine.hasOption("replay")
+                    || commandLine.hasOption("backfill") || commandLine.hasOption("checkpoint-file")) {
+                throw new IllegalArgumentException(
+                        "'aggregate' can't be combined with 'aggregator', 'replay', 'backfill' or 'checkpoint-file'!");
+            }
+        }
+
+        // Validate the syslog ports, the log file isn't read when receiving syslog messages.
+        String syslogUdpPort = commandLine.getOptionValue("syslog-udp");
+        if (syslogUdpPort != null) {
+            options.setSyslogUdpPort(parsePort("syslog-udp", syslogUdpPort));
+        }
+        String syslogTcpPort = commandLine.getOptionValue("syslog-tcp");
+        if (syslogTcpPort != null) {
+            options.setSyslogTcpPort(parsePort("syslog-tcp", syslogTcpPort));
+        }
+        if (options.isSyslog() && (commandLine.hasOption("aggregate") || commandLine.hasOption("replay")
+                || commandLine.hasOption("backfill") || commandLine.hasOption("checkpoint-file"))) {
+            throw new IllegalArgumentException(
+                    "Syslog ports can't be combined with 'aggregate', 'replay', 'backfill' or 'checkpoint-file'!");
+        }
+
         // Do not allow this to be a folder since we want to watch files.
-        if (!Paths.get(options.getFileLocation()).toFile().isFile()) {
+        if (options.getAggregatePort() == 0 && !options.isSyslog() && !Paths.get(options.getFileLocation()).toFile().isFile()) {
             throw new IllegalArgumentException(options.getFileLocation() + " doesn't exist or is not a regular file!");
         }
 
@@ -139,6 +639,20 @@ public class Application {
             }
         }
 
+        // Validate burst threshold.
+        String burstThreshold = commandLine.getOptionValue("burst-threshold");
+        if (burstThreshold != null) {
+            try {
+                int result = Integer.parseInt(burstThreshold);
+                if (result < 1) {
+                    throw new IllegalArgumentException("Invalid 'burst-threshold' argument value: " + burstThreshold);
+                }
+                options.setBurstThreshold(result);
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Invalid 'burst-threshold' argument value: " + burstThreshold);
+            }
+        }
+
         // Validate alert duration.
         String alertDuration = commandLine.getOptionValue("monitor-duration");
         if (alertDuration != null) {
@@ -154,9 +668,141 @@ public class Application {
             }
         }
 
+        options.setBackfill(commandLine.hasOption("backfill"));
+
+        // History is optional.
+        options.setHistoryDirectory(commandLine.getOptionValue("history-dir"));
+
+        // Replay mode.
+        options.setReplay(commandLine.hasOption("replay"));
+        String replaySpeed = commandLine.getOptionValue("replay-speed");
+        if (replaySpeed != null) {
+            try {
+                double result = Double.parseDouble(replaySpeed);
+                if (result < 0 || Double.isNaN(result) || Double.isInfinite(result)) {
+                    throw new IllegalArgumentException("Invalid 'replay-speed' argument value: " + replaySpeed);
+                }
+                options.setReplaySpeed(result);
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Invalid 'replay-speed' argument value: " + replaySpeed);
+            }
+        }
+
+        // Validate metrics port.
+        String metricsPort = commandLine.getOptionValue("metrics-port");
+        if (metricsPort != null) {
+            options.setMetricsPort(parsePort("metrics-port", metricsPort));
+        }
+
+        // Validate the lag budget.
+        String lagBudget = commandLine.getOptionValue("lag-budget");
+        if (lagBudget != null) {
+            try {
+                int result = Integer.parseInt(lagBudget);
+                if (result < 1) {
+                    throw new IllegalArgumentException("Invalid 'lag-budget' argument value: " + lagBudget);
+                }
+                options.setLagBudget(result);
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Invalid 'lag-budget' argument value: " + lagBudget);
+            }
+        }
+
+        // Validate the memory budget.
+        String memoryBudget = commandLine.getOptionValue("memory-budget");
+        if (memoryBudget != null) {
+            try {
+                int result = Integer.parseInt(memoryBudget);
+                if (result < 1) {
+                    throw new IllegalArgumentException("Invalid 'memory-budget' argument value: " + memoryBudget);
+                }
+                options.setMemoryBudget(result);
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Invalid 'memory-budget' argument value: " + memoryBudget);
+            }
+        }
+
+        // Validate the section depth.
+        String sectionDepth = commandLine.getOptionValue("section-depth");
+        if (sectionDepth != null) {
+            try {
+                int result = Integer.parseInt(sectionDepth);
+                if (result < 1) {
+                    throw new IllegalArgumentException("Invalid 'section-depth' argument value: " + sectionDepth);
+                }
+                options.setSectionDepth(result);
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Invalid 'section-depth' argument value: " + sectionDepth);
+            }
+        }
+
+        // Validate the exclusion filters.
+        String[] excludeFilters = commandLine.getOptionValues("exclude");
+        if (excludeFilters != null) {
+            for (String excludeFilter : excludeFilters) {
+                LineFilter.validate(excludeFilter);
+            }
+            options.setExcludeFilters(Arrays.asList(excludeFilters));
+        }
+
+        // Headless mode.
+        options.setHeadless(commandLine.hasOption("headless"));
+        options.setOutputFile(commandLine.getOptionValue("output"));
+        if (options.getOutputFile() != null && !options.isHeadless()) {
+            throw new IllegalArgumentException("'output' is only supported in headless mode!");
+        }
+
+        // Checkpoints are optional.
+        options.setCheckpointFile(commandLine.getOptionValue("checkpoint-file"));
+
+        // Quarantine is optional.
+        options.setQuarantineFile(commandLine.getOptionValue("quarantine-file"));
+
+        // Validate the aggregator address.
+        String aggregator = commandLine.getOptionValue("aggregator");
+        if (aggregator != null) {
+            int separator = aggregator.lastIndexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid 'aggregator' argument value: " + aggregator);
+            }
+            options.setAggregatorHost(aggregator.substring(0, separator));
+            options.setAggregatorPort(parsePort("aggregator", aggregator.substring(separator + 1)));
+        }
+        options.setAgentName(commandLine.getOptionValue("agent-name"));
+
+        // Validate the log format.
+        String logFormat = commandLine.getOptionValue("log-format");
+        if (logFormat != null) {
+            try {
+                LogFormatDetector.forName(logFormat, TrafficStatisticsManager.FIELDS);
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException("Invalid 'log-format' argument value: " + logFormat);
+            }
+            options.setLogFormat(logFormat);
+        }
+
         return options;
     }
 
+    /**
+     * Validates a port argument.
+     *
+     * @param name  the name of the argument
+     * @param value the argument value
+     * @return the port
+     */
+    private static int parsePort(String name, String value) {
+        try {
+            int result = Integer.parseInt(value);
+            if (result < 1 || result > 65535) {
+                throw new IllegalArgumentException("Invalid '" + name + "' argument value: " + value);
+            }
+            return result;
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid '" + name + "' argument value: " + value);
+        }
+    }
+
     /**
      * Generates application command line options.
      *
@@ -173,6 +819,50 @@ public class Application {
                 "alert threshold in hits/sec, default " + defaults.getAlertThreshold());
         options.addOption("d", "monitor-duration", true,
                 "alert duration in seconds, default " + defaults.getMonitorDuration());
+        options.addOption("c", "checkpoint-file", true,
+                "file used to save and restore the monitoring state across restarts, disabled by default");
+        options.addOption("H", "history-dir", true,
+                "folder where traffic statistics and alerts history is written, disabled by default");
+        options.addOption("n", "headless", false,
+                "run without the console UI, writing summaries and alerts as JSON lines");
+        options.addOption("o", "output", true,
+                "file where JSON lines are appended in headless mode, default standard output");
+        options.addOption("p", "metrics-port", true,
+                "port of the Prometheus scrape endpoint (/metrics), disabled by default");
+        options.addOption("b", "backfill", false,
+                "replay the last monitor duration of the log file on startup");
+        options.addOption("B", "burst-threshold", true,
+                "alert threshold in hits/sec during the busiest second of a report interval, disabled by default");
+        options.addOption("R", "replay", false,
+                "replay the whole log file using its timestamps as clock instead of following it");
+        options.addOption("s", "replay-speed", true,
+                "replay speed multiplier, default as fast as possible");
+        options.addOption("q", "quarantine-file", true,
+                "file where unparsable lines are appended, disabled by default");
+        options.addOption("F", "log-format", true,
+                "access log format: auto, common, combined, w3c or vhost_combined, default " + defaults.getLogFormat());
+        options.addOption("a", "aggregator", true,
+                "host:port of the aggregator the statistics of every window frame are sent to, disabled by default");
+        options.addOption(null, "agent-name", true,
+                "name of this node when sending statistics to the aggregator, default the host name");
+        options.addOption("g", "aggregate", true,
+                "run as the aggregator of the agents connecting to this port instead of reading a log file");
+        options.addOption("l", "lag-budget", true,
+                "ingest lag in seconds above which only a sample of the lines is parsed, disabled by default");
+        options.addOption("M", "memory-budget", true,
+                "memory budget in megabytes of the pipeline buffers, above which they are shed, disabled by default");
+        options.addOption("D", "section-depth", true,
+                "number of path segments the sections can be drilled down to, default " + defaults.getSectionDepth());
+        options.addOption("x", "exclude", true,
+                "drop the lines matching this filter, e.g. 'path=/health method=HEAD', can be repeated");
+        options.addOption("e", "tenant-by", true,
+                "monitor every log file (file, -f can be repeated) or virtual host (vhost) apart, disabled by default");
+        options.addOption("E", "tenant-threshold", true,
+                "alert threshold of a tenant in hits/sec, e.g. 'www.example.com=50', can be repeated");
+        options.addOption("u", "syslog-udp", true,
+                "receive syslog messages on this UDP port instead of following the log file, disabled by default");
+        options.addOption("T", "syslog-tcp", true,
+                "accept syslog connections on this TCP port instead of following the log file, disabled by default");
         return options;
     }
 
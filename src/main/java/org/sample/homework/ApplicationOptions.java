@@ -1,6 +1,13 @@
 package org.sample.homework;
 
 import lombok.Data;
+import org.sample.homework.clf.LogFormatDetector;
+import org.sample.homework.stats.SectionTrie;
+import org.sample.homework.tenant.TenantEngine;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Contains the application's default options. These options are replaced by user arguments if any.
@@ -23,9 +30,133 @@ class ApplicationOptions {
      */
     private int alertThreshold = 100;
 
+    /**
+     * Threshold (number of hits during the busiest second of a window frame) to be used to generate burst alerts, or 0
+     * if burst alerts are disabled.
+     */
+    private int burstThreshold = 0;
+
     /**
      * The duration in seconds during which stats alerts are computed.
      */
     private int monitorDuration = 120;
 
+    /**
+     * The checkpoint file location, or <tt>null</tt> if checkpoints are disabled.
+     */
+    private String checkpointFile = null;
+
+    /**
+     * Whether the last monitor duration of the log file should be replayed on startup.
+     */
+    private boolean backfill = false;
+
+    /**
+     * The folder where traffic statistics and alerts history is written, or <tt>null</tt> if history is disabled.
+     */
+    private String historyDirectory = null;
+
+    /**
+     * Whether the log file should be replayed from its beginning instead of being followed live.
+     */
+    private boolean replay = false;
+
+    /**
+     * How many times faster than the original pace the log file is replayed, 0 to replay it as fast as possible.
+     */
+    private double replaySpeed = 0;
+
+    /**
+     * The port of the Prometheus scrape endpoint, or 0 if the endpoint is disabled.
+     */
+    private int metricsPort = 0;
+
+    /**
+     * Whether the application runs without the console UI, writing JSON lines instead.
+     */
+    private boolean headless = false;
+
+    /**
+     * The file where JSON lines are written in headless mode, or <tt>null</tt> to write them to the standard output.
+     */
+    private String outputFile = null;
+
+    /**
+     * The file where unparsable lines are appended, <tt>null</tt> to drop them.
+     */
+    private String quarantineFile = null;
+
+    /**
+     * The format of the access log file: "auto" to detect it, "common", "combined", "w3c" or "vhost_combined".
+     */
+    private String logFormat = LogFormatDetector.AUTO;
+
+    /**
+     * The host name and port of the aggregator the partial statistics are sent to, or <tt>null</tt> if this node is
+     * not an agent.
+     */
+    private String aggregatorHost = null;
+    private int aggregatorPort = 0;
+
+    /**
+     * The name of this node when sending partial statistics, or <tt>null</tt> to use the local host name.
+     */
+    private String agentName = null;
+
+    /**
+     * The port the aggregator listens on for agents, or 0 if this node is not the aggregator.
+     */
+    private int aggregatePort = 0;
+
+    /**
+     * The ingest lag in seconds above which lines are sampled, or 0 to always parse every line.
+     */
+    private int lagBudget = 0;
+
+    /**
+     * The memory budget in megabytes of the pipeline buffers, or 0 if they are unbounded.
+     */
+    private int memoryBudget = 0;
+
+    /**
+     * The number of path segments hits are counted by, to drill down the sections.
+     */
+    private int sectionDepth = SectionTrie.DEFAULT_DEPTH;
+
+    /**
+     * The filters of the lines which are dropped before being counted (see {@link org.sample.homework.clf.LineFilter}).
+     */
+    private List<String> excludeFilters = Collections.emptyList();
+
+    /**
+     * The ports syslog messages are received on over UDP and TCP instead of following the log file, or 0.
+     */
+    /**
+     * What the monitored tenants are, or <tt>null</tt> to only monitor the whole traffic.
+     */
+    private TenantEngine.TenantKey tenantKey = null;
+
+    /**
+     * The log files followed as tenants, empty unless the tenants are the log files.
+     */
+    private List<String> tenantFiles = Collections.emptyList();
+
+    /**
+     * The alert thresholds of the tenants in hits per second by tenant name, the other tenants using the alert
+     * threshold.
+     */
+    private Map<String, Integer> tenantAlertThresholds = Collections.emptyMap();
+
+    private int syslogUdpPort = 0;
+    private int syslogTcpPort = 0;
+
+    /**
+     * Returns whether the lines are received as syslog messages instead of being read from the log file.
+     *
+     * @return <tt>true</tt> if a syslog port is set
+     */
+    public boolean isSyslog() {
+        return syslogUdpPort > 0 || syslogTcpPort > 0;
+    }
+
 }
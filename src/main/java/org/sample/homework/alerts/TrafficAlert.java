@@ -20,7 +20,9 @@ public class TrafficAlert {
     @RequiredArgsConstructor
     public enum AlertType {
         HIGH_TRAFFIC("High traffic generated an alert - {0} hits/s\nTriggered at {1}"),
-        RECOVERED("Recovered at {1} - {0} hits/s");
+        RECOVERED("Recovered at {1} - {0} hits/s"),
+        BURST("Traffic burst generated an alert - {0} hits/s during the busiest second\nTriggered at {1}"),
+        BURST_RECOVERED("Burst over at {1} - {0} hits/s during the busiest second");
 
         /**
          * Message format used to construct the alert.
@@ -34,7 +36,8 @@ public class TrafficAlert {
     private final AlertType type;
 
     /**
-     * The exact number of hits per second which triggered this alert.
+     * The exact number of hits per second which triggered this alert: averaged over the monitor duration, or during
+     * the busiest second of the window frame for burst alerts.
      */
     private final float hitsPerSecond;
 
@@ -43,6 +46,17 @@ public class TrafficAlert {
      */
     private final ZonedDateTime time;
 
+    /**
+     * Whether the hits per second are estimated from a sample of the lines (see {@link
+     * org.sample.homework.stats.TrafficStatistics#isSampled()}).
+     */
+    private final boolean estimated;
+
+    /**
+     * The tenant (site) whose traffic triggered this alert, or <tt>null</tt> if it is about the whole traffic.
+     */
+    private final String tenant;
+
     /**
      * Holds the formatted traffic alert message.
      */
@@ -55,10 +69,54 @@ public class TrafficAlert {
      * @param hitsPerSecond hits per seconds which triggered this alert
      */
     TrafficAlert(@NonNull AlertType type, float hitsPerSecond) {
+        this(type, hitsPerSecond, ZonedDateTime.now());
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param type          the type of the traffic alert, not <tt>null</tt>
+     * @param hitsPerSecond hits per seconds which triggered this alert
+     * @param time          the date at which the alert has been created, not <tt>null</tt>
+     */
+    public TrafficAlert(@NonNull AlertType type, float hitsPerSecond, @NonNull ZonedDateTime time) {
+        this(type, hitsPerSecond, time, false);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param type          the type of the traffic alert, not <tt>null</tt>
+     * @param hitsPerSecond hits per seconds which triggered this alert
+     * @param time          the date at which the alert has been created, not <tt>null</tt>
+     * @param estimated     whether the hits per second are estimated from a sample of the lines
+     */
+    public TrafficAlert(@NonNull AlertType type, float hitsPerSecond, @NonNull ZonedDateTime time,
+                        boolean estimated) {
+        this(type, hitsPerSecond, time, estimated, null);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param type          the type of the traffic alert, not <tt>null</tt>
+     * @param hitsPerSecond hits per seconds which triggered this alert
+     * @param time          the date at which the alert has been created, not <tt>null</tt>
+     * @param estimated     whether the hits per second are estimated from a sample of the lines
+     * @param tenant        the tenant whose traffic triggered this alert, or <tt>null</tt> for the whole traffic
+     */
+    public TrafficAlert(@NonNull AlertType type, float hitsPerSecond, @NonNull ZonedDateTime time,
+                        boolean estimated, String tenant) {
         this.type = type;
         this.hitsPerSecond = hitsPerSecond;
-        this.time = ZonedDateTime.now();
-        this.message = MessageFormat.format(type.getMessage(), hitsPerSecond, time.toLocalTime().withNano(0));
+        this.time = time;
+        this.estimated = estimated;
+        this.tenant = tenant;
+        String message = MessageFormat.format(type.getMessage(), hitsPerSecond, time.toLocalTime().withNano(0));
+        if (tenant != null) {
+            message = tenant + ": " + message;
+        }
+        this.message = estimated ? message + " (estimated from sampled lines)" : message;
     }
 
 }
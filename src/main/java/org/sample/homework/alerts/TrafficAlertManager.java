@@ -2,20 +2,65 @@ package org.sample.homework.alerts;
 
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
+import lombok.Data;
 import lombok.Getter;
 import lombok.NonNull;
 import org.apache.commons.collections4.queue.CircularFifoQueue;
+import org.sample.homework.metrics.MemoryBudget;
+import org.sample.homework.metrics.PipelineMetrics;
 import org.sample.homework.stats.TrafficStatistics;
 
+import java.time.Clock;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * This class is responsible for holding traffic statistics and generating traffic alerts.
  * <p>
  * In order to be memory-efficient this class stores traffic stats in fixed-size circular buffers.
+ * <p>
+ * Besides the average over the monitor duration, a burst rule can watch the busiest second of every window frame (see
+ * {@link TrafficStatistics#getPeakHitsPerSecond()}), which reveals the spikes the average smooths out. The burst
+ * state isn't part of the snapshots: it is evaluated again from the next window frame.
+ * <p>
+ * Alerts are dated by the end of the window frame which triggered them, so that alerts raised while catching up with
+ * past records are in line with the statistics they are computed from. The clock only dates the alerts triggered by
+ * statistics without window frame.
+ * <p>
+ * The footprint of the buffered traffic stats is reserved against the memory budget (see {@link MemoryBudget}). While
+ * the budget is under pressure, the section tries and sketches of the buffered traffic stats but the latest are
+ * evicted: only their counters are needed to raise alerts.
  */
 @Getter
 public
 class TrafficAlertManager {
 
+    /**
+     * Immutable class which represents a consistent copy of the alerting state.
+     *
+     * @see TrafficAlertManager#getSnapshot()
+     * @see TrafficAlertManager#restore(Snapshot)
+     */
+    @Data
+    public static class Snapshot {
+
+        /**
+         * The buffered traffic stats, from the oldest to the latest.
+         */
+        private final List<TrafficStatistics> trafficStatistics;
+
+        /**
+         * Total hits of the buffered traffic stats.
+         */
+        private final int totalHitsDuringMonitorDuration;
+
+        /**
+         * Whether a high traffic alert is ongoing.
+         */
+        private final boolean highTraffic;
+    }
+
     /**
      * A fixed-size circular buffer holding the latest computed traffic stats.
      */
@@ -32,6 +77,12 @@ class TrafficAlertManager {
      */
     private final int monitorDurationSeconds;
 
+    /**
+     * Number of requests during the busiest second of a window frame before triggering a burst alert, or 0 if
+     * disabled.
+     */
+    private final int burstAlertThreshold;
+
     /**
      * Total hits during the monitor duration.
      * <p>
@@ -40,6 +91,11 @@ class TrafficAlertManager {
      */
     private int totalHitsDuringMonitorDuration = 0;
 
+    /**
+     * Number of buffered traffic stats estimated from a sample of the lines, updated on-the-fly as well.
+     */
+    private int sampledStatistics = 0;
+
     /**
      * Used to generate the stats alerts.
      *
@@ -47,11 +103,21 @@ class TrafficAlertManager {
      */
     private boolean highTraffic = false;
 
+    /**
+     * Whether a burst alert is ongoing.
+     */
+    private boolean burst = false;
+
     /**
      * The event bus which is used to publish traffic alerts.
      */
     private final EventBus eventBus;
 
+    /**
+     * The clock used to date traffic alerts.
+     */
+    private final Clock clock;
+
     /**
      * Class constructor.
      *
@@ -64,10 +130,51 @@ class TrafficAlertManager {
                                int trafficAlertThreshold,
                                int monitorDurationSeconds,
                                @NonNull EventBus eventBus) {
+        this(maxTrafficStats, trafficAlertThreshold, monitorDurationSeconds, eventBus, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param maxTrafficStats        maximum size of the buffer holding traffic stats
+     * @param trafficAlertThreshold  number of requests per second before printing an alert
+     * @param monitorDurationSeconds duration in seconds during which stats alerts are computed
+     * @param eventBus               the event bus to use to publish traffic alerts
+     * @param clock                  the clock used to date traffic alerts triggered by statistics without window
+     *                               frame, not <tt>null</tt>
+     */
+    public TrafficAlertManager(int maxTrafficStats,
+                               int trafficAlertThreshold,
+                               int monitorDurationSeconds,
+                               @NonNull EventBus eventBus,
+                               @NonNull Clock clock) {
+        this(maxTrafficStats, trafficAlertThreshold, monitorDurationSeconds, 0, eventBus, clock);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param maxTrafficStats        maximum size of the buffer holding traffic stats
+     * @param trafficAlertThreshold  number of requests per second before printing an alert
+     * @param monitorDurationSeconds duration in seconds during which stats alerts are computed
+     * @param burstAlertThreshold    number of requests during the busiest second of a window frame before printing a
+     *                               burst alert, or 0 to disable burst alerts
+     * @param eventBus               the event bus to use to publish traffic alerts
+     * @param clock                  the clock used to date traffic alerts triggered by statistics without window
+     *                               frame, not <tt>null</tt>
+     */
+    public TrafficAlertManager(int maxTrafficStats,
+                               int trafficAlertThreshold,
+                               int monitorDurationSeconds,
+                               int burstAlertThreshold,
+                               @NonNull EventBus eventBus,
+                               @NonNull Clock clock) {
         this.trafficStatistics = new CircularFifoQueue<>(maxTrafficStats);
         this.trafficAlertThreshold = trafficAlertThreshold;
         this.monitorDurationSeconds = monitorDurationSeconds;
+        this.burstAlertThreshold = burstAlertThreshold;
         this.eventBus = eventBus;
+        this.clock = clock;
     }
 
     /**
@@ -75,35 +182,146 @@ class TrafficAlertManager {
      *
      * @param statistics the access log metrics to add, not <tt>null</tt>
      */
-    private void addTrafficStatistics(TrafficStatistics statistics) {
+    private synchronized void addTrafficStatistics(TrafficStatistics statistics) {
+        long start = System.nanoTime();
         // Update totalHitsDuringMonitorDuration value.
         if (trafficStatistics.isAtFullCapacity()) {
             TrafficStatistics old = trafficStatistics.remove();
+            MemoryBudget.get().release(MemoryBudget.Component.ALERTS, old.memoryFootprint());
             totalHitsDuringMonitorDuration -= old.getTotalRequestCount();
+            if (old.isSampled()) {
+                --sampledStatistics;
+            }
         }
         totalHitsDuringMonitorDuration += statistics.getTotalRequestCount();
+        if (statistics.isSampled()) {
+            ++sampledStatistics;
+        }
 
         // Add the statistics to the buffer.
         trafficStatistics.add(statistics);
+        MemoryBudget.get().reserve(MemoryBudget.Component.ALERTS, statistics.memoryFootprint());
+        if (MemoryBudget.get().isUnderPressure()) {
+            evictDetails(statistics);
+        }
 
         // See if we can generate an alert.
-        processAlerts();
+        processAlerts(statistics);
+        if (burstAlertThreshold > 0) {
+            processBurstAlerts(statistics);
+        }
+        PipelineMetrics.get().getAlertEvaluationTimer().record(System.nanoTime() - start);
     }
 
     /**
      * Function responsible for generating stats alerts (high stats and recovery).
+     *
+     * @param statistics the latest traffic stats
      */
-    private void processAlerts() {
+    private void processAlerts(TrafficStatistics statistics) {
         float hitsPerSecond = (float) totalHitsDuringMonitorDuration / monitorDurationSeconds;
         if (highTraffic) {
             if (hitsPerSecond < trafficAlertThreshold) {
                 highTraffic = false;
-                eventBus.post(new TrafficAlert(TrafficAlert.AlertType.RECOVERED, hitsPerSecond));
+                PipelineMetrics.get().incrementAlertsPublished();
+                eventBus.post(new TrafficAlert(TrafficAlert.AlertType.RECOVERED, hitsPerSecond,
+                        alertTime(statistics), sampledStatistics > 0));
             }
         } else if (hitsPerSecond > trafficAlertThreshold) {
             highTraffic = true;
-            eventBus.post(new TrafficAlert(TrafficAlert.AlertType.HIGH_TRAFFIC, hitsPerSecond));
+            PipelineMetrics.get().incrementAlertsPublished();
+            eventBus.post(new TrafficAlert(TrafficAlert.AlertType.HIGH_TRAFFIC, hitsPerSecond,
+                    alertTime(statistics), sampledStatistics > 0));
+        }
+    }
+
+    /**
+     * Drops the section tries and sketches of the buffered traffic stats, except the latest ones which may still be
+     * rendered.
+     *
+     * @param latest the latest traffic stats
+     */
+    private void evictDetails(TrafficStatistics latest) {
+        for (TrafficStatistics statistics : trafficStatistics) {
+            if (statistics != latest) {
+                long footprint = statistics.memoryFootprint();
+                statistics.setSectionTrie(null);
+                statistics.setSectionSketch(null);
+                statistics.setHostSketch(null);
+                MemoryBudget.get().release(MemoryBudget.Component.ALERTS, footprint - statistics.memoryFootprint());
+            }
+        }
+    }
+
+    /**
+     * Function responsible for generating burst alerts, from the busiest second of the latest window frame.
+     *
+     * @param statistics the latest traffic stats
+     */
+    private void processBurstAlerts(TrafficStatistics statistics) {
+        int peak = statistics.getPeakHitsPerSecond();
+        if (burst) {
+            if (peak < burstAlertThreshold) {
+                burst = false;
+                PipelineMetrics.get().incrementAlertsPublished();
+                eventBus.post(new TrafficAlert(TrafficAlert.AlertType.BURST_RECOVERED, peak,
+                        alertTime(statistics), statistics.isSampled()));
+            }
+        } else if (peak > burstAlertThreshold) {
+            burst = true;
+            PipelineMetrics.get().incrementAlertsPublished();
+            eventBus.post(new TrafficAlert(TrafficAlert.AlertType.BURST, peak,
+                    alertTime(statistics), statistics.isSampled()));
+        }
+    }
+
+    /**
+     * Returns the time of the alerts triggered by the given traffic stats.
+     *
+     * @param statistics the latest traffic stats
+     * @return the end of their window frame, or the current time if they have none
+     */
+    private ZonedDateTime alertTime(TrafficStatistics statistics) {
+        if (statistics.getWindowEnd() == null) {
+            return ZonedDateTime.now(clock);
+        }
+        return ZonedDateTime.ofInstant(statistics.getWindowEnd(), clock.getZone());
+    }
+
+    /**
+     * Returns a copy of the alerting state which can be safely used by another thread.
+     *
+     * @return the current state, not <tt>null</tt>
+     */
+    public synchronized Snapshot getSnapshot() {
+        return new Snapshot(new ArrayList<>(trafficStatistics), totalHitsDuringMonitorDuration, highTraffic);
+    }
+
+    /**
+     * Restores an alerting state saved by a previous run.
+     * <p>
+     * No alert is published: the restored state already accounts for the alerts which were published at that time.
+     *
+     * @param snapshot the state to restore, not <tt>null</tt>
+     */
+    public synchronized void restore(@NonNull Snapshot snapshot) {
+        MemoryBudget budget = MemoryBudget.get();
+        trafficStatistics.forEach(statistics -> budget.release(MemoryBudget.Component.ALERTS,
+                statistics.memoryFootprint()));
+        trafficStatistics.clear();
+        trafficStatistics.addAll(snapshot.getTrafficStatistics());
+        trafficStatistics.forEach(statistics -> budget.reserve(MemoryBudget.Component.ALERTS,
+                statistics.memoryFootprint()));
+        if (trafficStatistics.size() == snapshot.getTrafficStatistics().size()) {
+            totalHitsDuringMonitorDuration = snapshot.getTotalHitsDuringMonitorDuration();
+        } else {
+            // The buffer is smaller than it was, the oldest stats have been dropped.
+            totalHitsDuringMonitorDuration = trafficStatistics.stream()
+                    .mapToInt(TrafficStatistics::getTotalRequestCount)
+                    .sum();
         }
+        sampledStatistics = (int) trafficStatistics.stream().filter(TrafficStatistics::isSampled).count();
+        highTraffic = snapshot.isHighTraffic();
     }
 
     @Subscribe
@@ -0,0 +1,59 @@
+package org.sample.homework.checkpoint;
+
+import lombok.Data;
+import lombok.NonNull;
+import org.sample.homework.alerts.TrafficAlertManager;
+import org.sample.homework.reader.FilePosition;
+import org.sample.homework.replay.LogSeeker;
+import org.sample.homework.stats.TrafficStatistics;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Immutable class which represents the state needed to resume the monitoring after a restart.
+ * <p>
+ * Note that the records which have been read but belong to a window frame which hasn't been published yet when the
+ * checkpoint is taken (at most one report interval) are not part of the alerting state. They are read again on
+ * restart (see {@link Checkpoint#catchUpOffset(Path)}), unless the log file has been rotated in the meantime.
+ *
+ * @see CheckpointStore
+ */
+@Data
+public class Checkpoint {
+
+    /**
+     * The position of the first line of the log file which hasn't been consumed.
+     */
+    private final FilePosition position;
+
+    /**
+     * The alerting state.
+     */
+    private final TrafficAlertManager.Snapshot alertState;
+
+    /**
+     * Returns the offset of the log file from which lines must be replayed to restore the monitoring: the first line
+     * of the window frame which was still open when the checkpoint was taken, or the checkpointed position if it is
+     * before.
+     *
+     * @param logFile the followed log file, not <tt>null</tt>
+     * @return the offset to replay the log file from, 0 if the file has been rotated since the checkpoint
+     * @throws IOException if the log file can't be read
+     */
+    public long catchUpOffset(@NonNull Path logFile) throws IOException {
+        if (!position.getFileKey().equals(FilePosition.fileKeyOf(logFile))) {
+            // The lines written since the checkpoint are in the new file.
+            return 0;
+        }
+        List<TrafficStatistics> trafficStatistics = alertState.getTrafficStatistics();
+        if (trafficStatistics.isEmpty()) {
+            return position.getOffset();
+        }
+        // The records of the open window frame had been read, but not published.
+        TrafficStatistics latest = trafficStatistics.get(trafficStatistics.size() - 1);
+        return Math.min(position.getOffset(), LogSeeker.seek(logFile, latest.getWindowEnd()));
+    }
+
+}
@@ -0,0 +1,92 @@
+package org.sample.homework.checkpoint;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.sample.homework.alerts.TrafficAlertManager;
+import org.sample.homework.reader.FilePosition;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * This class is responsible for taking periodic checkpoints of the monitoring state.
+ */
+@Slf4j
+public class CheckpointManager {
+
+    /**
+     * Where checkpoints are stored.
+     */
+    private final CheckpointStore store;
+
+    /**
+     * The alert manager whose state is saved.
+     */
+    private final TrafficAlertManager alertManager;
+
+    /**
+     * Provides the current position in the followed log file.
+     */
+    private final Supplier<FilePosition> positionSupplier;
+
+    /**
+     * The last saved checkpoint, used to avoid writing the same checkpoint over and over.
+     */
+    private Checkpoint lastCheckpoint;
+
+    /**
+     * Class constructor.
+     *
+     * @param store            where to store checkpoints, not <tt>null</tt>
+     * @param alertManager     the alert manager whose state is saved, not <tt>null</tt>
+     * @param positionSupplier provides the current position in the followed log file, not <tt>null</tt>
+     */
+    public CheckpointManager(@NonNull CheckpointStore store,
+                             @NonNull TrafficAlertManager alertManager,
+                             @NonNull Supplier<FilePosition> positionSupplier) {
+        this.store = store;
+        this.alertManager = alertManager;
+        this.positionSupplier = positionSupplier;
+    }
+
+    /**
+     * Starts taking checkpoints at a fixed rate.
+     *
+     * @param periodSeconds period at which to take checkpoints in seconds
+     */
+    public void start(int periodSeconds) {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "checkpoint-thread");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::checkpoint, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+        // Also take a last checkpoint on a clean shutdown.
+        Runtime.getRuntime().addShutdownHook(new Thread(this::checkpoint, "checkpoint-shutdown"));
+    }
+
+    /**
+     * Takes a checkpoint of the current state.
+     */
+    synchronized void checkpoint() {
+        FilePosition position = positionSupplier.get();
+        if (position == null) {
+            // The log file hasn't been opened yet.
+            return;
+        }
+        Checkpoint checkpoint = new Checkpoint(position, alertManager.getSnapshot());
+        if (checkpoint.equals(lastCheckpoint)) {
+            return;
+        }
+        try {
+            store.save(checkpoint);
+            lastCheckpoint = checkpoint;
+        } catch (IOException e) {
+            log.error("Failed to save checkpoint to " + store.getPath(), e);
+        }
+    }
+
+}
@@ -0,0 +1,206 @@
+package org.sample.homework.checkpoint;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.sample.homework.alerts.TrafficAlertManager;
+import org.sample.homework.reader.FilePosition;
+import org.sample.homework.stats.TrafficStatistics;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.CRC32;
+
+/**
+ * This class is responsible for persisting {@link Checkpoint}s to a local file in a crash-safe way.
+ * <p>
+ * A checkpoint is first fully written and synced to a temporary file which then atomically replaces the previous
+ * checkpoint. The content is protected by a checksum, so a checkpoint is either entirely read or ignored.
+ */
+@Slf4j
+public class CheckpointStore {
+
+    /**
+     * Magic number identifying checkpoint files ("HWCP").
+     */
+    private static final int MAGIC = 0x48574350;
+
+    /**
+     * Version of the binary format.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * Used to encode <tt>null</tt> instants.
+     */
+    private static final long NO_INSTANT = Long.MIN_VALUE;
+
+    /**
+     * The checkpoint file location.
+     */
+    @Getter
+    private final Path path;
+
+    /**
+     * The temporary file used to write checkpoints.
+     */
+    private final Path temporaryPath;
+
+    /**
+     * Class constructor.
+     *
+     * @param path the checkpoint file location, not <tt>null</tt>
+     */
+    public CheckpointStore(@NonNull Path path) {
+        this.path = path;
+        this.temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+    }
+
+    /**
+     * Atomically replaces the stored checkpoint.
+     *
+     * @param checkpoint the checkpoint to store, not <tt>null</tt>
+     * @throws IOException if the checkpoint can't be written
+     */
+    public void save(@NonNull Checkpoint checkpoint) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        writeCheckpoint(out, checkpoint);
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeLong(crc.getValue());
+        out.flush();
+
+        try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            // Make sure the content reached the disk before it becomes the checkpoint.
+            channel.force(true);
+        }
+        Files.move(temporaryPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Reads the stored checkpoint.
+     *
+     * @return the stored checkpoint, or an empty optional if there is no valid checkpoint
+     * @throws IOException if the checkpoint file exists but can't be read
+     */
+    public Optional<Checkpoint> load() throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return Optional.empty();
+        }
+        byte[] bytes = Files.readAllBytes(path);
+        if (bytes.length < 16) {
+            log.warn("Ignoring truncated checkpoint {}.", path);
+            return Optional.empty();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 8);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            log.warn("Ignoring checkpoint {} with an unknown format.", path);
+            return Optional.empty();
+        }
+        if (ByteBuffer.wrap(bytes, bytes.length - 8, 8).getLong() != crc.getValue()) {
+            log.warn("Ignoring corrupted checkpoint {}.", path);
+            return Optional.empty();
+        }
+        return Optional.of(readCheckpoint(in));
+    }
+
+    private static void writeCheckpoint(DataOutputStream out, Checkpoint checkpoint) throws IOException {
+        out.writeUTF(checkpoint.getPosition().getFileKey());
+        out.writeLong(checkpoint.getPosition().getOffset());
+        TrafficAlertManager.Snapshot alertState = checkpoint.getAlertState();
+        out.writeInt(alertState.getTotalHitsDuringMonitorDuration());
+        out.writeBoolean(alertState.isHighTraffic());
+        out.writeInt(alertState.getTrafficStatistics().size());
+        for (TrafficStatistics statistics : alertState.getTrafficStatistics()) {
+            writeTrafficStatistics(out, statistics);
+        }
+    }
+
+    private static Checkpoint readCheckpoint(DataInputStream in) throws IOException {
+        FilePosition position = new FilePosition(in.readUTF(), in.readLong());
+        int totalHits = in.readInt();
+        boolean highTraffic = in.readBoolean();
+        int size = in.readInt();
+        List<TrafficStatistics> trafficStatistics = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            trafficStatistics.add(readTrafficStatistics(in));
+        }
+        return new Checkpoint(position, new TrafficAlertManager.Snapshot(trafficStatistics, totalHits, highTraffic));
+    }
+
+    private static void writeTrafficStatistics(DataOutputStream out, TrafficStatistics statistics) throws IOException {
+        writeInstant(out, statistics.getWindowStart());
+        writeInstant(out, statistics.getWindowEnd());
+        out.writeInt(statistics.getTotalRequestCount());
+        out.writeInt(statistics.getValidRequestCount());
+        out.writeLong(statistics.getBytesTransferred());
+        out.writeInt(statistics.getUniqueHosts());
+        for (int hits : statistics.getHitsByStatusClass()) {
+            out.writeInt(hits);
+        }
+        out.writeInt(statistics.getHitsBySection().size());
+        for (Map.Entry<String, Integer> entry : statistics.getHitsBySection()) {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue());
+        }
+        out.writeInt(statistics.getHitsByMethod().size());
+        for (Map.Entry<String, Integer> entry : statistics.getHitsByMethod().entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue());
+        }
+    }
+
+    private static TrafficStatistics readTrafficStatistics(DataInputStream in) throws IOException {
+        TrafficStatistics statistics = new TrafficStatistics();
+        statistics.setWindowStart(readInstant(in));
+        statistics.setWindowEnd(readInstant(in));
+        statistics.setTotalRequestCount(in.readInt());
+        statistics.setValidRequestCount(in.readInt());
+        statistics.setBytesTransferred(in.readLong());
+        statistics.setUniqueHosts(in.readInt());
+        int[] hitsByStatusClass = statistics.getHitsByStatusClass();
+        for (int i = 0; i < hitsByStatusClass.length; i++) {
+            hitsByStatusClass[i] = in.readInt();
+        }
+        int sections = in.readInt();
+        for (int i = 0; i < sections; i++) {
+            statistics.getHitsBySection().add(new AbstractMap.SimpleImmutableEntry<>(in.readUTF(), in.readInt()));
+        }
+        int methods = in.readInt();
+        for (int i = 0; i < methods; i++) {
+            statistics.getHitsByMethod().put(in.readUTF(), in.readInt());
+        }
+        return statistics;
+    }
+
+    private static void writeInstant(DataOutputStream out, Instant instant) throws IOException {
+        out.writeLong(instant == null ? NO_INSTANT : instant.toEpochMilli());
+    }
+
+    private static Instant readInstant(DataInputStream in) throws IOException {
+        long millis = in.readLong();
+        return millis == NO_INSTANT ? null : Instant.ofEpochMilli(millis);
+    }
+
+}
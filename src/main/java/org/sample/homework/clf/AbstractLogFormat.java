@@ -0,0 +1,150 @@
+package org.sample.homework.clf;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.sample.homework.clf.AccessLogParseException.Reason;
+
+import java.util.Set;
+
+/**
+ * Base class of the byte-level log formats, which holds the projection and the helpers shared by the scanners.
+ */
+abstract class AbstractLogFormat implements LogFormat {
+
+    /**
+     * The name of the format.
+     */
+    @Getter
+    private final String name;
+
+    /**
+     * The message of the exceptions thrown for malformed lines.
+     */
+    private final String malformedMessage;
+
+    /**
+     * Whether each field, by ordinal, is part of the projection.
+     */
+    private final boolean[] projected = new boolean[AccessLogField.values().length];
+
+    /**
+     * Class constructor.
+     *
+     * @param name       the name of the format, not <tt>null</tt>
+     * @param projection the fields to record, not <tt>null</tt>
+     */
+    AbstractLogFormat(@NonNull String name, @NonNull Set<AccessLogField> projection) {
+        this.name = name;
+        this.malformedMessage = "Invalid " + name + " log line!";
+        for (AccessLogField field : projection) {
+            projected[field.ordinal()] = true;
+        }
+    }
+
+    /**
+     * Tells whether the given field is part of the projection.
+     *
+     * @param field the field
+     * @return <tt>true</tt> if the field must be recorded
+     */
+    boolean isProjected(AccessLogField field) {
+        return projected[field.ordinal()];
+    }
+
+    /**
+     * Records the offsets of a field, if it is part of the projection.
+     */
+    void field(LazyAccessLogRecord record, AccessLogField field, int from, int to) {
+        if (projected[field.ordinal()]) {
+            record.setField(field, from, to);
+        }
+    }
+
+    /**
+     * Parses a three digit status code.
+     */
+    int parseStatus(byte[] buffer, int from, int to) throws AccessLogParseException {
+        if (to - from != 3 || !isDigit(buffer[from]) || !isDigit(buffer[from + 1]) || !isDigit(buffer[from + 2])) {
+            throw malformed();
+        }
+        return (buffer[from] - '0') * 100 + (buffer[from + 1] - '0') * 10 + (buffer[from + 2] - '0');
+    }
+
+    /**
+     * Parses the content size, which is either a number or a dash.
+     */
+    int parseBytes(byte[] buffer, int from, int to) throws AccessLogParseException {
+        if (to - from == 1 && buffer[from] == '-') {
+            return 0;
+        }
+        if (from == to) {
+            throw malformed();
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            if (!isDigit(buffer[i])) {
+                throw malformed();
+            }
+            value = value * 10 + (buffer[i] - '0');
+            if (value > Integer.MAX_VALUE) {
+                // Keep scanning to report malformed lines as such.
+                for (int j = i + 1; j < to; j++) {
+                    if (!isDigit(buffer[j])) {
+                        throw malformed();
+                    }
+                }
+                throw new AccessLogParseException(Reason.INVALID_NUMBER, "Invalid content size!");
+            }
+        }
+        return (int) value;
+    }
+
+    /**
+     * Returns the number of days since 1970-01-01 of the given date of the proleptic Gregorian calendar.
+     */
+    static long epochDay(long year, int month, int day) {
+        // Count years from March, so that the leap day is the last day of a year.
+        year -= month <= 2 ? 1 : 0;
+        long era = Math.floorDiv(year, 400);
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Parses the given number of digits of a date.
+     */
+    static int digits(byte[] buffer, int from, int count) throws AccessLogParseException {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            if (!isDigit(buffer[i])) {
+                throw invalidDate();
+            }
+            value = value * 10 + (buffer[i] - '0');
+        }
+        return value;
+    }
+
+    static boolean rangeEquals(byte[] key, byte[] buffer, int from) {
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] != buffer[from + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    AccessLogParseException malformed() {
+        return new AccessLogParseException(Reason.MALFORMED_LINE, malformedMessage);
+    }
+
+    static AccessLogParseException invalidDate() {
+        return new AccessLogParseException(Reason.INVALID_DATE, "Invalid strftime format!");
+    }
+
+}
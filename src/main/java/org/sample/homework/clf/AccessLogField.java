@@ -0,0 +1,56 @@
+package org.sample.homework.clf;
+
+/**
+ * The text fields of an access log line, which can be projected by a {@link LogFormat}.
+ * <p>
+ * The time, the status and the size of the response are not listed: they are always decoded since they must be
+ * validated anyway.
+ */
+public enum AccessLogField {
+
+    /**
+     * The IP address of the client (remote host).
+     */
+    HOST,
+
+    /**
+     * The RFC 1413 identity of the client.
+     */
+    USER_IDENTIFIER,
+
+    /**
+     * The authenticated user.
+     */
+    USER,
+
+    /**
+     * The HTTP request method.
+     */
+    METHOD,
+
+    /**
+     * The requested resource.
+     */
+    ENDPOINT,
+
+    /**
+     * The HTTP request protocol.
+     */
+    PROTOCOL,
+
+    /**
+     * The "Referer" request header.
+     */
+    REFERER,
+
+    /**
+     * The "User-Agent" request header.
+     */
+    USER_AGENT,
+
+    /**
+     * The name of the virtual host (site) which served the request.
+     */
+    VIRTUAL_HOST
+
+}
@@ -1,17 +1,47 @@
 package org.sample.homework.clf;
 
+import lombok.Getter;
+
 /**
  * An exception for everything that goes wrong when parsing a Common Log Format log line.
+ * <p>
+ * Parse failures are expected (possibly on every line when the upstream format changes), so this exception doesn't
+ * capture a stack trace and its message never contains the line.
  *
  * @see AccessLogParser#parse(String)
  */
 public class AccessLogParseException extends Exception {
 
-    AccessLogParseException(String message) {
-        super(message);
+    /**
+     * Why a line couldn't be parsed.
+     */
+    public enum Reason {
+        /**
+         * The line doesn't follow the expected format.
+         */
+        MALFORMED_LINE,
+        /**
+         * The date of the line can't be parsed.
+         */
+        INVALID_DATE,
+        /**
+         * A numeric field of the line is out of range.
+         */
+        INVALID_NUMBER
+    }
+
+    /**
+     * Why the line couldn't be parsed.
+     */
+    @Getter
+    private final Reason reason;
+
+    AccessLogParseException(Reason reason, String message) {
+        this(reason, message, null);
     }
 
-    AccessLogParseException(String message, Throwable cause) {
-        super(message, cause);
+    AccessLogParseException(Reason reason, String message, Throwable cause) {
+        super(message, cause, false, false);
+        this.reason = reason;
     }
 }
@@ -6,7 +6,7 @@ import lombok.Data;
 import java.time.ZonedDateTime;
 
 /**
- * Immutable class which represents a parsed line from a Common Log Format log file.
+ * Immutable class which represents a parsed line from an access log file.
  *
  * @see AccessLogParser#parse(String)
  */
@@ -59,4 +59,14 @@ public class AccessLogRecord {
      */
     private final int bytes;
 
+    /**
+     * The page linking to the requested resource (Combined Log Format and W3C extended logs only).
+     */
+    private final String referer;
+
+    /**
+     * The software which made the request (Combined Log Format and W3C extended logs only).
+     */
+    private final String userAgent;
+
 }
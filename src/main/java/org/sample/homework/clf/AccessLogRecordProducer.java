@@ -1,17 +1,30 @@
 package org.sample.homework.clf;
 
 import com.google.common.eventbus.EventBus;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
+import org.sample.homework.metrics.PipelineMetrics;
+import org.sample.homework.reader.FilePosition;
 import org.sample.homework.reader.FileWatcher;
 import org.sample.homework.reader.LineListener;
 import org.sample.homework.reader.PollingFileWatcher;
+import org.sample.homework.reader.SyslogReceiver;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
 
 /**
- * This class is responsible for creating and publishing access log records parsed from the log file.
+ * This class is responsible for creating and publishing access log records parsed from the log file, or received from
+ * the network.
+ * <p>
+ * When a {@link LoadShedder} is given, only a sample of the lines is parsed while the ingestion is behind.
+ * <p>
+ * Lines are scanned straight from the watcher's read buffer into a single {@link LazyAccessLogRecord}, which is
+ * published for every line. Subscribers run synchronously and must not keep it (see
+ * {@link LazyAccessLogRecord#toRecord()}).
  */
 @Getter
 @Slf4j
@@ -20,43 +33,208 @@ public class AccessLogRecordProducer implements LineListener {
     /**
      * The event bus which is used to publish access log records.
      *
-     * @see AccessLogRecordProducer#handle(String)
+     * @see AccessLogRecordProducer#handle(byte[], int, int)
      */
     private final EventBus eventBus;
 
     /**
-     * Used to parse Common Log Format lines into a {@link AccessLogRecord}s.
+     * The record reused for every line, only used by the watcher thread.
      */
-    private final AccessLogParser accessLogParser = new RegexAccessLogParser();
+    @Getter(AccessLevel.NONE)
+    private final LazyAccessLogRecord record;
 
+    /**
+     * Handles the lines which can't be parsed.
+     */
+    private final MalformedLineHandler malformedLineHandler;
+
+    /**
+     * Samples the lines while the ingestion is behind, or <tt>null</tt> to always parse every line.
+     */
+    private final LoadShedder loadShedder;
+
+    /**
+     * The file watcher (or the syslog receiver) forwarding new lines to this producer.
+     */
+    private final FileWatcher fileWatcher;
 
     /**
      * Class constructor.
      *
      * @param filename the file to follow for new lines, not <tt>null</tt>
      * @param eventBus the central event bus which is used to publish access log events, not <tt>null</tt>
-     * @throws IOException id something goes wrong when creating the file watcher
      */
-    public AccessLogRecordProducer(@NonNull String filename, @NonNull EventBus eventBus) throws IOException {
+    public AccessLogRecordProducer(@NonNull String filename, @NonNull EventBus eventBus) {
+        this(filename, eventBus, PollingFileWatcher.END_OF_FILE);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param filename      the file to follow for new lines, not <tt>null</tt>
+     * @param eventBus      the central event bus which is used to publish access log events, not <tt>null</tt>
+     * @param startPosition the byte offset at which to start following the file, or
+     *                      {@link PollingFileWatcher#END_OF_FILE}
+     */
+    public AccessLogRecordProducer(@NonNull String filename, @NonNull EventBus eventBus, long startPosition) {
+        this(filename, eventBus, startPosition, new MalformedLineHandler());
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param filename             the file to follow for new lines, not <tt>null</tt>
+     * @param eventBus             the central event bus which is used to publish access log events, not <tt>null</tt>
+     * @param startPosition        the byte offset at which to start following the file, or
+     *                             {@link PollingFileWatcher#END_OF_FILE}
+     * @param malformedLineHandler handles the lines which can't be parsed, not <tt>null</tt>
+     */
+    public AccessLogRecordProducer(@NonNull String filename, @NonNull EventBus eventBus, long startPosition,
+                                   @NonNull MalformedLineHandler malformedLineHandler) {
+        this(filename, eventBus, startPosition, malformedLineHandler, new LogFormatDetector());
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param filename             the file to follow for new lines, not <tt>null</tt>
+     * @param eventBus             the central event bus which is used to publish access log events, not <tt>null</tt>
+     * @param startPosition        the byte offset at which to start following the file, or
+     *                             {@link PollingFileWatcher#END_OF_FILE}
+     * @param malformedLineHandler handles the lines which can't be parsed, not <tt>null</tt>
+     * @param format               the format of the lines, primed if the file isn't followed from its beginning (see
+     *                             {@link LogFormatDetector#prime(LogFormat, java.nio.file.Path)}), not <tt>null</tt>
+     */
+    public AccessLogRecordProducer(@NonNull String filename, @NonNull EventBus eventBus, long startPosition,
+                                   @NonNull MalformedLineHandler malformedLineHandler, @NonNull LogFormat format) {
+        this(filename, eventBus, startPosition, malformedLineHandler, format, null);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param filename             the file to follow for new lines, not <tt>null</tt>
+     * @param eventBus             the central event bus which is used to publish access log events, not <tt>null</tt>
+     * @param startPosition        the byte offset at which to start following the file, or
+     *                             {@link PollingFileWatcher#END_OF_FILE}
+     * @param malformedLineHandler handles the lines which can't be parsed, not <tt>null</tt>
+     * @param format               the format of the lines, primed if the file isn't followed from its beginning (see
+     *                             {@link LogFormatDetector#prime(LogFormat, java.nio.file.Path)}), not <tt>null</tt>
+     * @param loadShedder          samples the lines while the ingestion is behind, or <tt>null</tt> to parse them all
+     */
+    public AccessLogRecordProducer(@NonNull String filename, @NonNull EventBus eventBus, long startPosition,
+                                   @NonNull MalformedLineHandler malformedLineHandler, @NonNull LogFormat format,
+                                   LoadShedder loadShedder) {
         this.eventBus = eventBus;
+        this.malformedLineHandler = malformedLineHandler;
+        this.loadShedder = loadShedder;
+        this.record = new LazyAccessLogRecord(Charset.defaultCharset(), format);
+        this.record.setSource(filename);
         // Creates a polling file watcher with a polling delay of 400 ms.
-        try (FileWatcher fileWatcher = new PollingFileWatcher(filename, this, 400)) {
-            fileWatcher.start();
+        this.fileWatcher = new PollingFileWatcher(filename, this, 400, startPosition);
+    }
+
+    /**
+     * Class constructor, receiving the lines from syslog messages instead of following a file.
+     *
+     * @param eventBus             the central event bus which is used to publish access log events, not <tt>null</tt>
+     * @param malformedLineHandler handles the lines which can't be parsed, not <tt>null</tt>
+     * @param format               the format of the lines, not <tt>null</tt>
+     * @param udpAddress           the address to receive syslog datagrams on, or <tt>null</tt>
+     * @param tcpAddress           the address to accept syslog connections on, or <tt>null</tt>
+     * @param loadShedder          samples the lines while the ingestion is behind, or <tt>null</tt> to parse them all
+     * @throws IOException if the sockets can't be bound
+     * @see SyslogReceiver
+     */
+    public AccessLogRecordProducer(@NonNull EventBus eventBus, @NonNull MalformedLineHandler malformedLineHandler,
+                                   @NonNull LogFormat format, InetSocketAddress udpAddress,
+                                   InetSocketAddress tcpAddress, LoadShedder loadShedder) throws IOException {
+        this.eventBus = eventBus;
+        this.malformedLineHandler = malformedLineHandler;
+        this.loadShedder = loadShedder;
+        this.record = new LazyAccessLogRecord(Charset.defaultCharset(), format);
+        this.fileWatcher = new SyslogReceiver(this, udpAddress, tcpAddress);
+    }
+
+    /**
+     * Starts following the file, or receiving the syslog messages (this is blocking).
+     *
+     * @throws IOException if something goes wrong while reading the file or the sockets
+     */
+    public void start() throws IOException {
+        try (FileWatcher watcher = fileWatcher) {
+            watcher.start();
         }
     }
 
     /**
-     * Creates {@link AccessLogRecord} instances out of every log line and post it to the event bus.
+     * Publishes the lines appended to the followed file since the last call, instead of blocking like
+     * {@link AccessLogRecordProducer#start()}: many files can be followed by a few threads this way.
+     *
+     * @return <tt>true</tt> if new content has been read
+     * @throws IOException           if something goes wrong while reading the file
+     * @throws IllegalStateException if the lines are received from the network
+     * @see PollingFileWatcher#poll()
+     */
+    public boolean poll() throws IOException {
+        if (!(fileWatcher instanceof PollingFileWatcher)) {
+            throw new IllegalStateException("Only a followed file can be polled!");
+        }
+        return ((PollingFileWatcher) fileWatcher).poll();
+    }
+
+    /**
+     * Returns the position of the first line which hasn't been published yet.
+     *
+     * @return the current position in the followed file, or <tt>null</tt> if the file hasn't been opened yet or if
+     * the lines are received from the network
+     */
+    public FilePosition getPosition() {
+        return fileWatcher instanceof PollingFileWatcher ? ((PollingFileWatcher) fileWatcher).getPosition() : null;
+    }
+
+    /**
+     * Publishes the record of a log line to the event bus.
      *
      * @param line the new line forwarded by the file fileWatcher
      */
     @Override
     public void handle(String line) {
+        byte[] bytes = line.getBytes(Charset.defaultCharset());
+        handle(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Publishes the record of a log line to the event bus, decoding only what the subscribers use.
+     *
+     * @param buffer the buffer holding the line
+     * @param from   the index of the first byte of the line (inclusive)
+     * @param to     the index of the last byte of the line (exclusive)
+     */
+    @Override
+    public void handle(byte[] buffer, int from, int to) {
+        PipelineMetrics.get().incrementLinesRead();
+        int sampleRate = 1;
+        // Directives, such as W3C headers, are never skipped.
+        if (loadShedder != null && (from == to || buffer[from] != '#')) {
+            sampleRate = loadShedder.sample();
+            if (sampleRate == 0) {
+                return;
+            }
+        }
         try {
-            AccessLogRecord record = accessLogParser.parse(line);
-            eventBus.post(record);
+            if (!record.reset(buffer, from, to)) {
+                // Directives, such as W3C headers, are not records.
+                return;
+            }
         } catch (AccessLogParseException e) {
-            log.warn("Failed to parse log line. Ignoring it.", e);
+            malformedLineHandler.handle(new String(buffer, from, to - from, Charset.defaultCharset()), e);
+            return;
+        }
+        if (loadShedder != null) {
+            loadShedder.observe(record.getTimestamp());
         }
+        record.setSampleRate(sampleRate);
+        eventBus.post(record);
     }
 }
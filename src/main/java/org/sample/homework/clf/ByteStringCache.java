@@ -0,0 +1,69 @@
+package org.sample.homework.clf;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * A small direct-mapped cache of strings decoded from byte ranges.
+ * <p>
+ * Hosts, sections and methods repeat a lot from one line to the next, so most lookups return an already decoded string
+ * instead of allocating a new one. A lookup hashes and compares the bytes, which is cheaper than decoding them.
+ * This class is not thread-safe.
+ */
+class ByteStringCache {
+
+    private final byte[][] keys;
+    private final String[] values;
+    private final int mask;
+    private final Charset charset;
+
+    /**
+     * Class constructor.
+     *
+     * @param size    the number of cached strings, a power of two
+     * @param charset the charset used to decode strings
+     */
+    ByteStringCache(int size, Charset charset) {
+        if (Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("Invalid cache size: " + size);
+        }
+        this.keys = new byte[size][];
+        this.values = new String[size];
+        this.mask = size - 1;
+        this.charset = charset;
+    }
+
+    /**
+     * Returns the string decoded from the given bytes.
+     *
+     * @param bytes the buffer holding the string
+     * @param from  the index of the first byte (inclusive)
+     * @param to    the index of the last byte (exclusive)
+     * @return the decoded string, not <tt>null</tt>
+     */
+    String get(byte[] bytes, int from, int to) {
+        int hash = 1;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        int slot = (hash ^ hash >>> 16) & mask;
+        byte[] key = keys[slot];
+        if (key != null && key.length == to - from && rangeEquals(key, bytes, from)) {
+            return values[slot];
+        }
+        String value = new String(bytes, from, to - from, charset);
+        keys[slot] = Arrays.copyOfRange(bytes, from, to);
+        values[slot] = value;
+        return value;
+    }
+
+    private static boolean rangeEquals(byte[] key, byte[] bytes, int from) {
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] != bytes[from + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
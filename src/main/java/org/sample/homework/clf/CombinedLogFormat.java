@@ -0,0 +1,72 @@
+package org.sample.homework.clf;
+
+import lombok.NonNull;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The Combined Log Format (the default format of nginx and of the Apache HTTP Server), i.e. the Common Log Format
+ * followed by the quoted referer and user agent, such as
+ * <tt>127.0.0.1 - - [10/Oct/2000:13:55:36 -0700] "GET / HTTP/1.1" 200 2326 "http://example.com/" "curl/7.64.1"</tt>.
+ * <p>
+ * When neither the referer nor the user agent is part of the projection, only the delimiters of the trailing quoted
+ * fields are checked: their delimiters are not even walked.
+ */
+public class CombinedLogFormat extends CommonLogFormat {
+
+    /**
+     * Creates a format recording every field.
+     */
+    public CombinedLogFormat() {
+        this(EnumSet.allOf(AccessLogField.class));
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param projection the fields to record, not <tt>null</tt>
+     */
+    public CombinedLogFormat(@NonNull Set<AccessLogField> projection) {
+        this("Combined Log Format", projection);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param name       the name of the format, not <tt>null</tt>
+     * @param projection the fields to record, not <tt>null</tt>
+     */
+    CombinedLogFormat(String name, Set<AccessLogField> projection) {
+        super(name, projection);
+    }
+
+    @Override
+    int scanTrailer(byte[] buffer, int from, int to, int[] at, int k, int count, LazyAccessLogRecord record)
+            throws AccessLogParseException {
+        while (k < count && buffer[at[k]] != ' ') {
+            ++k;
+        }
+        int bytesEnd = k == count ? to : at[k];
+        // ' "referer" "user agent"', quotes inside the values are escaped by the server.
+        if (to - bytesEnd < 6 || buffer[bytesEnd + 1] != '"' || buffer[to - 1] != '"') {
+            throw malformed();
+        }
+        if (!isProjected(AccessLogField.REFERER) && !isProjected(AccessLogField.USER_AGENT)) {
+            return bytesEnd;
+        }
+        // Skip the space and the opening quote, then find the closing quote of the referer.
+        k += 2;
+        while (k < count && buffer[at[k]] != '"') {
+            ++k;
+        }
+        int end = k == count ? to : at[k];
+        if (end + 3 >= to || buffer[end + 1] != ' ' || buffer[end + 2] != '"') {
+            throw malformed();
+        }
+        field(record, AccessLogField.REFERER, bytesEnd + 2, end);
+        field(record, AccessLogField.USER_AGENT, end + 3, to - 1);
+        return bytesEnd;
+    }
+
+}
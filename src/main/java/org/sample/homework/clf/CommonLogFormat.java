@@ -0,0 +1,220 @@
+package org.sample.homework.clf;
+
+import lombok.NonNull;
+import org.sample.homework.util.DelimiterIndex;
+
+import java.time.Month;
+import java.time.Year;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The Common Log Format, such as <tt>127.0.0.1 - frank [10/Oct/2000:13:55:36 -0700] "GET /a.gif HTTP/1.0" 200 2326</tt>.
+ * <p>
+ * Lines are validated as strictly as the {@link RegexAccessLogParser} without creating any object: the spaces, quotes
+ * and brackets of a line are first located 8 bytes at a time by a {@link DelimiterIndex}, then the fields are sliced
+ * between these offsets, so that only the method, the numbers and the date are read byte by byte. Unlike the regex,
+ * tabs are allowed within the host, the identifier and the user.
+ */
+public class CommonLogFormat extends AbstractLogFormat {
+
+    /**
+     * The fields preceding the date.
+     */
+    private static final AccessLogField[] IDENTITY_FIELDS =
+            {AccessLogField.HOST, AccessLogField.USER_IDENTIFIER, AccessLogField.USER};
+
+    /**
+     * Length of a date in the "dd/MMM/yyyy:HH:mm:ss Z" format.
+     */
+    private static final int DATE_LENGTH = 26;
+
+    private static final String[] MONTHS =
+            {"Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"};
+
+    /**
+     * The delimiters of the line being scanned.
+     */
+    private final DelimiterIndex delimiters = new DelimiterIndex((byte) ' ', (byte) '"', (byte) '[', (byte) ']');
+
+    /**
+     * The last decoded date, reused while lines share the same second.
+     */
+    private final byte[] lastDate = new byte[DATE_LENGTH];
+    private boolean lastDateValid = false;
+    private long lastTimestamp;
+    private int lastOffsetSeconds;
+
+    /**
+     * Creates a format recording every field.
+     */
+    public CommonLogFormat() {
+        this(EnumSet.allOf(AccessLogField.class));
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param projection the fields to record, not <tt>null</tt>
+     */
+    public CommonLogFormat(@NonNull Set<AccessLogField> projection) {
+        this("Common Log Format", projection);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param name       the name of the format, not <tt>null</tt>
+     * @param projection the fields to record, not <tt>null</tt>
+     */
+    CommonLogFormat(String name, Set<AccessLogField> projection) {
+        super(name, projection);
+    }
+
+    @Override
+    public boolean scan(@NonNull byte[] buffer, int from, int to, @NonNull LazyAccessLogRecord record)
+            throws AccessLogParseException {
+        int[] at = delimiters.index(buffer, from, to).getOffsets();
+        int count = delimiters.getSize();
+        int k = 0;
+        int start = from;
+        // host ident authuser, quotes and brackets are allowed within these fields.
+        for (AccessLogField field : IDENTITY_FIELDS) {
+            while (k < count && buffer[at[k]] != ' ') {
+                ++k;
+            }
+            if (k == count || at[k] == start) {
+                throw malformed();
+            }
+            field(record, field, start, at[k]);
+            start = at[k++] + 1;
+        }
+        // [date] "
+        if (k == count || at[k] != start || buffer[start] != '[') {
+            throw malformed();
+        }
+        int dateStart = start + 1;
+        while (k < count && buffer[at[k]] != ']') {
+            ++k;
+        }
+        if (k + 2 >= count || at[k] == dateStart || at[k + 1] != at[k] + 1 || buffer[at[k + 1]] != ' '
+                || at[k + 2] != at[k] + 2 || buffer[at[k + 2]] != '"') {
+            throw malformed();
+        }
+        int dateEnd = at[k];
+        k += 3;
+        // "method endpoint protocol"
+        start = dateEnd + 3;
+        if (k == count || buffer[at[k]] != ' ' || at[k] == start || !isUpperCase(buffer, start, at[k])) {
+            throw malformed();
+        }
+        field(record, AccessLogField.METHOD, start, at[k]);
+        start = at[k++] + 1;
+        while (k < count && buffer[at[k]] != ' ' && buffer[at[k]] != '"') {
+            ++k;
+        }
+        if (k == count || at[k] == start) {
+            throw malformed();
+        }
+        field(record, AccessLogField.ENDPOINT, start, at[k]);
+        start = buffer[at[k]] == ' ' ? at[k++] + 1 : at[k];
+        while (k < count && buffer[at[k]] != '"') {
+            ++k;
+        }
+        if (k == count) {
+            throw malformed();
+        }
+        field(record, AccessLogField.PROTOCOL, start, at[k]);
+        // status bytes
+        int i = at[k++] + 1;
+        if (i + 5 > to || buffer[i] != ' ' || buffer[i + 4] != ' ') {
+            throw malformed();
+        }
+        record.setStatus(parseStatus(buffer, i + 1, i + 4));
+        // The status digits hold no delimiter: the next two are the spaces around it.
+        int bytesStart = i + 5;
+        int bytesEnd = scanTrailer(buffer, bytesStart, to, at, k + 2, count, record);
+        record.setBytes(parseBytes(buffer, bytesStart, bytesEnd));
+        // The date is decoded last, so that lines of another format are reported as malformed.
+        decodeDate(buffer, dateStart, dateEnd, record);
+        return true;
+    }
+
+    /**
+     * Scans what follows the status code. The Common Log Format ends with the content size.
+     *
+     * @param buffer the buffer holding the line
+     * @param from   the index of the first byte of the content size
+     * @param to     the index of the end of the line
+     * @param at     the offsets of the delimiters of the line
+     * @param k      the rank of the first delimiter following <tt>from</tt>
+     * @param count  the number of delimiters of the line
+     * @param record the record to fill
+     * @return the index of the end of the content size (exclusive)
+     * @throws AccessLogParseException if the end of the line is not valid
+     */
+    int scanTrailer(byte[] buffer, int from, int to, int[] at, int k, int count, LazyAccessLogRecord record)
+            throws AccessLogParseException {
+        return to;
+    }
+
+    /**
+     * Decodes a date in the "dd/MMM/yyyy:HH:mm:ss Z" format, such as "10/Oct/2000:13:55:36 -0700".
+     */
+    private void decodeDate(byte[] buffer, int from, int to, LazyAccessLogRecord record)
+            throws AccessLogParseException {
+        if (to - from != DATE_LENGTH) {
+            throw invalidDate();
+        }
+        if (lastDateValid && rangeEquals(lastDate, buffer, from)) {
+            record.setTime(lastTimestamp, lastOffsetSeconds);
+            return;
+        }
+        if (buffer[from + 2] != '/' || buffer[from + 6] != '/' || buffer[from + 11] != ':'
+                || buffer[from + 14] != ':' || buffer[from + 17] != ':' || buffer[from + 20] != ' ') {
+            throw invalidDate();
+        }
+        int day = digits(buffer, from, 2);
+        int month = month(buffer, from + 3);
+        int year = digits(buffer, from + 7, 4);
+        int hour = digits(buffer, from + 12, 2);
+        int minute = digits(buffer, from + 15, 2);
+        int second = digits(buffer, from + 18, 2);
+        byte sign = buffer[from + 21];
+        int offsetHours = digits(buffer, from + 22, 2);
+        int offsetMinutes = digits(buffer, from + 24, 2);
+        if (day < 1 || day > Month.of(month).length(Year.isLeap(year)) || hour > 23 || minute > 59 || second > 59
+                || (sign != '+' && sign != '-') || offsetHours > 18 || offsetMinutes > 59) {
+            throw invalidDate();
+        }
+        int offset = (offsetHours * 3600 + offsetMinutes * 60) * (sign == '-' ? -1 : 1);
+        long epochSecond = epochDay(year, month, day) * 86400 + hour * 3600 + minute * 60 + second - offset;
+        record.setTime(epochSecond * 1000, offset);
+
+        System.arraycopy(buffer, from, lastDate, 0, DATE_LENGTH);
+        lastTimestamp = epochSecond * 1000;
+        lastOffsetSeconds = offset;
+        lastDateValid = true;
+    }
+
+    private static int month(byte[] buffer, int from) throws AccessLogParseException {
+        for (int i = 0; i < MONTHS.length; i++) {
+            String name = MONTHS[i];
+            if (buffer[from] == name.charAt(0) && buffer[from + 1] == name.charAt(1)
+                    && buffer[from + 2] == name.charAt(2)) {
+                return i + 1;
+            }
+        }
+        throw invalidDate();
+    }
+
+    private static boolean isUpperCase(byte[] buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer[i] < 'A' || buffer[i] > 'Z') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -3,6 +3,8 @@ package org.sample.homework.clf;
 import lombok.NonNull;
 import lombok.experimental.UtilityClass;
 
+import java.util.Locale;
+
 /**
  * An utility class which contains Common Log Format related helper functions.
  */
@@ -64,4 +66,48 @@ public class CommonLogFormatUtils {
         return resource.substring(0, index);
     }
 
+    /**
+     * User agent families, each one identified by the first token found in a user agent, in lower case. Order matters
+     * since user agents mention the engines they are compatible with (every Chrome user agent contains "Safari/").
+     */
+    private static final String[][] USER_AGENT_FAMILIES = {
+            {"bot", "Bot"}, {"crawl", "Bot"}, {"spider", "Bot"}, {"slurp", "Bot"},
+            {"curl/", "curl"}, {"wget/", "Wget"}, {"python-", "Python"},
+            {"edg/", "Edge"}, {"edge/", "Edge"}, {"opr/", "Opera"}, {"opera", "Opera"},
+            {"firefox/", "Firefox"}, {"chrome/", "Chrome"}, {"crios/", "Chrome"}, {"safari/", "Safari"},
+            {"msie ", "Internet Explorer"}, {"trident/", "Internet Explorer"}};
+
+    /**
+     * Returns the family of a user agent, such as "Chrome" for
+     * "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/76.0.3809.100 Safari/537.36".
+     *
+     * @param userAgent the user agent, not <tt>null</tt>
+     * @return the family, "Other" if the user agent is unknown
+     */
+    public static String extractUserAgentFamily(@NonNull String userAgent) {
+        String lowerCase = userAgent.toLowerCase(Locale.ROOT);
+        for (String[] family : USER_AGENT_FAMILIES) {
+            if (lowerCase.contains(family[0])) {
+                return family[1];
+            }
+        }
+        return "Other";
+    }
+
+    /**
+     * Returns the domain of a referer, such as "www.example.com" for "https://www.example.com:8080/pages?id=1".
+     *
+     * @param referer the referer, not <tt>null</tt>
+     * @return the domain, or <tt>null</tt> if the referer is a dash or has no domain
+     */
+    public static String extractDomain(@NonNull String referer) {
+        int start = referer.indexOf("://");
+        start = start < 0 || referer.lastIndexOf('/', start) >= 0 ? 0 : start + 3;
+        int end = start;
+        while (end < referer.length() && "/:?#".indexOf(referer.charAt(end)) < 0) {
+            ++end;
+        }
+        return end == start || "-".equals(referer) ? null : referer.substring(start, end);
+    }
+
 }
@@ -0,0 +1,515 @@
+package org.sample.homework.clf;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.sample.homework.util.IpAddresses;
+
+import java.nio.charset.Charset;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A reusable view of an access log line, which decodes its fields on demand.
+ * <p>
+ * {@link LazyAccessLogRecord#reset(byte[], int, int)} scans the line once with a {@link LogFormat}, which validates it
+ * and records the offsets of the fields of its projection, but without creating any object. The numeric fields
+ * (date, status and bytes) are decoded during the scan since they must be validated anyway, while the text fields are
+ * only decoded when accessed. Hosts, sections, methods, user agents and referer domains are decoded through small
+ * caches, so that the same strings are returned for lines sharing them.
+ * <p>
+ * The record refers to the buffer it has been reset with: it is only valid until the buffer is modified, typically
+ * until the listener call forwarding the line returns. Use {@link LazyAccessLogRecord#toRecord()} to keep it longer.
+ * This class is not thread-safe.
+ */
+public class LazyAccessLogRecord {
+
+    /**
+     * Above this number of distinct user agents, the user agent families are classified again.
+     */
+    private static final int MAX_USER_AGENT_FAMILIES = 4096;
+
+    /**
+     * The charset used to decode text fields.
+     */
+    private final Charset charset;
+
+    /**
+     * The format of the scanned lines.
+     */
+    @Getter
+    private final LogFormat format;
+
+    /**
+     * Caches of decoded strings.
+     */
+    private final ByteStringCache hosts;
+    private final ByteStringCache tokens;
+    private final ByteStringCache userAgents;
+    private final ByteStringCache domains;
+    private final ByteStringCache virtualHosts;
+
+    /**
+     * The family of the user agents decoded so far.
+     */
+    private final Map<String, String> userAgentFamilies = new HashMap<>();
+
+    /**
+     * The buffer holding the line.
+     */
+    private byte[] line;
+
+    /**
+     * The start (inclusive) and end (exclusive) offsets of the text fields in the buffer by ordinal, -1 if the field
+     * is not provided by the format or is not part of its projection.
+     */
+    private final int[] offsets = new int[AccessLogField.values().length * 2];
+
+    /**
+     * The decoded numeric fields.
+     */
+    private long timestamp;
+    private int offsetSeconds;
+    private int status;
+    private int bytes;
+
+    /**
+     * The remote host parsed as an IP address (see {@link IpAddresses}), once it has been asked for.
+     */
+    private final long[] hostAddress = new long[2];
+    private HostAddressState hostAddressState = HostAddressState.UNKNOWN;
+
+    /**
+     * The number of requests this record counts for, when lines are sampled.
+     */
+    private int sampleRate = 1;
+
+    /**
+     * The name of the source of the lines, such as the followed file, or <tt>null</tt>.
+     */
+    private String source;
+
+    /**
+     * Creates a record detecting the format of the lines and decoding text fields with the platform default charset.
+     */
+    public LazyAccessLogRecord() {
+        this(Charset.defaultCharset());
+    }
+
+    /**
+     * Creates a record detecting the format of the lines.
+     *
+     * @param charset the charset used to decode text fields, not <tt>null</tt>
+     */
+    public LazyAccessLogRecord(@NonNull Charset charset) {
+        this(charset, new LogFormatDetector());
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param charset the charset used to decode text fields, not <tt>null</tt>
+     * @param format  the format of the lines, not <tt>null</tt>
+     */
+    public LazyAccessLogRecord(@NonNull Charset charset, @NonNull LogFormat format) {
+        this.charset = charset;
+        this.format = format;
+        this.hosts = new ByteStringCache(1024, charset);
+        this.tokens = new ByteStringCache(256, charset);
+        this.userAgents = new ByteStringCache(256, charset);
+        this.domains = new ByteStringCache(256, charset);
+        this.virtualHosts = new ByteStringCache(1024, charset);
+    }
+
+    /**
+     * Points this record to a new line.
+     *
+     * @param buffer the buffer holding the line, not <tt>null</tt>
+     * @param from   the index of the first byte of the line (inclusive)
+     * @param to     the index of the last byte of the line (exclusive), line terminators excluded
+     * @return <tt>true</tt> if the line is a record, <tt>false</tt> if it is a directive of the format (such as a
+     * header), in which case this record must not be used
+     * @throws AccessLogParseException if the line is not valid in the format, in which case the state of this record
+     *                                 is undefined until the next successful reset
+     */
+    public boolean reset(@NonNull byte[] buffer, int from, int to) throws AccessLogParseException {
+        return format.scan(buffer, from, to, clear(buffer));
+    }
+
+    /**
+     * Points this record to a buffer and clears its fields, before a format scans a line.
+     *
+     * @param buffer the buffer holding the line
+     * @return this record
+     */
+    LazyAccessLogRecord clear(byte[] buffer) {
+        line = buffer;
+        Arrays.fill(offsets, -1);
+        timestamp = 0;
+        offsetSeconds = 0;
+        status = 0;
+        bytes = 0;
+        hostAddressState = HostAddressState.UNKNOWN;
+        return this;
+    }
+
+    void setField(AccessLogField field, int from, int to) {
+        offsets[field.ordinal() * 2] = from;
+        offsets[field.ordinal() * 2 + 1] = to;
+    }
+
+    void setTime(long timestamp, int offsetSeconds) {
+        this.timestamp = timestamp;
+        this.offsetSeconds = offsetSeconds;
+    }
+
+    void setStatus(int status) {
+        this.status = status;
+    }
+
+    void setBytes(int bytes) {
+        this.bytes = bytes;
+    }
+
+    void setSampleRate(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    void setSource(String source) {
+        this.source = source;
+    }
+
+    /**
+     * Returns the IP address of the client (remote host) which made the request to the server.
+     *
+     * @return the host, or <tt>null</tt> if not provided
+     */
+    public String getHost() {
+        return isEmpty(AccessLogField.HOST)
+                ? null
+                : hosts.get(line, start(AccessLogField.HOST), end(AccessLogField.HOST));
+    }
+
+    /**
+     * Tells whether the remote host is an IP address, parsing it from the line without decoding it.
+     *
+     * @return <tt>true</tt> if the host is an IPv4 or IPv6 address, <tt>false</tt> if it is a host name or is not
+     * provided
+     * @see #getHostAddressHigh()
+     * @see #getHostAddressLow()
+     */
+    public boolean isHostAddress() {
+        if (hostAddressState == HostAddressState.UNKNOWN) {
+            hostAddressState = !isEmpty(AccessLogField.HOST) && IpAddresses.parse(line, start(AccessLogField.HOST),
+                    end(AccessLogField.HOST), hostAddress) ? HostAddressState.ADDRESS : HostAddressState.NOT_ADDRESS;
+        }
+        return hostAddressState == HostAddressState.ADDRESS;
+    }
+
+    /**
+     * Returns the high half of the remote host address, IPv4 addresses being mapped in IPv6.
+     *
+     * @return the high half of the address, only meaningful if {@link #isHostAddress()}
+     */
+    public long getHostAddressHigh() {
+        return isHostAddress() ? hostAddress[0] : 0;
+    }
+
+    /**
+     * Returns the low half of the remote host address, IPv4 addresses being mapped in IPv6.
+     *
+     * @return the low half of the address, only meaningful if {@link #isHostAddress()}
+     */
+    public long getHostAddressLow() {
+        return isHostAddress() ? hostAddress[1] : 0;
+    }
+
+    /**
+     * Returns the RFC 1413 identity of the client.
+     *
+     * @return the identity, or <tt>null</tt> if not provided
+     */
+    public String getUserIdentifier() {
+        return isEmpty(AccessLogField.USER_IDENTIFIER) ? null : decode(AccessLogField.USER_IDENTIFIER);
+    }
+
+    /**
+     * Returns the user id of the person requesting the document.
+     *
+     * @return the user id, or <tt>null</tt> if not provided
+     */
+    public String getUser() {
+        return isEmpty(AccessLogField.USER) ? null : decode(AccessLogField.USER);
+    }
+
+    /**
+     * Returns the number of requests this record stands for: only one line out of this number is parsed while the
+     * ingestion is behind (see {@link LoadShedder}).
+     *
+     * @return the sampling rate of this record, 1 if every line is parsed
+     */
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Returns the time at which the request was received.
+     *
+     * @return the request time in epoch milliseconds
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Returns the time at which the request was received, with the offset found in the line.
+     *
+     * @return the request time, not <tt>null</tt>
+     */
+    public ZonedDateTime getDateTime() {
+        return ZonedDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneOffset.ofTotalSeconds(offsetSeconds));
+    }
+
+    /**
+     * Returns the HTTP method of the request.
+     *
+     * @return the method, or <tt>null</tt> if not provided
+     */
+    public String getMethod() {
+        return isAbsent(AccessLogField.METHOD)
+                ? null
+                : tokens.get(line, start(AccessLogField.METHOD), end(AccessLogField.METHOD));
+    }
+
+    /**
+     * Returns the requested resource.
+     *
+     * @return the endpoint, or <tt>null</tt> if not provided
+     */
+    public String getEndpoint() {
+        return isAbsent(AccessLogField.ENDPOINT) ? null : decode(AccessLogField.ENDPOINT);
+    }
+
+    /**
+     * Returns the section of the requested resource, without decoding the whole resource.
+     *
+     * @return the section, or <tt>null</tt> if the resource is not provided
+     * @throws IllegalArgumentException if the resource doesn't start with a slash
+     * @see CommonLogFormatUtils#extractSection(String)
+     */
+    public String getSection() {
+        if (isAbsent(AccessLogField.ENDPOINT)) {
+            return null;
+        }
+        int from = start(AccessLogField.ENDPOINT);
+        int to = end(AccessLogField.ENDPOINT);
+        if (from == to || line[from] != '/') {
+            throw new IllegalArgumentException("Badly formatted resource: " + getEndpoint() + '!');
+        }
+        int end = from + 1;
+        while (end < to && line[end] != '/') {
+            ++end;
+        }
+        return tokens.get(line, from, end);
+    }
+
+    /**
+     * Returns the protocol of the request.
+     *
+     * @return the protocol, or <tt>null</tt> if not provided
+     */
+    public String getProtocol() {
+        return isAbsent(AccessLogField.PROTOCOL) || start(AccessLogField.PROTOCOL) == end(AccessLogField.PROTOCOL)
+                ? null
+                : decode(AccessLogField.PROTOCOL);
+    }
+
+    /**
+     * Returns the HTTP status code returned to the client.
+     *
+     * @return the status code
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns the size of the object returned to the client.
+     *
+     * @return the size in bytes, 0 if not provided
+     */
+    public int getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the page linking to the requested resource.
+     *
+     * @return the referer, or <tt>null</tt> if not provided
+     */
+    public String getReferer() {
+        return isEmpty(AccessLogField.REFERER) ? null : decode(AccessLogField.REFERER);
+    }
+
+    /**
+     * Returns the domain of the page linking to the requested resource, without decoding the whole referer.
+     *
+     * @return the domain, or <tt>null</tt> if not provided
+     * @see CommonLogFormatUtils#extractDomain(String)
+     */
+    public String getRefererDomain() {
+        if (isEmpty(AccessLogField.REFERER)) {
+            return null;
+        }
+        int from = start(AccessLogField.REFERER);
+        int to = end(AccessLogField.REFERER);
+        // Skip the scheme, if any.
+        for (int i = from; i + 2 < to && line[i] != '/'; i++) {
+            if (line[i] == ':' && line[i + 1] == '/' && line[i + 2] == '/') {
+                from = i + 3;
+                break;
+            }
+        }
+        int end = from;
+        while (end < to && line[end] != '/' && line[end] != ':' && line[end] != '?' && line[end] != '#') {
+            ++end;
+        }
+        return end == from ? null : domains.get(line, from, end);
+    }
+
+    /**
+     * Returns the software which made the request.
+     *
+     * @return the user agent, or <tt>null</tt> if not provided
+     */
+    public String getUserAgent() {
+        return isEmpty(AccessLogField.USER_AGENT)
+                ? null
+                : userAgents.get(line, start(AccessLogField.USER_AGENT), end(AccessLogField.USER_AGENT));
+    }
+
+    /**
+     * Returns the name of the virtual host (site) which served the request.
+     *
+     * @return the virtual host, or <tt>null</tt> if not provided
+     */
+    public String getVirtualHost() {
+        return isEmpty(AccessLogField.VIRTUAL_HOST)
+                ? null
+                : virtualHosts.get(line, start(AccessLogField.VIRTUAL_HOST), end(AccessLogField.VIRTUAL_HOST));
+    }
+
+    /**
+     * Returns the name of the source the line has been read from. This doesn't change from a line to the next one.
+     *
+     * @return the followed file, or <tt>null</tt> if the lines are not read from a file
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Returns the family of the software which made the request, classified once per distinct user agent.
+     *
+     * @return the family, or <tt>null</tt> if the user agent is not provided
+     * @see CommonLogFormatUtils#extractUserAgentFamily(String)
+     */
+    public String getUserAgentFamily() {
+        String userAgent = getUserAgent();
+        if (userAgent == null) {
+            return null;
+        }
+        String family = userAgentFamilies.get(userAgent);
+        if (family == null) {
+            if (userAgentFamilies.size() >= MAX_USER_AGENT_FAMILIES) {
+                userAgentFamilies.clear();
+            }
+            family = CommonLogFormatUtils.extractUserAgentFamily(userAgent);
+            userAgentFamilies.put(userAgent, family);
+        }
+        return family;
+    }
+
+    /**
+     * Decodes every field into an immutable record, which can be kept after this record has been reset.
+     *
+     * @return the corresponding record, not <tt>null</tt>
+     */
+    public AccessLogRecord toRecord() {
+        return AccessLogRecord.builder()
+                .host(getHost())
+                .userIdentifier(getUserIdentifier())
+                .user(getUser())
+                .dateTime(getDateTime())
+                .method(getMethod())
+                .endpoint(getEndpoint())
+                .protocol(getProtocol())
+                .status(status)
+                .bytes(bytes)
+                .referer(getReferer())
+                .userAgent(getUserAgent())
+                .build();
+    }
+
+    /**
+     * Returns the buffer holding the line, whose fields are located by {@link #start(AccessLogField)} and
+     * {@link #end(AccessLogField)}. The buffer is reused for the next lines.
+     *
+     * @return the buffer, not <tt>null</tt> once the record has been reset
+     */
+    public byte[] getLine() {
+        return line;
+    }
+
+    /**
+     * Returns the index of the requested resource in the line, so that it can be read without being decoded.
+     *
+     * @return the index of the first byte of the resource, or -1 if the resource is not provided
+     * @see #getLine()
+     */
+    public int getEndpointStart() {
+        return start(AccessLogField.ENDPOINT);
+    }
+
+    /**
+     * Returns the end of the requested resource in the line.
+     *
+     * @return the index of the last byte of the resource (exclusive), or -1 if the resource is not provided
+     * @see #getLine()
+     */
+    public int getEndpointEnd() {
+        return end(AccessLogField.ENDPOINT);
+    }
+
+    int start(AccessLogField field) {
+        return offsets[field.ordinal() * 2];
+    }
+
+    int end(AccessLogField field) {
+        return offsets[field.ordinal() * 2 + 1];
+    }
+
+    private String decode(AccessLogField field) {
+        return new String(line, start(field), end(field) - start(field), charset);
+    }
+
+    private boolean isAbsent(AccessLogField field) {
+        return start(field) < 0;
+    }
+
+    /**
+     * Tells whether a field is not provided, either absent or a dash.
+     */
+    private boolean isEmpty(AccessLogField field) {
+        int from = start(field);
+        return from < 0 || (end(field) - from == 1 && line[from] == '-');
+    }
+
+    private enum HostAddressState {
+        UNKNOWN, ADDRESS, NOT_ADDRESS
+    }
+
+}
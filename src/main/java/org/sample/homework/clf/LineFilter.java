@@ -0,0 +1,369 @@
+package org.sample.homework.clf;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.sample.homework.metrics.PipelineMetrics;
+import org.sample.homework.util.IpAddresses;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A {@link LogFormat} which drops the lines matching exclusion filters, so that they are neither counted nor alerted
+ * on. Dropped lines are scanned like directives: they are not records, and they are only counted by the pipeline
+ * metrics (see {@link PipelineMetrics#getFilteredLines()}).
+ * <p>
+ * A filter is a list of predicates separated by spaces, which must all match for a line to be dropped. Predicates are
+ * written <tt>field=values</tt>, or <tt>field!=values</tt> to negate them, with comma-separated values:
+ * <ul>
+ * <li><tt>path=/health,/static/</tt>: the request target starts with one of the prefixes,</li>
+ * <li><tt>host=10.0.0.0/8,::1,lb.example.com</tt>: the remote host is in one of the CIDR blocks, is one of the
+ * addresses or is one of the host names,</li>
+ * <li><tt>method=HEAD,OPTIONS</tt>: the request method is one of the methods,</li>
+ * <li><tt>status=3xx,404,500-503</tt>: the response status is one of the classes, codes or ranges.</li>
+ * </ul>
+ * For example, <tt>host=10.0.0.0/8 path=/health</tt> drops the health checks of the internal load balancers.
+ * <p>
+ * Filters are compiled into matchers which compare the bytes of the fields located by the scan, so dropped lines are
+ * never decoded. The fields used by the filters (host, method and endpoint) must be part of the projection of the
+ * wrapped format.
+ */
+public class LineFilter implements LogFormat {
+
+    /**
+     * The wrapped format.
+     */
+    private final LogFormat format;
+
+    /**
+     * The compiled filters, a line is dropped if it matches any of them.
+     */
+    private final Predicate[][] filters;
+
+    /**
+     * The filters as written.
+     */
+    @Getter
+    private final List<String> expressions;
+
+    /**
+     * Class constructor.
+     *
+     * @param format      the format scanning the lines, not <tt>null</tt>
+     * @param expressions the filters, not <tt>null</tt>
+     * @throws IllegalArgumentException if a filter is not valid
+     */
+    public LineFilter(@NonNull LogFormat format, @NonNull List<String> expressions) {
+        this.format = format;
+        this.expressions = Collections.unmodifiableList(new ArrayList<>(expressions));
+        this.filters = new Predicate[expressions.size()][];
+        for (int i = 0; i < filters.length; i++) {
+            filters[i] = compile(expressions.get(i));
+        }
+    }
+
+    @Override
+    public String getName() {
+        return format.getName();
+    }
+
+    @Override
+    public boolean scan(@NonNull byte[] buffer, int from, int to, @NonNull LazyAccessLogRecord record)
+            throws AccessLogParseException {
+        if (!format.scan(buffer, from, to, record)) {
+            return false;
+        }
+        if (matches(record)) {
+            PipelineMetrics.get().incrementFilteredLines();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tells whether a record matches any filter.
+     *
+     * @param record the scanned record, not <tt>null</tt>
+     * @return <tt>true</tt> if the record must be dropped
+     */
+    public boolean matches(@NonNull LazyAccessLogRecord record) {
+        for (Predicate[] filter : filters) {
+            if (matchesAll(filter, record)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matchesAll(Predicate[] filter, LazyAccessLogRecord record) {
+        for (Predicate predicate : filter) {
+            if (predicate.test(record) == predicate.negated) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks the syntax of a filter.
+     *
+     * @param expression the filter, not <tt>null</tt>
+     * @throws IllegalArgumentException if the filter is not valid
+     */
+    public static void validate(@NonNull String expression) {
+        compile(expression);
+    }
+
+    /**
+     * Compiles a filter.
+     *
+     * @param expression the filter
+     * @return its predicates
+     * @throws IllegalArgumentException if the filter is not valid
+     */
+    private static Predicate[] compile(String expression) {
+        String[] terms = expression.trim().split("\\s+");
+        if (terms.length == 1 && terms[0].isEmpty()) {
+            throw new IllegalArgumentException("Empty filter!");
+        }
+        Predicate[] predicates = new Predicate[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            String term = terms[i];
+            int equals = term.indexOf('=');
+            if (equals <= 0 || equals == term.length() - 1) {
+                throw new IllegalArgumentException("Invalid filter predicate: " + term);
+            }
+            boolean negated = term.charAt(equals - 1) == '!';
+            String field = term.substring(0, negated ? equals - 1 : equals);
+            String[] values = term.substring(equals + 1).split(",");
+            switch (field) {
+                case "path":
+                    predicates[i] = new PathPredicate(values);
+                    break;
+                case "host":
+                    predicates[i] = new HostPredicate(values);
+                    break;
+                case "method":
+                    predicates[i] = new MethodPredicate(values);
+                    break;
+                case "status":
+                    predicates[i] = new StatusPredicate(values);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown filter field '" + field + "' in: " + term);
+            }
+            predicates[i].negated = negated;
+        }
+        return predicates;
+    }
+
+    private static byte[][] encode(String[] values) {
+        byte[][] result = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            if (values[i].isEmpty()) {
+                throw new IllegalArgumentException("Empty filter value!");
+            }
+            result[i] = values[i].getBytes(Charset.defaultCharset());
+        }
+        return result;
+    }
+
+    /**
+     * Compares bytes of the line.
+     */
+    private static boolean regionMatches(byte[] line, int from, byte[] value) {
+        for (int i = 0; i < value.length; i++) {
+            if (line[from + i] != value[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A compiled predicate.
+     */
+    private abstract static class Predicate {
+
+        /**
+         * Whether the line is dropped when the predicate doesn't match.
+         */
+        boolean negated;
+
+        abstract boolean test(LazyAccessLogRecord record);
+    }
+
+    /**
+     * Matches the prefixes of the request target.
+     */
+    private static class PathPredicate extends Predicate {
+
+        private final byte[][] prefixes;
+
+        PathPredicate(String[] prefixes) {
+            this.prefixes = encode(prefixes);
+        }
+
+        @Override
+        boolean test(LazyAccessLogRecord record) {
+            int from = record.start(AccessLogField.ENDPOINT);
+            int length = record.end(AccessLogField.ENDPOINT) - from;
+            for (byte[] prefix : prefixes) {
+                if (from >= 0 && prefix.length <= length && regionMatches(record.getLine(), from, prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Matches the request method.
+     */
+    private static class MethodPredicate extends Predicate {
+
+        private final byte[][] methods;
+
+        MethodPredicate(String[] methods) {
+            this.methods = encode(methods);
+        }
+
+        @Override
+        boolean test(LazyAccessLogRecord record) {
+            int from = record.start(AccessLogField.METHOD);
+            int length = record.end(AccessLogField.METHOD) - from;
+            for (byte[] method : methods) {
+                if (from >= 0 && method.length == length && regionMatches(record.getLine(), from, method)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Matches the response status against ranges.
+     */
+    private static class StatusPredicate extends Predicate {
+
+        /**
+         * The inclusive bounds of the ranges: lower bounds at even indexes, upper bounds at odd indexes.
+         */
+        private final int[] ranges;
+
+        StatusPredicate(String[] values) {
+            this.ranges = new int[values.length * 2];
+            for (int i = 0; i < values.length; i++) {
+                String value = values[i];
+                try {
+                    if (value.length() == 3 && value.endsWith("xx")) {
+                        int statusClass = Integer.parseInt(value.substring(0, 1));
+                        ranges[i * 2] = statusClass * 100;
+                        ranges[i * 2 + 1] = statusClass * 100 + 99;
+                    } else if (value.indexOf('-') > 0) {
+                        ranges[i * 2] = Integer.parseInt(value.substring(0, value.indexOf('-')));
+                        ranges[i * 2 + 1] = Integer.parseInt(value.substring(value.indexOf('-') + 1));
+                    } else {
+                        ranges[i * 2] = Integer.parseInt(value);
+                        ranges[i * 2 + 1] = ranges[i * 2];
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid status filter: " + value);
+                }
+            }
+        }
+
+        @Override
+        boolean test(LazyAccessLogRecord record) {
+            int status = record.getStatus();
+            for (int i = 0; i < ranges.length; i += 2) {
+                if (status >= ranges[i] && status <= ranges[i + 1]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Matches the remote host against CIDR blocks and host names. Addresses are parsed from the line without decoding
+     * it, and IPv4 blocks are matched as IPv4-mapped IPv6 blocks (see {@link IpAddresses}).
+     */
+    private static class HostPredicate extends Predicate {
+
+        /**
+         * The blocks, 4 longs each: the high and low halves of the network, then of the mask.
+         */
+        private final long[] blocks;
+
+        /**
+         * The host names.
+         */
+        private final byte[][] names;
+
+        HostPredicate(String[] values) {
+            List<long[]> blocks = new ArrayList<>();
+            List<String> names = new ArrayList<>();
+            long[] network = new long[2];
+            for (String value : values) {
+                int slash = value.indexOf('/');
+                byte[] address = (slash < 0 ? value : value.substring(0, slash)).getBytes(StandardCharsets.US_ASCII);
+                if (!IpAddresses.parse(address, 0, address.length, network)) {
+                    if (slash >= 0) {
+                        throw new IllegalArgumentException("Invalid CIDR block: " + value);
+                    }
+                    names.add(value);
+                    continue;
+                }
+                int bits = IpAddresses.isIpv4(network[0], network[1]) ? 32 : 128;
+                int prefix;
+                try {
+                    prefix = slash < 0 ? bits : Integer.parseInt(value.substring(slash + 1));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid CIDR block: " + value);
+                }
+                if (prefix < 0 || prefix > bits) {
+                    throw new IllegalArgumentException("Invalid CIDR block: " + value);
+                }
+                prefix += 128 - bits;
+                long maskHigh = prefix == 0 ? 0 : prefix >= 64 ? -1 : -1L << (64 - prefix);
+                long maskLow = prefix <= 64 ? 0 : -1L << (128 - prefix);
+                blocks.add(new long[]{network[0] & maskHigh, network[1] & maskLow, maskHigh, maskLow});
+            }
+            this.blocks = new long[blocks.size() * 4];
+            for (int i = 0; i < blocks.size(); i++) {
+                System.arraycopy(blocks.get(i), 0, this.blocks, i * 4, 4);
+            }
+            this.names = encode(names.toArray(new String[0]));
+        }
+
+        @Override
+        boolean test(LazyAccessLogRecord record) {
+            if (record.isHostAddress()) {
+                long high = record.getHostAddressHigh();
+                long low = record.getHostAddressLow();
+                for (int i = 0; i < blocks.length; i += 4) {
+                    if ((high & blocks[i + 2]) == blocks[i] && (low & blocks[i + 3]) == blocks[i + 1]) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            int from = record.start(AccessLogField.HOST);
+            if (from < 0) {
+                return false;
+            }
+            int to = record.end(AccessLogField.HOST);
+            for (byte[] name : names) {
+                if (name.length == to - from && regionMatches(record.getLine(), from, name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+}
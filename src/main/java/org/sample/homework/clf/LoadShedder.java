@@ -0,0 +1,149 @@
+package org.sample.homework.clf;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.sample.homework.metrics.MemoryBudget;
+import org.sample.homework.metrics.PipelineMetrics;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Decides which lines are parsed when the ingestion falls behind.
+ * <p>
+ * The ingest lag is the time elapsed between the timestamp of a record and the time it is parsed. While the largest
+ * lag seen during a second exceeds the budget, the sampling rate doubles: only one line out of N is parsed, and its
+ * record counts for N requests (see {@link LazyAccessLogRecord#getSampleRate()}). Once the lag is back under half the
+ * budget, the sampling rate halves until every line is parsed again.
+ * <p>
+ * The sampling rate also doubles while the memory budget is under pressure (see {@link MemoryBudget}): fewer records
+ * mean fewer keys and hosts held by the window frames. With a zero lag budget, only the memory budget is watched.
+ * <p>
+ * Sampling is deterministic: every N-th line is kept. This class is not thread safe, it is used by the thread reading
+ * the lines.
+ */
+@Slf4j
+public class LoadShedder {
+
+    /**
+     * The default lag budget.
+     */
+    public static final Duration DEFAULT_LAG_BUDGET = Duration.ofSeconds(10);
+
+    /**
+     * The largest sampling rate: one line out of 1024 is still parsed.
+     */
+    static final int MAX_SAMPLE_RATE = 1024;
+
+    /**
+     * The period at which the sampling rate is adjusted, in milliseconds.
+     */
+    private static final long ADJUSTMENT_PERIOD_MILLIS = 1000;
+
+    private final long lagBudgetMillis;
+
+    /**
+     * The wall clock, in epoch milliseconds.
+     */
+    private final LongSupplier clock;
+
+    /**
+     * Only one line out of this number is parsed, 1 if every line is.
+     */
+    private int sampleRate = 1;
+
+    /**
+     * The number of lines seen since the sampling started.
+     */
+    private long lines;
+
+    /**
+     * The largest lag seen since the last adjustment, in milliseconds.
+     */
+    private long maxLagMillis = Long.MIN_VALUE;
+
+    private long nextAdjustmentMillis;
+
+    /**
+     * Class constructor.
+     *
+     * @param lagBudget the ingest lag above which lines are sampled, zero to only sample lines while the memory
+     *                  budget is under pressure, not <tt>null</tt>
+     */
+    public LoadShedder(@NonNull Duration lagBudget) {
+        this(lagBudget, System::currentTimeMillis);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param lagBudget the ingest lag above which lines are sampled, not <tt>null</tt>
+     * @param clock     the wall clock in epoch milliseconds, not <tt>null</tt>
+     */
+    LoadShedder(@NonNull Duration lagBudget, @NonNull LongSupplier clock) {
+        this.lagBudgetMillis = lagBudget.toMillis();
+        this.clock = clock;
+        this.nextAdjustmentMillis = clock.getAsLong() + ADJUSTMENT_PERIOD_MILLIS;
+    }
+
+    /**
+     * Returns the current sampling rate.
+     *
+     * @return N when one line out of N is parsed, 1 when every line is
+     */
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Decides whether the next line is parsed.
+     *
+     * @return the number of requests the record of the line counts for, or 0 if the line must be skipped
+     */
+    public int sample() {
+        if (sampleRate == 1) {
+            return 1;
+        }
+        if (lines++ % sampleRate != 0) {
+            PipelineMetrics.get().incrementShedLines();
+            return 0;
+        }
+        return sampleRate;
+    }
+
+    /**
+     * Records the lag of a parsed record, and adjusts the sampling rate once per second.
+     *
+     * @param timestamp the time of the record in epoch milliseconds
+     */
+    public void observe(long timestamp) {
+        long now = clock.getAsLong();
+        maxLagMillis = Math.max(maxLagMillis, now - timestamp);
+        if (now < nextAdjustmentMillis) {
+            return;
+        }
+        nextAdjustmentMillis = now + ADJUSTMENT_PERIOD_MILLIS;
+        boolean behind = lagBudgetMillis > 0 && maxLagMillis > lagBudgetMillis;
+        boolean overBudget = MemoryBudget.get().isUnderPressure();
+        if ((behind || overBudget) && sampleRate < MAX_SAMPLE_RATE) {
+            if (sampleRate == 1) {
+                if (behind) {
+                    log.warn("Ingestion is {} ms behind, sampling lines until it catches up.", maxLagMillis);
+                } else {
+                    log.warn("Memory budget is under pressure, sampling lines until it is released.");
+                }
+                lines = 0;
+            }
+            sampleRate *= 2;
+        } else if (!behind && !overBudget && (lagBudgetMillis == 0 || maxLagMillis < lagBudgetMillis / 2)
+                && sampleRate > 1) {
+            sampleRate /= 2;
+            if (sampleRate == 1) {
+                log.info("Ingestion caught up, every line is parsed again.");
+            }
+        }
+        maxLagMillis = Long.MIN_VALUE;
+        PipelineMetrics.get().setSampleRate(sampleRate);
+    }
+
+}
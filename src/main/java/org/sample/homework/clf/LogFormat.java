@@ -0,0 +1,31 @@
+package org.sample.homework.clf;
+
+/**
+ * An interface to be implemented by access log formats, which scan lines into a {@link LazyAccessLogRecord}.
+ * <p>
+ * Formats only record the offsets of the fields of their projection, the other fields are skipped. A format may be
+ * stateful (such as a format described by header lines), so an instance must only be used for a single log file and
+ * is not thread-safe.
+ */
+public interface LogFormat {
+
+    /**
+     * Returns the name of the format.
+     *
+     * @return the name, not <tt>null</tt>
+     */
+    String getName();
+
+    /**
+     * Scans a line into the given record.
+     *
+     * @param buffer the buffer holding the line, not <tt>null</tt>
+     * @param from   the index of the first byte of the line (inclusive)
+     * @param to     the index of the last byte of the line (exclusive), line terminators excluded
+     * @param record the record to fill, whose fields have been cleared, not <tt>null</tt>
+     * @return <tt>true</tt> if the line is a record, <tt>false</tt> if it is a directive (such as a header)
+     * @throws AccessLogParseException if the line is not valid in this format
+     */
+    boolean scan(byte[] buffer, int from, int to, LazyAccessLogRecord record) throws AccessLogParseException;
+
+}
@@ -0,0 +1,192 @@
+package org.sample.homework.clf;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.sample.homework.clf.AccessLogParseException.Reason;
+import org.sample.homework.util.Swar;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * A format which detects the format of a log file from its lines: W3C extended logs are recognized by their directives,
+ * Combined, Common and virtual host Combined Log Format lines by trying to scan them.
+ * <p>
+ * Once a line has been scanned, its format is kept for the following lines. Detection starts over after
+ * {@link LogFormatDetector#REDETECT_AFTER_FAILURES} consecutive invalid lines, in case the format of the file changed.
+ */
+@Slf4j
+public class LogFormatDetector implements LogFormat {
+
+    /**
+     * The names of the formats which can be requested, see {@link LogFormatDetector#forName(String, Set)}.
+     */
+    public static final String AUTO = "auto";
+    public static final String COMMON = "common";
+    public static final String COMBINED = "combined";
+    public static final String W3C = "w3c";
+    public static final String VHOST_COMBINED = "vhost_combined";
+
+    /**
+     * Number of consecutive invalid lines after which the format is detected again.
+     */
+    static final int REDETECT_AFTER_FAILURES = 1000;
+
+    /**
+     * Size of the beginning of a file read by {@link LogFormatDetector#prime(LogFormat, Path)}.
+     */
+    private static final int PRIME_SIZE = 64 * 1024;
+
+    private final W3cExtendedLogFormat w3c;
+
+    /**
+     * The formats tried on record lines, the most specific one first. Lines with a virtual host are tried last, since
+     * the other formats never accept them.
+     */
+    private final LogFormat[] candidates;
+
+    /**
+     * The detected format, or <tt>null</tt> until a line is scanned.
+     */
+    private LogFormat detected;
+
+    private int consecutiveFailures = 0;
+
+    /**
+     * Creates a detector whose formats record every field.
+     */
+    public LogFormatDetector() {
+        this(EnumSet.allOf(AccessLogField.class));
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param projection the fields to record, not <tt>null</tt>
+     */
+    public LogFormatDetector(@NonNull Set<AccessLogField> projection) {
+        this.w3c = new W3cExtendedLogFormat(projection);
+        this.candidates = new LogFormat[]{new CombinedLogFormat(projection), new CommonLogFormat(projection),
+                new VirtualHostCombinedLogFormat(projection)};
+    }
+
+    /**
+     * Creates the format of the given name.
+     *
+     * @param name       the format name, one of {@link LogFormatDetector#AUTO}, {@link LogFormatDetector#COMMON},
+     *                   {@link LogFormatDetector#COMBINED}, {@link LogFormatDetector#W3C} or
+     *                   {@link LogFormatDetector#VHOST_COMBINED}, not <tt>null</tt>
+     * @param projection the fields to record, not <tt>null</tt>
+     * @return a new format, not <tt>null</tt>
+     * @throws IllegalArgumentException if the name is unknown
+     */
+    public static LogFormat forName(@NonNull String name, @NonNull Set<AccessLogField> projection) {
+        switch (name.toLowerCase(Locale.ROOT)) {
+            case AUTO:
+                return new LogFormatDetector(projection);
+            case COMMON:
+                return new CommonLogFormat(projection);
+            case COMBINED:
+                return new CombinedLogFormat(projection);
+            case W3C:
+                return new W3cExtendedLogFormat(projection);
+            case VHOST_COMBINED:
+                return new VirtualHostCombinedLogFormat(projection);
+            default:
+                throw new IllegalArgumentException("Unknown log format: " + name);
+        }
+    }
+
+    /**
+     * Feeds the complete lines of the beginning of a log file to a format, so that it is ready to scan lines from
+     * anywhere in the file: a detector detects the format, a W3C extended format reads the <tt>#Fields:</tt>
+     * directive.
+     *
+     * @param format the format to prime, not <tt>null</tt>
+     * @param path   the log file, not <tt>null</tt>
+     * @throws IOException if the file can't be read
+     */
+    public static void prime(@NonNull LogFormat format, @NonNull Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(PRIME_SIZE);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+                // Read until the buffer is full or the end of the file is reached.
+            }
+        }
+        LazyAccessLogRecord record = new LazyAccessLogRecord();
+        byte[] bytes = buffer.array();
+        int lineStart = 0;
+        int i;
+        while ((i = Swar.indexOf(bytes, lineStart, buffer.position(), (byte) '\n')) >= 0) {
+            int lineEnd = i > lineStart && bytes[i - 1] == '\r' ? i - 1 : i;
+            try {
+                format.scan(bytes, lineStart, lineEnd, record.clear(bytes));
+            } catch (AccessLogParseException e) {
+                // Invalid lines are reported when they are actually read.
+            }
+            lineStart = i + 1;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return detected == null ? "unknown" : detected.getName();
+    }
+
+    @Override
+    public boolean scan(@NonNull byte[] buffer, int from, int to, @NonNull LazyAccessLogRecord record)
+            throws AccessLogParseException {
+        if (from < to && buffer[from] == '#') {
+            // Only W3C extended logs have directives.
+            boolean result = w3c.scan(buffer, from, to, record);
+            if (detected != w3c && w3c.isConfigured()) {
+                detect(w3c);
+            }
+            return result;
+        }
+        if (detected != null) {
+            try {
+                boolean result = detected.scan(buffer, from, to, record);
+                consecutiveFailures = 0;
+                return result;
+            } catch (AccessLogParseException e) {
+                if (++consecutiveFailures >= REDETECT_AFTER_FAILURES) {
+                    log.warn("{} consecutive lines are not in {}, detecting the log format again.",
+                            consecutiveFailures, detected.getName());
+                    detected = null;
+                    consecutiveFailures = 0;
+                }
+                throw e;
+            }
+        }
+        AccessLogParseException failure = null;
+        for (LogFormat candidate : candidates) {
+            try {
+                boolean result = candidate.scan(buffer, from, to, record);
+                detect(candidate);
+                return result;
+            } catch (AccessLogParseException e) {
+                // Report the failure of the format which recognized the structure of the line, if any.
+                if (failure == null || (failure.getReason() == Reason.MALFORMED_LINE
+                        && e.getReason() != Reason.MALFORMED_LINE)) {
+                    failure = e;
+                }
+                record.clear(buffer);
+            }
+        }
+        throw failure;
+    }
+
+    private void detect(LogFormat format) {
+        detected = format;
+        consecutiveFailures = 0;
+        log.info("Detected the {}.", format.getName());
+    }
+
+}
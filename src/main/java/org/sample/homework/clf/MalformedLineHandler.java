@@ -0,0 +1,99 @@
+package org.sample.homework.clf;
+
+import lombok.extern.slf4j.Slf4j;
+import org.sample.homework.metrics.PipelineMetrics;
+import org.sample.homework.output.DeadLetterWriter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * This class is responsible for handling the lines which couldn't be parsed.
+ * <p>
+ * Every failure is counted by reason (see {@link PipelineMetrics#getParseErrorsByReason()}), but at most one failure is
+ * logged per {@link MalformedLineHandler#LOG_INTERVAL_NANOS}, along with the number of failures which have not been
+ * logged since the previous one. This keeps the cost of a failure low and the log readable even when every line fails.
+ * The rejected lines can also be kept in a {@link DeadLetterWriter} for later inspection.
+ */
+@Slf4j
+public class MalformedLineHandler {
+
+    /**
+     * Minimum delay between two logged failures.
+     */
+    static final long LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    /**
+     * Maximum number of characters of a line which are logged.
+     */
+    private static final int MAX_LOGGED_LENGTH = 200;
+
+    /**
+     * Where the rejected lines are kept, or <tt>null</tt>.
+     */
+    private final DeadLetterWriter deadLetters;
+
+    /**
+     * The time source, {@link System#nanoTime()} unless testing.
+     */
+    private final LongSupplier nanoTime;
+
+    /**
+     * The time from which the next failure can be logged.
+     */
+    private final AtomicLong nextLogNanos;
+
+    /**
+     * Number of failures which have not been logged since the previous logged one.
+     */
+    private final LongAdder suppressed = new LongAdder();
+
+    /**
+     * Creates a handler which doesn't keep the rejected lines.
+     */
+    public MalformedLineHandler() {
+        this(null);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param deadLetters where the rejected lines are kept, or <tt>null</tt> to drop them
+     */
+    public MalformedLineHandler(DeadLetterWriter deadLetters) {
+        this(deadLetters, System::nanoTime);
+    }
+
+    MalformedLineHandler(DeadLetterWriter deadLetters, LongSupplier nanoTime) {
+        this.deadLetters = deadLetters;
+        this.nanoTime = nanoTime;
+        this.nextLogNanos = new AtomicLong(nanoTime.getAsLong());
+    }
+
+    /**
+     * Handles a line which couldn't be parsed.
+     *
+     * @param line      the rejected line
+     * @param exception why the line couldn't be parsed
+     * @return <tt>true</tt> if the failure has been logged
+     */
+    public boolean handle(String line, AccessLogParseException exception) {
+        PipelineMetrics.get().incrementParseErrors(exception.getReason());
+        if (deadLetters != null) {
+            deadLetters.offer(line);
+        }
+        long now = nanoTime.getAsLong();
+        long next = nextLogNanos.get();
+        if (now - next < 0 || !nextLogNanos.compareAndSet(next, now + LOG_INTERVAL_NANOS)) {
+            suppressed.increment();
+            return false;
+        }
+        log.warn("Ignoring unparsable log line ({} {}), {} more ignored since the previous report: {}",
+                exception.getReason(), exception.getMessage(), suppressed.sumThenReset(),
+                line.length() > MAX_LOGGED_LENGTH ? line.substring(0, MAX_LOGGED_LENGTH) + "..." : line);
+        return true;
+    }
+
+}
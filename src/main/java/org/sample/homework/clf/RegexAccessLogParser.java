@@ -1,6 +1,7 @@
 package org.sample.homework.clf;
 
 import lombok.NonNull;
+import org.sample.homework.clf.AccessLogParseException.Reason;
 import org.sample.homework.util.DateTimeUtils;
 
 import java.time.ZonedDateTime;
@@ -54,12 +55,14 @@ public class RegexAccessLogParser implements AccessLogParser {
                         .bytes(parseContentSize(matcher.group(9)))
                         .build();
             } catch (DateTimeParseException ex) {
-                throw new AccessLogParseException("Invalid strftime format!", ex);
+                throw new AccessLogParseException(Reason.INVALID_DATE, "Invalid strftime format!", ex);
+            } catch (NumberFormatException ex) {
+                throw new AccessLogParseException(Reason.INVALID_NUMBER, "Invalid content size!", ex);
             }
         }
 
         // No match means the line format doesn't respect the Common Log Format.
-        throw new AccessLogParseException("Invalid Common Log Format log line: " + line + '!');
+        throw new AccessLogParseException(Reason.MALFORMED_LINE, "Invalid Common Log Format log line!");
     }
 
 }
@@ -0,0 +1,51 @@
+package org.sample.homework.clf;
+
+import lombok.NonNull;
+import org.sample.homework.util.Swar;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The Combined Log Format preceded by the virtual host and the port which served the request (the
+ * <tt>vhost_combined</tt> format of the Apache HTTP Server), such as
+ * <tt>www.example.com:443 127.0.0.1 - - [10/Oct/2000:13:55:36 -0700] "GET / HTTP/1.1" 200 2326 "-" "curl/7.64.1"</tt>.
+ * <p>
+ * The port is not part of the virtual host field, and is optional.
+ */
+public class VirtualHostCombinedLogFormat extends CombinedLogFormat {
+
+    /**
+     * Creates a format recording every field.
+     */
+    public VirtualHostCombinedLogFormat() {
+        this(EnumSet.allOf(AccessLogField.class));
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param projection the fields to record, not <tt>null</tt>
+     */
+    public VirtualHostCombinedLogFormat(@NonNull Set<AccessLogField> projection) {
+        super("Combined Log Format with virtual host", projection);
+    }
+
+    @Override
+    public boolean scan(@NonNull byte[] buffer, int from, int to, @NonNull LazyAccessLogRecord record)
+            throws AccessLogParseException {
+        int space = Swar.indexOf(buffer, from, to, (byte) ' ');
+        if (space <= from) {
+            throw malformed();
+        }
+        // Strip the port, if any.
+        int i = space - 1;
+        while (i > from && isDigit(buffer[i])) {
+            --i;
+        }
+        int end = i > from && buffer[i] == ':' ? i : space;
+        field(record, AccessLogField.VIRTUAL_HOST, from, end);
+        return super.scan(buffer, space + 1, to, record);
+    }
+
+}
@@ -0,0 +1,247 @@
+package org.sample.homework.clf;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.sample.homework.clf.AccessLogParseException.Reason;
+import org.sample.homework.util.DelimiterIndex;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Month;
+import java.time.Year;
+import java.util.*;
+
+/**
+ * The W3C Extended Log File Format (the default format of IIS), whose columns are described by a
+ * <tt>#Fields:</tt> directive, such as:
+ * <pre>
+ * #Fields: date time s-ip cs-method cs-uri-stem cs-uri-query s-port cs-username c-ip cs(User-Agent) sc-status
+ * 2019-05-09 16:00:39 10.0.0.1 GET /pages/create - 80 - 10.0.0.2 Mozilla/5.0+(Windows+NT+10.0) 200
+ * </pre>
+ * The <tt>date</tt>, <tt>time</tt> (UTC) and <tt>sc-status</tt> columns are required. Lines are only scanned up to
+ * the last column of the projection: the unknown columns, the columns which are not part of the projection and the
+ * columns following the last useful one are skipped.
+ */
+@Slf4j
+public class W3cExtendedLogFormat extends AbstractLogFormat {
+
+    /**
+     * Column codes, text fields are coded from {@link W3cExtendedLogFormat#TEXT} by ordinal.
+     */
+    private static final int SKIP = 0;
+    private static final int DATE = 1;
+    private static final int TIME = 2;
+    private static final int STATUS = 3;
+    private static final int BYTES = 4;
+    private static final int TEXT = 5;
+
+    private static final AccessLogField[] FIELDS = AccessLogField.values();
+
+    /**
+     * Codes of the supported columns, by lower case column name.
+     */
+    private static final Map<String, Integer> COLUMNS = new HashMap<>();
+
+    static {
+        COLUMNS.put("date", DATE);
+        COLUMNS.put("time", TIME);
+        COLUMNS.put("sc-status", STATUS);
+        COLUMNS.put("sc-bytes", BYTES);
+        COLUMNS.put("c-ip", TEXT + AccessLogField.HOST.ordinal());
+        COLUMNS.put("cs-username", TEXT + AccessLogField.USER.ordinal());
+        COLUMNS.put("cs-method", TEXT + AccessLogField.METHOD.ordinal());
+        COLUMNS.put("cs-uri-stem", TEXT + AccessLogField.ENDPOINT.ordinal());
+        COLUMNS.put("cs-version", TEXT + AccessLogField.PROTOCOL.ordinal());
+        COLUMNS.put("cs(referer)", TEXT + AccessLogField.REFERER.ordinal());
+        COLUMNS.put("cs(user-agent)", TEXT + AccessLogField.USER_AGENT.ordinal());
+        COLUMNS.put("s-sitename", TEXT + AccessLogField.VIRTUAL_HOST.ordinal());
+        COLUMNS.put("cs-host", TEXT + AccessLogField.VIRTUAL_HOST.ordinal());
+    }
+
+    private static final byte[] FIELDS_DIRECTIVE = "#Fields:".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Length of a date in the "yyyy-MM-dd" format and of a time in the "HH:mm:ss" format.
+     */
+    private static final int DATE_LENGTH = 10;
+    private static final int TIME_LENGTH = 8;
+
+    /**
+     * The code of every column described by the last <tt>#Fields:</tt> directive, <tt>null</tt> until one is read.
+     */
+    private int[] columns;
+
+    /**
+     * The index of the last column to scan.
+     */
+    private int lastColumn;
+
+    /**
+     * The column separators of the line being scanned.
+     */
+    private final DelimiterIndex spaces = new DelimiterIndex((byte) ' ');
+
+    /**
+     * The last decoded date, reused while lines share the same day.
+     */
+    private final byte[] lastDate = new byte[DATE_LENGTH];
+    private boolean lastDateValid = false;
+    private long lastEpochDay;
+
+    /**
+     * Creates a format recording every field.
+     */
+    public W3cExtendedLogFormat() {
+        this(EnumSet.allOf(AccessLogField.class));
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param projection the fields to record, not <tt>null</tt>
+     */
+    public W3cExtendedLogFormat(@NonNull Set<AccessLogField> projection) {
+        super("W3C Extended Log Format", projection);
+    }
+
+    /**
+     * Tells whether a <tt>#Fields:</tt> directive has been read.
+     *
+     * @return <tt>true</tt> if lines can be scanned
+     */
+    public boolean isConfigured() {
+        return columns != null;
+    }
+
+    @Override
+    public boolean scan(@NonNull byte[] buffer, int from, int to, @NonNull LazyAccessLogRecord record)
+            throws AccessLogParseException {
+        if (from < to && buffer[from] == '#') {
+            if (to - from >= FIELDS_DIRECTIVE.length && rangeEquals(FIELDS_DIRECTIVE, buffer, from)) {
+                configure(new String(buffer, from + FIELDS_DIRECTIVE.length, to - from - FIELDS_DIRECTIVE.length,
+                        StandardCharsets.US_ASCII));
+            }
+            // Other directives (#Software, #Version, #Date, #Remark) are ignored.
+            return false;
+        }
+        if (columns == null) {
+            throw new AccessLogParseException(Reason.MALFORMED_LINE, "Missing W3C #Fields directive!");
+        }
+        int date = -1;
+        int dateEnd = -1;
+        int time = -1;
+        int timeEnd = -1;
+        int[] spaces = this.spaces.index(buffer, from, to).getOffsets();
+        int count = this.spaces.getSize();
+        int start = from;
+        for (int column = 0; column <= lastColumn; column++) {
+            int i = column < count ? spaces[column] : to;
+            if (i == start || (column < lastColumn && i >= to)) {
+                throw malformed();
+            }
+            int code = columns[column];
+            switch (code) {
+                case SKIP:
+                    break;
+                case DATE:
+                    date = start;
+                    dateEnd = i;
+                    break;
+                case TIME:
+                    time = start;
+                    timeEnd = i;
+                    break;
+                case STATUS:
+                    record.setStatus(parseStatus(buffer, start, i));
+                    break;
+                case BYTES:
+                    record.setBytes(parseBytes(buffer, start, i));
+                    break;
+                default:
+                    field(record, FIELDS[code - TEXT], start, i);
+            }
+            start = i + 1;
+        }
+        // The date is decoded last, so that lines with missing columns are reported as malformed.
+        if (dateEnd - date != DATE_LENGTH || timeEnd - time != TIME_LENGTH) {
+            throw invalidDate();
+        }
+        record.setTime(decodeDate(buffer, date) * 86_400_000L + decodeTime(buffer, time) * 1000L, 0);
+        return true;
+    }
+
+    /**
+     * Reads the columns of a <tt>#Fields:</tt> directive.
+     *
+     * @param fields the space separated column names
+     * @throws AccessLogParseException if a required column is missing, in which case lines are rejected until the
+     *                                 next valid directive
+     */
+    private void configure(String fields) throws AccessLogParseException {
+        columns = null;
+        String[] names = fields.trim().split("\\s+");
+        int[] codes = new int[names.length];
+        int last = -1;
+        Set<Integer> required = new HashSet<>(Arrays.asList(DATE, TIME, STATUS));
+        for (int i = 0; i < names.length; i++) {
+            int code = COLUMNS.getOrDefault(names[i].toLowerCase(Locale.ROOT), SKIP);
+            if (code >= TEXT && !isProjected(FIELDS[code - TEXT])) {
+                code = SKIP;
+            }
+            codes[i] = code;
+            if (code != SKIP) {
+                required.remove(code);
+                last = i;
+            }
+        }
+        if (!required.isEmpty()) {
+            throw new AccessLogParseException(Reason.MALFORMED_LINE,
+                    "W3C #Fields directive without date, time or sc-status: " + fields);
+        }
+        columns = codes;
+        lastColumn = last;
+        log.info("Reading W3C extended log lines with fields {}.", fields.trim());
+    }
+
+    /**
+     * Decodes a date in the "yyyy-MM-dd" format.
+     *
+     * @return the number of days since 1970-01-01
+     */
+    private long decodeDate(byte[] buffer, int from) throws AccessLogParseException {
+        if (lastDateValid && rangeEquals(lastDate, buffer, from)) {
+            return lastEpochDay;
+        }
+        if (buffer[from + 4] != '-' || buffer[from + 7] != '-') {
+            throw invalidDate();
+        }
+        int year = digits(buffer, from, 4);
+        int month = digits(buffer, from + 5, 2);
+        int day = digits(buffer, from + 8, 2);
+        if (month < 1 || month > 12 || day < 1 || day > Month.of(month).length(Year.isLeap(year))) {
+            throw invalidDate();
+        }
+        System.arraycopy(buffer, from, lastDate, 0, DATE_LENGTH);
+        lastEpochDay = epochDay(year, month, day);
+        lastDateValid = true;
+        return lastEpochDay;
+    }
+
+    /**
+     * Decodes a time in the "HH:mm:ss" format.
+     *
+     * @return the number of seconds since midnight
+     */
+    private static int decodeTime(byte[] buffer, int from) throws AccessLogParseException {
+        if (buffer[from + 2] != ':' || buffer[from + 5] != ':') {
+            throw invalidDate();
+        }
+        int hour = digits(buffer, from, 2);
+        int minute = digits(buffer, from + 3, 2);
+        int second = digits(buffer, from + 6, 2);
+        if (hour > 23 || minute > 59 || second > 59) {
+            throw invalidDate();
+        }
+        return hour * 3600 + minute * 60 + second;
+    }
+
+}
@@ -0,0 +1,187 @@
+package org.sample.homework.cluster;
+
+import com.google.common.eventbus.Subscribe;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.sample.homework.stats.TrafficStatistics;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is responsible for shipping the traffic statistics of every window frame of this node to the aggregator
+ * (see {@link ClusterAggregator}), so that alerts can be computed over the whole fleet.
+ * <p>
+ * Statistics are encoded on the publishing thread and queued, a background thread sends them and reconnects whenever
+ * the aggregator can't be reached. While it can't, the oldest partials are dropped once the queue is full. Partials
+ * written to a connection which then breaks are lost: the aggregator doesn't wait for missing partials anyway.
+ */
+@Slf4j
+public class ClusterAgent implements Closeable {
+
+    /**
+     * The number of partials kept while the aggregator can't be reached: an hour of 10 seconds window frames.
+     */
+    private static final int QUEUE_SIZE = 360;
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+
+    private static final long MIN_RETRY_DELAY_MILLIS = 500;
+    private static final long MAX_RETRY_DELAY_MILLIS = 30_000;
+
+    /**
+     * The name of this agent, as reported to the aggregator.
+     */
+    private final String name;
+
+    /**
+     * The address of the aggregator, resolved again on every connection.
+     */
+    private final String host;
+    private final int port;
+
+    /**
+     * The encoded partials waiting to be sent.
+     */
+    private final BlockingDeque<byte[]> partials = new LinkedBlockingDeque<>(QUEUE_SIZE);
+
+    /**
+     * The reusable buffer partials are encoded into, only used by the publishing thread.
+     */
+    private ByteBuffer buffer = ByteBuffer.allocate(4096);
+
+    /**
+     * Number of partials dropped because the queue was full.
+     */
+    private final AtomicLong droppedPartials = new AtomicLong();
+
+    private final Thread sender;
+
+    private volatile boolean running = true;
+
+    private volatile Socket socket;
+
+    /**
+     * Class constructor. Partials are sent once {@link ClusterAgent#start()} is called.
+     *
+     * @param name the name of this agent, not <tt>null</tt>
+     * @param host the host name of the aggregator, not <tt>null</tt>
+     * @param port the port of the aggregator
+     */
+    public ClusterAgent(@NonNull String name, @NonNull String host, int port) {
+        this.name = name;
+        this.host = host;
+        this.port = port;
+        this.sender = new Thread(this::run, "cluster-agent-thread");
+        this.sender.setDaemon(true);
+    }
+
+    /**
+     * Starts sending partials.
+     */
+    public void start() {
+        sender.start();
+    }
+
+    /**
+     * Returns the number of partials dropped because the aggregator couldn't be reached for too long.
+     *
+     * @return the number of dropped partials
+     */
+    public long getDroppedPartials() {
+        return droppedPartials.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        sender.interrupt();
+        Socket current = socket;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    /**
+     * Function to receive traffic statistics events from the event bus.
+     *
+     * @param statistics the traffic statistics event
+     */
+    @Subscribe
+    public void handleTrafficStatistics(@NonNull TrafficStatistics statistics) {
+        byte[] partial = encode(statistics);
+        while (!partials.offerLast(partial)) {
+            if (partials.pollFirst() != null && droppedPartials.getAndIncrement() == 0) {
+                log.warn("The aggregator can't keep up, dropping the oldest partials.");
+            }
+        }
+    }
+
+    private byte[] encode(TrafficStatistics statistics) {
+        while (true) {
+            buffer.clear();
+            try {
+                ClusterCodec.encodePartial(buffer, statistics);
+                return Arrays.copyOf(buffer.array(), buffer.position());
+            } catch (BufferOverflowException e) {
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+            }
+        }
+    }
+
+    /**
+     * Sends the queued partials, reconnecting with an exponential backoff.
+     */
+    private void run() {
+        long retryDelay = MIN_RETRY_DELAY_MILLIS;
+        while (running) {
+            try (Socket connection = new Socket()) {
+                socket = connection;
+                connection.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+                connection.setTcpNoDelay(true);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+                ClusterCodec.writeHello(out, name);
+                log.info("Agent {} connected to the aggregator {}:{}.", name, host, port);
+                retryDelay = MIN_RETRY_DELAY_MILLIS;
+                while (running) {
+                    byte[] partial = partials.takeFirst();
+                    try {
+                        out.writeInt(partial.length);
+                        out.write(partial);
+                        out.flush();
+                    } catch (IOException e) {
+                        // Keep the partial for the next connection, unless newer ones filled the queue meanwhile.
+                        partials.offerFirst(partial);
+                        throw e;
+                    }
+                }
+            } catch (IOException e) {
+                if (running) {
+                    log.warn("Can't reach the aggregator {}:{}, retrying in {} ms: {}", host, port, retryDelay,
+                            e.getMessage());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                Thread.sleep(retryDelay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            retryDelay = Math.min(retryDelay * 2, MAX_RETRY_DELAY_MILLIS);
+        }
+    }
+
+}
@@ -0,0 +1,382 @@
+package org.sample.homework.cluster;
+
+import com.google.common.eventbus.EventBus;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.sample.homework.metrics.PipelineMetrics;
+import org.sample.homework.sketch.HyperLogLog;
+import org.sample.homework.sketch.TopKSketch;
+import org.sample.homework.stats.TrafficStatistics;
+import org.sample.homework.stats.TrafficStatisticsManager;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is responsible for merging the partial traffic statistics sent by the agents (see {@link ClusterAgent})
+ * into fleet-wide traffic statistics, published to the event bus like the statistics of a single node.
+ * <p>
+ * Partials are merged by time bucket: a partial belongs to the bucket ending at or after its window end. A bucket is
+ * published once every connected agent sent its partial, or once the lateness elapsed since its first partial, so a
+ * missing or stalled agent only delays the fleet by the lateness. Buckets are published in order, the buckets no agent
+ * sent anything for being published empty, and partials arriving after their bucket has been published are dropped.
+ * <p>
+ * Agents must use the same report interval as the aggregator.
+ */
+@Slf4j
+public class ClusterAggregator implements Closeable {
+
+    /**
+     * The default time a bucket waits for the partials of the agents which didn't send theirs yet.
+     */
+    public static final Duration DEFAULT_LATENESS = Duration.ofSeconds(2);
+
+    /**
+     * How often the buckets waiting for missing partials are checked.
+     */
+    private static final long CHECK_PERIOD_MILLIS = 100;
+
+    /**
+     * The largest gap filled with empty buckets, larger gaps are only reported.
+     */
+    private static final int MAX_EMPTY_BUCKETS = 1000;
+
+    /**
+     * The length of a bucket in milliseconds.
+     */
+    private final long periodMillis;
+
+    private final long latenessNanos;
+
+    /**
+     * The event bus which is used to publish the merged traffic statistics.
+     */
+    private final EventBus eventBus;
+
+    private final ServerSocket serverSocket;
+
+    /**
+     * Number of open connections by agent name.
+     */
+    private final Map<String, Integer> agents = new HashMap<>();
+
+    /**
+     * The buckets waiting to be published, by end in epoch milliseconds.
+     */
+    private final TreeMap<Long, Bucket> buckets = new TreeMap<>();
+
+    /**
+     * The end of the last published bucket, or -1 if none.
+     */
+    private long lastBucketEnd = -1;
+
+    /**
+     * Number of partials dropped because their bucket was already published.
+     */
+    private long latePartials;
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cluster-timer-thread");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Class constructor. Agents are accepted once {@link ClusterAggregator#start()} is called.
+     *
+     * @param port                 the port to listen on, 0 to pick a free port
+     * @param refreshPeriodSeconds the report interval of the agents in seconds
+     * @param eventBus             the event bus to use to publish the merged traffic statistics, not <tt>null</tt>
+     * @throws IOException if the port can't be bound
+     */
+    public ClusterAggregator(int port, int refreshPeriodSeconds, @NonNull EventBus eventBus) throws IOException {
+        this(port, refreshPeriodSeconds, DEFAULT_LATENESS, eventBus);
+    }
+
+    /**
+     * Class constructor. Agents are accepted once {@link ClusterAggregator#start()} is called.
+     *
+     * @param port                 the port to listen on, 0 to pick a free port
+     * @param refreshPeriodSeconds the report interval of the agents in seconds
+     * @param lateness             how long a bucket waits for the missing partials, not <tt>null</tt>
+     * @param eventBus             the event bus to use to publish the merged traffic statistics, not <tt>null</tt>
+     * @throws IOException if the port can't be bound
+     */
+    public ClusterAggregator(int port,
+                             int refreshPeriodSeconds,
+                             @NonNull Duration lateness,
+                             @NonNull EventBus eventBus) throws IOException {
+        this.periodMillis = Duration.ofSeconds(refreshPeriodSeconds).toMillis();
+        this.latenessNanos = lateness.toNanos();
+        this.eventBus = eventBus;
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.bind(new InetSocketAddress(port));
+    }
+
+    /**
+     * Starts accepting agents.
+     */
+    public void start() {
+        Thread acceptor = new Thread(this::accept, "cluster-accept-thread");
+        acceptor.start();
+        timer.scheduleWithFixedDelay(this::publishDueBuckets, CHECK_PERIOD_MILLIS, CHECK_PERIOD_MILLIS,
+                TimeUnit.MILLISECONDS);
+        log.info("Aggregating agents on port {}.", getPort());
+    }
+
+    /**
+     * Returns the port agents connect to.
+     *
+     * @return the bound port
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Returns the number of agents currently connected.
+     *
+     * @return the number of connected agents
+     */
+    public synchronized int getConnectedAgents() {
+        return agents.size();
+    }
+
+    /**
+     * Returns the number of partials dropped because they arrived after their bucket was published.
+     *
+     * @return the number of late partials
+     */
+    public synchronized long getLatePartials() {
+        return latePartials;
+    }
+
+    @Override
+    public void close() throws IOException {
+        timer.shutdownNow();
+        serverSocket.close();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread reader = new Thread(() -> read(socket), "cluster-agent-" + socket.getRemoteSocketAddress());
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    log.warn("Failed to accept an agent.", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the partials of an agent until its connection is closed.
+     *
+     * @param socket the agent connection
+     */
+    private void read(Socket socket) {
+        String agent = null;
+        try (Socket connection = socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()))) {
+            agent = ClusterCodec.readHello(in);
+            connected(agent);
+            while (true) {
+                int length = in.readInt();
+                if (length <= 0 || length > ClusterCodec.MAX_FRAME_SIZE) {
+                    throw new IOException("Invalid frame length " + length + "!");
+                }
+                byte[] frame = new byte[length];
+                in.readFully(frame);
+                receive(agent, ClusterCodec.decodePartial(ByteBuffer.wrap(frame)));
+            }
+        } catch (EOFException e) {
+            log.info("Agent {} disconnected.", agent != null ? agent : socket.getRemoteSocketAddress());
+        } catch (IOException | RuntimeException e) {
+            log.warn("Dropping the connection of agent {}: {}", agent != null ? agent : socket.getRemoteSocketAddress(),
+                    e.getMessage());
+        } finally {
+            if (agent != null) {
+                disconnected(agent);
+            }
+        }
+    }
+
+    private synchronized void connected(String agent) {
+        agents.merge(agent, 1, Integer::sum);
+        log.info("Agent {} connected, {} agents connected.", agent, agents.size());
+    }
+
+    private synchronized void disconnected(String agent) {
+        if (agents.merge(agent, -1, Integer::sum) == 0) {
+            agents.remove(agent);
+        }
+        // The buckets may only have been waiting for this agent.
+        publishDueBuckets();
+    }
+
+    /**
+     * Merges a partial into its bucket.
+     *
+     * @param agent   the name of the agent which sent the partial
+     * @param partial the traffic statistics of a window frame of the agent
+     */
+    synchronized void receive(String agent, TrafficStatistics partial) {
+        long windowEnd = partial.getWindowEnd().toEpochMilli();
+        long bucketEnd = Math.floorDiv(windowEnd + periodMillis - 1, periodMillis) * periodMillis;
+        if (bucketEnd <= lastBucketEnd) {
+            ++latePartials;
+            log.debug("Dropping the late partial of agent {} ending at {}.", agent, partial.getWindowEnd());
+            return;
+        }
+        buckets.computeIfAbsent(bucketEnd, end -> new Bucket(System.nanoTime() + latenessNanos)).add(agent, partial);
+        publishDueBuckets();
+    }
+
+    /**
+     * Publishes the oldest buckets, as long as they are complete or waited long enough.
+     */
+    private synchronized void publishDueBuckets() {
+        long now = System.nanoTime();
+        while (!buckets.isEmpty()) {
+            Map.Entry<Long, Bucket> oldest = buckets.firstEntry();
+            Bucket bucket = oldest.getValue();
+            if (!bucket.agents.containsAll(agents.keySet()) && now - bucket.deadline < 0) {
+                return;
+            }
+            buckets.pollFirstEntry();
+            publish(oldest.getKey(), bucket);
+        }
+    }
+
+    private void publish(long bucketEnd, Bucket bucket) {
+        if (lastBucketEnd >= 0) {
+            long missing = (bucketEnd - lastBucketEnd) / periodMillis - 1;
+            if (missing > MAX_EMPTY_BUCKETS) {
+                log.warn("No partial received for {} buckets.", missing);
+            } else {
+                // No agent was connected during the gap: there was no traffic as far as the fleet knows.
+                for (long end = lastBucketEnd + periodMillis; end < bucketEnd; end += periodMillis) {
+                    post(new Bucket(0).toStatistics(end, periodMillis));
+                }
+            }
+        }
+        lastBucketEnd = bucketEnd;
+        post(bucket.toStatistics(bucketEnd, periodMillis));
+    }
+
+    private void post(TrafficStatistics statistics) {
+        PipelineMetrics.get().incrementStatisticsPublished();
+        eventBus.post(statistics);
+    }
+
+    /**
+     * The partials of a bucket, merged as they arrive.
+     */
+    private static class Bucket {
+
+        /**
+         * When the bucket is published even if partials are missing, in {@link System#nanoTime()} time.
+         */
+        private final long deadline;
+
+        private final Set<String> agents = new HashSet<>();
+
+        private final TrafficStatistics statistics = new TrafficStatistics();
+
+        private final TopKSketch sections = new TopKSketch(Collections.emptyMap(), 0);
+        private final TopKSketch userAgentFamilies = new TopKSketch(Collections.emptyMap(), 0);
+        private final TopKSketch refererDomains = new TopKSketch(Collections.emptyMap(), 0);
+        private final TopKSketch subnets = new TopKSketch(Collections.emptyMap(), 0);
+
+        /**
+         * The merged host sketch, <tt>null</tt> until a partial holding one is merged.
+         */
+        private HyperLogLog hosts;
+
+        /**
+         * The unique hosts of the partials without host sketch, which can only be added up.
+         */
+        private int unsketchedHosts;
+
+        /**
+         * The hits of every second of the window frame, added up across the partials holding them, <tt>null</tt>
+         * until one is merged. The busiest second of the cluster isn't the sum of the busiest seconds of the agents.
+         */
+        private int[] hitsBySecond;
+
+        Bucket(long deadline) {
+            this.deadline = deadline;
+        }
+
+        void add(String agent, TrafficStatistics partial) {
+            agents.add(agent);
+            statistics.setTotalRequestCount(statistics.getTotalRequestCount() + partial.getTotalRequestCount());
+            statistics.setValidRequestCount(statistics.getValidRequestCount() + partial.getValidRequestCount());
+            statistics.setBytesTransferred(statistics.getBytesTransferred() + partial.getBytesTransferred());
+            int[] hitsByStatusClass = statistics.getHitsByStatusClass();
+            for (int i = 0; i < hitsByStatusClass.length; i++) {
+                hitsByStatusClass[i] += partial.getHitsByStatusClass()[i];
+            }
+            statistics.setSampleRate(Math.max(statistics.getSampleRate(), partial.getSampleRate()));
+            partial.getHitsByMethod().forEach((method, hits) ->
+                    statistics.getHitsByMethod().merge(method, hits, Integer::sum));
+            sections.merge(partial.getSectionSketch() != null
+                    ? partial.getSectionSketch()
+                    : sketchOf(partial.getHitsBySection()));
+            userAgentFamilies.merge(sketchOf(partial.getHitsByUserAgentFamily()));
+            refererDomains.merge(sketchOf(partial.getHitsByRefererDomain()));
+            subnets.merge(sketchOf(partial.getHitsBySubnet()));
+            int[] partialHitsBySecond = partial.getHitsBySecond();
+            if (partialHitsBySecond != null) {
+                if (hitsBySecond == null) {
+                    hitsBySecond = new int[partialHitsBySecond.length];
+                }
+                for (int i = 0; i < Math.min(hitsBySecond.length, partialHitsBySecond.length); i++) {
+                    hitsBySecond[i] += partialHitsBySecond[i];
+                }
+            }
+            HyperLogLog hostSketch = partial.getHostSketch();
+            if (hostSketch != null && (hosts == null || hosts.getPrecision() == hostSketch.getPrecision())) {
+                if (hosts == null) {
+                    hosts = new HyperLogLog(hostSketch.getPrecision());
+                }
+                hosts.merge(hostSketch);
+            } else {
+                unsketchedHosts += partial.getUniqueHosts();
+            }
+        }
+
+        TrafficStatistics toStatistics(long end, long periodMillis) {
+            statistics.setWindowStart(Instant.ofEpochMilli(end - periodMillis));
+            statistics.setWindowEnd(Instant.ofEpochMilli(end));
+            statistics.getHitsBySection().addAll(sections.top(TrafficStatisticsManager.TOP_HITS));
+            statistics.getHitsByUserAgentFamily().addAll(userAgentFamilies.top(TrafficStatisticsManager.TOP_HITS));
+            statistics.getHitsByRefererDomain().addAll(refererDomains.top(TrafficStatisticsManager.TOP_HITS));
+            statistics.getHitsBySubnet().addAll(subnets.top(TrafficStatisticsManager.TOP_HITS));
+            statistics.setUniqueHosts((int) (hosts == null ? 0 : hosts.estimate()) + unsketchedHosts);
+            statistics.setSectionSketch(sections);
+            statistics.setHostSketch(hosts);
+            statistics.setHitsBySecond(hitsBySecond);
+            return statistics;
+        }
+
+        private static TopKSketch sketchOf(List<Map.Entry<String, Integer>> topHits) {
+            Map<String, Integer> hits = new HashMap<>();
+            topHits.forEach(entry -> hits.put(entry.getKey(), entry.getValue()));
+            return new TopKSketch(hits, 0);
+        }
+    }
+
+}
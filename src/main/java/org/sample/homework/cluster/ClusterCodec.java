@@ -0,0 +1,239 @@
+package org.sample.homework.cluster;
+
+import lombok.experimental.UtilityClass;
+import org.sample.homework.sketch.HyperLogLog;
+import org.sample.homework.sketch.TopKSketch;
+import org.sample.homework.stats.TrafficStatistics;
+import org.sample.homework.stats.TrafficStatisticsManager;
+import org.sample.homework.util.VarInts;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Describes the binary protocol between the agents and the aggregator.
+ * <p>
+ * An agent connection starts with a hello: the magic number, the protocol version and the agent name. It is followed
+ * by frames, each one prefixed by its length (a 4 bytes integer) and starting with its type. A partial frame holds the
+ * traffic statistics of a window frame of the agent: its end and length, the counters, the hits by status class and
+ * by method, the section sketch, the host sketch, the top user agent families and referer domains, and the sampling
+ * rate of the agent when it was behind (see {@link TrafficStatistics#getSampleRate()}), the top subnets and the hits of
+ * every second of the window frame (see {@link TrafficStatistics#getHitsBySecond()}). Integers are varints and
+ * strings are inlined as UTF-8 bytes prefixed by their length.
+ * <p>
+ * Fields added by later versions are appended at the end of the frames, so that older aggregators can skip them.
+ */
+@UtilityClass
+class ClusterCodec {
+
+    /**
+     * Magic number identifying agent connections ("HWAG").
+     */
+    static final int MAGIC = 0x48574147;
+
+    /**
+     * Version of the protocol.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * Frame types.
+     */
+    static final int TYPE_PARTIAL = 1;
+
+    /**
+     * The largest accepted frame, in bytes.
+     */
+    static final int MAX_FRAME_SIZE = 1 << 20;
+
+    /**
+     * Writes the hello which starts an agent connection.
+     *
+     * @param out   the connection stream
+     * @param agent the agent name
+     * @throws IOException if the hello can't be written
+     */
+    static void writeHello(DataOutputStream out, String agent) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(agent);
+        out.flush();
+    }
+
+    /**
+     * Reads the hello which starts an agent connection.
+     *
+     * @param in the connection stream
+     * @return the agent name
+     * @throws IOException if the hello can't be read or if the protocol is not supported
+     */
+    static String readHello(DataInputStream in) throws IOException {
+        int magic = in.readInt();
+        int version = in.readInt();
+        if (magic != MAGIC || version != VERSION) {
+            throw new IOException("Unsupported agent protocol " + Integer.toHexString(magic) + " v" + version + "!");
+        }
+        return in.readUTF();
+    }
+
+    /**
+     * Encodes the traffic statistics of a window frame of an agent.
+     *
+     * @param buffer     the buffer to write to
+     * @param statistics the statistics to encode, whose sketches are used if computed
+     * @throws java.nio.BufferOverflowException if the buffer is too small
+     */
+    static void encodePartial(ByteBuffer buffer, TrafficStatistics statistics) {
+        buffer.put((byte) TYPE_PARTIAL);
+        Instant start = statistics.getWindowStart();
+        Instant end = statistics.getWindowEnd();
+        VarInts.writeUnsigned(buffer, end.toEpochMilli());
+        VarInts.writeUnsigned(buffer, start == null ? 0 : Duration.between(start, end).toMillis());
+        VarInts.writeUnsigned(buffer, statistics.getTotalRequestCount());
+        VarInts.writeUnsigned(buffer, statistics.getValidRequestCount());
+        VarInts.writeUnsigned(buffer, statistics.getBytesTransferred());
+        VarInts.writeUnsigned(buffer, statistics.getUniqueHosts());
+        for (int hits : statistics.getHitsByStatusClass()) {
+            VarInts.writeUnsigned(buffer, hits);
+        }
+        encodeHits(buffer, statistics.getHitsByMethod());
+        TopKSketch sections = statistics.getSectionSketch();
+        if (sections == null) {
+            sections = sketchOf(statistics.getHitsBySection());
+        }
+        VarInts.writeUnsigned(buffer, sections.getThreshold());
+        encodeHits(buffer, sections.getHits());
+        if (statistics.getHostSketch() == null) {
+            buffer.put((byte) 0);
+        } else {
+            statistics.getHostSketch().encode(buffer);
+        }
+        encodeHits(buffer, toMap(statistics.getHitsByUserAgentFamily()));
+        encodeHits(buffer, toMap(statistics.getHitsByRefererDomain()));
+        VarInts.writeUnsigned(buffer, statistics.getSampleRate());
+        encodeHits(buffer, toMap(statistics.getHitsBySubnet()));
+        int[] hitsBySecond = statistics.getHitsBySecond();
+        VarInts.writeUnsigned(buffer, hitsBySecond == null ? 0 : hitsBySecond.length);
+        if (hitsBySecond != null) {
+            for (int hits : hitsBySecond) {
+                VarInts.writeUnsigned(buffer, hits);
+            }
+        }
+    }
+
+    /**
+     * Decodes the traffic statistics encoded by {@link ClusterCodec#encodePartial}.
+     *
+     * @param buffer the buffer to read from, limited to the frame
+     * @return the decoded statistics, with their section sketch, and their host sketch if the agent computed it
+     * @throws IllegalArgumentException          if the frame is not a valid partial
+     * @throws java.nio.BufferUnderflowException if the frame is truncated
+     */
+    static TrafficStatistics decodePartial(ByteBuffer buffer) {
+        int type = buffer.get();
+        if (type != TYPE_PARTIAL) {
+            throw new IllegalArgumentException("Unknown frame type " + type + "!");
+        }
+        TrafficStatistics statistics = new TrafficStatistics();
+        long end = VarInts.readUnsigned(buffer);
+        statistics.setWindowEnd(Instant.ofEpochMilli(end));
+        statistics.setWindowStart(Instant.ofEpochMilli(end - VarInts.readUnsigned(buffer)));
+        statistics.setTotalRequestCount(VarInts.readUnsignedInt(buffer));
+        statistics.setValidRequestCount(VarInts.readUnsignedInt(buffer));
+        statistics.setBytesTransferred(VarInts.readUnsigned(buffer));
+        statistics.setUniqueHosts(VarInts.readUnsignedInt(buffer));
+        int[] hitsByStatusClass = statistics.getHitsByStatusClass();
+        for (int i = 0; i < hitsByStatusClass.length; i++) {
+            hitsByStatusClass[i] = VarInts.readUnsignedInt(buffer);
+        }
+        statistics.getHitsByMethod().putAll(decodeHits(buffer));
+        int threshold = VarInts.readUnsignedInt(buffer);
+        TopKSketch sections = new TopKSketch(decodeHits(buffer), threshold);
+        statistics.setSectionSketch(sections);
+        statistics.getHitsBySection().addAll(sections.top(TrafficStatisticsManager.TOP_HITS));
+        if (buffer.get(buffer.position()) == 0) {
+            buffer.get();
+        } else {
+            statistics.setHostSketch(HyperLogLog.decode(buffer));
+        }
+        addHits(decodeHits(buffer), statistics.getHitsByUserAgentFamily());
+        addHits(decodeHits(buffer), statistics.getHitsByRefererDomain());
+        if (buffer.hasRemaining()) {
+            statistics.setSampleRate(Math.max(1, VarInts.readUnsignedInt(buffer)));
+        }
+        if (buffer.hasRemaining()) {
+            addHits(decodeHits(buffer), statistics.getHitsBySubnet());
+        }
+        if (buffer.hasRemaining()) {
+            int seconds = VarInts.readUnsignedInt(buffer);
+            // Every second takes at least a byte, a larger count would only allocate a huge array.
+            if (seconds > buffer.remaining()) {
+                throw new IllegalArgumentException("Invalid number of seconds " + seconds + "!");
+            }
+            if (seconds > 0) {
+                int[] hitsBySecond = new int[seconds];
+                for (int i = 0; i < seconds; i++) {
+                    hitsBySecond[i] = VarInts.readUnsignedInt(buffer);
+                }
+                statistics.setHitsBySecond(hitsBySecond);
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Creates a sketch from top hits: when the list is full, the dropped keys have at most as many hits as the last
+     * one.
+     */
+    private static TopKSketch sketchOf(List<Map.Entry<String, Integer>> topHits) {
+        int threshold = topHits.size() < TrafficStatisticsManager.TOP_HITS
+                ? 0
+                : topHits.get(topHits.size() - 1).getValue();
+        return new TopKSketch(toMap(topHits), threshold);
+    }
+
+    private static Map<String, Integer> toMap(List<Map.Entry<String, Integer>> hits) {
+        Map<String, Integer> map = new HashMap<>();
+        hits.forEach(entry -> map.put(entry.getKey(), entry.getValue()));
+        return map;
+    }
+
+    private static void addHits(Map<String, Integer> hits, List<Map.Entry<String, Integer>> topHits) {
+        topHits.addAll(new TopKSketch(hits, 0).top(TrafficStatisticsManager.TOP_HITS));
+    }
+
+    private static void encodeHits(ByteBuffer buffer, Map<String, Integer> hits) {
+        VarInts.writeUnsigned(buffer, hits.size());
+        for (Map.Entry<String, Integer> entry : hits.entrySet()) {
+            byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            VarInts.writeUnsigned(buffer, key.length);
+            buffer.put(key);
+            VarInts.writeUnsigned(buffer, entry.getValue());
+        }
+    }
+
+    private static Map<String, Integer> decodeHits(ByteBuffer buffer) {
+        int size = VarInts.readUnsignedInt(buffer);
+        Map<String, Integer> hits = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            int length = VarInts.readUnsignedInt(buffer);
+            if (length > buffer.remaining()) {
+                throw new IllegalArgumentException("Invalid string length " + length + "!");
+            }
+            String key = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                    StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            hits.put(key, VarInts.readUnsignedInt(buffer));
+        }
+        return hits;
+    }
+
+}
@@ -0,0 +1,275 @@
+package org.sample.homework.history;
+
+import lombok.experimental.UtilityClass;
+import org.sample.homework.alerts.TrafficAlert;
+import org.sample.homework.stats.TrafficStatistics;
+import org.sample.homework.util.VarInts;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * Describes the history segment files and their binary encoding.
+ * <p>
+ * History is partitioned into one segment per hour, made of three files:
+ * <ul>
+ * <li><tt>.seg</tt>: the events, each one framed by its length. The header byte holds the event type and tells
+ * whether the timestamp is absolute (sync point) or a delta from the previous event. All integers are varints.</li>
+ * <li><tt>.dict</tt>: the strings (sections, methods, user agent families and referer domains) referenced by their
+ * index from the events.</li>
+ * <li><tt>.idx</tt>: a sparse time index, i.e. the timestamp and offset of every sync point.</li>
+ * </ul>
+ */
+@UtilityClass
+class HistoryCodec {
+
+    /**
+     * Event types.
+     */
+    static final int TYPE_STATISTICS = 1;
+    static final int TYPE_ALERT = 2;
+
+    /**
+     * Header flag telling that the event timestamp is absolute.
+     */
+    static final int SYNC_FLAG = 0x80;
+
+    /**
+     * Number of events between two sync points.
+     */
+    static final int SYNC_INTERVAL = 64;
+
+    /**
+     * Size of a time index entry: timestamp and offset.
+     */
+    static final int INDEX_ENTRY_SIZE = 16;
+
+    /**
+     * Duration covered by a segment.
+     */
+    static final long SEGMENT_MILLIS = Duration.ofHours(1).toMillis();
+
+    static final String SEGMENT_PREFIX = "history-";
+    static final String SEGMENT_SUFFIX = ".seg";
+    static final String INDEX_SUFFIX = ".idx";
+    static final String DICTIONARY_SUFFIX = ".dict";
+
+    private static final DateTimeFormatter SEGMENT_FORMATTER =
+            DateTimeFormatter.ofPattern("yyyyMMddHH").withZone(ZoneOffset.UTC);
+
+    /**
+     * Returns the base name (without suffix) of the segment covering the given time.
+     *
+     * @param segment the start of the segment in epoch milliseconds
+     * @return the segment base name
+     */
+    static String segmentName(long segment) {
+        return SEGMENT_PREFIX + SEGMENT_FORMATTER.format(Instant.ofEpochMilli(segment));
+    }
+
+    /**
+     * Returns the start of the segment named after the given file, or -1 if the file isn't a segment.
+     *
+     * @param fileName the file name to check
+     * @return the start of the segment in epoch milliseconds
+     */
+    static long parseSegmentName(String fileName) {
+        if (!fileName.startsWith(SEGMENT_PREFIX) || !fileName.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+        String hour = fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length());
+        if (hour.length() != 10) {
+            return -1;
+        }
+        try {
+            return ZonedDateTime.of(Integer.parseInt(hour.substring(0, 4)), Integer.parseInt(hour.substring(4, 6)),
+                    Integer.parseInt(hour.substring(6, 8)), Integer.parseInt(hour.substring(8, 10)), 0, 0, 0,
+                    ZoneOffset.UTC).toInstant().toEpochMilli();
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the start of the segment covering the given time.
+     *
+     * @param timestamp the time in epoch milliseconds
+     * @return the start of the segment in epoch milliseconds
+     */
+    static long segmentOf(long timestamp) {
+        return Math.floorDiv(timestamp, SEGMENT_MILLIS) * SEGMENT_MILLIS;
+    }
+
+    /**
+     * Encodes traffic statistics, without the event header.
+     *
+     * @param buffer     the buffer to write to
+     * @param statistics the statistics to encode, whose window end is the event timestamp
+     * @param dictionary returns the dictionary index of a string
+     */
+    static void encodeStatistics(ByteBuffer buffer, TrafficStatistics statistics, ToIntFunction<String> dictionary) {
+        Instant start = statistics.getWindowStart();
+        Instant end = statistics.getWindowEnd();
+        VarInts.writeUnsigned(buffer, start == null || end == null ? 0 : Duration.between(start, end).toMillis());
+        VarInts.writeUnsigned(buffer, statistics.getTotalRequestCount());
+        VarInts.writeUnsigned(buffer, statistics.getValidRequestCount());
+        VarInts.writeUnsigned(buffer, statistics.getBytesTransferred());
+        VarInts.writeUnsigned(buffer, statistics.getUniqueHosts());
+        encodeHits(buffer, statistics.getHitsBySection(), dictionary);
+        VarInts.writeUnsigned(buffer, statistics.getHitsByMethod().size());
+        for (Map.Entry<String, Integer> entry : statistics.getHitsByMethod().entrySet()) {
+            VarInts.writeUnsigned(buffer, dictionary.applyAsInt(entry.getKey()));
+            VarInts.writeUnsigned(buffer, entry.getValue());
+        }
+        // Added later at the end of the event, so that older events can still be decoded.
+        encodeHits(buffer, statistics.getHitsByUserAgentFamily(), dictionary);
+        encodeHits(buffer, statistics.getHitsByRefererDomain(), dictionary);
+        encodeHits(buffer, statistics.getHitsBySubnet(), dictionary);
+        VarInts.writeUnsigned(buffer, statistics.getPeakHitsPerSecond());
+        VarInts.writeUnsigned(buffer, statistics.getP95HitsPerSecond());
+        VarInts.writeUnsigned(buffer, statistics.getMinHitsPerSecond());
+        for (int hits : statistics.getHitsByStatusClass()) {
+            VarInts.writeUnsigned(buffer, hits);
+        }
+    }
+
+    private static void encodeHits(ByteBuffer buffer, List<Map.Entry<String, Integer>> hits,
+                                   ToIntFunction<String> dictionary) {
+        VarInts.writeUnsigned(buffer, hits.size());
+        for (Map.Entry<String, Integer> entry : hits) {
+            VarInts.writeUnsigned(buffer, dictionary.applyAsInt(entry.getKey()));
+            VarInts.writeUnsigned(buffer, entry.getValue());
+        }
+    }
+
+    /**
+     * Decodes traffic statistics encoded by {@link HistoryCodec#encodeStatistics}.
+     *
+     * @param buffer     the buffer to read from, limited to the event
+     * @param timestamp  the event timestamp in epoch milliseconds
+     * @param dictionary the segment dictionary
+     * @return the decoded statistics
+     */
+    static TrafficStatistics decodeStatistics(ByteBuffer buffer, long timestamp, List<String> dictionary) {
+        TrafficStatistics statistics = new TrafficStatistics();
+        statistics.setWindowEnd(Instant.ofEpochMilli(timestamp));
+        statistics.setWindowStart(Instant.ofEpochMilli(timestamp - VarInts.readUnsigned(buffer)));
+        statistics.setTotalRequestCount(VarInts.readUnsignedInt(buffer));
+        statistics.setValidRequestCount(VarInts.readUnsignedInt(buffer));
+        statistics.setBytesTransferred(VarInts.readUnsigned(buffer));
+        statistics.setUniqueHosts(VarInts.readUnsignedInt(buffer));
+        decodeHits(buffer, statistics.getHitsBySection(), dictionary);
+        int methods = VarInts.readUnsignedInt(buffer);
+        for (int i = 0; i < methods; i++) {
+            String method = dictionary.get(VarInts.readUnsignedInt(buffer));
+            statistics.getHitsByMethod().put(method, VarInts.readUnsignedInt(buffer));
+        }
+        if (buffer.hasRemaining()) {
+            decodeHits(buffer, statistics.getHitsByUserAgentFamily(), dictionary);
+            decodeHits(buffer, statistics.getHitsByRefererDomain(), dictionary);
+        }
+        if (buffer.hasRemaining()) {
+            decodeHits(buffer, statistics.getHitsBySubnet(), dictionary);
+        }
+        if (buffer.hasRemaining()) {
+            statistics.setPeakHitsPerSecond(VarInts.readUnsignedInt(buffer));
+            statistics.setP95HitsPerSecond(VarInts.readUnsignedInt(buffer));
+            statistics.setMinHitsPerSecond(VarInts.readUnsignedInt(buffer));
+        }
+        if (buffer.hasRemaining()) {
+            int[] hitsByStatusClass = statistics.getHitsByStatusClass();
+            for (int i = 0; i < hitsByStatusClass.length; i++) {
+                hitsByStatusClass[i] = VarInts.readUnsignedInt(buffer);
+            }
+        }
+        return statistics;
+    }
+
+    private static void decodeHits(ByteBuffer buffer, List<Map.Entry<String, Integer>> hits, List<String> dictionary) {
+        int size = VarInts.readUnsignedInt(buffer);
+        for (int i = 0; i < size; i++) {
+            String key = dictionary.get(VarInts.readUnsignedInt(buffer));
+            hits.add(new AbstractMap.SimpleImmutableEntry<>(key, VarInts.readUnsignedInt(buffer)));
+        }
+    }
+
+    /**
+     * Encodes a traffic alert, without the event header.
+     *
+     * @param buffer the buffer to write to
+     * @param alert  the alert to encode, whose time is the event timestamp
+     */
+    static void encodeAlert(ByteBuffer buffer, TrafficAlert alert) {
+        buffer.put((byte) alert.getType().ordinal());
+        buffer.putFloat(alert.getHitsPerSecond());
+        buffer.put((byte) (alert.isEstimated() ? 1 : 0));
+    }
+
+    /**
+     * Decodes a traffic alert encoded by {@link HistoryCodec#encodeAlert}.
+     *
+     * @param buffer    the buffer to read from
+     * @param timestamp the event timestamp in epoch milliseconds
+     * @return the decoded alert
+     */
+    static TrafficAlert decodeAlert(ByteBuffer buffer, long timestamp) {
+        TrafficAlert.AlertType type = TrafficAlert.AlertType.values()[buffer.get()];
+        float hitsPerSecond = buffer.getFloat();
+        boolean estimated = buffer.hasRemaining() && buffer.get() != 0;
+        return new TrafficAlert(type, hitsPerSecond,
+                ZonedDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault()), estimated);
+    }
+
+    /**
+     * Encodes a dictionary entry.
+     *
+     * @param buffer the buffer to write to
+     * @param value  the dictionary string
+     */
+    static void encodeDictionaryEntry(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        VarInts.writeUnsigned(buffer, bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Reads a whole dictionary file.
+     *
+     * @param path the dictionary file
+     * @return the dictionary strings in index order, empty if the file doesn't exist
+     * @throws IOException if the file can't be read
+     */
+    static List<String> readDictionary(Path path) throws IOException {
+        List<String> dictionary = new ArrayList<>();
+        if (!Files.exists(path)) {
+            return dictionary;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        try {
+            while (buffer.hasRemaining()) {
+                int length = VarInts.readUnsignedInt(buffer);
+                byte[] bytes = new byte[length];
+                buffer.get(bytes);
+                dictionary.add(new String(bytes, StandardCharsets.UTF_8));
+            }
+        } catch (RuntimeException e) {
+            // Torn last entry: it can't be referenced by any complete event.
+        }
+        return dictionary;
+    }
+
+}
@@ -0,0 +1,26 @@
+package org.sample.homework.history;
+
+import org.sample.homework.alerts.TrafficAlert;
+import org.sample.homework.stats.TrafficStatistics;
+
+/**
+ * A listener to be used to get the events matching a {@link HistoryReader} query.
+ *
+ * @see HistoryReader#query(java.time.Instant, java.time.Instant, HistoryListener)
+ */
+public interface HistoryListener {
+
+    /**
+     * Handles traffic statistics read from the history.
+     *
+     * @param statistics the traffic statistics
+     */
+    void handleTrafficStatistics(TrafficStatistics statistics);
+
+    /**
+     * Handles a traffic alert read from the history.
+     *
+     * @param alert the traffic alert
+     */
+    void handleTrafficAlert(TrafficAlert alert);
+}
@@ -0,0 +1,162 @@
+package org.sample.homework.history;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.sample.homework.util.VarInts;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.TreeMap;
+
+import static org.sample.homework.history.HistoryCodec.*;
+
+/**
+ * This class is responsible for querying the history written by a {@link HistoryWriter}.
+ * <p>
+ * Only the segments overlapping the queried time range are opened. Segments are memory-mapped and their sparse time
+ * index gives the sync point to start decoding from, so only the pages holding the requested events are read.
+ */
+@Slf4j
+public class HistoryReader {
+
+    /**
+     * The folder holding the segments.
+     */
+    private final Path directory;
+
+    /**
+     * Class constructor.
+     *
+     * @param directory the folder holding the segments, not <tt>null</tt>
+     */
+    public HistoryReader(@NonNull Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Forwards every event whose timestamp is within the given range to the listener, in timestamp order.
+     *
+     * @param from     the beginning of the range (inclusive), not <tt>null</tt>
+     * @param to       the end of the range (exclusive), not <tt>null</tt>
+     * @param listener the listener to use, not <tt>null</tt>
+     * @throws IOException if the history can't be read
+     */
+    public void query(@NonNull Instant from, @NonNull Instant to, @NonNull HistoryListener listener)
+            throws IOException {
+        long fromMillis = from.toEpochMilli();
+        long toMillis = to.toEpochMilli();
+        for (Long segment : listSegments(fromMillis, toMillis).keySet()) {
+            querySegment(segmentName(segment), fromMillis, toMillis, listener);
+        }
+    }
+
+    /**
+     * Lists the segments overlapping the given range, sorted by time.
+     */
+    private TreeMap<Long, Path> listSegments(long from, long to) throws IOException {
+        TreeMap<Long, Path> segments = new TreeMap<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                long segment = parseSegmentName(file.getFileName().toString());
+                if (segment >= 0 && segment < to && segment + SEGMENT_MILLIS > from) {
+                    segments.put(segment, file);
+                }
+            }
+        }
+        return segments;
+    }
+
+    private void querySegment(String name, long from, long to, HistoryListener listener) throws IOException {
+        List<String> dictionary = readDictionary(directory.resolve(name + DICTIONARY_SUFFIX));
+        long start = findSyncPoint(directory.resolve(name + INDEX_SUFFIX), from);
+        try (FileChannel channel = FileChannel.open(directory.resolve(name + SEGMENT_SUFFIX), StandardOpenOption.READ)) {
+            if (start >= channel.size()) {
+                return;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.position((int) start);
+            long timestamp = 0;
+            while (buffer.hasRemaining()) {
+                int length = VarInts.readUnsignedInt(buffer);
+                if (length > buffer.remaining()) {
+                    // Torn last event.
+                    break;
+                }
+                ByteBuffer event = buffer.slice();
+                event.limit(length);
+                buffer.position(buffer.position() + length);
+
+                int header = event.get() & 0xFF;
+                long delta = VarInts.readSigned(event);
+                timestamp = (header & SYNC_FLAG) != 0 ? delta : timestamp + delta;
+                if (timestamp >= to) {
+                    // Events are written in time order (see HistoryWriter).
+                    break;
+                }
+                if (timestamp < from) {
+                    continue;
+                }
+                switch (header & ~SYNC_FLAG) {
+                    case TYPE_STATISTICS:
+                        listener.handleTrafficStatistics(decodeStatistics(event, timestamp, dictionary));
+                        break;
+                    case TYPE_ALERT:
+                        listener.handleTrafficAlert(decodeAlert(event, timestamp));
+                        break;
+                    default:
+                        log.warn("Skipping unknown history event type {} in {}.", header, name);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Stopped reading corrupted history segment " + name, e);
+        }
+    }
+
+    /**
+     * Returns the offset of the last sync point before or at the given time.
+     *
+     * @param indexPath the index file of the segment
+     * @param time      the time to look for in epoch milliseconds
+     * @return the offset to start decoding from
+     * @throws IOException if the index can't be read
+     */
+    private static long findSyncPoint(Path indexPath, long time) throws IOException {
+        if (!Files.exists(indexPath)) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+            int entries = (int) (channel.size() / INDEX_ENTRY_SIZE);
+            if (entries == 0) {
+                return 0;
+            }
+            MappedByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    (long) entries * INDEX_ENTRY_SIZE);
+            // Find the last entry whose timestamp is before or at the given time.
+            int low = 0;
+            int high = entries - 1;
+            int found = 0;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (index.getLong(middle * INDEX_ENTRY_SIZE) <= time) {
+                    found = middle;
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return index.getLong(found * INDEX_ENTRY_SIZE + 8);
+        }
+    }
+
+}
@@ -0,0 +1,376 @@
+package org.sample.homework.history;
+
+import com.google.common.eventbus.Subscribe;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.sample.homework.alerts.TrafficAlert;
+import org.sample.homework.stats.TrafficStatistics;
+import org.sample.homework.util.VarInts;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.sample.homework.history.HistoryCodec.*;
+
+/**
+ * This class is responsible for appending every published {@link TrafficStatistics} and {@link TrafficAlert} to
+ * time-partitioned history segments.
+ * <p>
+ * Events are written in time order, which the reader relies on: an event older than the last written one (e.g. an
+ * alert dated by the wall clock while past records are being caught up with, or a window frame replayed again after a
+ * restart) is dated by the last written timestamp instead, so that neither the segments nor their events go backward.
+ *
+ * @see HistoryCodec for the file format
+ * @see HistoryReader
+ */
+@Slf4j
+public class HistoryWriter implements Closeable {
+
+    /**
+     * The folder holding the segments.
+     */
+    private final Path directory;
+
+    /**
+     * Reusable buffers used to encode an event and the new dictionary entries it references.
+     */
+    private ByteBuffer eventBuffer = ByteBuffer.allocate(4096);
+    private ByteBuffer dictionaryBuffer = ByteBuffer.allocate(1024);
+    private final ByteBuffer frameBuffer = ByteBuffer.allocate(10);
+    private final ByteBuffer indexBuffer = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+
+    /**
+     * The segment currently written, or -1 if none.
+     */
+    private long segment = -1;
+
+    /**
+     * The files of the current segment.
+     */
+    private FileChannel segmentChannel;
+    private FileChannel indexChannel;
+    private FileChannel dictionaryChannel;
+
+    /**
+     * The dictionary of the current segment.
+     */
+    private final Map<String, Integer> dictionary = new HashMap<>();
+
+    /**
+     * Strings added to the dictionary by the event being encoded.
+     */
+    private final List<String> newEntries = new ArrayList<>();
+
+    /**
+     * The timestamp of the last written event, including by a previous run, or {@link Long#MIN_VALUE} if none.
+     */
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    /**
+     * Number of events written since the last sync point.
+     */
+    private int eventsSinceSync;
+
+    /**
+     * Class constructor.
+     *
+     * @param directory the folder holding the segments, created if needed, not <tt>null</tt>
+     * @throws IOException if the folder can't be created
+     */
+    public HistoryWriter(@NonNull Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        // Carry on from the last event written by a previous run.
+        long latest = -1;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                latest = Math.max(latest, parseSegmentName(file.getFileName().toString()));
+            }
+        }
+        if (latest >= 0) {
+            lastTimestamp = lastSegmentTimestamp(directory.resolve(segmentName(latest) + SEGMENT_SUFFIX));
+        }
+    }
+
+    /**
+     * Function to receive traffic statistics events from the event bus.
+     *
+     * @param statistics the traffic statistics event
+     */
+    @Subscribe
+    public synchronized void handleTrafficStatistics(@NonNull TrafficStatistics statistics) {
+        if (statistics.getWindowEnd() == null) {
+            return;
+        }
+        append(statistics.getWindowEnd().toEpochMilli(), TYPE_STATISTICS,
+                buffer -> encodeStatistics(buffer, statistics, this::dictionaryIndex));
+    }
+
+    /**
+     * Function to receive traffic alerts events from the event bus. The history is about the whole traffic, so the
+     * alerts of the tenants are not kept.
+     *
+     * @param alert the traffic alert event
+     */
+    @Subscribe
+    public synchronized void handleTrafficAlert(@NonNull TrafficAlert alert) {
+        if (alert.getTenant() != null) {
+            return;
+        }
+        append(alert.getTime().toInstant().toEpochMilli(), TYPE_ALERT, buffer -> encodeAlert(buffer, alert));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closeSegment();
+    }
+
+    /**
+     * Appends an event to the segment covering its timestamp.
+     *
+     * @param timestamp the event timestamp in epoch milliseconds
+     * @param type      the event type
+     * @param encoder   encodes the event payload
+     */
+    private void append(long timestamp, int type, Consumer<ByteBuffer> encoder) {
+        if (timestamp < lastTimestamp) {
+            log.debug("Dating history event {} ms older than the last one by the last timestamp.",
+                    lastTimestamp - timestamp);
+            timestamp = lastTimestamp;
+        }
+        try {
+            if (segment != segmentOf(timestamp)) {
+                openSegment(segmentOf(timestamp));
+            }
+            boolean sync = eventsSinceSync == 0;
+            encode(sync, timestamp, type, encoder);
+
+            // Dictionary entries are written first so that a written event never references a missing entry.
+            if (!newEntries.isEmpty()) {
+                dictionaryBuffer.clear();
+                for (String entry : newEntries) {
+                    dictionaryBuffer = ensureCapacity(dictionaryBuffer, entry.length() * 4 + 5);
+                    encodeDictionaryEntry(dictionaryBuffer, entry);
+                }
+                dictionaryBuffer.flip();
+                write(dictionaryChannel, dictionaryBuffer);
+                newEntries.clear();
+            }
+            long offset = segmentChannel.size();
+            frameBuffer.clear();
+            VarInts.writeUnsigned(frameBuffer, eventBuffer.remaining());
+            frameBuffer.flip();
+            write(segmentChannel, frameBuffer, eventBuffer);
+            if (sync) {
+                indexBuffer.clear();
+                indexBuffer.putLong(timestamp).putLong(offset).flip();
+                write(indexChannel, indexBuffer);
+            }
+            lastTimestamp = timestamp;
+            eventsSinceSync = (eventsSinceSync + 1) % SYNC_INTERVAL;
+        } catch (IOException e) {
+            log.error("Failed to write history to " + directory, e);
+            // Start over with a fresh segment state on the next event.
+            try {
+                closeSegment();
+            } catch (IOException ex) {
+                log.warn("Failed to close history segment.", ex);
+            }
+        }
+    }
+
+    /**
+     * Encodes the event header and payload into the event buffer, growing it if needed.
+     */
+    private void encode(boolean sync, long timestamp, int type, Consumer<ByteBuffer> encoder) {
+        while (true) {
+            eventBuffer.clear();
+            newEntries.clear();
+            try {
+                eventBuffer.put((byte) (sync ? type | SYNC_FLAG : type));
+                VarInts.writeSigned(eventBuffer, sync ? timestamp : timestamp - lastTimestamp);
+                encoder.accept(eventBuffer);
+                eventBuffer.flip();
+                return;
+            } catch (BufferOverflowException e) {
+                // Forget the entries referenced by the partially encoded event, they will be added again.
+                newEntries.forEach(dictionary::remove);
+                eventBuffer = ByteBuffer.allocate(eventBuffer.capacity() * 2);
+            }
+        }
+    }
+
+    /**
+     * Returns the dictionary index of the given string, adding it to the dictionary if needed.
+     */
+    private int dictionaryIndex(String value) {
+        Integer index = dictionary.get(value);
+        if (index == null) {
+            index = dictionary.size();
+            dictionary.put(value, index);
+            newEntries.add(value);
+        }
+        return index;
+    }
+
+    /**
+     * Opens the given segment for appending, recovering from a torn last event if any.
+     *
+     * @param start the start of the segment in epoch milliseconds
+     * @throws IOException if the segment can't be opened
+     */
+    private void openSegment(long start) throws IOException {
+        closeSegment();
+        String name = segmentName(start);
+        Path segmentPath = directory.resolve(name + SEGMENT_SUFFIX);
+        Path indexPath = directory.resolve(name + INDEX_SUFFIX);
+        Path dictionaryPath = directory.resolve(name + DICTIONARY_SUFFIX);
+
+        List<String> entries = readDictionary(dictionaryPath);
+        for (String entry : entries) {
+            dictionary.put(entry, dictionary.size());
+        }
+        segmentChannel = openForAppend(segmentPath);
+        indexChannel = openForAppend(indexPath);
+        dictionaryChannel = openForAppend(dictionaryPath);
+
+        // Drop any incomplete event or index entry left by a crash.
+        long validSize = validSegmentSize(segmentPath);
+        if (validSize < segmentChannel.size()) {
+            log.warn("Truncating torn history segment {} to {} bytes.", segmentPath, validSize);
+            segmentChannel.truncate(validSize);
+        }
+        long indexSize = indexChannel.size() - indexChannel.size() % INDEX_ENTRY_SIZE;
+        while (indexSize > 0 && lastIndexedOffset(indexPath, indexSize) >= validSize) {
+            indexSize -= INDEX_ENTRY_SIZE;
+        }
+        indexChannel.truncate(indexSize);
+        long dictionarySize = 0;
+        for (String entry : entries) {
+            dictionarySize += encodedSize(entry);
+        }
+        dictionaryChannel.truncate(dictionarySize);
+
+        segment = start;
+        // The first event of an opened segment is always a sync point, deltas are never computed across runs.
+        eventsSinceSync = 0;
+    }
+
+    private void closeSegment() throws IOException {
+        segment = -1;
+        dictionary.clear();
+        for (FileChannel channel : new FileChannel[]{segmentChannel, indexChannel, dictionaryChannel}) {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+        segmentChannel = null;
+        indexChannel = null;
+        dictionaryChannel = null;
+    }
+
+    /**
+     * Returns the size of the segment up to the end of its last complete event.
+     */
+    private static long validSegmentSize(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int valid = 0;
+            try {
+                while (buffer.hasRemaining()) {
+                    int length = VarInts.readUnsignedInt(buffer);
+                    if (length > buffer.remaining()) {
+                        break;
+                    }
+                    buffer.position(buffer.position() + length);
+                    valid = buffer.position();
+                }
+            } catch (RuntimeException e) {
+                // Torn frame header.
+            }
+            return valid;
+        }
+    }
+
+    /**
+     * Returns the timestamp of the last complete event of a segment.
+     *
+     * @param path the segment
+     * @return the timestamp in epoch milliseconds, or {@link Long#MIN_VALUE} if the segment holds no event
+     * @throws IOException if the segment can't be read
+     */
+    private static long lastSegmentTimestamp(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            long timestamp = Long.MIN_VALUE;
+            try {
+                while (buffer.hasRemaining()) {
+                    int length = VarInts.readUnsignedInt(buffer);
+                    if (length > buffer.remaining()) {
+                        break;
+                    }
+                    int next = buffer.position() + length;
+                    int header = buffer.get() & 0xFF;
+                    long delta = VarInts.readSigned(buffer);
+                    timestamp = (header & SYNC_FLAG) != 0 ? delta : timestamp + delta;
+                    buffer.position(next);
+                }
+            } catch (RuntimeException e) {
+                // Torn frame header.
+            }
+            return timestamp;
+        }
+    }
+
+    private static long lastIndexedOffset(Path path, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+            channel.read(entry, size - INDEX_ENTRY_SIZE);
+            return entry.getLong(8);
+        }
+    }
+
+    private static FileChannel openForAppend(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        return channel;
+    }
+
+    private static void write(FileChannel channel, ByteBuffer... buffers) throws IOException {
+        long remaining = 0;
+        for (ByteBuffer buffer : buffers) {
+            remaining += buffer.remaining();
+        }
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+    }
+
+    private static int encodedSize(String entry) {
+        ByteBuffer buffer = ByteBuffer.allocate(entry.length() * 4 + 5);
+        encodeDictionaryEntry(buffer, entry);
+        return buffer.position();
+    }
+
+    private static ByteBuffer ensureCapacity(ByteBuffer buffer, int needed) {
+        if (buffer.remaining() >= needed) {
+            return buffer;
+        }
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + needed));
+        buffer.flip();
+        return larger.put(buffer);
+    }
+
+}
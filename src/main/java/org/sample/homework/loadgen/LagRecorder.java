@@ -0,0 +1,70 @@
+package org.sample.homework.loadgen;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Records latencies in a fixed-size reservoir sample, so that percentiles can be computed over any number of values
+ * with a bounded memory.
+ * <p>
+ * Values are recorded by a single thread.
+ */
+class LagRecorder {
+
+    private final long[] samples;
+    private long count = 0;
+    private long max = 0;
+
+    /**
+     * Class constructor.
+     *
+     * @param capacity the size of the reservoir
+     */
+    LagRecorder(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    /**
+     * Records a value.
+     *
+     * @param value the value to record
+     */
+    synchronized void record(long value) {
+        if (count < samples.length) {
+            samples[(int) count] = value;
+        } else {
+            // Keep every value with the same probability.
+            long index = ThreadLocalRandom.current().nextLong(count + 1);
+            if (index < samples.length) {
+                samples[(int) index] = value;
+            }
+        }
+        ++count;
+        max = Math.max(max, value);
+    }
+
+    synchronized long getCount() {
+        return count;
+    }
+
+    synchronized long getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the value below which the given percentage of the recorded values fall.
+     *
+     * @param percent the percentage, between 0 and 100
+     * @return the percentile, or 0 if nothing has been recorded
+     */
+    synchronized long percentile(double percent) {
+        int size = (int) Math.min(count, samples.length);
+        if (size == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        return sorted[(int) Math.min(size - 1, Math.ceil(percent / 100 * size) - 1)];
+    }
+
+}
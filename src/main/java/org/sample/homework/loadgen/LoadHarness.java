@@ -0,0 +1,313 @@
+package org.sample.homework.loadgen;
+
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.cli.*;
+import org.sample.homework.alerts.TrafficAlertManager;
+import org.sample.homework.clf.AccessLogRecordProducer;
+import org.sample.homework.clf.LazyAccessLogRecord;
+import org.sample.homework.metrics.PipelineMetrics;
+import org.sample.homework.output.JsonLinesWriter;
+import org.sample.homework.reader.PollingFileWatcher;
+import org.sample.homework.series.MetricSeriesStore;
+import org.sample.homework.stats.TrafficStatistics;
+import org.sample.homework.stats.TrafficStatisticsManager;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a {@link SyntheticLogWriter} against the headless monitoring pipeline and reports its throughput, ingest lag,
+ * dropped lines and GC activity.
+ * <p>
+ * The ingest lag is reported twice: from the write of a line to its parsing, and from the write of the oldest and
+ * newest lines of a window frame to the publication of its statistics, which adds the wait for the window frame to
+ * close (up to the refresh period plus {@link TrafficStatisticsManager#DELAY}).
+ * <p>
+ * The pipeline is assembled as in headless mode (file watcher, parser, statistics, alerts, metric series and JSON
+ * lines output), in the same JVM as the writer so that the ingest lag can be measured from the write time carried by
+ * every line.
+ * <pre>
+ * java -cp stats.jar org.sample.homework.loadgen.LoadHarness -l 50000 -s 60
+ * </pre>
+ */
+@Slf4j
+public class LoadHarness {
+
+    /**
+     * How long to wait for the pipeline to ingest the last lines.
+     */
+    private static final long DRAIN_TIMEOUT_MILLIS = 10_000;
+
+    /**
+     * Records the ingest lag of the lines, as the time elapsed from their write to their parsing and to the publication
+     * of the statistics they are counted in.
+     * <p>
+     * Records are dispatched by the producer thread and statistics by the timer of the statistics manager.
+     */
+    private static class LagListener {
+
+        /**
+         * Time from the write of a line to its parsing.
+         */
+        private final LagRecorder parseLags = new LagRecorder(1 << 20);
+
+        /**
+         * Time from the write of the oldest and newest lines of a window frame to the publication of its statistics.
+         */
+        private final LagRecorder oldestLineLags = new LagRecorder(1 << 16);
+        private final LagRecorder newestLineLags = new LagRecorder(1 << 16);
+
+        /**
+         * The lowest and highest write times of the lines pending publication, by record timestamp.
+         */
+        private final TreeMap<Long, long[]> pending = new TreeMap<>();
+
+        @Subscribe
+        public void handleLazyAccessLogRecord(LazyAccessLogRecord record) {
+            long writeTime = SyntheticLogWriter.writeTimeOf(record.getLine(), record.getEndpointStart(),
+                    record.getEndpointEnd());
+            if (writeTime >= 0) {
+                parseLags.record(System.nanoTime() - writeTime);
+                add(record.getTimestamp(), writeTime);
+            }
+        }
+
+        @Subscribe
+        public void handleTrafficStatistics(TrafficStatistics statistics) {
+            long now = System.nanoTime();
+            long oldest = Long.MAX_VALUE;
+            long newest = Long.MIN_VALUE;
+            synchronized (this) {
+                // Late records are counted in the current window frame, so everything before its end is published.
+                Map<Long, long[]> published = pending.headMap(statistics.getWindowEnd().toEpochMilli());
+                for (long[] writeTimes : published.values()) {
+                    oldest = Math.min(oldest, writeTimes[0]);
+                    newest = Math.max(newest, writeTimes[1]);
+                }
+                published.clear();
+            }
+            if (oldest != Long.MAX_VALUE) {
+                oldestLineLags.record(now - oldest);
+                newestLineLags.record(now - newest);
+            }
+        }
+
+        synchronized boolean isPending() {
+            return !pending.isEmpty();
+        }
+
+        private synchronized void add(long timestamp, long writeTime) {
+            long[] writeTimes = pending.get(timestamp);
+            if (writeTimes == null) {
+                pending.put(timestamp, new long[]{writeTime, writeTime});
+            } else {
+                writeTimes[0] = Math.min(writeTimes[0], writeTime);
+                writeTimes[1] = Math.max(writeTimes[1], writeTime);
+            }
+        }
+    }
+
+    /**
+     * Harness entry point.
+     *
+     * @param args harness command line arguments
+     * @throws Exception if the harness fails
+     */
+    public static void main(String[] args) throws Exception {
+        Options options = getOptions();
+        CommandLine commandLine;
+        try {
+            commandLine = new DefaultParser().parse(options, args);
+        } catch (ParseException e) {
+            System.err.println(e.getMessage());
+            new HelpFormatter().printHelp("LoadHarness", options, true);
+            System.exit(1);
+            return;
+        }
+        LoadProfile profile = new LoadProfile();
+        profile.setLinesPerSecond(Integer.parseInt(commandLine.getOptionValue("lines-per-second",
+                String.valueOf(profile.getLinesPerSecond()))));
+        profile.setBurstFactor(Double.parseDouble(commandLine.getOptionValue("burst-factor",
+                String.valueOf(profile.getBurstFactor()))));
+        profile.setBurstPeriodSeconds(Integer.parseInt(commandLine.getOptionValue("burst-period",
+                String.valueOf(profile.getBurstPeriodSeconds()))));
+        profile.setBurstDurationSeconds(Integer.parseInt(commandLine.getOptionValue("burst-duration",
+                String.valueOf(profile.getBurstDurationSeconds()))));
+        profile.setSections(Integer.parseInt(commandLine.getOptionValue("sections",
+                String.valueOf(profile.getSections()))));
+        profile.setHosts(Integer.parseInt(commandLine.getOptionValue("hosts", String.valueOf(profile.getHosts()))));
+        profile.setSkew(Double.parseDouble(commandLine.getOptionValue("skew", String.valueOf(profile.getSkew()))));
+        profile.setMalformedPercent(Double.parseDouble(commandLine.getOptionValue("malformed",
+                String.valueOf(profile.getMalformedPercent()))));
+        profile.setRotateEveryLines(Long.parseLong(commandLine.getOptionValue("rotate-lines",
+                String.valueOf(profile.getRotateEveryLines()))));
+        int duration = Integer.parseInt(commandLine.getOptionValue("seconds", "30"));
+        Path file = Paths.get(commandLine.getOptionValue("file", "/tmp/loadgen-access.log"));
+
+        System.out.println(run(file, profile, duration));
+        System.exit(0);
+    }
+
+    /**
+     * Runs the writer against the pipeline.
+     *
+     * @param file     the log file to write and follow
+     * @param profile  the traffic to generate
+     * @param duration how long to write in seconds
+     * @return the report
+     * @throws IOException          if the log file can't be created
+     * @throws InterruptedException if the harness is interrupted
+     */
+    static String run(Path file, LoadProfile profile, int duration) throws IOException, InterruptedException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(file.resolveSibling(file.getFileName() + ".1"));
+        Files.createFile(file);
+
+        // The headless pipeline.
+        EventBus eventBus = new EventBus();
+        TrafficStatisticsManager stats = new TrafficStatisticsManager(1, eventBus);
+        TrafficAlertManager alertManager = new TrafficAlertManager(120, 1000, 120, eventBus);
+        eventBus.register(stats);
+        eventBus.register(alertManager);
+        eventBus.register(new MetricSeriesStore(Duration.ofHours(24)));
+        eventBus.register(new JsonLinesWriter(new NullWriter()));
+        LagListener lagListener = new LagListener();
+        eventBus.register(lagListener);
+        stats.start();
+        AccessLogRecordProducer producer = new AccessLogRecordProducer(file.toString(), eventBus, 0);
+        Thread producerThread = new Thread(() -> {
+            try {
+                producer.start();
+            } catch (IOException e) {
+                log.error("Load harness producer failed.", e);
+            }
+        }, "producer-thread");
+        producerThread.start();
+
+        PipelineMetrics metrics = PipelineMetrics.get();
+        long linesBefore = metrics.getLinesRead();
+        long parseErrorsBefore = metrics.getParseErrors();
+        long gcCountBefore = gcCount();
+        long gcTimeBefore = gcTimeMillis();
+
+        SyntheticLogWriter writer = new SyntheticLogWriter(file, profile, duration);
+        long start = System.nanoTime();
+        Thread writerThread = new Thread(writer, "writer-thread");
+        writerThread.start();
+        writerThread.join();
+
+        // Wait for the pipeline to catch up with the writer.
+        long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MILLIS;
+        while (metrics.getLinesRead() - linesBefore < writer.getLinesWritten()
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        // Then for the statistics of the last lines to be published.
+        deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MILLIS;
+        while (lagListener.isPending() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        producer.getFileWatcher().stop();
+        producerThread.join(TimeUnit.SECONDS.toMillis(5));
+
+        long linesRead = metrics.getLinesRead() - linesBefore;
+        long parseErrors = metrics.getParseErrors() - parseErrorsBefore;
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Load test of %d s against %s%n", duration, file));
+        report.append(String.format("Profile: %s%n", profile));
+        report.append(String.format("Lines written:  %d (%d malformed), %d rotations%n",
+                writer.getLinesWritten(), writer.getMalformedLines(), writer.getRotations()));
+        report.append(String.format("Lines ingested: %d (%d parse errors), %d dropped%n",
+                linesRead, parseErrors, writer.getLinesWritten() - linesRead));
+        report.append(String.format("Throughput:     %.0f lines/s%n", linesRead / (elapsedNanos / 1e9)));
+        report.append(String.format("Parse lag:      %s over %d records%n", lagSummary(lagListener.parseLags),
+                lagListener.parseLags.getCount()));
+        report.append(String.format("Statistics lag: oldest line %s, newest line %s over %d windows%n",
+                lagSummary(lagListener.oldestLineLags), lagSummary(lagListener.newestLineLags),
+                lagListener.oldestLineLags.getCount()));
+        report.append(String.format("GC:             %d collections, %d ms paused%n",
+                gcCount() - gcCountBefore, gcTimeMillis() - gcTimeBefore));
+        return report.toString();
+    }
+
+    private static String lagSummary(LagRecorder lags) {
+        return String.format("p50 %.2f ms, p99 %.2f ms, max %.2f ms", lags.percentile(50) / 1e6,
+                lags.percentile(99) / 1e6, lags.getMax() / 1e6);
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, bean.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcTimeMillis() {
+        long time = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, bean.getCollectionTime());
+        }
+        return time;
+    }
+
+    /**
+     * Generates harness command line options.
+     *
+     * @return harness {@link Options}
+     */
+    private static Options getOptions() {
+        LoadProfile defaults = new LoadProfile();
+        Options options = new Options();
+        options.addOption("f", "file", true, "log file to write and follow, default /tmp/loadgen-access.log");
+        options.addOption("s", "seconds", true, "duration of the test in seconds, default 30");
+        options.addOption("l", "lines-per-second", true,
+                "base rate in lines/s, 0 to write as fast as possible, default " + defaults.getLinesPerSecond());
+        options.addOption("b", "burst-factor", true, "rate factor during bursts, default " + defaults.getBurstFactor());
+        options.addOption("p", "burst-period", true,
+                "seconds between two bursts, default " + defaults.getBurstPeriodSeconds());
+        options.addOption("d", "burst-duration", true,
+                "duration of a burst in seconds, default " + defaults.getBurstDurationSeconds());
+        options.addOption("S", "sections", true, "number of sections, default " + defaults.getSections());
+        options.addOption("H", "hosts", true, "number of hosts, default " + defaults.getHosts());
+        options.addOption("k", "skew", true,
+                "skew of the section and host distributions, 1 for uniform, default " + defaults.getSkew());
+        options.addOption("m", "malformed", true,
+                "percentage of malformed lines, default " + defaults.getMalformedPercent());
+        options.addOption("r", "rotate-lines", true,
+                "number of lines after which the file is rotated, 0 to never rotate, default "
+                        + defaults.getRotateEveryLines());
+        return options;
+    }
+
+    /**
+     * Discards everything written to it.
+     */
+    private static class NullWriter extends Writer {
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+}
@@ -0,0 +1,56 @@
+package org.sample.homework.loadgen;
+
+import lombok.Data;
+
+/**
+ * Describes the traffic generated by a {@link SyntheticLogWriter}. These defaults are replaced by user arguments if any.
+ */
+@Data
+public class LoadProfile {
+
+    /**
+     * Base rate in lines per second, 0 to write as fast as possible.
+     */
+    private int linesPerSecond = 10_000;
+
+    /**
+     * Factor applied to the base rate during bursts, 1 for a steady rate.
+     */
+    private double burstFactor = 1;
+
+    /**
+     * Seconds between the beginnings of two bursts.
+     */
+    private int burstPeriodSeconds = 60;
+
+    /**
+     * Duration of a burst in seconds.
+     */
+    private int burstDurationSeconds = 10;
+
+    /**
+     * Number of distinct sections.
+     */
+    private int sections = 20;
+
+    /**
+     * Number of distinct hosts.
+     */
+    private int hosts = 10_000;
+
+    /**
+     * Skew of the section and host distributions: 1 is uniform, the higher the more the first ones are hit.
+     */
+    private double skew = 2;
+
+    /**
+     * Percentage of malformed lines.
+     */
+    private double malformedPercent = 0;
+
+    /**
+     * Number of lines after which the log file is rotated, 0 to never rotate.
+     */
+    private long rotateEveryLines = 0;
+
+}
@@ -0,0 +1,252 @@
+package org.sample.homework.loadgen;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is responsible for writing synthetic Common Log Format lines to a local file, following a
+ * {@link LoadProfile}.
+ * <p>
+ * The endpoint of every valid line carries the {@link System#nanoTime()} at which it has been written
+ * (<tt>?t=&lt;nanos&gt;</tt>), so that a consumer running in the same JVM can measure its ingest lag
+ * (see {@link SyntheticLogWriter#writeTimeOf(String)}).
+ * <p>
+ * Rotation follows the usual logrotate behaviour: the file is renamed with a <tt>.1</tt> suffix and a new file is
+ * created.
+ */
+@Slf4j
+public class SyntheticLogWriter implements Runnable {
+
+    private static final DateTimeFormatter FORMATTER =
+            DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.ENGLISH);
+
+    private static final String[] METHODS = {"GET", "GET", "GET", "GET", "GET", "POST", "POST", "PUT", "DELETE"};
+
+    private static final int[] STATUSES = {200, 200, 200, 200, 200, 200, 201, 204, 301, 304, 400, 404, 404, 500, 503};
+
+    /**
+     * Lines are written by batches, flushed at most every batch period.
+     */
+    private static final long BATCH_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    /**
+     * The marker of the write time in the endpoint.
+     */
+    private static final String TIME_MARKER = "?t=";
+
+    private final Path path;
+    private final LoadProfile profile;
+    private final long durationNanos;
+    private final Random random = new Random(42);
+
+    /**
+     * Counters, only written by the writer thread.
+     */
+    private volatile long linesWritten;
+    private volatile long malformedLines;
+    private volatile int rotations;
+
+    /**
+     * Whether the writer should keep writing.
+     */
+    private volatile boolean running = true;
+
+    /**
+     * Class constructor.
+     *
+     * @param path     the log file to write, not <tt>null</tt>
+     * @param profile  the traffic to generate, not <tt>null</tt>
+     * @param duration how long to write in seconds
+     */
+    public SyntheticLogWriter(@NonNull Path path, @NonNull LoadProfile profile, int duration) {
+        this.path = path;
+        this.profile = profile;
+        this.durationNanos = TimeUnit.SECONDS.toNanos(duration);
+    }
+
+    /**
+     * Returns the write time carried by a line written by this class.
+     *
+     * @param endpoint the endpoint of the line
+     * @return the {@link System#nanoTime()} at which the line has been written, or -1 if the line has no write time
+     */
+    public static long writeTimeOf(String endpoint) {
+        byte[] bytes = endpoint.getBytes(StandardCharsets.US_ASCII);
+        return writeTimeOf(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Returns the write time carried by a line written by this class, read from the bytes of its endpoint so that it
+     * doesn't have to be decoded.
+     *
+     * @param buffer the buffer holding the endpoint
+     * @param from   the index of the first byte of the endpoint
+     * @param to     the index of the last byte of the endpoint (exclusive)
+     * @return the {@link System#nanoTime()} at which the line has been written, or -1 if the line has no write time
+     */
+    public static long writeTimeOf(byte[] buffer, int from, int to) {
+        // The write time ends the endpoint: walk back over its digits up to the marker.
+        int index = to;
+        while (index > from && buffer[index - 1] >= '0' && buffer[index - 1] <= '9') {
+            --index;
+        }
+        int digits = index;
+        if (index > from && buffer[index - 1] == '-') {
+            --index;
+        }
+        if (digits == to || index - from < TIME_MARKER.length()) {
+            return -1;
+        }
+        for (int i = 0; i < TIME_MARKER.length(); ++i) {
+            if (buffer[index - TIME_MARKER.length() + i] != TIME_MARKER.charAt(i)) {
+                return -1;
+            }
+        }
+        long value = 0;
+        for (int i = digits; i < to; ++i) {
+            int digit = buffer[i] - '0';
+            if (value > (Long.MAX_VALUE - digit) / 10) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return digits == index ? value : -value;
+    }
+
+    public long getLinesWritten() {
+        return linesWritten;
+    }
+
+    public long getMalformedLines() {
+        return malformedLines;
+    }
+
+    public int getRotations() {
+        return rotations;
+    }
+
+    /**
+     * Stops writing.
+     */
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public void run() {
+        Writer writer = null;
+        try {
+            writer = open();
+            long start = System.nanoTime();
+            long linesInFile = 0;
+            StringBuilder line = new StringBuilder(256);
+            while (running) {
+                long elapsed = System.nanoTime() - start;
+                if (elapsed >= durationNanos) {
+                    break;
+                }
+                long batch = targetLines(elapsed + BATCH_NANOS) - linesWritten;
+                for (long i = 0; i < batch; i++) {
+                    if (profile.getRotateEveryLines() > 0 && linesInFile >= profile.getRotateEveryLines()) {
+                        writer.close();
+                        Files.move(path, path.resolveSibling(path.getFileName() + ".1"),
+                                StandardCopyOption.REPLACE_EXISTING);
+                        writer = open();
+                        linesInFile = 0;
+                        ++rotations;
+                    }
+                    line.setLength(0);
+                    appendLine(line);
+                    writer.append(line);
+                    ++linesInFile;
+                    ++linesWritten;
+                }
+                writer.flush();
+                long sleepNanos = start + elapsed + BATCH_NANOS - System.nanoTime();
+                if (profile.getLinesPerSecond() > 0 && sleepNanos > 0) {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Failed to write synthetic log to " + path, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            running = false;
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    log.warn("Failed to close synthetic log.", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of lines which should have been written after the given time.
+     *
+     * @param elapsedNanos the time elapsed since the beginning
+     * @return the number of lines
+     */
+    long targetLines(long elapsedNanos) {
+        if (profile.getLinesPerSecond() <= 0) {
+            // As fast as possible, by batches of a thousand lines.
+            return linesWritten + 1000;
+        }
+        double seconds = elapsedNanos / 1e9;
+        double lines = seconds * profile.getLinesPerSecond();
+        if (profile.getBurstFactor() != 1 && profile.getBurstPeriodSeconds() > 0) {
+            // Add the extra lines of the bursts elapsed so far.
+            long periods = (long) (seconds / profile.getBurstPeriodSeconds());
+            double inPeriod = seconds - periods * (double) profile.getBurstPeriodSeconds();
+            double burstSeconds = periods * (double) profile.getBurstDurationSeconds()
+                    + Math.min(inPeriod, profile.getBurstDurationSeconds());
+            lines += burstSeconds * profile.getLinesPerSecond() * (profile.getBurstFactor() - 1);
+        }
+        return (long) lines;
+    }
+
+    private void appendLine(StringBuilder line) {
+        if (random.nextDouble() * 100 < profile.getMalformedPercent()) {
+            line.append("malformed line ").append(random.nextInt()).append('\n');
+            ++malformedLines;
+            return;
+        }
+        int host = skewed(profile.getHosts());
+        line.append("10.").append((host >> 16) & 0xFF).append('.').append((host >> 8) & 0xFF).append('.')
+                .append(host & 0xFF);
+        line.append(" - - [");
+        FORMATTER.formatTo(ZonedDateTime.now(), line);
+        line.append("] \"").append(METHODS[random.nextInt(METHODS.length)]);
+        line.append(" /section").append(skewed(profile.getSections()));
+        line.append("/page").append(random.nextInt(100));
+        line.append(TIME_MARKER).append(System.nanoTime());
+        line.append(" HTTP/1.1\" ").append(STATUSES[random.nextInt(STATUSES.length)]);
+        line.append(' ').append(random.nextInt(20_000)).append('\n');
+    }
+
+    /**
+     * Returns an index between 0 and the given bound, skewed towards 0 according to the profile.
+     */
+    private int skewed(int bound) {
+        return Math.min(bound - 1, (int) (bound * Math.pow(random.nextDouble(), profile.getSkew())));
+    }
+
+    private Writer open() throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(path.toFile(), true),
+                StandardCharsets.UTF_8), 1 << 16);
+    }
+
+}
@@ -0,0 +1,193 @@
+package org.sample.homework.metrics;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Accounts for the memory held by the buffers of the pipeline against a single budget.
+ * <p>
+ * Every component holding data reserves its estimated footprint when it grows and releases it when the data is
+ * dropped, so the usage is known without walking the heap. Once the usage reaches {@link MemoryBudget#PRESSURE_RATIO}
+ * of the budget, the components engage their overload policies so that the budget isn't exceeded: the load shedder
+ * samples the lines, the window frames approximate their breakdowns, and the oldest metric series, drill-down tries and
+ * rejected lines are evicted.
+ * <p>
+ * Footprints are estimates (object headers and references included), not measures. Without a budget, the usage is
+ * still accounted and reported.
+ */
+public class MemoryBudget {
+
+    /**
+     * The components holding memory.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public enum Component {
+        WINDOWS("windows"),
+        ALERTS("alerts"),
+        SERIES("series"),
+        DEAD_LETTERS("dead letters"),
+        UI("ui");
+
+        /**
+         * The name shown in the UI.
+         */
+        private final String label;
+    }
+
+    /**
+     * The ratio of the budget above which the overload policies are engaged.
+     */
+    public static final double PRESSURE_RATIO = 0.8;
+
+    /**
+     * The instance shared by the whole application.
+     */
+    private static final MemoryBudget INSTANCE = new MemoryBudget();
+
+    /**
+     * The budget in bytes, {@link Long#MAX_VALUE} if unlimited.
+     */
+    private volatile long limit = Long.MAX_VALUE;
+
+    private final AtomicLong used = new AtomicLong();
+
+    /**
+     * The bytes used, indexed by {@link Component} ordinal.
+     */
+    private final AtomicLongArray usedByComponent = new AtomicLongArray(Component.values().length);
+
+    /**
+     * Returns the instance shared by the whole application.
+     *
+     * @return the shared memory budget, not <tt>null</tt>
+     */
+    public static MemoryBudget get() {
+        return INSTANCE;
+    }
+
+    MemoryBudget() {
+    }
+
+    /**
+     * Sets the budget.
+     *
+     * @param limit the budget in bytes, or {@link Long#MAX_VALUE} for no budget
+     * @throws IllegalArgumentException if the budget is not positive
+     */
+    public void setLimit(long limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Invalid memory budget: " + limit);
+        }
+        this.limit = limit;
+    }
+
+    /**
+     * Returns the budget.
+     *
+     * @return the budget in bytes, {@link Long#MAX_VALUE} if unlimited
+     */
+    public long getLimit() {
+        return limit;
+    }
+
+    /**
+     * Returns whether a budget has been set.
+     *
+     * @return <tt>true</tt> if the usage is capped
+     */
+    public boolean isLimited() {
+        return limit != Long.MAX_VALUE;
+    }
+
+    /**
+     * Reserves memory whatever the usage, for data which must be kept.
+     *
+     * @param component the component holding the memory, not <tt>null</tt>
+     * @param bytes     the estimated footprint, negative to release memory
+     */
+    public void reserve(@NonNull Component component, long bytes) {
+        if (bytes != 0) {
+            used.addAndGet(bytes);
+            usedByComponent.addAndGet(component.ordinal(), bytes);
+        }
+    }
+
+    /**
+     * Reserves memory unless the usage would exceed the budget.
+     *
+     * @param component the component holding the memory, not <tt>null</tt>
+     * @param bytes     the estimated footprint
+     * @return <tt>false</tt> if nothing has been reserved, the data should be dropped
+     */
+    public boolean tryReserve(@NonNull Component component, long bytes) {
+        long current;
+        do {
+            current = used.get();
+            if (current + bytes > limit) {
+                return false;
+            }
+        } while (!used.compareAndSet(current, current + bytes));
+        usedByComponent.addAndGet(component.ordinal(), bytes);
+        return true;
+    }
+
+    /**
+     * Releases reserved memory.
+     *
+     * @param component the component which held the memory, not <tt>null</tt>
+     * @param bytes     the estimated footprint which was reserved
+     */
+    public void release(@NonNull Component component, long bytes) {
+        reserve(component, -bytes);
+    }
+
+    /**
+     * Returns whether the usage is close enough to the budget for the overload policies to be engaged.
+     *
+     * @return <tt>true</tt> if the usage is at least {@link MemoryBudget#PRESSURE_RATIO} of the budget
+     */
+    public boolean isUnderPressure() {
+        long limit = this.limit;
+        return limit != Long.MAX_VALUE && used.get() >= limit * PRESSURE_RATIO;
+    }
+
+    /**
+     * Returns the memory used by every component.
+     *
+     * @return the estimated footprint in bytes
+     */
+    public long getUsed() {
+        return used.get();
+    }
+
+    /**
+     * Returns the memory used by a component.
+     *
+     * @param component the component, not <tt>null</tt>
+     * @return the estimated footprint in bytes
+     */
+    public long getUsed(@NonNull Component component) {
+        return usedByComponent.get(component.ordinal());
+    }
+
+    /**
+     * Returns the memory used by every component.
+     *
+     * @return the estimated footprints in bytes, by component name
+     */
+    public Map<String, Long> getUsedByComponent() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (Component component : Component.values()) {
+            result.put(component.name(), getUsed(component));
+        }
+        return result;
+    }
+
+}
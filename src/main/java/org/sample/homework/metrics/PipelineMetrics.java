@@ -0,0 +1,286 @@
+package org.sample.homework.metrics;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.sample.homework.clf.AccessLogParseException;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Holds the internal counters and timers of every stage of the processing pipeline:
+ * <ul>
+ * <li>the file watcher: bytes read,</li>
+ * <li>the record producer: lines read, parse errors by reason, lines dropped by the filters, and lines shed while the
+ * ingestion is behind,</li>
+ * <li>the statistics manager: buffered records, window frame closing duration and record lag,</li>
+ * <li>the alert manager: evaluation duration and published alerts,</li>
+ * <li>the memory budget: estimated memory used by every component (see {@link MemoryBudget}).</li>
+ * </ul>
+ * Counters are {@link LongAdder}s, so that updating them costs a few nanoseconds and never contends with the threads
+ * reading them. They are exposed through JMX (see {@link PipelineMetrics#registerMBean()}), Prometheus and the UI.
+ */
+@Slf4j
+public class PipelineMetrics implements PipelineMetricsMXBean {
+
+    /**
+     * The name of the MBean.
+     */
+    public static final String OBJECT_NAME = "org.sample.homework:type=PipelineMetrics";
+
+    /**
+     * The instance shared by the whole application.
+     */
+    private static final PipelineMetrics INSTANCE = new PipelineMetrics();
+
+    /**
+     * Number of bytes read from the followed file.
+     */
+    private final LongAdder bytesRead = new LongAdder();
+
+    /**
+     * Number of log lines read, either followed or replayed.
+     */
+    private final LongAdder linesRead = new LongAdder();
+
+    /**
+     * Number of log lines which couldn't be parsed.
+     */
+    private final LongAdder parseErrors = new LongAdder();
+
+    /**
+     * Number of log lines which couldn't be parsed, indexed by {@link AccessLogParseException.Reason} ordinal.
+     */
+    private final LongAdder[] parseErrorsByReason = new LongAdder[AccessLogParseException.Reason.values().length];
+
+    {
+        for (int i = 0; i < parseErrorsByReason.length; i++) {
+            parseErrorsByReason[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Number of log lines dropped by the exclusion filters.
+     */
+    private final LongAdder filteredLines = new LongAdder();
+
+    /**
+     * Number of log lines skipped by the load shedder.
+     */
+    private final LongAdder shedLines = new LongAdder();
+
+    /**
+     * The current sampling rate of the load shedder, 1 if every line is parsed.
+     */
+    private volatile int sampleRate = 1;
+
+    /**
+     * Number of records buffered by the statistics manager, waiting for their window frame to be closed.
+     */
+    private final LongAdder bufferedRecords = new LongAdder();
+
+    /**
+     * Number of traffic statistics published.
+     */
+    private final LongAdder statisticsPublished = new LongAdder();
+
+    /**
+     * Number of traffic alerts published.
+     */
+    private final LongAdder alertsPublished = new LongAdder();
+
+    /**
+     * Time spent closing window frames in nanoseconds.
+     */
+    @Getter
+    private final PipelineTimer tickTimer = new PipelineTimer();
+
+    /**
+     * Time spent evaluating alerts in nanoseconds.
+     */
+    @Getter
+    private final PipelineTimer alertEvaluationTimer = new PipelineTimer();
+
+    /**
+     * Lag between the time of a record and the time its window frame is closed, in milliseconds.
+     */
+    @Getter
+    private final PipelineTimer recordLagTimer = new PipelineTimer();
+
+    /**
+     * Returns the instance shared by the whole application.
+     *
+     * @return the shared pipeline metrics, not <tt>null</tt>
+     */
+    public static PipelineMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers these metrics in the platform MBean server.
+     */
+    public void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            log.warn("Failed to register pipeline metrics MBean.", e);
+        }
+    }
+
+    public void addBytesRead(long bytes) {
+        bytesRead.add(bytes);
+    }
+
+    public void incrementLinesRead() {
+        linesRead.increment();
+    }
+
+    public void incrementParseErrors(@NonNull AccessLogParseException.Reason reason) {
+        parseErrors.increment();
+        parseErrorsByReason[reason.ordinal()].increment();
+    }
+
+    public void incrementFilteredLines() {
+        filteredLines.increment();
+    }
+
+    public void incrementShedLines() {
+        shedLines.increment();
+    }
+
+    public void setSampleRate(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public void addBufferedRecords(long records) {
+        bufferedRecords.add(records);
+    }
+
+    public void incrementStatisticsPublished() {
+        statisticsPublished.increment();
+    }
+
+    public void incrementAlertsPublished() {
+        alertsPublished.increment();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getLinesRead() {
+        return linesRead.sum();
+    }
+
+    @Override
+    public long getParseErrors() {
+        return parseErrors.sum();
+    }
+
+    public long getParseErrors(@NonNull AccessLogParseException.Reason reason) {
+        return parseErrorsByReason[reason.ordinal()].sum();
+    }
+
+    @Override
+    public Map<String, Long> getParseErrorsByReason() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (AccessLogParseException.Reason reason : AccessLogParseException.Reason.values()) {
+            result.put(reason.name(), getParseErrors(reason));
+        }
+        return result;
+    }
+
+    @Override
+    public long getFilteredLines() {
+        return filteredLines.sum();
+    }
+
+    @Override
+    public long getShedLines() {
+        return shedLines.sum();
+    }
+
+    @Override
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public long getBufferedRecords() {
+        return bufferedRecords.sum();
+    }
+
+    @Override
+    public long getStatisticsPublished() {
+        return statisticsPublished.sum();
+    }
+
+    @Override
+    public long getAlertsPublished() {
+        return alertsPublished.sum();
+    }
+
+    @Override
+    public double getTickMeanMicros() {
+        return tickTimer.getMean() / 1000;
+    }
+
+    @Override
+    public double getTickMaxMicros() {
+        return tickTimer.getMax() / 1000.0;
+    }
+
+    @Override
+    public double getAlertEvaluationMeanMicros() {
+        return alertEvaluationTimer.getMean() / 1000;
+    }
+
+    @Override
+    public double getAlertEvaluationMaxMicros() {
+        return alertEvaluationTimer.getMax() / 1000.0;
+    }
+
+    @Override
+    public double getRecordLagMeanMillis() {
+        return recordLagTimer.getMean();
+    }
+
+    @Override
+    public long getRecordLagMaxMillis() {
+        return recordLagTimer.getMax();
+    }
+
+    @Override
+    public long getMemoryUsed() {
+        return MemoryBudget.get().getUsed();
+    }
+
+    /**
+     * Returns the memory budget.
+     *
+     * @return the budget in bytes, 0 if there is none
+     */
+    @Override
+    public long getMemoryBudget() {
+        MemoryBudget budget = MemoryBudget.get();
+        return budget.isLimited() ? budget.getLimit() : 0;
+    }
+
+    @Override
+    public Map<String, Long> getMemoryUsedByComponent() {
+        return MemoryBudget.get().getUsedByComponent();
+    }
+
+}
@@ -0,0 +1,48 @@
+package org.sample.homework.metrics;
+
+import java.util.Map;
+
+/**
+ * The JMX view of the {@link PipelineMetrics}.
+ */
+public interface PipelineMetricsMXBean {
+
+    long getBytesRead();
+
+    long getLinesRead();
+
+    long getParseErrors();
+
+    Map<String, Long> getParseErrorsByReason();
+
+    long getFilteredLines();
+
+    long getShedLines();
+
+    int getSampleRate();
+
+    long getBufferedRecords();
+
+    long getStatisticsPublished();
+
+    long getAlertsPublished();
+
+    double getTickMeanMicros();
+
+    double getTickMaxMicros();
+
+    double getAlertEvaluationMeanMicros();
+
+    double getAlertEvaluationMaxMicros();
+
+    double getRecordLagMeanMillis();
+
+    long getRecordLagMaxMillis();
+
+    long getMemoryUsed();
+
+    long getMemoryBudget();
+
+    Map<String, Long> getMemoryUsedByComponent();
+
+}
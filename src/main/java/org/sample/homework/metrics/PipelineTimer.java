@@ -0,0 +1,61 @@
+package org.sample.homework.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records durations (or any other non-negative amounts) with striped counters: the count, the total and the maximum.
+ */
+public class PipelineTimer {
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+    /**
+     * Records an amount.
+     *
+     * @param amount the amount to record
+     */
+    public void record(long amount) {
+        count.increment();
+        total.add(amount);
+        max.accumulate(amount);
+    }
+
+    /**
+     * Records several amounts at once.
+     *
+     * @param count the number of amounts
+     * @param total the sum of the amounts
+     * @param max   the maximum of the amounts
+     */
+    public void record(long count, long total, long max) {
+        this.count.add(count);
+        this.total.add(total);
+        this.max.accumulate(max);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotal() {
+        return total.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns the mean of the recorded amounts.
+     *
+     * @return the mean, or 0 if nothing has been recorded
+     */
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) total.sum() / n;
+    }
+
+}
@@ -0,0 +1,338 @@
+package org.sample.homework.metrics;
+
+import com.google.common.eventbus.Subscribe;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.sample.homework.alerts.TrafficAlert;
+import org.sample.homework.alerts.TrafficAlertManager;
+import org.sample.homework.stats.TrafficStatistics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+/**
+ * This class is responsible for exposing the latest traffic statistics, the alerting state and the pipeline counters
+ * in the Prometheus text format.
+ * <p>
+ * The exposition is rendered once per published event into a reused buffer and cached, so a scrape only writes an
+ * immutable byte array: scrapes never render anything and never contend with the ingest thread.
+ */
+@Slf4j
+public class PrometheusExporter implements Closeable {
+
+    /**
+     * The path of the scrape endpoint.
+     */
+    public static final String PATH = "/metrics";
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final String[] STATUS_CLASSES = {"1xx", "2xx", "3xx", "4xx", "5xx"};
+
+    /**
+     * The alert manager whose state is exposed.
+     */
+    private final TrafficAlertManager alertManager;
+
+    /**
+     * The counters of the processing pipeline.
+     */
+    private final PipelineMetrics pipelineMetrics;
+
+    /**
+     * The embedded HTTP server.
+     */
+    private final HttpServer server;
+
+    /**
+     * The reused buffer the exposition is rendered into, only used by the publishing thread.
+     */
+    private final StringBuilder buffer = new StringBuilder(4096);
+
+    /**
+     * The latest published traffic statistics, or <tt>null</tt> if none.
+     */
+    private TrafficStatistics latestStatistics;
+
+    /**
+     * Number of alerts published by type.
+     */
+    private final Map<TrafficAlert.AlertType, Long> alertCounts = new EnumMap<>(TrafficAlert.AlertType.class);
+
+    /**
+     * The latest rendered exposition, served as is to every scrape.
+     */
+    private volatile byte[] exposition;
+
+    /**
+     * Class constructor. The endpoint is served once {@link PrometheusExporter#start()} is called.
+     *
+     * @param port            the port to listen on, 0 to pick a free port
+     * @param alertManager    the alert manager whose state is exposed, not <tt>null</tt>
+     * @param pipelineMetrics the counters of the processing pipeline, not <tt>null</tt>
+     * @throws IOException if the port can't be bound
+     */
+    public PrometheusExporter(int port,
+                              @NonNull TrafficAlertManager alertManager,
+                              @NonNull PipelineMetrics pipelineMetrics) throws IOException {
+        this.alertManager = alertManager;
+        this.pipelineMetrics = pipelineMetrics;
+        for (TrafficAlert.AlertType type : TrafficAlert.AlertType.values()) {
+            alertCounts.put(type, 0L);
+        }
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.server.createContext(PATH, this::handleScrape);
+        // A single daemon thread is enough to write cached bytes.
+        this.server.setExecutor(Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-thread");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        render();
+    }
+
+    /**
+     * Starts serving the scrape endpoint.
+     */
+    public void start() {
+        server.start();
+        log.info("Serving metrics on port {}.", getPort());
+    }
+
+    /**
+     * Returns the port the endpoint listens on.
+     *
+     * @return the bound port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    /**
+     * Function to receive traffic statistics events from the event bus.
+     *
+     * @param statistics the traffic statistics event
+     */
+    @Subscribe
+    public synchronized void handleTrafficStatistics(@NonNull TrafficStatistics statistics) {
+        latestStatistics = statistics;
+        render();
+    }
+
+    /**
+     * Function to receive traffic alerts events from the event bus. Only the alerts about the whole traffic are
+     * counted, not the ones of the tenants.
+     *
+     * @param alert the traffic alert event
+     */
+    @Subscribe
+    public synchronized void handleTrafficAlert(@NonNull TrafficAlert alert) {
+        if (alert.getTenant() != null) {
+            return;
+        }
+        alertCounts.merge(alert.getType(), 1L, Long::sum);
+        render();
+    }
+
+    /**
+     * Returns the cached exposition.
+     *
+     * @return the latest rendered exposition in the Prometheus text format
+     */
+    public byte[] getExposition() {
+        return exposition;
+    }
+
+    private void handleScrape(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = exposition;
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            if ("HEAD".equals(method)) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Renders the exposition into the reused buffer and publishes it.
+     */
+    private void render() {
+        buffer.setLength(0);
+        TrafficStatistics statistics = latestStatistics;
+        if (statistics != null) {
+            if (statistics.getWindowEnd() != null) {
+                gauge("homework_window_end_timestamp_seconds", "End of the latest window frame.",
+                        statistics.getWindowEnd().toEpochMilli() / 1000.0);
+            }
+            gauge("homework_window_requests", "Requests during the latest window frame.",
+                    statistics.getTotalRequestCount());
+            gauge("homework_window_valid_requests", "Requests with a 2xx status during the latest window frame.",
+                    statistics.getValidRequestCount());
+            gauge("homework_window_bytes", "Bytes transferred during the latest window frame.",
+                    statistics.getBytesTransferred());
+            gauge("homework_window_unique_hosts", "Unique remote hosts during the latest window frame.",
+                    statistics.getUniqueHosts());
+            gauge("homework_window_peak_requests_per_second", "Requests during the busiest second of the latest "
+                    + "window frame.", statistics.getPeakHitsPerSecond());
+            gauge("homework_window_p95_requests_per_second", "95th percentile of the requests per second of the "
+                    + "latest window frame.", statistics.getP95HitsPerSecond());
+            gauge("homework_window_min_requests_per_second", "Requests during the quietest second of the latest "
+                    + "window frame.", statistics.getMinHitsPerSecond());
+            gauge("homework_window_sample_rate", "Largest sampling rate of the latest window frame, 1 if exact.",
+                    statistics.getSampleRate());
+
+            header("homework_window_requests_by_status_class", "gauge",
+                    "Requests by status class during the latest window frame.");
+            int[] hitsByStatusClass = statistics.getHitsByStatusClass();
+            for (int i = 0; i < hitsByStatusClass.length; i++) {
+                sample("homework_window_requests_by_status_class", "class", STATUS_CLASSES[i], hitsByStatusClass[i]);
+            }
+            header("homework_window_requests_by_section", "gauge",
+                    "Requests of the top sections during the latest window frame.");
+            for (Map.Entry<String, Integer> entry : statistics.getHitsBySection()) {
+                sample("homework_window_requests_by_section", "section", entry.getKey(), entry.getValue());
+            }
+            header("homework_window_requests_by_user_agent", "gauge",
+                    "Requests of the top user agent families during the latest window frame.");
+            for (Map.Entry<String, Integer> entry : statistics.getHitsByUserAgentFamily()) {
+                sample("homework_window_requests_by_user_agent", "family", entry.getKey(), entry.getValue());
+            }
+            header("homework_window_requests_by_referer", "gauge",
+                    "Requests of the top referer domains during the latest window frame.");
+            for (Map.Entry<String, Integer> entry : statistics.getHitsByRefererDomain()) {
+                sample("homework_window_requests_by_referer", "domain", entry.getKey(), entry.getValue());
+            }
+            header("homework_window_requests_by_subnet", "gauge",
+                    "Requests of the top remote host subnets (IPv4 /24, IPv6 /48) during the latest window frame.");
+            for (Map.Entry<String, Integer> entry : statistics.getHitsBySubnet()) {
+                sample("homework_window_requests_by_subnet", "subnet", entry.getKey(), entry.getValue());
+            }
+            header("homework_window_requests_by_method", "gauge",
+                    "Requests by method during the latest window frame.");
+            for (Map.Entry<String, Integer> entry : statistics.getHitsByMethod().entrySet()) {
+                sample("homework_window_requests_by_method", "method", entry.getKey(), entry.getValue());
+            }
+        }
+
+        gauge("homework_alert_high_traffic", "Whether a high traffic alert is ongoing.",
+                alertManager.isHighTraffic() ? 1 : 0);
+        gauge("homework_alert_hits_per_second", "Average hits per second during the monitor duration.",
+                (double) alertManager.getTotalHitsDuringMonitorDuration() / alertManager.getMonitorDurationSeconds());
+        gauge("homework_alert_threshold_hits_per_second", "Hits per second above which an alert is triggered.",
+                alertManager.getTrafficAlertThreshold());
+        header("homework_alerts_total", "counter", "Traffic alerts published by type.");
+        for (Map.Entry<TrafficAlert.AlertType, Long> entry : alertCounts.entrySet()) {
+            sample("homework_alerts_total", "type", entry.getKey().name().toLowerCase(), entry.getValue());
+        }
+
+        counter("homework_bytes_read_total", "Bytes read from the followed file.", pipelineMetrics.getBytesRead());
+        counter("homework_lines_read_total", "Log lines read.", pipelineMetrics.getLinesRead());
+        counter("homework_parse_errors_total", "Log lines which couldn't be parsed.",
+                pipelineMetrics.getParseErrors());
+        header("homework_parse_errors_by_reason_total", "counter", "Log lines which couldn't be parsed by reason.");
+        for (Map.Entry<String, Long> entry : pipelineMetrics.getParseErrorsByReason().entrySet()) {
+            sample("homework_parse_errors_by_reason_total", "reason", entry.getKey().toLowerCase(), entry.getValue());
+        }
+        counter("homework_filtered_lines_total", "Log lines dropped by the exclusion filters.",
+                pipelineMetrics.getFilteredLines());
+        counter("homework_shed_lines_total", "Log lines skipped while the ingestion was behind.",
+                pipelineMetrics.getShedLines());
+        gauge("homework_sample_rate", "One log line out of this number is parsed, 1 if every line is.",
+                pipelineMetrics.getSampleRate());
+        counter("homework_statistics_published_total", "Traffic statistics published.",
+                pipelineMetrics.getStatisticsPublished());
+        counter("homework_alerts_published_total", "Traffic alerts published.",
+                pipelineMetrics.getAlertsPublished());
+        gauge("homework_buffered_records", "Records waiting for their window frame to be closed.",
+                pipelineMetrics.getBufferedRecords());
+        gauge("homework_memory_used_bytes", "Estimated memory used by the buffers of the pipeline.",
+                pipelineMetrics.getMemoryUsed());
+        gauge("homework_memory_budget_bytes", "Memory budget of the buffers of the pipeline, 0 if there is none.",
+                pipelineMetrics.getMemoryBudget());
+        header("homework_memory_used_by_component_bytes", "gauge",
+                "Estimated memory used by every component of the pipeline.");
+        for (Map.Entry<String, Long> entry : pipelineMetrics.getMemoryUsedByComponent().entrySet()) {
+            sample("homework_memory_used_by_component_bytes", "component", entry.getKey().toLowerCase(),
+                    entry.getValue());
+        }
+        gauge("homework_window_close_max_seconds", "Longest time spent closing a window frame.",
+                pipelineMetrics.getTickTimer().getMax() / 1e9);
+        gauge("homework_record_lag_max_seconds", "Longest lag between a record and the closing of its window frame.",
+                pipelineMetrics.getRecordLagTimer().getMax() / 1e3);
+
+        exposition = buffer.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void gauge(String name, String help, double value) {
+        header(name, "gauge", help);
+        buffer.append(name).append(' ');
+        appendValue(value);
+        buffer.append('\n');
+    }
+
+    private void counter(String name, String help, long value) {
+        header(name, "counter", help);
+        buffer.append(name).append(' ').append(value).append('\n');
+    }
+
+    private void header(String name, String type, String help) {
+        buffer.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        buffer.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private void sample(String name, String label, String labelValue, double value) {
+        buffer.append(name).append('{').append(label).append("=\"");
+        if (labelValue == null) {
+            labelValue = "";
+        }
+        // Label values must escape backslashes, double quotes and line feeds.
+        for (int i = 0; i < labelValue.length(); i++) {
+            char c = labelValue.charAt(i);
+            if (c == '\\' || c == '"') {
+                buffer.append('\\').append(c);
+            } else if (c == '\n') {
+                buffer.append("\\n");
+            } else {
+                buffer.append(c);
+            }
+        }
+        buffer.append("\"} ");
+        appendValue(value);
+        buffer.append('\n');
+    }
+
+    private void appendValue(double value) {
+        if (value == (long) value) {
+            // Avoid the ".0" of integral values.
+            buffer.append((long) value);
+        } else {
+            buffer.append(value);
+        }
+    }
+
+}
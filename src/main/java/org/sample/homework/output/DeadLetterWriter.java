@@ -0,0 +1,175 @@
+package org.sample.homework.output;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.sample.homework.metrics.MemoryBudget;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class is responsible for appending rejected log lines to a file, so that they can be inspected (or replayed)
+ * later.
+ * <p>
+ * Lines are handed over through a bounded queue and written by a background thread, so the ingest thread never waits
+ * for the disk. When the queue is full, lines are dropped and counted instead. Queued lines are reserved against the
+ * memory budget (see {@link MemoryBudget}), and lines are dropped as well while the budget is under pressure.
+ */
+@Slf4j
+public class DeadLetterWriter implements Closeable {
+
+    /**
+     * Default number of lines which can wait to be written.
+     */
+    public static final int DEFAULT_CAPACITY = 10_000;
+
+    /**
+     * How long the writer thread waits for lines before checking whether it has been closed, in milliseconds.
+     */
+    private static final long POLL_MILLIS = 100;
+
+    /**
+     * The lines waiting to be written.
+     */
+    private final BlockingQueue<String> queue;
+
+    /**
+     * The destination of the lines, only used by the writer thread.
+     */
+    private final Writer writer;
+
+    /**
+     * The thread writing the lines.
+     */
+    private final Thread thread;
+
+    /**
+     * Number of lines dropped because the queue was full.
+     */
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * Whether the writer thread should keep waiting for lines.
+     */
+    private volatile boolean running = true;
+
+    /**
+     * Class constructor.
+     *
+     * @param path the file the lines are appended to, created if needed, not <tt>null</tt>
+     * @throws IOException if the file can't be opened
+     */
+    public DeadLetterWriter(@NonNull Path path) throws IOException {
+        this(path, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param path     the file the lines are appended to, created if needed, not <tt>null</tt>
+     * @param capacity the number of lines which can wait to be written
+     * @throws IOException if the file can't be opened
+     */
+    public DeadLetterWriter(@NonNull Path path, int capacity) throws IOException {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.thread = new Thread(this::run, "dead-letter-thread");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues a line to be written, without blocking.
+     *
+     * @param line the rejected line, not <tt>null</tt>
+     * @return <tt>false</tt> if the line has been dropped because the queue is full
+     */
+    public boolean offer(@NonNull String line) {
+        MemoryBudget budget = MemoryBudget.get();
+        if (!budget.isUnderPressure()) {
+            budget.reserve(MemoryBudget.Component.DEAD_LETTERS, footprint(line));
+            if (queue.offer(line)) {
+                return true;
+            }
+            budget.release(MemoryBudget.Component.DEAD_LETTERS, footprint(line));
+        }
+        dropped.increment();
+        return false;
+    }
+
+    /**
+     * Returns the memory held by a queued line in bytes (approximately).
+     */
+    private static long footprint(String line) {
+        return 64 + line.length() * 2L;
+    }
+
+    /**
+     * Returns the number of lines dropped because the queue was full or the memory budget was under pressure.
+     *
+     * @return the number of dropped lines
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Writes the queued lines and closes the file.
+     *
+     * @throws IOException if the file can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer.close();
+        if (getDropped() > 0) {
+            log.warn("{} rejected lines were not written because the dead letter queue was full or the memory "
+                    + "budget under pressure.", getDropped());
+        }
+    }
+
+    private void run() {
+        List<String> batch = new ArrayList<>();
+        try {
+            while (running || !queue.isEmpty()) {
+                String line = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (line == null) {
+                    continue;
+                }
+                batch.add(line);
+                queue.drainTo(batch);
+                for (String rejected : batch) {
+                    writer.write(rejected);
+                    writer.write('\n');
+                    MemoryBudget.get().release(MemoryBudget.Component.DEAD_LETTERS, footprint(rejected));
+                }
+                batch.clear();
+                writer.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.error("Failed to write rejected lines, they won't be kept anymore.", e);
+            running = false;
+            // Lines offered from now on are dropped once the queue is full.
+        }
+    }
+
+}
@@ -0,0 +1,217 @@
+package org.sample.homework.output;
+
+import com.google.common.eventbus.Subscribe;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.sample.homework.alerts.TrafficAlert;
+import org.sample.homework.stats.TrafficStatistics;
+import org.sample.homework.tenant.TenantSweep;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class is responsible for writing every published {@link TrafficStatistics} and {@link TrafficAlert} as a
+ * compact JSON object on its own line.
+ * <p>
+ * Events are serialized by hand into a reused buffer, without any reflection. Every line is flushed as soon as it is
+ * written, so the output can be followed by another process.
+ * <pre>
+ * {"type":"statistics","windowStart":"2019-05-09T16:00:00Z","windowEnd":"2019-05-09T16:00:10Z","totalRequests":3,...}
+ * {"type":"alert","alert":"HIGH_TRAFFIC","hitsPerSecond":12.5,"time":"2019-05-09T16:00:10Z"}
+ * </pre>
+ */
+@Slf4j
+public class JsonLinesWriter implements Closeable {
+
+    private static final String[] STATUS_CLASSES = {"1xx", "2xx", "3xx", "4xx", "5xx"};
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * The destination of the lines.
+     */
+    private final Writer writer;
+
+    /**
+     * The reused buffer a line is serialized into.
+     */
+    private final StringBuilder buffer = new StringBuilder(1024);
+
+    /**
+     * Class constructor.
+     *
+     * @param writer the destination of the lines, not <tt>null</tt>
+     */
+    public JsonLinesWriter(@NonNull Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Function to receive traffic statistics events from the event bus.
+     *
+     * @param statistics the traffic statistics event
+     */
+    @Subscribe
+    public synchronized void handleTrafficStatistics(@NonNull TrafficStatistics statistics) {
+        buffer.setLength(0);
+        buffer.append("{\"type\":\"statistics\"");
+        if (statistics.getTenant() != null) {
+            buffer.append(",\"tenant\":");
+            appendString(statistics.getTenant());
+        }
+        if (statistics.getWindowStart() != null) {
+            buffer.append(",\"windowStart\":");
+            appendInstant(statistics.getWindowStart());
+        }
+        if (statistics.getWindowEnd() != null) {
+            buffer.append(",\"windowEnd\":");
+            appendInstant(statistics.getWindowEnd());
+        }
+        buffer.append(",\"totalRequests\":").append(statistics.getTotalRequestCount());
+        buffer.append(",\"validRequests\":").append(statistics.getValidRequestCount());
+        buffer.append(",\"bytes\":").append(statistics.getBytesTransferred());
+        buffer.append(",\"uniqueHosts\":").append(statistics.getUniqueHosts());
+        buffer.append(",\"peakHitsPerSecond\":").append(statistics.getPeakHitsPerSecond());
+        buffer.append(",\"p95HitsPerSecond\":").append(statistics.getP95HitsPerSecond());
+        buffer.append(",\"minHitsPerSecond\":").append(statistics.getMinHitsPerSecond());
+        if (statistics.isSampled()) {
+            buffer.append(",\"sampleRate\":").append(statistics.getSampleRate());
+        }
+        if (statistics.isApproximate()) {
+            buffer.append(",\"approximate\":true");
+        }
+        buffer.append(",\"statusClasses\":{");
+        int[] hitsByStatusClass = statistics.getHitsByStatusClass();
+        for (int i = 0; i < hitsByStatusClass.length; i++) {
+            if (i > 0) {
+                buffer.append(',');
+            }
+            buffer.append('"').append(STATUS_CLASSES[i]).append("\":").append(hitsByStatusClass[i]);
+        }
+        buffer.append("},\"sections\":");
+        appendTopHits(statistics.getHitsBySection(), "section");
+        buffer.append(",\"userAgents\":");
+        appendTopHits(statistics.getHitsByUserAgentFamily(), "family");
+        buffer.append(",\"referers\":");
+        appendTopHits(statistics.getHitsByRefererDomain(), "domain");
+        buffer.append(",\"subnets\":");
+        appendTopHits(statistics.getHitsBySubnet(), "subnet");
+        buffer.append(",\"methods\":{");
+        boolean first = true;
+        for (Map.Entry<String, Integer> entry : statistics.getHitsByMethod().entrySet()) {
+            if (!first) {
+                buffer.append(',');
+            }
+            first = false;
+            appendString(entry.getKey() == null ? "-" : entry.getKey());
+            buffer.append(':').append(entry.getValue());
+        }
+        buffer.append("}}");
+        writeLine();
+    }
+
+    /**
+     * Function to receive the statistics of every tenant from the event bus, written as one line per tenant.
+     *
+     * @param sweep the statistics of the tenants
+     */
+    @Subscribe
+    public synchronized void handleTenantSweep(@NonNull TenantSweep sweep) {
+        sweep.getStatistics().forEach(this::handleTrafficStatistics);
+    }
+
+    /**
+     * Function to receive traffic alerts events from the event bus.
+     *
+     * @param alert the traffic alert event
+     */
+    @Subscribe
+    public synchronized void handleTrafficAlert(@NonNull TrafficAlert alert) {
+        buffer.setLength(0);
+        buffer.append("{\"type\":\"alert\",\"alert\":\"").append(alert.getType().name());
+        buffer.append('"');
+        if (alert.getTenant() != null) {
+            buffer.append(",\"tenant\":");
+            appendString(alert.getTenant());
+        }
+        buffer.append(",\"hitsPerSecond\":").append(alert.getHitsPerSecond());
+        if (alert.isEstimated()) {
+            buffer.append(",\"estimated\":true");
+        }
+        buffer.append(",\"time\":");
+        appendInstant(alert.getTime().toInstant());
+        buffer.append('}');
+        writeLine();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    private void writeLine() {
+        buffer.append('\n');
+        try {
+            writer.append(buffer);
+            writer.flush();
+        } catch (IOException e) {
+            log.error("Failed to write JSON line.", e);
+        }
+    }
+
+    private void appendInstant(Instant instant) {
+        buffer.append('"');
+        DateTimeFormatter.ISO_INSTANT.formatTo(instant, buffer);
+        buffer.append('"');
+    }
+
+    /**
+     * Appends an array of hits, such as <tt>[{"section":"/a","hits":3}]</tt>.
+     *
+     * @param hits the hits by key, in order
+     * @param name the name of the key
+     */
+    private void appendTopHits(List<Map.Entry<String, Integer>> hits, String name) {
+        buffer.append('[');
+        boolean first = true;
+        for (Map.Entry<String, Integer> entry : hits) {
+            if (!first) {
+                buffer.append(',');
+            }
+            first = false;
+            buffer.append("{\"").append(name).append("\":");
+            appendString(entry.getKey());
+            buffer.append(",\"hits\":").append(entry.getValue()).append('}');
+        }
+        buffer.append(']');
+    }
+
+    /**
+     * Appends a JSON string or <tt>null</tt>, escaping quotes, backslashes and control characters.
+     */
+    private void appendString(String value) {
+        if (value == null) {
+            buffer.append("null");
+            return;
+        }
+        buffer.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                buffer.append('\\').append(c);
+            } else if (c < 0x20) {
+                buffer.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+            } else {
+                buffer.append(c);
+            }
+        }
+        buffer.append('"');
+    }
+
+}
@@ -0,0 +1,50 @@
+package org.sample.homework.reader;
+
+import lombok.Data;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Immutable class which represents a byte offset within a given file.
+ * <p>
+ * The file is identified by its file system key (device and inode on unix systems) rather than by its name, so that
+ * a rotated log file is never mistaken for the one it replaced.
+ */
+@Data
+public class FilePosition {
+
+    /**
+     * The file system identity of the file.
+     *
+     * @see FilePosition#fileKeyOf(Path)
+     */
+    private final String fileKey;
+
+    /**
+     * The byte offset of the first byte which has not been consumed yet.
+     */
+    private final long offset;
+
+    /**
+     * Returns a string uniquely identifying the given file on the file system.
+     * <p>
+     * Falls back to the file creation time on file systems which don't provide file keys.
+     *
+     * @param path the file to identify, not <tt>null</tt>
+     * @return the file identity, not <tt>null</tt>
+     * @throws IOException if the file attributes can't be read
+     */
+    public static String fileKeyOf(@NonNull Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        Object fileKey = attributes.fileKey();
+        if (fileKey != null) {
+            return fileKey.toString();
+        }
+        return "created=" + attributes.creationTime().toMillis();
+    }
+
+}
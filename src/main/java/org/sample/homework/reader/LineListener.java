@@ -1,5 +1,7 @@
 package org.sample.homework.reader;
 
+import java.nio.charset.Charset;
+
 /**
  * A line listener to be used to get new lines from a {@link FileWatcher}.
  *
@@ -14,4 +16,18 @@ public interface LineListener {
      * @param line the new line forwarded by the watcher.
      */
     void handle(String line);
+
+    /**
+     * Handles a line from a {@link FileWatcher} instance, without decoding it.
+     * <p>
+     * The buffer belongs to the watcher and is reused once this method returns. By default, the line is decoded with
+     * the platform default charset and forwarded to {@link LineListener#handle(String)}.
+     *
+     * @param buffer the buffer holding the line
+     * @param from   the index of the first byte of the line (inclusive)
+     * @param to     the index of the last byte of the line (exclusive), line terminators excluded
+     */
+    default void handle(byte[] buffer, int from, int to) {
+        handle(new String(buffer, from, to - from, Charset.defaultCharset()));
+    }
 }
@@ -1,62 +1,347 @@
 package org.sample.homework.reader;
 
 import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
-import org.apache.commons.io.input.Tailer;
-import org.apache.commons.io.input.TailerListenerAdapter;
+import lombok.extern.slf4j.Slf4j;
+import org.sample.homework.metrics.PipelineMetrics;
+import org.sample.homework.util.DelimiterIndex;
 
-import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 /**
- * A {@link FileWatcher} based on {@link Tailer} which is an implementation of the unix "tail -f" functionality.
+ * A {@link FileWatcher} which implements the unix "tail -f" functionality by polling the file for new content.
  * <p>
- * {@link Tailer} is used to follow changes in the file, calling the {@link LineListener}'s handle method for each new line.
- * Note that this implementation handles rotating files correctly.
+ * The file is read in large chunks through a {@link FileChannel}, calling the {@link LineListener}'s handle method for
+ * each complete line, straight from the read buffer. The byte offset of the first unconsumed byte is tracked so that a
+ * watcher can be resumed exactly where a previous one stopped (see {@link PollingFileWatcher#getPosition()}).
+ * Note that this implementation handles rotating and truncated files correctly: once rotated, the new file is always
+ * read from its beginning, even if it disappears before it could be opened.
  */
+@Slf4j
 public class PollingFileWatcher extends FileWatcher {
 
     /**
-     * A {@link TailerListenerAdapter} implementation used to forward new lines from Apache {@link Tailer}.
+     * Start position meaning that the file should be followed from its current end.
      */
-    @RequiredArgsConstructor
-    private static class MyListener extends TailerListenerAdapter {
+    public static final long END_OF_FILE = -1;
 
-        private final LineListener lineListener;
+    /**
+     * Initial size of the read buffer. It grows if a single line doesn't fit in it.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
 
-        @Override
-        public void handle(String line) {
-            lineListener.handle(line);
-        }
-    }
+    /**
+     * The followed file.
+     */
+    private final Path path;
+
+    /**
+     * The delay between checks of the file for new content in milliseconds.
+     */
+    private final int pollDelayMillis;
+
+    /**
+     * The offset at which to start reading the next time the file is opened, or {@link PollingFileWatcher#END_OF_FILE}.
+     * <p>
+     * This is the requested start position until the file is rotated, and 0 afterwards.
+     */
+    private long openPosition;
+
+    /**
+     * Holds the bytes read from the file which haven't been forwarded yet (i.e. an incomplete last line).
+     */
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
 
     /**
-     * A {@link Tailer} instance used to implement the file watcher.
+     * The line feeds of the buffer, found 8 bytes at a time.
      */
-    private final Tailer tailer;
+    private final DelimiterIndex lineFeeds = new DelimiterIndex((byte) '\n');
 
     /**
-     * Creates a {@link FileWatcher} for the given file, with the given poll delay.
+     * The channel of the file currently opened, <tt>null</tt> until the file exists.
+     */
+    private FileChannel channel;
+
+    /**
+     * The identity of the file currently opened.
+     */
+    private String fileKey;
+
+    /**
+     * The offset right after the last line forwarded to the listener.
+     */
+    private long offset;
+
+    /**
+     * The latest consumed position, published for other threads after every read.
+     */
+    private volatile FilePosition position;
+
+    /**
+     * Whether the watcher should keep following the file.
+     */
+    private volatile boolean running = true;
+
+    /**
+     * Creates a {@link FileWatcher} for the given file, with the given poll delay, starting at the end of the file.
      *
      * @param filename        the file to follow for new lines
      * @param listener        the {@link LineListener} to use
      * @param pollDelayMillis the delay between checks of the file for new content in milliseconds
      */
     public PollingFileWatcher(@NonNull String filename, @NonNull LineListener listener, int pollDelayMillis) {
+        this(filename, listener, pollDelayMillis, END_OF_FILE);
+    }
+
+    /**
+     * Creates a {@link FileWatcher} for the given file, with the given poll delay, starting at the given offset.
+     *
+     * @param filename        the file to follow for new lines
+     * @param listener        the {@link LineListener} to use
+     * @param pollDelayMillis the delay between checks of the file for new content in milliseconds
+     * @param startPosition   the byte offset at which to start reading or {@link PollingFileWatcher#END_OF_FILE}
+     */
+    public PollingFileWatcher(@NonNull String filename, @NonNull LineListener listener, int pollDelayMillis,
+                              long startPosition) {
         super(listener);
-        File file = Paths.get(filename).toFile();
-        // Create a file watcher starting at the end of the file with the given polling delay.
-        tailer = new Tailer(file, new MyListener(listener), pollDelayMillis, true);
+        this.path = Paths.get(filename);
+        this.pollDelayMillis = pollDelayMillis;
+        this.openPosition = startPosition;
+    }
+
+    /**
+     * Returns the position of the first byte which has not been forwarded to the listener yet.
+     *
+     * @return the current position, or <tt>null</tt> if the file hasn't been opened yet
+     */
+    public FilePosition getPosition() {
+        return position;
     }
 
     @Override
-    public void start() {
-        tailer.run();
+    public void start() throws IOException {
+        try {
+            while (running) {
+                if (!poll()) {
+                    sleep();
+                }
+            }
+        } finally {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+
+    /**
+     * Forwards the lines appended to the file since the last call, following the file across rotations and
+     * truncations. This lets a caller poll many files from a few threads, instead of dedicating a thread to each of
+     * them with {@link PollingFileWatcher#start()}. Calls must not overlap.
+     *
+     * @return <tt>true</tt> if content has been read or the file has changed, <tt>false</tt> if there is nothing new
+     * @throws IOException if something goes wrong while reading the file
+     */
+    public boolean poll() throws IOException {
+        if (channel == null) {
+            channel = open(openPosition);
+            if (channel == null) {
+                // The file doesn't exist (yet).
+                return false;
+            }
+        }
+        int read = drain(channel);
+        if (isRotated()) {
+            // The old file has been fully drained at this point, follow the new one from its beginning.
+            flushIncompleteLine();
+            channel.close();
+            // Should the new file disappear before it is opened, the next one will be read from its beginning too.
+            openPosition = 0;
+            channel = open(openPosition);
+            return true;
+        }
+        if (isTruncated(channel)) {
+            log.info("File {} has been truncated, reading it from the beginning.", path);
+            buffer.clear();
+            offset = 0;
+            channel.position(0);
+            publishPosition();
+            return true;
+        }
+        return read > 0;
     }
 
     @Override
     public void stop() {
-        tailer.stop();
+        running = false;
+    }
+
+    /**
+     * Opens the followed file.
+     *
+     * @param requestedPosition the offset at which to start reading or {@link PollingFileWatcher#END_OF_FILE}
+     * @return a channel positioned at the requested offset, or <tt>null</tt> if the file doesn't exist
+     * @throws IOException if the file can't be opened
+     */
+    private FileChannel open(long requestedPosition) throws IOException {
+        FileChannel channel = null;
+        String key;
+        try {
+            key = FilePosition.fileKeyOf(path);
+            while (true) {
+                channel = FileChannel.open(path, StandardOpenOption.READ);
+                String openedKey = FilePosition.fileKeyOf(path);
+                if (openedKey.equals(key)) {
+                    break;
+                }
+                // The file has been rotated meanwhile, so the channel may be on either file: open the new one again.
+                channel.close();
+                key = openedKey;
+            }
+        } catch (NoSuchFileException e) {
+            if (channel != null) {
+                channel.close();
+            }
+            return null;
+        }
+        fileKey = key;
+        long size = channel.size();
+        if (requestedPosition == END_OF_FILE) {
+            offset = size;
+        } else if (requestedPosition > size) {
+            // The file is smaller than expected, so it can't be the one we were reading.
+            log.info("Start position {} is beyond the end of {}, reading it from the beginning.", requestedPosition,
+                    path);
+            offset = 0;
+        } else {
+            offset = requestedPosition;
+        }
+        channel.position(offset);
+        buffer.clear();
+        publishPosition();
+        return channel;
+    }
+
+    /**
+     * Reads all the content currently available and forwards complete lines to the listener.
+     *
+     * @param channel the channel to read from
+     * @return the number of bytes read
+     * @throws IOException if something goes wrong while reading
+     */
+    private int drain(FileChannel channel) throws IOException {
+        int total = 0;
+        int read;
+        while (running && (read = channel.read(buffer)) > 0) {
+            total += read;
+            forwardLines();
+            if (!buffer.hasRemaining()) {
+                // A single line doesn't fit in the buffer.
+                ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+        }
+        if (total > 0) {
+            PipelineMetrics.get().addBytesRead(total);
+            publishPosition();
+        }
+        return total;
+    }
+
+    /**
+     * Forwards every complete line held by the buffer and keeps the remaining bytes for the next read.
+     */
+    private void forwardLines() {
+        byte[] bytes = buffer.array();
+        int end = buffer.position();
+        int[] lineFeeds = this.lineFeeds.index(bytes, 0, end).getOffsets();
+        int lineStart = 0;
+        for (int k = 0; k < this.lineFeeds.getSize(); k++) {
+            forwardLine(bytes, lineStart, lineFeeds[k]);
+            lineStart = lineFeeds[k] + 1;
+        }
+        offset += lineStart;
+        // Move the incomplete line at the beginning of the buffer.
+        System.arraycopy(bytes, lineStart, bytes, 0, end - lineStart);
+        buffer.position(end - lineStart);
+    }
+
+    /**
+     * Forwards a line to the listener, ignoring the trailing carriage return if any.
+     *
+     * @param bytes the buffer holding the line
+     * @param from  the index of the first byte of the line
+     * @param to    the index of the line feed character
+     */
+    private void forwardLine(byte[] bytes, int from, int to) {
+        if (to > from && bytes[to - 1] == '\r') {
+            --to;
+        }
+        getListener().handle(bytes, from, to);
+    }
+
+    /**
+     * Forwards a last line which isn't terminated by a line feed.
+     */
+    private void flushIncompleteLine() {
+        if (buffer.position() > 0) {
+            offset += buffer.position();
+            forwardLine(buffer.array(), 0, buffer.position());
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Checks whether the followed file has been replaced by a new one.
+     *
+     * @return <tt>true</tt> if the file name now points to another file
+     * @throws IOException if the file attributes can't be read
+     */
+    private boolean isRotated() throws IOException {
+        try {
+            return !fileKey.equals(FilePosition.fileKeyOf(path));
+        } catch (NoSuchFileException e) {
+            // The file has been moved but not recreated yet.
+            return false;
+        }
+    }
+
+    /**
+     * Checks whether the followed file has been truncated.
+     *
+     * @param channel the channel of the followed file
+     * @return <tt>true</tt> if the file is smaller than the bytes already consumed
+     * @throws IOException if the file size can't be read
+     */
+    private boolean isTruncated(FileChannel channel) throws IOException {
+        return channel.size() < offset + buffer.position();
+    }
+
+    /**
+     * Publishes the current position for other threads.
+     */
+    private void publishPosition() {
+        position = new FilePosition(fileKey, offset);
+    }
+
+    /**
+     * Waits for new content.
+     */
+    private void sleep() {
+        try {
+            Thread.sleep(pollDelayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
     }
 
 }
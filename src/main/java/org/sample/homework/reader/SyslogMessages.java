@@ -0,0 +1,120 @@
+package org.sample.homework.reader;
+
+import lombok.experimental.UtilityClass;
+
+/**
+ * Locates the payload of syslog messages, i.e. the log line written by the sending process.
+ * <p>
+ * Both the BSD format (RFC 3164, e.g. <tt>&lt;190&gt;Oct 19 12:00:00 web1 nginx: ...</tt>, the default of nginx) and
+ * the current format (RFC 5424, e.g. <tt>&lt;190&gt;1 2019-05-09T16:00:00Z web1 nginx - - - ...</tt>) are supported.
+ * Messages which don't start with a priority are considered to be bare log lines.
+ */
+@UtilityClass
+class SyslogMessages {
+
+    /**
+     * The number of header fields following the version of RFC 5424 messages: timestamp, host name, application name,
+     * process id and message id.
+     */
+    private static final int RFC5424_FIELDS = 5;
+
+    /**
+     * The length of RFC 3164 timestamps, e.g. "Oct 19 12:00:00".
+     */
+    private static final int RFC3164_TIMESTAMP_LENGTH = 15;
+
+    /**
+     * Returns the index of the first byte of the payload of a message.
+     *
+     * @param buffer the buffer holding the message
+     * @param from   the index of the first byte of the message (inclusive)
+     * @param to     the index of the last byte of the message (exclusive)
+     * @return the index of the payload, <tt>from</tt> if the message has no syslog header
+     */
+    static int payloadStart(byte[] buffer, int from, int to) {
+        if (from == to || buffer[from] != '<') {
+            return from;
+        }
+        // The priority holds at most 3 digits.
+        int i = from + 1;
+        while (i < to && i <= from + 4 && isDigit(buffer[i])) {
+            ++i;
+        }
+        if (i == from + 1 || i == to || buffer[i] != '>') {
+            return from;
+        }
+        ++i;
+        if (i + 1 < to && isDigit(buffer[i]) && (buffer[i + 1] == ' ' || isDigit(buffer[i + 1]))) {
+            return rfc5424PayloadStart(buffer, i, to);
+        }
+        return rfc3164PayloadStart(buffer, i, to);
+    }
+
+    /**
+     * Skips the header fields and the structured data of a RFC 5424 message.
+     */
+    private static int rfc5424PayloadStart(byte[] buffer, int from, int to) {
+        int i = skipField(buffer, from, to);
+        for (int k = 0; k < RFC5424_FIELDS; k++) {
+            i = skipField(buffer, i, to);
+        }
+        if (i < to && buffer[i] == '[') {
+            // Structured data elements, whose values may hold escaped brackets.
+            while (i < to && buffer[i] == '[') {
+                ++i;
+                while (i < to && buffer[i] != ']') {
+                    i += buffer[i] == '\\' ? 2 : 1;
+                }
+                ++i;
+            }
+            if (i < to && buffer[i] == ' ') {
+                ++i;
+            }
+        } else {
+            // The nil value "-".
+            i = skipField(buffer, i, to);
+        }
+        // The payload may start with a byte order mark.
+        if (i + 2 < to && buffer[i] == (byte) 0xEF && buffer[i + 1] == (byte) 0xBB && buffer[i + 2] == (byte) 0xBF) {
+            i += 3;
+        }
+        return Math.min(i, to);
+    }
+
+    /**
+     * Skips the timestamp, the host name and the tag of a RFC 3164 message, as far as they can be recognized.
+     */
+    private static int rfc3164PayloadStart(byte[] buffer, int from, int to) {
+        int i = from;
+        if (i + RFC3164_TIMESTAMP_LENGTH < to && buffer[i + 3] == ' ' && buffer[i + 6] == ' '
+                && buffer[i + 9] == ':' && buffer[i + 12] == ':' && buffer[i + RFC3164_TIMESTAMP_LENGTH] == ' ') {
+            // The host name follows the timestamp.
+            i = skipField(buffer, i + RFC3164_TIMESTAMP_LENGTH + 1, to);
+        }
+        // The tag is the process name, optionally followed by its pid, a colon and a space (unlike IPv6 addresses).
+        int tagEnd = i;
+        while (tagEnd < to && buffer[tagEnd] != ' ' && buffer[tagEnd] != ':') {
+            ++tagEnd;
+        }
+        if (tagEnd > i && tagEnd + 1 < to && buffer[tagEnd] == ':' && buffer[tagEnd + 1] == ' ') {
+            return tagEnd + 2;
+        }
+        return i;
+    }
+
+    /**
+     * Skips a field and the space following it.
+     */
+    private static int skipField(byte[] buffer, int from, int to) {
+        int i = from;
+        while (i < to && buffer[i] != ' ') {
+            ++i;
+        }
+        return Math.min(i + 1, to);
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+}
@@ -0,0 +1,325 @@
+package org.sample.homework.reader;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.sample.homework.metrics.PipelineMetrics;
+import org.sample.homework.util.Swar;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+
+/**
+ * A {@link FileWatcher} which receives log lines from the network instead of following a file: syslog messages are
+ * received over UDP (one message per datagram) and/or TCP (messages framed by a line feed, or prefixed by their length
+ * as described by RFC 6587), and their headers are stripped so that only the payload is forwarded to the listener
+ * (see {@link SyslogMessages}).
+ * <p>
+ * A single thread serves every socket with a selector. Messages are forwarded straight from receive buffers which are
+ * reused: one for all the datagrams, and one per TCP connection which only grows if a message doesn't fit in it.
+ */
+@Slf4j
+public class SyslogReceiver extends FileWatcher {
+
+    /**
+     * The size of the datagram buffer, the largest UDP payload.
+     */
+    private static final int DATAGRAM_BUFFER_SIZE = 65_535;
+
+    /**
+     * Initial size of the buffer of a TCP connection.
+     */
+    private static final int STREAM_BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * The largest accepted message, connections sending larger ones are closed.
+     */
+    private static final int MAX_MESSAGE_SIZE = 1 << 20;
+
+    /**
+     * The longest length prefix of octet-counted messages.
+     */
+    private static final int MAX_LENGTH_DIGITS = 7;
+
+    private final Selector selector;
+
+    private final DatagramChannel datagramChannel;
+
+    private final ServerSocketChannel serverChannel;
+
+    /**
+     * The buffer every datagram is received into.
+     */
+    private final ByteBuffer datagramBuffer;
+
+    /**
+     * Whether the receiver should keep serving the sockets.
+     */
+    private volatile boolean running = true;
+
+    private volatile boolean started;
+
+    /**
+     * Class constructor, binding the sockets right away.
+     *
+     * @param listener   the {@link LineListener} to use, not <tt>null</tt>
+     * @param udpAddress the address to receive datagrams on, or <tt>null</tt> to not listen on UDP
+     * @param tcpAddress the address to accept connections on, or <tt>null</tt> to not listen on TCP
+     * @throws IOException              if the sockets can't be bound
+     * @throws IllegalArgumentException if neither address is given
+     */
+    public SyslogReceiver(@NonNull LineListener listener, InetSocketAddress udpAddress, InetSocketAddress tcpAddress)
+            throws IOException {
+        super(listener);
+        if (udpAddress == null && tcpAddress == null) {
+            throw new IllegalArgumentException("Either a UDP or a TCP address is required!");
+        }
+        this.selector = Selector.open();
+        DatagramChannel udp = null;
+        ServerSocketChannel tcp = null;
+        try {
+            if (udpAddress != null) {
+                udp = DatagramChannel.open();
+                udp.setOption(StandardSocketOptions.SO_RCVBUF, 4 * DATAGRAM_BUFFER_SIZE);
+                udp.bind(udpAddress);
+                udp.configureBlocking(false);
+                udp.register(selector, SelectionKey.OP_READ);
+            }
+            if (tcpAddress != null) {
+                tcp = ServerSocketChannel.open();
+                tcp.bind(tcpAddress);
+                tcp.configureBlocking(false);
+                tcp.register(selector, SelectionKey.OP_ACCEPT);
+            }
+        } catch (IOException e) {
+            if (udp != null) {
+                udp.close();
+            }
+            if (tcp != null) {
+                tcp.close();
+            }
+            selector.close();
+            throw e;
+        }
+        this.datagramChannel = udp;
+        this.serverChannel = tcp;
+        this.datagramBuffer = udp == null ? null : ByteBuffer.allocate(DATAGRAM_BUFFER_SIZE);
+    }
+
+    /**
+     * Returns the port datagrams are received on.
+     *
+     * @return the bound UDP port, or 0 if not listening on UDP
+     */
+    public int getUdpPort() {
+        return datagramChannel == null ? 0 : datagramChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Returns the port connections are accepted on.
+     *
+     * @return the bound TCP port, or 0 if not listening on TCP
+     */
+    public int getTcpPort() {
+        return serverChannel == null ? 0 : serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Serves the sockets until the receiver is stopped (this is blocking).
+     *
+     * @throws IOException if the sockets can't be served anymore
+     */
+    @Override
+    public void start() throws IOException {
+        started = true;
+        try {
+            while (running) {
+                selector.select();
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.channel() == datagramChannel) {
+                        receiveDatagrams();
+                    } else if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.isReadable()) {
+                        read(key);
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+        } finally {
+            closeChannels();
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void close() throws IOException {
+        stop();
+        if (!started) {
+            closeChannels();
+        }
+    }
+
+    /**
+     * Forwards every datagram waiting to be received.
+     */
+    private void receiveDatagrams() throws IOException {
+        while (true) {
+            datagramBuffer.clear();
+            if (datagramChannel.receive(datagramBuffer) == null) {
+                return;
+            }
+            PipelineMetrics.get().addBytesRead(datagramBuffer.position());
+            forwardMessage(datagramBuffer.array(), 0, datagramBuffer.position());
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ, ByteBuffer.allocate(STREAM_BUFFER_SIZE));
+            log.debug("Accepted syslog connection from {}.", channel.getRemoteAddress());
+        }
+    }
+
+    /**
+     * Reads the available bytes of a connection and forwards its complete messages.
+     *
+     * @param key the key of the connection, whose attachment is the buffer of its incomplete message
+     */
+    private void read(SelectionKey key) {
+        SocketChannel channel = (SocketChannel) key.channel();
+        ByteBuffer buffer = (ByteBuffer) key.attachment();
+        try {
+            int read = channel.read(buffer);
+            if (read > 0) {
+                PipelineMetrics.get().addBytesRead(read);
+                forwardFrames(buffer);
+                if (!buffer.hasRemaining()) {
+                    if (buffer.capacity() >= MAX_MESSAGE_SIZE) {
+                        throw new IOException("Message larger than " + MAX_MESSAGE_SIZE + " bytes");
+                    }
+                    // A single message doesn't fit in the buffer.
+                    ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                    buffer.flip();
+                    larger.put(buffer);
+                    key.attach(larger);
+                }
+            } else if (read < 0) {
+                // The sender may not terminate its last message.
+                forwardMessage(buffer.array(), 0, buffer.position());
+                close(key);
+            }
+        } catch (IOException e) {
+            log.warn("Closing syslog connection: {}", e.getMessage());
+            close(key);
+        }
+    }
+
+    /**
+     * Forwards every complete message held by the buffer of a connection and keeps the remaining bytes for the next
+     * read.
+     *
+     * @param buffer the buffer of the connection
+     */
+    private void forwardFrames(ByteBuffer buffer) {
+        byte[] bytes = buffer.array();
+        int end = buffer.position();
+        int start = 0;
+        while (start < end) {
+            int length = octetCount(bytes, start, end);
+            if (length == -1) {
+                // The length prefix isn't complete yet.
+                break;
+            }
+            int frameEnd;
+            int next;
+            if (length >= 0) {
+                int prefixEnd = Swar.indexOf(bytes, start, end, (byte) ' ') + 1;
+                if (end - prefixEnd < length) {
+                    break;
+                }
+                frameEnd = prefixEnd + length;
+                next = frameEnd;
+                start = prefixEnd;
+            } else {
+                frameEnd = Swar.indexOf(bytes, start, end, (byte) '\n');
+                if (frameEnd < 0) {
+                    break;
+                }
+                next = frameEnd + 1;
+            }
+            forwardMessage(bytes, start, frameEnd);
+            start = next;
+        }
+        // Move the incomplete message at the beginning of the buffer.
+        System.arraycopy(bytes, start, bytes, 0, end - start);
+        buffer.position(end - start);
+    }
+
+    /**
+     * Reads the length prefix of an octet-counted message, i.e. digits followed by a space and the priority.
+     *
+     * @return the length of the message, -1 if the prefix may not be complete, or -2 if the message isn't prefixed
+     */
+    private static int octetCount(byte[] bytes, int from, int to) {
+        int length = 0;
+        int i = from;
+        while (i < to && i - from <= MAX_LENGTH_DIGITS && bytes[i] >= '0' && bytes[i] <= '9') {
+            length = length * 10 + bytes[i] - '0';
+            ++i;
+        }
+        if (i == from || i - from > MAX_LENGTH_DIGITS || bytes[from] == '0') {
+            return -2;
+        }
+        if (i + 1 >= to) {
+            return -1;
+        }
+        return bytes[i] == ' ' && bytes[i + 1] == '<' ? length : -2;
+    }
+
+    /**
+     * Forwards the payload of a message to the listener, ignoring the trailing line terminators if any.
+     *
+     * @param bytes the buffer holding the message
+     * @param from  the index of the first byte of the message
+     * @param to    the index of the last byte of the message (exclusive)
+     */
+    private void forwardMessage(byte[] bytes, int from, int to) {
+        while (to > from && (bytes[to - 1] == '\n' || bytes[to - 1] == '\r' || bytes[to - 1] == 0)) {
+            --to;
+        }
+        int payload = SyslogMessages.payloadStart(bytes, from, to);
+        if (payload < to) {
+            getListener().handle(bytes, payload, to);
+        }
+    }
+
+    private void close(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            log.debug("Failed to close syslog connection.", e);
+        }
+    }
+
+    private void closeChannels() throws IOException {
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+    }
+
+}
@@ -0,0 +1,298 @@
+package org.sample.homework.replay;
+
+import com.google.common.eventbus.EventBus;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.sample.homework.clf.AccessLogParseException;
+import org.sample.homework.clf.LazyAccessLogRecord;
+import org.sample.homework.clf.LogFormat;
+import org.sample.homework.clf.LogFormatDetector;
+import org.sample.homework.clf.MalformedLineHandler;
+import org.sample.homework.metrics.PipelineMetrics;
+import org.sample.homework.stats.TrafficStatisticsManager;
+import org.sample.homework.util.DelimiterIndex;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+
+/**
+ * This class is responsible for replaying the content of an existing log file, either at full speed or at a multiple
+ * of the original pace.
+ * <p>
+ * Window frames are driven by a {@link VirtualClock} advanced by the record timestamps instead of the wall clock, so
+ * that the published traffic statistics (and hence the traffic alerts) are the same as if the lines had been followed
+ * live, whatever the replay speed. The clock is advanced to the end of every window frame as it is closed, and only
+ * then to the record which closed it, so that window frames closed after a gap are still evaluated at their end.
+ */
+@Slf4j
+public class LogReplayer {
+
+    /**
+     * Size of the read buffer.
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * The event bus which is used to publish access log records.
+     */
+    private final EventBus eventBus;
+
+    /**
+     * The statistics manager whose window frames are driven by the replayed records.
+     */
+    private final TrafficStatisticsManager statisticsManager;
+
+    /**
+     * The record reused for every replayed line.
+     */
+    private final LazyAccessLogRecord record;
+
+    /**
+     * Handles the lines which can't be parsed.
+     */
+    private final MalformedLineHandler malformedLineHandler;
+
+    /**
+     * The clock advanced by the record timestamps.
+     */
+    private final VirtualClock clock;
+
+    /**
+     * How many times faster than the original pace records are replayed, 0 to replay them as fast as possible.
+     */
+    private final double speed;
+
+    /**
+     * The line feeds of the read buffer, found 8 bytes at a time.
+     */
+    private final DelimiterIndex lineFeeds = new DelimiterIndex((byte) '\n');
+
+    /**
+     * The timestamp of the first replayed record in epoch milliseconds, and the time at which it has been replayed.
+     * Used to pace the replay.
+     */
+    private long firstRecordMillis;
+    private long firstRecordNanos;
+    private boolean started = false;
+
+    /**
+     * The latest record timestamp the clock has been advanced to, in epoch milliseconds.
+     */
+    private long clockMillis = Long.MIN_VALUE;
+
+    /**
+     * Class constructor.
+     *
+     * @param eventBus          the central event bus which is used to publish access log events, not <tt>null</tt>
+     * @param statisticsManager the statistics manager to drive, not <tt>null</tt>
+     */
+    public LogReplayer(@NonNull EventBus eventBus, @NonNull TrafficStatisticsManager statisticsManager) {
+        this(eventBus, statisticsManager, new MalformedLineHandler());
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param eventBus             the central event bus which is used to publish access log events, not <tt>null</tt>
+     * @param statisticsManager    the statistics manager to drive, not <tt>null</tt>
+     * @param malformedLineHandler handles the lines which can't be parsed, not <tt>null</tt>
+     */
+    public LogReplayer(@NonNull EventBus eventBus,
+                       @NonNull TrafficStatisticsManager statisticsManager,
+                       @NonNull MalformedLineHandler malformedLineHandler) {
+        this(eventBus, statisticsManager, malformedLineHandler, new LogFormatDetector());
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param eventBus             the central event bus which is used to publish access log events, not <tt>null</tt>
+     * @param statisticsManager    the statistics manager to drive, not <tt>null</tt>
+     * @param malformedLineHandler handles the lines which can't be parsed, not <tt>null</tt>
+     * @param format               the format of the lines, not <tt>null</tt>
+     */
+    public LogReplayer(@NonNull EventBus eventBus,
+                       @NonNull TrafficStatisticsManager statisticsManager,
+                       @NonNull MalformedLineHandler malformedLineHandler,
+                       @NonNull LogFormat format) {
+        this(eventBus, statisticsManager, new VirtualClock(Instant.EPOCH, ZoneId.systemDefault()), 0,
+                malformedLineHandler, format);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param eventBus          the central event bus which is used to publish access log events, not <tt>null</tt>
+     * @param statisticsManager the statistics manager to drive, not <tt>null</tt>
+     * @param clock             the clock to advance with the record timestamps, not <tt>null</tt>
+     * @param speed             how many times faster than the original pace records are replayed, 0 to replay them
+     *                          as fast as possible
+     */
+    public LogReplayer(@NonNull EventBus eventBus,
+                       @NonNull TrafficStatisticsManager statisticsManager,
+                       @NonNull VirtualClock clock,
+                       double speed) {
+        this(eventBus, statisticsManager, clock, speed, new MalformedLineHandler());
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param eventBus             the central event bus which is used to publish access log events, not <tt>null</tt>
+     * @param statisticsManager    the statistics manager to drive, not <tt>null</tt>
+     * @param clock                the clock to advance with the record timestamps, not <tt>null</tt>
+     * @param speed                how many times faster than the original pace records are replayed, 0 to replay
+     *                             them as fast as possible
+     * @param malformedLineHandler handles the lines which can't be parsed, not <tt>null</tt>
+     */
+    public LogReplayer(@NonNull EventBus eventBus,
+                       @NonNull TrafficStatisticsManager statisticsManager,
+                       @NonNull VirtualClock clock,
+                       double speed,
+                       @NonNull MalformedLineHandler malformedLineHandler) {
+        this(eventBus, statisticsManager, clock, speed, malformedLineHandler, new LogFormatDetector());
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param eventBus             the central event bus which is used to publish access log events, not <tt>null</tt>
+     * @param statisticsManager    the statistics manager to drive, not <tt>null</tt>
+     * @param clock                the clock to advance with the record timestamps, not <tt>null</tt>
+     * @param speed                how many times faster than the original pace records are replayed, 0 to replay
+     *                             them as fast as possible
+     * @param malformedLineHandler handles the lines which can't be parsed, not <tt>null</tt>
+     * @param format               the format of the lines, primed if the file isn't replayed from its beginning (see
+     *                             {@link LogFormatDetector#prime(LogFormat, Path)}), not <tt>null</tt>
+     */
+    public LogReplayer(@NonNull EventBus eventBus,
+                       @NonNull TrafficStatisticsManager statisticsManager,
+                       @NonNull VirtualClock clock,
+                       double speed,
+                       @NonNull MalformedLineHandler malformedLineHandler,
+                       @NonNull LogFormat format) {
+        if (speed < 0) {
+            throw new IllegalArgumentException("Invalid replay speed: " + speed);
+        }
+        this.eventBus = eventBus;
+        this.statisticsManager = statisticsManager;
+        this.clock = clock;
+        this.speed = speed;
+        this.malformedLineHandler = malformedLineHandler;
+        this.record = new LazyAccessLogRecord(Charset.defaultCharset(), format);
+    }
+
+    /**
+     * Replays every complete line from the given offset to the current end of the file.
+     *
+     * @param path   the log file to replay, not <tt>null</tt>
+     * @param offset the offset of the first line to replay
+     * @return the offset right after the last replayed line
+     * @throws IOException if something goes wrong while reading the file, or if the replay is interrupted
+     */
+    public long replay(@NonNull Path path, long offset) throws IOException {
+        Charset charset = Charset.defaultCharset();
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long position = offset;
+        long lines = 0;
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // Only replay what has been written so far, new lines are left to the file watcher.
+            long end = channel.size();
+            channel.position(offset);
+            while (channel.position() < end && channel.read(buffer) > 0) {
+                byte[] bytes = buffer.array();
+                int length = buffer.position();
+                int[] lineFeeds = this.lineFeeds.index(bytes, 0, length).getOffsets();
+                int lineStart = 0;
+                for (int k = 0; k < this.lineFeeds.getSize(); k++) {
+                    int i = lineFeeds[k];
+                    int lineEnd = i > lineStart && bytes[i - 1] == '\r' ? i - 1 : i;
+                    replayLine(bytes, lineStart, lineEnd, charset);
+                    lineStart = i + 1;
+                    ++lines;
+                }
+                position += lineStart;
+                if (lineStart == 0 && !buffer.hasRemaining()) {
+                    // A single line doesn't fit in the buffer.
+                    ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                    buffer.flip();
+                    buffer = larger.put(buffer);
+                } else {
+                    // Keep the incomplete line for the next read.
+                    System.arraycopy(bytes, lineStart, bytes, 0, length - lineStart);
+                    buffer.position(length - lineStart);
+                }
+            }
+        }
+        log.info("Replayed {} lines of {} in {} ms.", lines, path, (System.nanoTime() - start) / 1_000_000);
+        return position;
+    }
+
+    /**
+     * Publishes the record of a line once all the window frames preceding it are closed.
+     *
+     * @param buffer  the buffer holding the line
+     * @param from    the index of the first byte of the line (inclusive)
+     * @param to      the index of the last byte of the line (exclusive)
+     * @param charset the charset of the file
+     * @throws InterruptedIOException if the thread is interrupted while pacing the replay
+     */
+    private void replayLine(byte[] buffer, int from, int to, Charset charset) throws InterruptedIOException {
+        PipelineMetrics.get().incrementLinesRead();
+        try {
+            if (!record.reset(buffer, from, to)) {
+                // Directives, such as W3C headers, are not records.
+                return;
+            }
+        } catch (AccessLogParseException e) {
+            malformedLineHandler.handle(new String(buffer, from, to - from, charset), e);
+            return;
+        }
+        long time = record.getTimestamp();
+        if (speed > 0) {
+            pace(time);
+        }
+        // Most lines share the timestamp of the previous one, in which case there is nothing to advance.
+        if (time > clockMillis) {
+            clockMillis = time;
+            Instant now = Instant.ofEpochMilli(time);
+            statisticsManager.advanceTo(now, clock::advanceTo);
+            clock.advanceTo(now);
+        }
+        eventBus.post(record);
+    }
+
+    /**
+     * Waits until the given record time is reached at the replay speed.
+     *
+     * @param time the record time in epoch milliseconds
+     * @throws InterruptedIOException if the thread is interrupted while waiting
+     */
+    private void pace(long time) throws InterruptedIOException {
+        if (!started) {
+            firstRecordMillis = time;
+            firstRecordNanos = System.nanoTime();
+            started = true;
+            return;
+        }
+        long targetNanos = (long) ((time - firstRecordMillis) * 1_000_000 / speed);
+        long waitMillis = (targetNanos - (System.nanoTime() - firstRecordNanos)) / 1_000_000;
+        if (waitMillis > 0) {
+            try {
+                Thread.sleep(waitMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Replay interrupted.");
+            }
+        }
+    }
+
+}
@@ -0,0 +1,202 @@
+package org.sample.homework.replay;
+
+import lombok.NonNull;
+import org.sample.homework.util.DateTimeUtils;
+import org.sample.homework.util.Swar;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * This class is responsible for finding the first line of an access log file written after a given time.
+ * <p>
+ * Log files are (almost) sorted by time, so the lookup is a binary search on the line timestamps: only a few blocks
+ * around the probed offsets are read, whatever the size of the file.
+ */
+public class LogSeeker {
+
+    /**
+     * Size of the blocks read at every probe. Binary search stops once the range is smaller than a block.
+     */
+    private static final int BLOCK_SIZE = 8 * 1024;
+
+    /**
+     * The format of the timestamps of W3C extended logs (date and time columns), which are UTC.
+     */
+    private static final DateTimeFormatter W3C_FORMATTER =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneOffset.UTC);
+
+    /**
+     * Length of a W3C extended log timestamp.
+     */
+    private static final int W3C_TIMESTAMP_LENGTH = 19;
+
+    /**
+     * Reusable block buffer.
+     */
+    private final ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+
+    /**
+     * The log file being searched.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The size of the log file when the search started.
+     */
+    private final long size;
+
+    /**
+     * Searches the given log file for the offset of the first line whose timestamp is not before the given time.
+     *
+     * @param path the log file to search, not <tt>null</tt>
+     * @param time the time to look for, not <tt>null</tt>
+     * @return the offset of the first line at or after the given time, or the file size if there is no such line
+     * @throws IOException if something goes wrong while reading the file
+     */
+    public static long seek(@NonNull Path path, @NonNull Instant time) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new LogSeeker(channel).seek(time);
+        }
+    }
+
+    private LogSeeker(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+    }
+
+    /**
+     * Lines starting before <tt>low</tt> are older than the given time, while the first line starting at or after
+     * <tt>high</tt> is not.
+     *
+     * @param time the time to look for
+     * @return the offset of the first line at or after the given time
+     * @throws IOException if something goes wrong while reading the file
+     */
+    private long seek(Instant time) throws IOException {
+        long low = 0;
+        long high = size;
+        while (high - low > BLOCK_SIZE) {
+            long middle = low + (high - low) / 2;
+            long[] line = probe(middle, high);
+            if (line == null || !Instant.ofEpochSecond(line[1]).isBefore(time)) {
+                high = middle;
+            } else {
+                low = line[0];
+            }
+        }
+        // The remaining range is small, scan it line by line.
+        long offset = low;
+        while (offset < size) {
+            long[] line = probe(offset, size);
+            if (line == null || !Instant.ofEpochSecond(line[1]).isBefore(time)) {
+                return line == null ? size : line[0];
+            }
+            offset = line[0] + 1;
+        }
+        return size;
+    }
+
+    /**
+     * Finds the first line with a valid timestamp starting at or after the given offset and before the given limit.
+     *
+     * @param offset the offset to probe
+     * @param limit  the offset at which to stop looking
+     * @return the offset of the line and its timestamp in epoch seconds, or <tt>null</tt> if there is no such line
+     * @throws IOException if something goes wrong while reading the file
+     */
+    private long[] probe(long offset, long limit) throws IOException {
+        // Start one byte before the offset, so that a line starting right at the offset isn't skipped.
+        long position = Math.max(0, offset - 1);
+        boolean atLineStart = offset == 0;
+        while (position < limit) {
+            block.clear();
+            int read = channel.read(block, position);
+            if (read <= 0) {
+                return null;
+            }
+            byte[] bytes = block.array();
+            int lineStart = 0;
+            if (!atLineStart) {
+                // Skip the partial line we landed in.
+                lineStart = Swar.indexOf(bytes, 0, read, (byte) '\n') + 1;
+                if (lineStart == 0) {
+                    position += read;
+                    continue;
+                }
+                atLineStart = true;
+            }
+            while (lineStart < read) {
+                if (position + lineStart >= limit) {
+                    return null;
+                }
+                int lineEnd = Swar.indexOf(bytes, lineStart, read, (byte) '\n');
+                if (lineEnd < 0) {
+                    if (lineStart > 0) {
+                        // The line is cut by the end of the block, read it again from its beginning.
+                        break;
+                    }
+                    if (read == BLOCK_SIZE) {
+                        // A single line is longer than a block, it is not worth parsing it.
+                        atLineStart = false;
+                        lineStart = read;
+                        break;
+                    }
+                    // Last line of the file, not terminated yet.
+                    lineEnd = read;
+                }
+                long timestamp = parseTimestamp(bytes, lineStart, lineEnd);
+                if (timestamp != Long.MIN_VALUE) {
+                    return new long[]{position + lineStart, timestamp};
+                }
+                lineStart = lineEnd + 1;
+            }
+            position += lineStart;
+        }
+        return null;
+    }
+
+    /**
+     * Extracts the timestamp of a line: the text between brackets for the Common and Combined Log Formats, the
+     * leading date and time columns for W3C extended logs (directives have no timestamp).
+     *
+     * @param bytes the buffer holding the line
+     * @param from  the index of the first byte of the line
+     * @param to    the index right after the last byte of the line
+     * @return the timestamp in epoch seconds, or {@link Long#MIN_VALUE} if the line has no valid timestamp
+     */
+    private static long parseTimestamp(byte[] bytes, int from, int to) {
+        int open = Swar.indexOf(bytes, from, to, (byte) '[');
+        int close = open < 0 ? -1 : Swar.indexOf(bytes, open, to, (byte) ']');
+        if (close < 0) {
+            return parseW3cTimestamp(bytes, from, to);
+        }
+        try {
+            String date = new String(bytes, open + 1, close - open - 1, StandardCharsets.US_ASCII);
+            return DateTimeUtils.parseDateTime(date).toEpochSecond();
+        } catch (DateTimeParseException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private static long parseW3cTimestamp(byte[] bytes, int from, int to) {
+        if (to - from < W3C_TIMESTAMP_LENGTH || bytes[from] == '#') {
+            return Long.MIN_VALUE;
+        }
+        try {
+            String date = new String(bytes, from, W3C_TIMESTAMP_LENGTH, StandardCharsets.US_ASCII);
+            return W3C_FORMATTER.parse(date, Instant::from).getEpochSecond();
+        } catch (DateTimeParseException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+}
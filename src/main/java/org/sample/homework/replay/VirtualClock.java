@@ -0,0 +1,66 @@
+package org.sample.homework.replay;
+
+import lombok.NonNull;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A clock which only moves when it is explicitly advanced, typically to the timestamps of replayed records.
+ * <p>
+ * The clock never goes backward: advancing it to an earlier instant has no effect.
+ */
+public class VirtualClock extends Clock {
+
+    /**
+     * The time zone of the clock.
+     */
+    private final ZoneId zone;
+
+    /**
+     * The current instant, shared by the clocks derived with {@link VirtualClock#withZone(ZoneId)}.
+     */
+    private final AtomicReference<Instant> current;
+
+    /**
+     * Class constructor.
+     *
+     * @param start the initial instant, not <tt>null</tt>
+     * @param zone  the time zone of the clock, not <tt>null</tt>
+     */
+    public VirtualClock(@NonNull Instant start, @NonNull ZoneId zone) {
+        this(new AtomicReference<>(start), zone);
+    }
+
+    private VirtualClock(AtomicReference<Instant> current, ZoneId zone) {
+        this.current = current;
+        this.zone = zone;
+    }
+
+    /**
+     * Moves the clock forward to the given instant.
+     *
+     * @param instant the new instant, not <tt>null</tt>
+     */
+    public void advanceTo(@NonNull Instant instant) {
+        current.accumulateAndGet(instant, (previous, next) -> next.isAfter(previous) ? next : previous);
+    }
+
+    @Override
+    public Instant instant() {
+        return current.get();
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return new VirtualClock(current, zone);
+    }
+
+}
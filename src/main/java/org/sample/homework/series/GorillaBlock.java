@@ -0,0 +1,274 @@
+package org.sample.homework.series;
+
+import java.util.Arrays;
+
+/**
+ * An append-only block of compressed data points, as described in Facebook's Gorilla paper.
+ * <p>
+ * Timestamps are stored as delta-of-deltas with variable-length prefixes, so a regular series costs one bit per
+ * timestamp. Values are XOR-ed with the previous value and only the meaningful bits of the result are stored, so an
+ * unchanged value costs one bit.
+ * <p>
+ * A block is written by a single thread. Readers work on a {@link Cursor} taken under the owner's lock, which only
+ * covers the bits written so far and is never affected by later appends.
+ */
+class GorillaBlock {
+
+    /**
+     * The bit stream, 64 bits per word, most significant bit first.
+     */
+    private long[] words = new long[16];
+
+    /**
+     * Number of bits written.
+     */
+    private long bitCount = 0;
+
+    /**
+     * Number of data points written.
+     */
+    private int size = 0;
+
+    /**
+     * First and last timestamps of the block in epoch milliseconds.
+     */
+    private long firstTimestamp;
+    private long lastTimestamp;
+
+    /**
+     * Compression state.
+     */
+    private long lastDelta;
+    private long lastValueBits;
+    private int lastLeadingZeros = Integer.MAX_VALUE;
+    private int lastTrailingZeros;
+
+    /**
+     * Appends a data point. Timestamps are expected to be increasing.
+     *
+     * @param timestamp the timestamp in epoch milliseconds
+     * @param value     the value
+     */
+    void append(long timestamp, double value) {
+        long valueBits = Double.doubleToRawLongBits(value);
+        if (size == 0) {
+            firstTimestamp = timestamp;
+            writeBits(timestamp, 64);
+            writeBits(valueBits, 64);
+        } else {
+            appendTimestamp(timestamp);
+            appendValue(valueBits);
+        }
+        lastTimestamp = timestamp;
+        lastValueBits = valueBits;
+        ++size;
+    }
+
+    private void appendTimestamp(long timestamp) {
+        long delta = timestamp - lastTimestamp;
+        long deltaOfDelta = delta - lastDelta;
+        lastDelta = delta;
+        if (deltaOfDelta == 0) {
+            writeBits(0b0, 1);
+        } else if (deltaOfDelta >= -64 && deltaOfDelta <= 63) {
+            writeBits(0b10, 2);
+            writeBits(deltaOfDelta, 7);
+        } else if (deltaOfDelta >= -256 && deltaOfDelta <= 255) {
+            writeBits(0b110, 3);
+            writeBits(deltaOfDelta, 9);
+        } else if (deltaOfDelta >= -2048 && deltaOfDelta <= 2047) {
+            writeBits(0b1110, 4);
+            writeBits(deltaOfDelta, 12);
+        } else {
+            writeBits(0b1111, 4);
+            writeBits(deltaOfDelta, 64);
+        }
+    }
+
+    private void appendValue(long valueBits) {
+        long xor = valueBits ^ lastValueBits;
+        if (xor == 0) {
+            writeBits(0b0, 1);
+            return;
+        }
+        int leadingZeros = Math.min(Long.numberOfLeadingZeros(xor), 31);
+        int trailingZeros = Long.numberOfTrailingZeros(xor);
+        if (leadingZeros >= lastLeadingZeros && trailingZeros >= lastTrailingZeros) {
+            // The meaningful bits fit in the previous window.
+            writeBits(0b10, 2);
+            writeBits(xor >>> lastTrailingZeros, 64 - lastLeadingZeros - lastTrailingZeros);
+        } else {
+            int meaningfulBits = 64 - leadingZeros - trailingZeros;
+            writeBits(0b11, 2);
+            writeBits(leadingZeros, 5);
+            // 64 meaningful bits are stored as 0.
+            writeBits(meaningfulBits, 6);
+            writeBits(xor >>> trailingZeros, meaningfulBits);
+            lastLeadingZeros = leadingZeros;
+            lastTrailingZeros = trailingZeros;
+        }
+    }
+
+    /**
+     * Writes the given number of low order bits of the given value.
+     */
+    private void writeBits(long value, int bits) {
+        if (bitCount + bits > (long) words.length * 64) {
+            words = Arrays.copyOf(words, words.length * 2);
+        }
+        int index = (int) (bitCount >>> 6);
+        int offset = (int) (bitCount & 63);
+        if (bits < 64) {
+            value &= (1L << bits) - 1;
+        }
+        int free = 64 - offset;
+        if (bits <= free) {
+            words[index] |= value << (free - bits);
+        } else {
+            words[index] |= value >>> (bits - free);
+            words[index + 1] |= value << (64 - (bits - free));
+        }
+        bitCount += bits;
+    }
+
+    /**
+     * Releases the unused capacity once no more points will be appended.
+     */
+    void seal() {
+        words = Arrays.copyOf(words, (int) ((bitCount + 63) >>> 6));
+    }
+
+    int size() {
+        return size;
+    }
+
+    long firstTimestamp() {
+        return firstTimestamp;
+    }
+
+    long lastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * Returns the memory used by the block in bytes (approximately).
+     *
+     * @return the memory used by the block
+     */
+    long memoryFootprint() {
+        return 16L + words.length * 8L + 64;
+    }
+
+    /**
+     * Returns a cursor over the points appended so far.
+     *
+     * @return a new cursor
+     */
+    Cursor cursor() {
+        return new Cursor(words, size);
+    }
+
+    /**
+     * Decodes the points of a block one at a time.
+     */
+    static class Cursor {
+
+        private final long[] words;
+        private final int size;
+        private long bitPosition = 0;
+        private int index = 0;
+
+        private long timestamp;
+        private long delta;
+        private long valueBits;
+        private int leadingZeros;
+        private int trailingZeros;
+
+        private Cursor(long[] words, int size) {
+            this.words = words;
+            this.size = size;
+        }
+
+        /**
+         * Decodes the next point.
+         *
+         * @return <tt>false</tt> if there are no more points
+         */
+        boolean next() {
+            if (index >= size) {
+                return false;
+            }
+            if (index == 0) {
+                timestamp = readBits(64);
+                valueBits = readBits(64);
+            } else {
+                readTimestamp();
+                readValue();
+            }
+            ++index;
+            return true;
+        }
+
+        long timestamp() {
+            return timestamp;
+        }
+
+        double value() {
+            return Double.longBitsToDouble(valueBits);
+        }
+
+        private void readTimestamp() {
+            long deltaOfDelta;
+            if (readBits(1) == 0) {
+                deltaOfDelta = 0;
+            } else if (readBits(1) == 0) {
+                deltaOfDelta = signExtend(readBits(7), 7);
+            } else if (readBits(1) == 0) {
+                deltaOfDelta = signExtend(readBits(9), 9);
+            } else if (readBits(1) == 0) {
+                deltaOfDelta = signExtend(readBits(12), 12);
+            } else {
+                deltaOfDelta = readBits(64);
+            }
+            delta += deltaOfDelta;
+            timestamp += delta;
+        }
+
+        private void readValue() {
+            if (readBits(1) == 0) {
+                return;
+            }
+            if (readBits(1) != 0) {
+                leadingZeros = (int) readBits(5);
+                int meaningfulBits = (int) readBits(6);
+                if (meaningfulBits == 0) {
+                    meaningfulBits = 64;
+                }
+                trailingZeros = 64 - leadingZeros - meaningfulBits;
+            }
+            long xor = readBits(64 - leadingZeros - trailingZeros) << trailingZeros;
+            valueBits ^= xor;
+        }
+
+        private long readBits(int bits) {
+            int wordIndex = (int) (bitPosition >>> 6);
+            int offset = (int) (bitPosition & 63);
+            int available = 64 - offset;
+            long value;
+            if (bits <= available) {
+                value = words[wordIndex] << offset >>> (64 - bits);
+            } else {
+                long high = words[wordIndex] << offset >>> offset;
+                int remaining = bits - available;
+                value = high << remaining | words[wordIndex + 1] >>> (64 - remaining);
+            }
+            bitPosition += bits;
+            return value;
+        }
+
+        private static long signExtend(long value, int bits) {
+            return value << (64 - bits) >> (64 - bits);
+        }
+    }
+
+}
@@ -0,0 +1,30 @@
+package org.sample.homework.series;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.sample.homework.stats.TrafficStatistics;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * An enum defining the numeric series extracted from {@link TrafficStatistics}.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum Metric {
+    TOTAL_REQUESTS(TrafficStatistics::getTotalRequestCount),
+    VALID_REQUESTS(TrafficStatistics::getValidRequestCount),
+    BYTES_TRANSFERRED(TrafficStatistics::getBytesTransferred),
+    UNIQUE_HOSTS(TrafficStatistics::getUniqueHosts),
+    PEAK_HITS_PER_SECOND(TrafficStatistics::getPeakHitsPerSecond),
+    STATUS_1XX(statistics -> statistics.getHitsByStatusClass()[0]),
+    STATUS_2XX(statistics -> statistics.getHitsByStatusClass()[1]),
+    STATUS_3XX(statistics -> statistics.getHitsByStatusClass()[2]),
+    STATUS_4XX(statistics -> statistics.getHitsByStatusClass()[3]),
+    STATUS_5XX(statistics -> statistics.getHitsByStatusClass()[4]);
+
+    /**
+     * Extracts the metric value from traffic statistics.
+     */
+    private final ToDoubleFunction<TrafficStatistics> extractor;
+}
@@ -0,0 +1,213 @@
+package org.sample.homework.series;
+
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A time series of doubles held in compressed {@link GorillaBlock}s.
+ * <p>
+ * Points are appended to the current block, which is sealed once it spans the block duration. Sealed blocks older than
+ * the retention are dropped. Iterators decode the blocks lazily, so reading a range never decompresses the whole
+ * series.
+ */
+public class MetricSeries {
+
+    /**
+     * The default time span of a block.
+     */
+    public static final Duration DEFAULT_BLOCK_DURATION = Duration.ofHours(2);
+
+    /**
+     * How long data points are kept.
+     */
+    @Getter
+    private final Duration retention;
+
+    /**
+     * The time span of a block in milliseconds.
+     */
+    private final long blockMillis;
+
+    /**
+     * Sealed blocks, oldest first.
+     */
+    private final Deque<GorillaBlock> sealedBlocks = new ArrayDeque<>();
+
+    /**
+     * The block points are appended to.
+     */
+    private GorillaBlock currentBlock = new GorillaBlock();
+
+    /**
+     * Class constructor.
+     *
+     * @param retention how long data points are kept
+     */
+    public MetricSeries(Duration retention) {
+        this(retention, DEFAULT_BLOCK_DURATION);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param retention     how long data points are kept
+     * @param blockDuration the time span of a block
+     */
+    public MetricSeries(Duration retention, Duration blockDuration) {
+        if (blockDuration.isNegative() || blockDuration.isZero()) {
+            throw new IllegalArgumentException("Block duration should be positive! Got " + blockDuration);
+        }
+        this.retention = retention;
+        this.blockMillis = blockDuration.toMillis();
+    }
+
+    /**
+     * Appends a data point. Points with a timestamp older than the last appended point are ignored.
+     *
+     * @param timestamp the timestamp in epoch milliseconds
+     * @param value     the value
+     */
+    public synchronized void append(long timestamp, double value) {
+        if (currentBlock.size() > 0) {
+            if (timestamp < currentBlock.lastTimestamp()) {
+                return;
+            }
+            if (timestamp - currentBlock.firstTimestamp() >= blockMillis) {
+                currentBlock.seal();
+                sealedBlocks.addLast(currentBlock);
+                currentBlock = new GorillaBlock();
+            }
+        }
+        currentBlock.append(timestamp, value);
+        // Drop the blocks which are entirely out of the retention.
+        long oldest = timestamp - retention.toMillis();
+        while (!sealedBlocks.isEmpty() && sealedBlocks.peekFirst().lastTimestamp() < oldest) {
+            sealedBlocks.removeFirst();
+        }
+    }
+
+    /**
+     * Drops the oldest sealed block before it is out of the retention.
+     *
+     * @return <tt>false</tt> if there was no sealed block to drop
+     */
+    public synchronized boolean evictOldest() {
+        return sealedBlocks.pollFirst() != null;
+    }
+
+    /**
+     * Returns the number of data points held.
+     *
+     * @return the number of data points
+     */
+    public synchronized int size() {
+        int size = currentBlock.size();
+        for (GorillaBlock block : sealedBlocks) {
+            size += block.size();
+        }
+        return size;
+    }
+
+    /**
+     * Returns the memory used by the compressed data points in bytes (approximately).
+     *
+     * @return the memory used by the series
+     */
+    public synchronized long memoryFootprint() {
+        long footprint = currentBlock.memoryFootprint();
+        for (GorillaBlock block : sealedBlocks) {
+            footprint += block.memoryFootprint();
+        }
+        return footprint;
+    }
+
+    /**
+     * Returns an iterator over every data point held.
+     *
+     * @return a new iterator
+     */
+    public SeriesIterator iterator() {
+        return iterator(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns an iterator over the data points within the given range. The iterator isn't affected by points
+     * appended afterwards.
+     *
+     * @param from the beginning of the range in epoch milliseconds (inclusive)
+     * @param to   the end of the range in epoch milliseconds (exclusive)
+     * @return a new iterator
+     */
+    public synchronized SeriesIterator iterator(long from, long to) {
+        List<GorillaBlock.Cursor> cursors = new ArrayList<>();
+        for (GorillaBlock block : sealedBlocks) {
+            if (overlaps(block, from, to)) {
+                cursors.add(block.cursor());
+            }
+        }
+        if (currentBlock.size() > 0 && overlaps(currentBlock, from, to)) {
+            cursors.add(currentBlock.cursor());
+        }
+        return new RangeIterator(cursors, from, to);
+    }
+
+    private static boolean overlaps(GorillaBlock block, long from, long to) {
+        return block.firstTimestamp() < to && block.lastTimestamp() >= from;
+    }
+
+    /**
+     * Chains the cursors of the blocks overlapping a range and skips the points out of the range.
+     */
+    private static class RangeIterator implements SeriesIterator {
+
+        private final List<GorillaBlock.Cursor> cursors;
+        private final long from;
+        private final long to;
+        private int index = 0;
+        private GorillaBlock.Cursor cursor;
+
+        private RangeIterator(List<GorillaBlock.Cursor> cursors, long from, long to) {
+            this.cursors = cursors;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean next() {
+            while (true) {
+                if (cursor == null || !cursor.next()) {
+                    if (index >= cursors.size()) {
+                        return false;
+                    }
+                    cursor = cursors.get(index++);
+                    continue;
+                }
+                if (cursor.timestamp() >= to) {
+                    // Points are in time order, there is nothing left in the range.
+                    index = cursors.size();
+                    cursor = null;
+                    return false;
+                }
+                if (cursor.timestamp() >= from) {
+                    return true;
+                }
+            }
+        }
+
+        @Override
+        public long timestamp() {
+            return cursor.timestamp();
+        }
+
+        @Override
+        public double value() {
+            return cursor.value();
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+package org.sample.homework.series;
+
+import com.google.common.eventbus.Subscribe;
+import lombok.NonNull;
+import org.sample.homework.metrics.MemoryBudget;
+import org.sample.homework.stats.TrafficStatistics;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * This class is responsible for keeping the numeric {@link Metric}s of every published {@link TrafficStatistics} in
+ * compressed {@link MetricSeries}.
+ * <p>
+ * Unlike the statistics objects themselves, a day of series at a one second resolution fits in a few hundred
+ * kilobytes. Their footprint is reserved against the memory budget (see {@link MemoryBudget}), and while the budget is
+ * under pressure the oldest blocks of every series are evicted before they are out of the retention.
+ */
+public class MetricSeriesStore {
+
+    /**
+     * The series of every metric.
+     */
+    private final Map<Metric, MetricSeries> series = new EnumMap<>(Metric.class);
+
+    /**
+     * The footprint reserved against the memory budget, in bytes. Only used by the thread publishing statistics.
+     */
+    private long reserved;
+
+    /**
+     * Class constructor.
+     *
+     * @param retention how long data points are kept, not <tt>null</tt>
+     */
+    public MetricSeriesStore(@NonNull Duration retention) {
+        for (Metric metric : Metric.values()) {
+            series.put(metric, new MetricSeries(retention));
+        }
+    }
+
+    /**
+     * Function to receive traffic statistics events from the event bus.
+     *
+     * @param statistics the traffic statistics event
+     */
+    @Subscribe
+    public void handleTrafficStatistics(@NonNull TrafficStatistics statistics) {
+        if (statistics.getWindowEnd() == null) {
+            return;
+        }
+        long timestamp = statistics.getWindowEnd().toEpochMilli();
+        for (Map.Entry<Metric, MetricSeries> entry : series.entrySet()) {
+            entry.getValue().append(timestamp, entry.getKey().getExtractor().applyAsDouble(statistics));
+        }
+        MemoryBudget budget = MemoryBudget.get();
+        if (budget.isUnderPressure()) {
+            series.values().forEach(MetricSeries::evictOldest);
+        }
+        long footprint = memoryFootprint();
+        budget.reserve(MemoryBudget.Component.SERIES, footprint - reserved);
+        reserved = footprint;
+    }
+
+    /**
+     * Returns the series of the given metric.
+     *
+     * @param metric the metric, not <tt>null</tt>
+     * @return the series of the metric
+     */
+    public MetricSeries getSeries(@NonNull Metric metric) {
+        return series.get(metric);
+    }
+
+    /**
+     * Returns the memory used by all the series in bytes (approximately).
+     *
+     * @return the memory used by the store
+     */
+    public long memoryFootprint() {
+        long footprint = 0;
+        for (MetricSeries metricSeries : series.values()) {
+            footprint += metricSeries.memoryFootprint();
+        }
+        return footprint;
+    }
+
+}
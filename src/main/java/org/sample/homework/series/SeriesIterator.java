@@ -0,0 +1,37 @@
+package org.sample.homework.series;
+
+/**
+ * A primitive iterator over the data points of a {@link MetricSeries}.
+ * <p>
+ * Points are decoded one at a time while iterating, the series is never decompressed as a whole.
+ *
+ * <pre>
+ * SeriesIterator iterator = series.iterator(from, to);
+ * while (iterator.next()) {
+ *     plot(iterator.timestamp(), iterator.value());
+ * }
+ * </pre>
+ */
+public interface SeriesIterator {
+
+    /**
+     * Moves to the next data point.
+     *
+     * @return <tt>false</tt> if there are no more data points
+     */
+    boolean next();
+
+    /**
+     * Returns the timestamp of the current data point.
+     *
+     * @return the timestamp in epoch milliseconds
+     */
+    long timestamp();
+
+    /**
+     * Returns the value of the current data point.
+     *
+     * @return the value
+     */
+    double value();
+}
@@ -0,0 +1,216 @@
+package org.sample.homework.sketch;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import lombok.Getter;
+import lombok.NonNull;
+import org.sample.homework.util.VarInts;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A HyperLogLog sketch estimating the number of distinct strings added to it, with a standard error of about
+ * <tt>1.04 / sqrt(2^precision)</tt> (1.6% with the default precision) in <tt>2^precision</tt> bytes.
+ * <p>
+ * Sketches of the same precision are merged by keeping the maximum of every register, so the distinct strings of
+ * several nodes can be counted without shipping the strings themselves.
+ */
+public class HyperLogLog {
+
+    /**
+     * The default number of index bits: 4096 registers.
+     */
+    public static final int DEFAULT_PRECISION = 12;
+
+    private static final int MIN_PRECISION = 4;
+    private static final int MAX_PRECISION = 16;
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    /**
+     * The number of index bits.
+     */
+    @Getter
+    private final int precision;
+
+    /**
+     * The highest rank seen by every register.
+     */
+    private final byte[] registers;
+
+    /**
+     * Creates a sketch with the default precision.
+     */
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param precision the number of index bits, from 4 to 16
+     * @throws IllegalArgumentException if the precision is not supported
+     */
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Invalid HyperLogLog precision: " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * Adds a string.
+     *
+     * @param value the string to add, not <tt>null</tt>
+     */
+    public void add(@NonNull String value) {
+        addHash(HASH.hashUnencodedChars(value).asLong());
+    }
+
+    /**
+     * Adds a 64-bit hash: the first bits select the register, the rank of the first set bit of the others is kept.
+     *
+     * @param hash a uniformly distributed hash
+     */
+    public void addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // The guard bit bounds the rank when the remaining bits are all zeros.
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    /**
+     * Adds the strings of another sketch.
+     *
+     * @param other the sketch to merge, not <tt>null</tt>
+     * @throws IllegalArgumentException if the precisions differ
+     */
+    public void merge(@NonNull HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Can't merge HyperLogLog sketches of precisions " + precision
+                    + " and " + other.precision + "!");
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * Removes every string, so that the sketch can be reused.
+     */
+    public void clear() {
+        Arrays.fill(registers, (byte) 0);
+    }
+
+    /**
+     * Returns the memory used by the sketch in bytes (approximately).
+     *
+     * @return the memory used by the registers
+     */
+    public long memoryFootprint() {
+        return registers.length;
+    }
+
+    /**
+     * Estimates the number of distinct strings added.
+     *
+     * @return the estimated cardinality
+     */
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += Double.longBitsToDouble((1023L - register) << 52);
+            if (register == 0) {
+                ++zeros;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            // Small cardinalities are better estimated by linear counting.
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Writes the sketch: the precision, then either the registers, or only the non-zero ones with the distance from
+     * the previous one when that's smaller (sparse sketches of few hosts).
+     *
+     * @param buffer the buffer to write to
+     * @throws java.nio.BufferOverflowException if the buffer is too small
+     */
+    public void encode(@NonNull ByteBuffer buffer) {
+        int used = 0;
+        for (byte register : registers) {
+            if (register != 0) {
+                ++used;
+            }
+        }
+        buffer.put((byte) precision);
+        // A sparse entry takes at most 3 bytes with the default precision.
+        if (used * 3 < registers.length) {
+            VarInts.writeUnsigned(buffer, used);
+            int previous = 0;
+            for (int i = 0; i < registers.length; i++) {
+                if (registers[i] != 0) {
+                    VarInts.writeUnsigned(buffer, i - previous);
+                    buffer.put(registers[i]);
+                    previous = i;
+                }
+            }
+        } else {
+            VarInts.writeUnsigned(buffer, registers.length);
+            buffer.put(registers);
+        }
+    }
+
+    /**
+     * Reads a sketch written by {@link HyperLogLog#encode(ByteBuffer)}.
+     *
+     * @param buffer the buffer to read from, not <tt>null</tt>
+     * @return the sketch
+     * @throws IllegalArgumentException  if the sketch is not valid
+     * @throws BufferUnderflowException if the buffer ends in the middle of the sketch
+     */
+    public static HyperLogLog decode(@NonNull ByteBuffer buffer) {
+        HyperLogLog sketch = new HyperLogLog(buffer.get());
+        byte[] registers = sketch.registers;
+        int count = VarInts.readUnsignedInt(buffer);
+        if (count == registers.length) {
+            buffer.get(registers);
+        } else {
+            int index = 0;
+            for (int i = 0; i < count; i++) {
+                index += VarInts.readUnsignedInt(buffer);
+                if (index >= registers.length) {
+                    throw new IllegalArgumentException("Invalid HyperLogLog register: " + index);
+                }
+                registers[index] = buffer.get();
+            }
+        }
+        return sketch;
+    }
+
+    private static double alpha(int m) {
+        switch (m) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+
+}
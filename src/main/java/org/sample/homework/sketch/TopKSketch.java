@@ -0,0 +1,99 @@
+package org.sample.homework.sketch;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.*;
+
+/**
+ * A mergeable summary of the keys with the most hits: the exact hits of the top keys of every node, and an upper bound
+ * of the hits of the keys which were dropped.
+ * <p>
+ * Merged hits are lower bounds: a key dropped by a node may have up to {@link TopKSketch#getThreshold()} more hits.
+ * With sketches several times larger than the number of reported keys, the reported keys are exact in practice.
+ */
+public class TopKSketch {
+
+    /**
+     * The hits of the kept keys.
+     */
+    private final Map<String, Integer> hits;
+
+    /**
+     * An upper bound of the hits of any key which is not kept.
+     */
+    @Getter
+    private int threshold;
+
+    /**
+     * Class constructor.
+     *
+     * @param hits      the hits of the kept keys, not <tt>null</tt>
+     * @param threshold an upper bound of the hits of any other key
+     */
+    public TopKSketch(@NonNull Map<String, Integer> hits, int threshold) {
+        this.hits = new HashMap<>(hits);
+        this.threshold = threshold;
+    }
+
+    /**
+     * Keeps the keys with the most hits.
+     *
+     * @param hits the hits by key, counted in place in single element arrays, not <tt>null</tt>
+     * @param size the maximum number of keys to keep
+     * @return the sketch
+     */
+    public static TopKSketch of(@NonNull Map<String, int[]> hits, int size) {
+        Map<String, Integer> top = new HashMap<>();
+        int threshold = 0;
+        if (hits.size() <= size) {
+            hits.forEach((key, count) -> top.put(key, count[0]));
+        } else {
+            PriorityQueue<Map.Entry<String, int[]>> smallest =
+                    new PriorityQueue<>(size + 1, Comparator.comparingInt(e -> e.getValue()[0]));
+            for (Map.Entry<String, int[]> entry : hits.entrySet()) {
+                smallest.add(entry);
+                if (smallest.size() > size) {
+                    threshold = Math.max(threshold, smallest.poll().getValue()[0]);
+                }
+            }
+            smallest.forEach(entry -> top.put(entry.getKey(), entry.getValue()[0]));
+        }
+        return new TopKSketch(top, threshold);
+    }
+
+    /**
+     * Returns the hits of the kept keys.
+     *
+     * @return an unmodifiable view of the hits by key
+     */
+    public Map<String, Integer> getHits() {
+        return Collections.unmodifiableMap(hits);
+    }
+
+    /**
+     * Adds the hits of another sketch.
+     *
+     * @param other the sketch to merge, not <tt>null</tt>
+     */
+    public void merge(@NonNull TopKSketch other) {
+        other.hits.forEach((key, count) -> hits.merge(key, count, Integer::sum));
+        threshold += other.threshold;
+    }
+
+    /**
+     * Returns the keys with the most hits, in decreasing order.
+     *
+     * @param count the maximum number of keys
+     * @return the top keys with their hits
+     */
+    public List<Map.Entry<String, Integer>> top(int count) {
+        List<Map.Entry<String, Integer>> top = new ArrayList<>(count);
+        hits.entrySet().stream()
+                .sorted(Collections.reverseOrder(Map.Entry.comparingByValue()))
+                .limit(count)
+                .forEach(e -> top.add(new AbstractMap.SimpleImmutableEntry<>(e.getKey(), e.getValue())));
+        return top;
+    }
+
+}
@@ -0,0 +1,127 @@
+package org.sample.homework.stats;
+
+import lombok.NonNull;
+import org.sample.homework.sketch.HyperLogLog;
+import org.sample.homework.util.IpAddresses;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A set of remote hosts. IP addresses are stored as pairs of longs in an open addressing table (see
+ * {@link IpAddresses}), which costs 16 bytes per address instead of a string and a hash set entry. Host names, when
+ * the server resolves them, are kept apart as strings.
+ * <p>
+ * This class is not thread safe.
+ */
+public class HostSet {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * The addresses: high halves at even indexes and low halves at odd indexes, 0 and 0 marking empty slots. The
+     * unspecified address (<tt>::</tt>) is held apart.
+     */
+    private long[] addresses = new long[INITIAL_CAPACITY * 2];
+
+    private boolean hasUnspecified;
+
+    /**
+     * The number of addresses, the unspecified one excluded.
+     */
+    private int addressCount;
+
+    private final Set<String> names = new HashSet<>();
+
+    /**
+     * Adds an IP address.
+     *
+     * @param high the high half of the address
+     * @param low  the low half of the address
+     * @return <tt>true</tt> if the address wasn't in the set
+     */
+    public boolean add(long high, long low) {
+        if (high == 0 && low == 0) {
+            boolean added = !hasUnspecified;
+            hasUnspecified = true;
+            return added;
+        }
+        int mask = addresses.length / 2 - 1;
+        int slot = (int) IpAddresses.hash(high, low) & mask;
+        while (addresses[slot * 2] != 0 || addresses[slot * 2 + 1] != 0) {
+            if (addresses[slot * 2] == high && addresses[slot * 2 + 1] == low) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        addresses[slot * 2] = high;
+        addresses[slot * 2 + 1] = low;
+        if (++addressCount * 4 > addresses.length) {
+            resize();
+        }
+        return true;
+    }
+
+    /**
+     * Adds a host name.
+     *
+     * @param name the host name, not <tt>null</tt>
+     * @return <tt>true</tt> if the name wasn't in the set
+     */
+    public boolean addName(@NonNull String name) {
+        return names.add(name);
+    }
+
+    /**
+     * Returns the number of hosts.
+     *
+     * @return the number of distinct addresses and names
+     */
+    public int size() {
+        return addressCount + (hasUnspecified ? 1 : 0) + names.size();
+    }
+
+    /**
+     * Returns the memory used by the set in bytes (approximately): the address table, and a string and a hash set
+     * entry by host name.
+     *
+     * @return the memory used by the hosts
+     */
+    public long memoryFootprint() {
+        return addresses.length * 8L + names.size() * 96L;
+    }
+
+    /**
+     * Adds every host to a sketch, addresses being hashed without being rendered.
+     *
+     * @param sketch the sketch to add the hosts to, not <tt>null</tt>
+     */
+    public void addTo(@NonNull HyperLogLog sketch) {
+        if (hasUnspecified) {
+            sketch.addHash(IpAddresses.hash(0, 0));
+        }
+        for (int slot = 0; slot < addresses.length; slot += 2) {
+            if (addresses[slot] != 0 || addresses[slot + 1] != 0) {
+                sketch.addHash(IpAddresses.hash(addresses[slot], addresses[slot + 1]));
+            }
+        }
+        names.forEach(sketch::add);
+    }
+
+    private void resize() {
+        long[] old = addresses;
+        addresses = new long[old.length * 2];
+        int mask = addresses.length / 2 - 1;
+        for (int i = 0; i < old.length; i += 2) {
+            if (old[i] != 0 || old[i + 1] != 0) {
+                int slot = (int) IpAddresses.hash(old[i], old[i + 1]) & mask;
+                while (addresses[slot * 2] != 0 || addresses[slot * 2 + 1] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                addresses[slot * 2] = old[i];
+                addresses[slot * 2 + 1] = old[i + 1];
+            }
+        }
+    }
+
+}
@@ -0,0 +1,390 @@
+package org.sample.homework.stats;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.nio.charset.Charset;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts hits by path prefix, down to a given depth: <tt>/api/v1/users</tt> counts for <tt>/api</tt>,
+ * <tt>/api/v1</tt> and <tt>/api/v1/users</tt>, so that the sections with the most hits can be drilled down level by
+ * level.
+ * <p>
+ * The trie is updated in place from the bytes of the path: segments are hashed and compared where they are in the line,
+ * and only copied when a new node is created. Nodes live in parallel arrays indexed by node number, and children are
+ * found through a single open addressing table keyed by parent and segment.
+ * <p>
+ * The number of nodes is bounded: when the trie is full, the coldest half of the nodes is pruned. Since a node has at
+ * least as many hits as any of its children, pruning the nodes under a threshold prunes whole subtrees. The hits of
+ * pruned nodes are still counted by their ancestors.
+ * <p>
+ * This class is not thread safe.
+ */
+public class SectionTrie {
+
+    /**
+     * The default depth of the trie.
+     */
+    public static final int DEFAULT_DEPTH = 3;
+
+    /**
+     * The default maximum number of nodes.
+     */
+    public static final int DEFAULT_MAX_NODES = 4096;
+
+    /**
+     * The initial capacity of the node arrays.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * The number of path segments counted.
+     */
+    @Getter
+    private final int depth;
+
+    private final int maxNodes;
+
+    /**
+     * The charset the paths are encoded with.
+     */
+    private final Charset charset;
+
+    /**
+     * The number of nodes, the root (node 0) included.
+     */
+    private int size = 1;
+
+    /**
+     * The nodes: their hits, their parent, and the offset, length and hash of their segment in {@link #segments}.
+     */
+    private int[] hits = new int[INITIAL_CAPACITY];
+    private int[] parents = new int[INITIAL_CAPACITY];
+    private int[] segmentOffsets = new int[INITIAL_CAPACITY];
+    private int[] segmentLengths = new int[INITIAL_CAPACITY];
+    private int[] segmentHashes = new int[INITIAL_CAPACITY];
+
+    /**
+     * The segments of every node, back to back.
+     */
+    private byte[] segments = new byte[INITIAL_CAPACITY * 8];
+    private int segmentsLength;
+
+    /**
+     * The children of every node by parent and segment: node numbers, 0 for empty slots.
+     */
+    private int[] table = new int[INITIAL_CAPACITY * 2];
+
+    /**
+     * Class constructor, with the default depth and maximum number of nodes.
+     */
+    public SectionTrie() {
+        this(DEFAULT_DEPTH, DEFAULT_MAX_NODES, Charset.defaultCharset());
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param depth    the number of path segments counted, at least 1
+     * @param maxNodes the maximum number of nodes, at least 2
+     * @param charset  the charset the paths are encoded with, not <tt>null</tt>
+     * @throws IllegalArgumentException if the depth or the maximum number of nodes is too small
+     */
+    public SectionTrie(int depth, int maxNodes, @NonNull Charset charset) {
+        if (depth < 1 || maxNodes < 2) {
+            throw new IllegalArgumentException("Invalid section trie depth or size: " + depth + ", " + maxNodes);
+        }
+        this.depth = depth;
+        this.maxNodes = maxNodes;
+        this.charset = charset;
+    }
+
+    /**
+     * Returns the total hits.
+     *
+     * @return the hits of every path added
+     */
+    public int getTotalHits() {
+        return hits[0];
+    }
+
+    /**
+     * Returns the number of nodes.
+     *
+     * @return the number of nodes, the root included
+     */
+    public int getNodeCount() {
+        return size;
+    }
+
+    /**
+     * Returns the memory used by the trie in bytes (approximately).
+     *
+     * @return the memory used by the node arrays, the segments and the hash table
+     */
+    public long memoryFootprint() {
+        return hits.length * 20L + segments.length + table.length * 4L;
+    }
+
+    /**
+     * Adds hits to a path.
+     *
+     * @param path the path of the requested resource, not <tt>null</tt>
+     * @param hits the number of hits
+     */
+    public void add(@NonNull String path, int hits) {
+        byte[] bytes = path.getBytes(charset);
+        add(bytes, 0, bytes.length, hits);
+    }
+
+    /**
+     * Adds hits to a path, and to every prefix of it down to the depth of the trie. The query string is ignored.
+     *
+     * @param buffer the buffer holding the path, not <tt>null</tt>
+     * @param from   the index of the first byte of the path, which should be a slash
+     * @param to     the index of the last byte of the path (exclusive)
+     * @param hits   the number of hits
+     */
+    public void add(@NonNull byte[] buffer, int from, int to, int hits) {
+        this.hits[0] += hits;
+        if (from >= to || buffer[from] != '/') {
+            return;
+        }
+        int node = 0;
+        int start = from + 1;
+        for (int level = 1; level <= depth && start <= to; level++) {
+            int end = start;
+            int hash = 0;
+            while (end < to && buffer[end] != '/' && buffer[end] != '?' && buffer[end] != '#') {
+                hash = 31 * hash + buffer[end];
+                ++end;
+            }
+            // The root page is a section, but trailing slashes are not.
+            if (end == start && level > 1) {
+                return;
+            }
+            int child = findOrCreate(node, buffer, start, end, hash);
+            if (child == 0) {
+                // The trie is full of hot nodes.
+                return;
+            }
+            this.hits[child] += hits;
+            if (end == to || buffer[end] != '/') {
+                return;
+            }
+            node = child;
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Returns the hits of a section.
+     *
+     * @param section the section, such as <tt>/api/v1</tt>, or an empty string for the root, not <tt>null</tt>
+     * @return the hits of the section, 0 if unknown
+     */
+    public int getHits(@NonNull String section) {
+        int node = find(section);
+        return node < 0 ? 0 : hits[node];
+    }
+
+    /**
+     * Returns the sub-sections of a section with the most hits.
+     *
+     * @param section the section, such as <tt>/api</tt>, or an empty string for the top level sections, not
+     *                <tt>null</tt>
+     * @param limit   the maximum number of sub-sections returned
+     * @return the sub-sections with their hits in decreasing order, empty if the section is unknown, not <tt>null</tt>
+     */
+    public List<Map.Entry<String, Integer>> getTopSections(@NonNull String section, int limit) {
+        List<Map.Entry<String, Integer>> result = new ArrayList<>();
+        int parent = find(section);
+        if (parent < 0) {
+            return result;
+        }
+        // Children are scattered in the table, but there are few nodes.
+        List<Integer> children = new ArrayList<>();
+        for (int node = 1; node < size; node++) {
+            if (parents[node] == parent) {
+                children.add(node);
+            }
+        }
+        children.sort((a, b) -> Integer.compare(hits[b], hits[a]));
+        for (int i = 0; i < children.size() && i < limit; i++) {
+            int node = children.get(i);
+            String name = section + '/' + new String(segments, segmentOffsets[node], segmentLengths[node], charset);
+            result.add(new AbstractMap.SimpleImmutableEntry<>(name, hits[node]));
+        }
+        return result;
+    }
+
+    /**
+     * Finds the node of a section.
+     *
+     * @return the node, or -1 if the section is unknown
+     */
+    private int find(String section) {
+        if (section.isEmpty()) {
+            return 0;
+        }
+        if (section.charAt(0) != '/') {
+            return -1;
+        }
+        byte[] bytes = section.getBytes(charset);
+        int node = 0;
+        int start = 1;
+        while (start <= bytes.length) {
+            int end = start;
+            int hash = 0;
+            while (end < bytes.length && bytes[end] != '/') {
+                hash = 31 * hash + bytes[end];
+                ++end;
+            }
+            node = lookup(node, bytes, start, end, hash);
+            if (node <= 0) {
+                return -1;
+            }
+            start = end + 1;
+        }
+        return node;
+    }
+
+    /**
+     * Looks up the child of a node.
+     *
+     * @return the child, or 0 if it doesn't exist
+     */
+    private int lookup(int parent, byte[] buffer, int from, int to, int hash) {
+        int mask = table.length - 1;
+        for (int slot = slot(parent, hash) & mask; ; slot = (slot + 1) & mask) {
+            int node = table[slot];
+            if (node == 0 || matches(node, parent, buffer, from, to, hash)) {
+                return node;
+            }
+        }
+    }
+
+    /**
+     * Looks up the child of a node, creating it if needed.
+     *
+     * @return the child, or 0 if the trie is full
+     */
+    private int findOrCreate(int parent, byte[] buffer, int from, int to, int hash) {
+        int node = lookup(parent, buffer, from, to, hash);
+        if (node != 0) {
+            return node;
+        }
+        if (size == maxNodes) {
+            parent = prune()[parent];
+            if (parent < 0 || size == maxNodes) {
+                // The parent has been pruned, its hits are still counted by its ancestors.
+                return 0;
+            }
+        }
+        if (size == hits.length) {
+            grow();
+        }
+        int length = to - from;
+        if (segmentsLength + length > segments.length) {
+            segments = Arrays.copyOf(segments, Math.max(segments.length * 2, segmentsLength + length));
+        }
+        System.arraycopy(buffer, from, segments, segmentsLength, length);
+        node = size++;
+        parents[node] = parent;
+        segmentOffsets[node] = segmentsLength;
+        segmentLengths[node] = length;
+        segmentHashes[node] = hash;
+        segmentsLength += length;
+        insert(node);
+        return node;
+    }
+
+    private boolean matches(int node, int parent, byte[] buffer, int from, int to, int hash) {
+        if (parents[node] != parent || segmentHashes[node] != hash || segmentLengths[node] != to - from) {
+            return false;
+        }
+        int offset = segmentOffsets[node];
+        for (int i = from; i < to; i++) {
+            if (segments[offset++] != buffer[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void insert(int node) {
+        int mask = table.length - 1;
+        int slot = slot(parents[node], segmentHashes[node]) & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = node;
+    }
+
+    private static int slot(int parent, int hash) {
+        int h = parent * 0x9E3779B9 ^ hash;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Doubles the capacity of the node arrays and of the table.
+     */
+    private void grow() {
+        int capacity = Math.min(hits.length * 2, maxNodes);
+        hits = Arrays.copyOf(hits, capacity);
+        parents = Arrays.copyOf(parents, capacity);
+        segmentOffsets = Arrays.copyOf(segmentOffsets, capacity);
+        segmentLengths = Arrays.copyOf(segmentLengths, capacity);
+        segmentHashes = Arrays.copyOf(segmentHashes, capacity);
+        rebuildTable(capacity * 2);
+    }
+
+    private void rebuildTable(int capacity) {
+        table = new int[Integer.highestOneBit(capacity - 1) << 1];
+        for (int node = 1; node < size; node++) {
+            insert(node);
+        }
+    }
+
+    /**
+     * Removes the coldest half of the nodes (with their subtrees) and compacts the remaining ones.
+     *
+     * @return the new number of every node before pruning, -1 for pruned nodes
+     */
+    private int[] prune() {
+        int[] sorted = Arrays.copyOfRange(hits, 1, size);
+        Arrays.sort(sorted);
+        int threshold = sorted[sorted.length / 2];
+        int[] renumbered = new int[size];
+        int kept = 1;
+        int keptSegmentsLength = 0;
+        for (int node = 1; node < size; node++) {
+            // Parents are created, and renumbered, before their children.
+            int parent = renumbered[parents[node]];
+            if (hits[node] <= threshold || parent < 0) {
+                renumbered[node] = -1;
+                continue;
+            }
+            renumbered[node] = kept;
+            hits[kept] = hits[node];
+            parents[kept] = parent;
+            System.arraycopy(segments, segmentOffsets[node], segments, keptSegmentsLength, segmentLengths[node]);
+            segmentOffsets[kept] = keptSegmentsLength;
+            segmentLengths[kept] = segmentLengths[node];
+            segmentHashes[kept] = segmentHashes[node];
+            keptSegmentsLength += segmentLengths[node];
+            ++kept;
+        }
+        Arrays.fill(hits, kept, size, 0);
+        size = kept;
+        segmentsLength = keptSegmentsLength;
+        rebuildTable(table.length);
+        return renumbered;
+    }
+
+}
@@ -1,8 +1,14 @@
 package org.sample.homework.stats;
 
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.sample.homework.sketch.HyperLogLog;
+import org.sample.homework.sketch.TopKSketch;
 
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -14,6 +20,16 @@ import java.util.Map;
 public
 class TrafficStatistics {
 
+    /**
+     * The beginning of the window frame (inclusive).
+     */
+    private Instant windowStart;
+
+    /**
+     * The end of the window frame (exclusive).
+     */
+    private Instant windowEnd;
+
     /**
      * The total request count.
      */
@@ -39,23 +55,178 @@ class TrafficStatistics {
      */
     private final Map<String, Integer> hitsByMethod = new HashMap<>();
 
+    /**
+     * An ordered list which contains the user agent families with the most hits, empty if the log format has no user
+     * agent.
+     */
+    private final List<Map.Entry<String, Integer>> hitsByUserAgentFamily = new ArrayList<>(5);
+
+    /**
+     * An ordered list which contains the referer domains with the most hits, empty if the log format has no referer.
+     */
+    private final List<Map.Entry<String, Integer>> hitsByRefererDomain = new ArrayList<>(5);
+
+    /**
+     * An ordered list which contains the subnets (IPv4 /24 and IPv6 /48 networks) of the remote hosts with the most
+     * hits, empty if the log format has no remote host address.
+     */
+    private final List<Map.Entry<String, Integer>> hitsBySubnet = new ArrayList<>(5);
+
     /**
      * Unique remote host count.
      */
     private int uniqueHosts = 0;
 
     /**
-     * Increments total request count by one.
+     * Hits by response status class: index 0 holds 1xx responses, index 4 holds 5xx responses.
+     */
+    private final int[] hitsByStatusClass = new int[5];
+
+    /**
+     * The hits of the busiest second of the window frame.
+     */
+    private int peakHitsPerSecond = 0;
+
+    /**
+     * The hits of the quietest second of the window frame.
+     */
+    private int minHitsPerSecond = 0;
+
+    /**
+     * The 95th percentile of the hits of the seconds of the window frame (nearest rank).
+     */
+    private int p95HitsPerSecond = 0;
+
+    /**
+     * The hits of every second of the window frame, from its start, or <tt>null</tt> if not known (when the
+     * statistics are read back from the history). Setting them updates the peak, min and 95th percentile.
+     */
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private int[] hitsBySecond;
+
+    /**
+     * The largest sampling rate of the records of the window frame: when it is more than 1, only a sample of the lines
+     * has been parsed (see {@link org.sample.homework.clf.LoadShedder}) and the counters are estimates.
+     */
+    private int sampleRate = 1;
+
+    /**
+     * Whether the window frame has been aggregated while the memory budget was under pressure (see
+     * {@link org.sample.homework.metrics.MemoryBudget}): the keys first seen then are missing from the top hits, and
+     * the unique hosts are estimated.
+     */
+    private boolean approximate;
+
+    /**
+     * The tenant (site) the statistics are about, or <tt>null</tt> if they are about the whole traffic (see
+     * {@link org.sample.homework.tenant.TenantEngine}).
+     */
+    private String tenant;
+
+    /**
+     * The hits of the sections, beyond the top ones, in a form which can be merged with the statistics of other
+     * nodes, or <tt>null</tt> unless requested (see {@link TrafficStatisticsManager}).
+     */
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private TopKSketch sectionSketch;
+
+    /**
+     * The unique remote hosts in a form which can be merged with the statistics of other nodes, or <tt>null</tt>
+     * unless requested (see {@link TrafficStatisticsManager}).
+     */
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private HyperLogLog hostSketch;
+
+    /**
+     * The hits by path prefix, to drill down the sections, or <tt>null</tt> if not computed (when the statistics are
+     * merged from other nodes).
+     */
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private SectionTrie sectionTrie;
+
+    /**
+     * Returns whether the counters are estimated from a sample of the lines.
+     *
+     * @return <tt>true</tt> if the sampling rate is more than 1
      */
-    void incrementTotalRequestCount() {
-        ++totalRequestCount;
+    public boolean isSampled() {
+        return sampleRate > 1;
     }
 
     /**
-     * Increments valid request count by one.
+     * Returns the memory held by the statistics in bytes (approximately), sketches and section trie included.
+     *
+     * @return the estimated footprint
+     */
+    public long memoryFootprint() {
+        int entries = hitsBySection.size() + hitsByMethod.size() + hitsByUserAgentFamily.size()
+                + hitsByRefererDomain.size() + hitsBySubnet.size();
+        long footprint = 512 + entries * 96L;
+        if (hitsBySecond != null) {
+            footprint += hitsBySecond.length * 4L;
+        }
+        if (sectionSketch != null) {
+            footprint += sectionSketch.getHits().size() * 96L;
+        }
+        if (hostSketch != null) {
+            footprint += hostSketch.memoryFootprint();
+        }
+        if (sectionTrie != null) {
+            footprint += sectionTrie.memoryFootprint();
+        }
+        return footprint;
+    }
+
+    /**
+     * Sets the hits of every second of the window frame, and computes their distribution.
+     *
+     * @param hitsBySecond the hits of every second, from the start of the window frame, or <tt>null</tt>
+     */
+    public void setHitsBySecond(int[] hitsBySecond) {
+        this.hitsBySecond = hitsBySecond;
+        if (hitsBySecond == null || hitsBySecond.length == 0) {
+            return;
+        }
+        int[] sorted = hitsBySecond.clone();
+        Arrays.sort(sorted);
+        minHitsPerSecond = sorted[0];
+        peakHitsPerSecond = sorted[sorted.length - 1];
+        // The smallest value which is greater than or equal to 95% of the values.
+        p95HitsPerSecond = sorted[(int) Math.ceil(sorted.length * 0.95) - 1];
+    }
+
+    /**
+     * Increments total request count by the given number of requests.
+     *
+     * @param count the number of requests a record counts for
+     */
+    void addTotalRequestCount(int count) {
+        totalRequestCount += count;
+    }
+
+    /**
+     * Increments valid request count by the given number of requests.
+     *
+     * @param count the number of requests a record counts for
+     */
+    void addValidRequestCount(int count) {
+        validRequestCount += count;
+    }
+
+    /**
+     * Increments the hits of the class of the given response status by the given number of requests.
+     *
+     * @param status the response status code, ignored if not between 100 and 599
+     * @param count  the number of requests a record counts for
      */
-    void incrementValidRequestCount() {
-        ++validRequestCount;
+    void addStatusClass(int status, int count) {
+        if (status >= 100 && status < 600) {
+            hitsByStatusClass[status / 100 - 1] += count;
+        }
     }
 
     /**
@@ -63,7 +234,7 @@ class TrafficStatistics {
      *
      * @param amount the amount of bytes to add
      */
-    void addBytesTransferred(int amount) {
+    void addBytesTransferred(long amount) {
         bytesTransferred += amount;
     }
 
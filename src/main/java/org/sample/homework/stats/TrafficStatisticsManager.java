@@ -4,51 +4,139 @@ import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
+import org.sample.homework.clf.AccessLogField;
 import org.sample.homework.clf.AccessLogRecord;
+import org.sample.homework.clf.LazyAccessLogRecord;
+import org.sample.homework.metrics.MemoryBudget;
+import org.sample.homework.metrics.PipelineMetrics;
+import org.sample.homework.sketch.HyperLogLog;
+import org.sample.homework.sketch.TopKSketch;
+import org.sample.homework.util.IpAddresses;
+import org.sample.homework.util.LongIntHashMap;
 
+import java.nio.charset.Charset;
 import java.time.Duration;
 import java.time.Instant;
-import java.time.temporal.TemporalAmount;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
-import static java.util.Map.Entry.comparingByValue;
+import static org.sample.homework.clf.CommonLogFormatUtils.extractDomain;
 import static org.sample.homework.clf.CommonLogFormatUtils.extractSection;
+import static org.sample.homework.clf.CommonLogFormatUtils.extractUserAgentFamily;
 
 /**
  * This class is responsible for generating stats summary based on the consumed access log records.
+ * <p>
+ * Records are aggregated as soon as they are received into the window frame their timestamp belongs to, so they
+ * don't need to be kept: only the counters of the current window frame (and of the later ones records already arrived
+ * for) are held. Records older than the current window frame are counted in it.
+ * <p>
+ * Records parsed while the ingestion is behind stand for several requests (see
+ * {@link LazyAccessLogRecord#getSampleRate()}): every counter is scaled up by their sampling rate, except the unique
+ * hosts which can't be, and the statistics are marked as sampled.
+ * <p>
+ * Remote hosts are counted as packed IP addresses parsed from the lines (see {@link HostSet}), which are also
+ * aggregated by subnet: IPv4 /24 and IPv6 /48 networks.
+ * <p>
+ * Besides the top level sections, hits are counted by path prefix down to a configurable depth (see
+ * {@link SectionTrie}), straight from the bytes of the lines.
+ * <p>
+ * Hits are also counted by second in a ring as long as the window frame, so that bursts shorter than the window frame
+ * are published as the peak, min and 95th percentile of the hits per second (see
+ * {@link TrafficStatistics#setHitsBySecond(int[])}).
+ * <p>
+ * The footprint of the window frames being aggregated is reserved against the memory budget (see
+ * {@link MemoryBudget}). While the budget is under pressure, the window frames stop growing: keys seen for the first
+ * time aren't added to the breakdowns anymore, and new hosts are counted in a fixed size sketch. Such statistics are
+ * marked as approximate.
+ * <p>
+ * Window frames are closed either by a wall-clock timer (see {@link TrafficStatisticsManager#start()}) or explicitly
+ * by the record timestamps when an existing log is replayed, or by a timer shared by the managers of many tenants (see
+ * {@link TrafficStatisticsManager#advanceTo(Instant)}).
  */
 @Slf4j
 public class TrafficStatisticsManager {
 
     /**
-     * Thread-safe lock-free deque to keep track of latest access log records.
-     * <p>
-     * {@link ConcurrentLinkedDeque}s are very fast for insertions and removals at both ends. The advantage of using
-     * this data structure is that the timer thread can process the appropriate access log records while this deque is
-     * always available for adds.
+     * The text fields used by the statistics, other fields don't need to be scanned.
+     */
+    public static final Set<AccessLogField> FIELDS = Collections.unmodifiableSet(EnumSet.of(AccessLogField.HOST,
+            AccessLogField.METHOD, AccessLogField.ENDPOINT, AccessLogField.REFERER, AccessLogField.USER_AGENT));
+
+    /**
+     * The number of sections, user agent families and referer domains kept in the statistics.
+     */
+    public static final int TOP_HITS = 5;
+
+    /**
+     * The number of sections kept in the section sketch.
+     */
+    private static final int SECTION_SKETCH_SIZE = 64;
+
+    /**
+     * Estimated footprints of a window frame without counters, and of a counter by key (string, map entry and array).
      */
-    private final Deque<AccessLogRecord> accessLogRecords = new ConcurrentLinkedDeque<>();
+    private static final long WINDOW_BYTES = 1024;
+    private static final long ENTRY_BYTES = 96;
 
     /**
      * A small delay in order to not loose access log records in case of I/O latencies while reading the log file.
      * Should be slightly bigger than the polling value used by the file watcher.
      */
-    private static final TemporalAmount DELAY = Duration.ofMillis(600);
+    public static final Duration DELAY = Duration.ofMillis(600);
+
+    /**
+     * Notified of the window frames being closed when nothing needs to be.
+     */
+    private static final Consumer<Instant> IGNORE_CLOSE = windowEnd -> {
+    };
+
+    /**
+     * The length of a window frame.
+     */
+    private final Duration refreshPeriod;
+
+    /**
+     * The end of the current window frame. Records older than this timestamp are aggregated in the current window.
+     * <p>
+     * This is <tt>null</tt> until the first window frame is opened.
+     */
+    private Instant maxTimestamp;
+
+    /**
+     * The counters of the current window frame.
+     */
+    private WindowAggregate current;
 
     /**
-     * During very timer tick we only process records older than this timestamp.
+     * The counters of the later window frames records already arrived for, by window end in epoch milliseconds.
      */
-    private Instant maxTimestamp = Instant.now().minus(DELAY);
+    private final Map<Long, WindowAggregate> upcoming = new HashMap<>();
 
     /**
      * The event bus which is used to publish traffic statistics.
      */
     private final EventBus eventBus;
 
+    /**
+     * Whether the published statistics hold the sketches needed to merge them with the statistics of other nodes.
+     */
+    private final boolean sketches;
+
+    /**
+     * The number of path segments counted by the section tries.
+     */
+    private final int sectionDepth;
+
+    /**
+     * The tenant the statistics are about, or <tt>null</tt>.
+     */
+    private final String tenant;
+
     /**
      * Class constructor.
      *
@@ -56,61 +144,281 @@ public class TrafficStatisticsManager {
      * @param eventBus             the event bus to use to publish traffic summaries
      */
     public TrafficStatisticsManager(int refreshPeriodSeconds, @NonNull EventBus eventBus) {
+        this(refreshPeriodSeconds, eventBus, false);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param refreshPeriodSeconds period at which to compute stats summary in seconds
+     * @param eventBus             the event bus to use to publish traffic summaries
+     * @param sketches             whether the section and host sketches of the statistics are computed
+     * @see TrafficStatistics#getSectionSketch()
+     * @see TrafficStatistics#getHostSketch()
+     */
+    public TrafficStatisticsManager(int refreshPeriodSeconds, @NonNull EventBus eventBus, boolean sketches) {
+        this(refreshPeriodSeconds, eventBus, sketches, SectionTrie.DEFAULT_DEPTH);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param refreshPeriodSeconds period at which to compute stats summary in seconds
+     * @param eventBus             the event bus to use to publish traffic summaries
+     * @param sketches             whether the section and host sketches of the statistics are computed
+     * @param sectionDepth         the number of path segments hits are counted by, at least 1
+     * @throws IllegalArgumentException if the section depth is less than 1
+     * @see TrafficStatistics#getSectionTrie()
+     */
+    public TrafficStatisticsManager(int refreshPeriodSeconds, @NonNull EventBus eventBus, boolean sketches,
+                                    int sectionDepth) {
+        this(refreshPeriodSeconds, eventBus, sketches, sectionDepth, null);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param refreshPeriodSeconds period at which to compute stats summary in seconds
+     * @param eventBus             the event bus to use to publish traffic summaries
+     * @param sketches             whether the section and host sketches of the statistics are computed
+     * @param sectionDepth         the number of path segments hits are counted by, at least 1
+     * @param tenant               the tenant the statistics are about, or <tt>null</tt> for the whole traffic. Only the
+     *                             statistics of the whole traffic are reported in the {@link PipelineMetrics}
+     * @throws IllegalArgumentException if the section depth is less than 1
+     * @see TrafficStatistics#getTenant()
+     */
+    public TrafficStatisticsManager(int refreshPeriodSeconds, @NonNull EventBus eventBus, boolean sketches,
+                                    int sectionDepth, String tenant) {
+        if (sectionDepth < 1) {
+            throw new IllegalArgumentException("Invalid section depth: " + sectionDepth);
+        }
+        this.refreshPeriod = Duration.ofSeconds(refreshPeriodSeconds);
         this.eventBus = eventBus;
-        // Define the timer task scheduled at a fixed rate.
-        TimerTask repeatedTask = new TimerTask() {
-            public void run() {
-                updateTrafficStatistics();
-                maxTimestamp = maxTimestamp.plusSeconds(refreshPeriodSeconds);
+        this.sketches = sketches;
+        this.sectionDepth = sectionDepth;
+        this.tenant = tenant;
+        this.current = newWindow();
+    }
+
+    /**
+     * Resumes the window frames from a previous run.
+     *
+     * @param windowEnd the end of the last window frame which has been published, not <tt>null</tt>
+     */
+    public synchronized void resumeFrom(@NonNull Instant windowEnd) {
+        maxTimestamp = windowEnd.plus(refreshPeriod);
+    }
+
+    /**
+     * Closes (and publishes) every window frame which ends before or at the given time.
+     * <p>
+     * This is used to drive the window frames from the record timestamps instead of the wall clock, or from a timer
+     * shared with other managers (see {@link org.sample.homework.tenant.TenantEngine}), and must not be called once
+     * the timer of this manager is started.
+     *
+     * @param time the current time, not <tt>null</tt>
+     */
+    public void advanceTo(@NonNull Instant time) {
+        advanceTo(time, IGNORE_CLOSE);
+    }
+
+    /**
+     * Closes (and publishes) every window frame which ends before or at the given time, notifying the end of every
+     * window frame before it is published.
+     * <p>
+     * This lets a virtual clock be advanced to the end of every window frame, so that what is derived from the
+     * published statistics is dated as if the window frame had been closed on time, even after a gap in the records.
+     *
+     * @param time    the current time, not <tt>null</tt>
+     * @param onClose called with the end of every window frame before it is published, not <tt>null</tt>
+     */
+    public void advanceTo(@NonNull Instant time, @NonNull Consumer<Instant> onClose) {
+        synchronized (this) {
+            if (maxTimestamp == null) {
+                maxTimestamp = time.truncatedTo(ChronoUnit.SECONDS).plus(refreshPeriod);
+            }
+        }
+        while (!getMaxTimestamp().isAfter(time)) {
+            closeWindow(onClose);
+        }
+    }
+
+    /**
+     * Closes (and publishes) the current window frame, if any.
+     * <p>
+     * This is used once a replay is over, to publish the records of the last window frame without waiting for records
+     * belonging to the next one. Like {@link TrafficStatisticsManager#advanceTo(Instant)}, this must not be called
+     * once the timer is started.
+     */
+    public void flush() {
+        flush(IGNORE_CLOSE);
+    }
+
+    /**
+     * Closes (and publishes) the current window frame, if any, notifying its end before it is published.
+     *
+     * @param onClose called with the end of the window frame before it is published, not <tt>null</tt>
+     * @see TrafficStatisticsManager#advanceTo(Instant, Consumer)
+     */
+    public void flush(@NonNull Consumer<Instant> onClose) {
+        if (getMaxTimestamp() != null) {
+            closeWindow(onClose);
+        }
+    }
+
+    /**
+     * Starts the timer which closes window frames against the wall clock.
+     * <p>
+     * If window frames have been resumed or replayed, the timer catches up from the last one.
+     */
+    public void start() {
+        Instant now = Instant.now();
+        if (getMaxTimestamp() == null) {
+            synchronized (this) {
+                maxTimestamp = now.minus(DELAY);
             }
-        };
+        } else {
+            advanceTo(now.minus(DELAY));
+        }
+        // Every window frame is closed once the delay following its end is elapsed.
+        long initialDelayMillis = Math.max(0, Duration.between(now, getMaxTimestamp().plus(DELAY)).toMillis());
         ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
         // Note that if an execution is delayed for any reason (such as GC or other background activity),
         // two or more executions will occur in rapid succession to “catch up”.
-        executor.scheduleAtFixedRate(repeatedTask, 0, refreshPeriodSeconds, TimeUnit.SECONDS);
+        executor.scheduleAtFixedRate(() -> closeWindow(IGNORE_CLOSE), initialDelayMillis, refreshPeriod.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    private WindowAggregate newWindow() {
+        return new WindowAggregate(sectionDepth, (int) Math.max(1, refreshPeriod.getSeconds()));
+    }
+
+    private synchronized Instant getMaxTimestamp() {
+        return maxTimestamp;
     }
 
     /**
-     * Creates stats statistics for the current period.
+     * Publishes the stats statistics of the current window frame and opens the next one.
+     *
+     * @param onClose called with the end of the window frame before it is published
      */
-    private void updateTrafficStatistics() {
-        TrafficStatistics statistics = new TrafficStatistics();
-        Set<String> uniqueHosts = new HashSet<>();
-        // Used to compute the sections of the web site with the most hits.
-        Map<String, Integer> hitsBySection = new HashMap<>();
-        // Remove and process access log records which fit in this window frame.
-        AccessLogRecord record = accessLogRecords.pollLast();
-        while (record != null && record.getDateTime().toInstant().isBefore(maxTimestamp)) {
-            // Increment total request count.
-            statistics.incrementTotalRequestCount();
-            // Increment valid request count based on the status code.
-            if (record.getStatus() >= 200 && record.getStatus() < 300) {
-                statistics.incrementValidRequestCount();
+    private void closeWindow(Consumer<Instant> onClose) {
+        WindowAggregate window;
+        Instant windowEnd;
+        synchronized (this) {
+            window = current;
+            windowEnd = maxTimestamp;
+            maxTimestamp = maxTimestamp.plus(refreshPeriod);
+            current = upcoming.remove(maxTimestamp.toEpochMilli());
+            if (current == null) {
+                current = newWindow();
             }
-            // Increment bytes transferred.
-            statistics.addBytesTransferred(record.getBytes());
-            // Increments hits by section and hits by method.
-            // Here, instead of fetching the value from the map, increment it and put it back into the map,
-            // we take advantage of compute which takes a lambda and computes the value in an atomic way. This is O(1).
-            hitsBySection.compute(extractSection(record.getEndpoint()), (k, v) -> v == null ? 1 : ++v);
-            statistics.getHitsByMethod().compute(record.getMethod(), (k, v) -> v == null ? 1 : ++v);
-            // If we have a host add it to our unique set.
-            if (record.getHost() != null) {
-                uniqueHosts.add(record.getHost());
-            }
-            record = accessLogRecords.pollLast();
-        }
-        // Keep only top 5 sections.
-        hitsBySection.entrySet().stream()
-                .sorted(Collections.reverseOrder(comparingByValue()))
-                .limit(5)
-                .forEach(e -> statistics.getHitsBySection().add(e));
-        statistics.setUniqueHosts(uniqueHosts.size());
+        }
+        onClose.accept(windowEnd);
+        // Records keep being aggregated in the next window frame meanwhile.
+        updateTrafficStatistics(window, windowEnd);
+    }
+
+    /**
+     * Creates stats statistics for a closed window frame.
+     *
+     * @param window    the counters of the window frame
+     * @param windowEnd the end of the window frame
+     */
+    private void updateTrafficStatistics(WindowAggregate window, Instant windowEnd) {
+        long tickStart = System.nanoTime();
+        TrafficStatistics statistics = window.statistics;
+        statistics.setWindowStart(windowEnd.minus(refreshPeriod));
+        statistics.setWindowEnd(windowEnd);
+        statistics.setTenant(tenant);
+        // Keep only top 5 sections, user agent families and referer domains.
+        addTopHits(window.hitsBySection, statistics.getHitsBySection());
+        addTopHits(window.hitsByUserAgentFamily, statistics.getHitsByUserAgentFamily());
+        addTopHits(window.hitsByRefererDomain, statistics.getHitsByRefererDomain());
+        // The trie isn't updated anymore once its window frame is closed.
+        statistics.setSectionTrie(window.sections);
+        statistics.setHitsBySecond(window.hitsBySecond);
+        window.hitsByMethod.forEach((method, hits) -> statistics.getHitsByMethod().put(method, hits[0]));
+        addTopSubnets(window, statistics.getHitsBySubnet());
+        HyperLogLog approximateHosts = window.approximateHosts;
+        if (approximateHosts != null) {
+            window.uniqueHosts.addTo(approximateHosts);
+            statistics.setUniqueHosts((int) approximateHosts.estimate());
+        } else {
+            statistics.setUniqueHosts(window.uniqueHosts.size());
+        }
+        if (sketches) {
+            statistics.setSectionSketch(TopKSketch.of(window.hitsBySection, SECTION_SKETCH_SIZE));
+            HyperLogLog hostSketch = approximateHosts;
+            if (hostSketch == null) {
+                hostSketch = new HyperLogLog();
+                window.uniqueHosts.addTo(hostSketch);
+            }
+            statistics.setHostSketch(hostSketch);
+        }
+        // The counters of the window frame are garbage once published.
+        MemoryBudget.get().release(MemoryBudget.Component.WINDOWS, window.reserved);
+
+        // The pipeline metrics are about the whole traffic, whose records are counted again by every tenant.
+        if (tenant == null) {
+            PipelineMetrics metrics = PipelineMetrics.get();
+            int records = window.records;
+            if (records > 0) {
+                long now = System.currentTimeMillis();
+                // The lag of every record is the time elapsed since its timestamp.
+                metrics.getRecordLagTimer().record(records,
+                        records * (now - window.firstTimestamp) - window.timestampOffsets, now - window.minTimestamp);
+            }
+            metrics.addBufferedRecords(-records);
+            metrics.getTickTimer().record(System.nanoTime() - tickStart);
+            metrics.incrementStatisticsPublished();
+        }
 
         // Publish the computed traffic stats to the event bus.
         eventBus.post(statistics);
     }
 
+    /**
+     * Adds the keys with the most hits, in decreasing order.
+     *
+     * @param hits    the hits by key
+     * @param topHits the list to fill
+     */
+    private static void addTopHits(Map<String, int[]> hits, List<Map.Entry<String, Integer>> topHits) {
+        hits.entrySet().stream()
+                .sorted(Collections.reverseOrder(Comparator.comparingInt(e -> e.getValue()[0])))
+                .limit(TOP_HITS)
+                .forEach(e -> topHits.add(new AbstractMap.SimpleImmutableEntry<>(e.getKey(), e.getValue()[0])));
+    }
+
+    /**
+     * Adds the subnets with the most hits, in decreasing order. Only the top subnets are rendered.
+     *
+     * @param window     the counters of the window frame
+     * @param topSubnets the list to fill
+     */
+    private static void addTopSubnets(WindowAggregate window, List<Map.Entry<String, Integer>> topSubnets) {
+        // The subnets are kept as their network address halves, hits and prefix length.
+        PriorityQueue<long[]> smallest = new PriorityQueue<>(TOP_HITS + 1, Comparator.comparingLong(e -> e[2]));
+        window.hitsByIpv4Subnet.forEach((network, hits) -> offerTop(smallest, 0, network, hits, 24));
+        window.hitsByIpv6Subnet.forEach((network, hits) -> offerTop(smallest, network, 0, hits, 48));
+        List<long[]> top = new ArrayList<>(smallest);
+        top.sort(Collections.reverseOrder(Comparator.comparingLong(e -> e[2])));
+        for (long[] subnet : top) {
+            String network = IpAddresses.toString(subnet[0], subnet[1]);
+            topSubnets.add(new AbstractMap.SimpleImmutableEntry<>(network + '/' + subnet[3], (int) subnet[2]));
+        }
+    }
+
+    private static void offerTop(PriorityQueue<long[]> smallest, long high, long low, int hits, int prefix) {
+        if (smallest.size() < TOP_HITS || hits > smallest.peek()[2]) {
+            smallest.add(new long[]{high, low, hits, prefix});
+            if (smallest.size() > TOP_HITS) {
+                smallest.poll();
+            }
+        }
+    }
+
     /**
      * Handler to get {@link AccessLogRecord}s from the {@link EventBus}.
      * We annotate the handler method with {@link Subscribe}.
@@ -119,8 +427,241 @@ public class TrafficStatisticsManager {
      */
     @Subscribe
     public void handleAccessLogRecord(AccessLogRecord record) {
-        // Add the record at the front of the buffer.
-        accessLogRecords.addFirst(record);
+        byte[] path = record.getEndpoint().getBytes(Charset.defaultCharset());
+        long[] address = new long[2];
+        boolean hostAddress = false;
+        if (record.getHost() != null) {
+            byte[] host = record.getHost().getBytes(Charset.defaultCharset());
+            hostAddress = IpAddresses.parse(host, 0, host.length, address);
+        }
+        aggregate(record.getDateTime().toInstant().toEpochMilli(), hostAddress ? null : record.getHost(),
+                hostAddress, address[0], address[1],
+                extractSection(record.getEndpoint()), path, 0, path.length, record.getMethod(), record.getStatus(),
+                record.getBytes(), record.getUserAgent() == null ? null : extractUserAgentFamily(record.getUserAgent()),
+                record.getReferer() == null ? null : extractDomain(record.getReferer()), 1);
+    }
+
+    /**
+     * Handler to get {@link LazyAccessLogRecord}s from the {@link EventBus}. Only the fields used by the statistics
+     * are decoded (see {@link TrafficStatisticsManager#FIELDS}).
+     *
+     * @param record the access log record consumed from the event bus, only valid during this call
+     */
+    @Subscribe
+    public void handleLazyAccessLogRecord(LazyAccessLogRecord record) {
+        boolean hostAddress = record.isHostAddress();
+        // Host names are only decoded when the host isn't an address.
+        aggregate(record.getTimestamp(), hostAddress ? null : record.getHost(), hostAddress,
+                record.getHostAddressHigh(), record.getHostAddressLow(), record.getSection(), record.getLine(),
+                record.getEndpointStart(), record.getEndpointEnd(), record.getMethod(), record.getStatus(),
+                record.getBytes(), record.getUserAgentFamily(), record.getRefererDomain(), record.getSampleRate());
+    }
+
+    /**
+     * Adds a record to the window frame it belongs to.
+     *
+     * @param timestamp       the record time in epoch milliseconds
+     * @param hostName        the remote host if it is not an address, or <tt>null</tt>
+     * @param hostAddress     whether the remote host is an address
+     * @param hostHigh        the high half of the remote host address
+     * @param hostLow         the low half of the remote host address
+     * @param section         the requested section
+     * @param path            the buffer holding the requested resource
+     * @param pathFrom        the index of the first byte of the requested resource, or -1 if not provided
+     * @param pathTo          the index of the last byte of the requested resource (exclusive)
+     * @param method          the request method
+     * @param status          the response status
+     * @param bytes           the response size
+     * @param userAgentFamily the user agent family, or <tt>null</tt>
+     * @param refererDomain   the referer domain, or <tt>null</tt>
+     * @param sampleRate      the number of requests the record counts for
+     */
+    private void aggregate(long timestamp, String hostName, boolean hostAddress, long hostHigh, long hostLow,
+                           String section, byte[] path, int pathFrom, int pathTo, String method, int status,
+                           int bytes, String userAgentFamily, String refererDomain, int sampleRate) {
+        synchronized (this) {
+            WindowAggregate window = current;
+            long period = refreshPeriod.toMillis();
+            long windowEnd = maxTimestamp == null ? timestamp + period : maxTimestamp.toEpochMilli();
+            if (timestamp >= windowEnd) {
+                // This record belongs to a next window frame.
+                windowEnd += ((timestamp - windowEnd) / period + 1) * period;
+                window = upcoming.computeIfAbsent(windowEnd, k -> newWindow());
+            }
+            // Records older than the window frame wrap around the ring instead of piling up in its first second.
+            int second = (int) Math.floorMod(Math.floorDiv(timestamp - windowEnd + period, 1000L),
+                    (long) window.hitsBySecond.length);
+            window.add(timestamp, section, method, status, bytes, userAgentFamily, refererDomain, sampleRate);
+            window.hitsBySecond[second] += sampleRate;
+            if (pathFrom >= 0) {
+                window.sections.add(path, pathFrom, pathTo, sampleRate);
+            }
+            if (hostAddress) {
+                window.addHostAddress(hostHigh, hostLow, sampleRate);
+            } else if (hostName != null) {
+                window.addHostName(hostName);
+            }
+            window.account();
+        }
+        // The number of aggregated records is tracked apart, so that publishing it doesn't require the lock.
+        if (tenant == null) {
+            PipelineMetrics.get().addBufferedRecords(1);
+        }
+    }
+
+    /**
+     * The counters of a window frame, updated as records are received.
+     */
+    private static class WindowAggregate {
+
+        private final TrafficStatistics statistics = new TrafficStatistics();
+
+        private final HostSet uniqueHosts = new HostSet();
+
+        /**
+         * Hits by IPv4 /24 network (the low half of its mapped address) and IPv6 /48 network (the high half of its
+         * address).
+         */
+        private final LongIntHashMap hitsByIpv4Subnet = new LongIntHashMap();
+        private final LongIntHashMap hitsByIpv6Subnet = new LongIntHashMap();
+
+        /**
+         * Hits by section, method, user agent family and referer domain, counted in place to avoid boxing.
+         */
+        private final Map<String, int[]> hitsBySection = new HashMap<>();
+        private final Map<String, int[]> hitsByMethod = new HashMap<>();
+        private final Map<String, int[]> hitsByUserAgentFamily = new HashMap<>();
+        private final Map<String, int[]> hitsByRefererDomain = new HashMap<>();
+
+        /**
+         * Hits by path prefix.
+         */
+        private final SectionTrie sections;
+
+        /**
+         * Hits by second from the start of the window frame.
+         */
+        private final int[] hitsBySecond;
+
+        /**
+         * The hosts seen while the memory budget was under pressure, <tt>null</tt> until then.
+         */
+        private HyperLogLog approximateHosts;
+
+        /**
+         * The footprint reserved against the memory budget, in bytes.
+         */
+        private long reserved;
+
+        /**
+         * Used to compute the lag of the records: the timestamp of the first and oldest records, and the sum of the
+         * offsets of every record timestamp from the first one, in milliseconds.
+         */
+        private long firstTimestamp;
+        private long minTimestamp = Long.MAX_VALUE;
+        private long timestampOffsets;
+
+        /**
+         * The number of records aggregated, which is less than the number of requests when lines are sampled.
+         */
+        private int records;
+
+        WindowAggregate(int sectionDepth, int seconds) {
+            this.sections = new SectionTrie(sectionDepth, SectionTrie.DEFAULT_MAX_NODES, Charset.defaultCharset());
+            this.hitsBySecond = new int[seconds];
+        }
+
+        void add(long timestamp, String section, String method, int status, int bytes,
+                 String userAgentFamily, String refererDomain, int sampleRate) {
+            if (records++ == 0) {
+                firstTimestamp = timestamp;
+            }
+            minTimestamp = Math.min(minTimestamp, timestamp);
+            timestampOffsets += timestamp - firstTimestamp;
+            if (sampleRate > statistics.getSampleRate()) {
+                statistics.setSampleRate(sampleRate);
+            }
+            if (!statistics.isApproximate() && MemoryBudget.get().isUnderPressure()) {
+                // Stop growing until the window frame is closed.
+                statistics.setApproximate(true);
+                approximateHosts = new HyperLogLog();
+            }
+            // Increment total request count.
+            statistics.addTotalRequestCount(sampleRate);
+            // Increment valid request count based on the status code.
+            if (status >= 200 && status < 300) {
+                statistics.addValidRequestCount(sampleRate);
+            }
+            // Increment hits by status class.
+            statistics.addStatusClass(status, sampleRate);
+            // Increment bytes transferred.
+            statistics.addBytesTransferred((long) bytes * sampleRate);
+            // Increments hits by section and hits by method.
+            addHits(hitsBySection, section, sampleRate);
+            addHits(hitsByMethod, method, sampleRate);
+            // Increments hits by user agent family and by referer domain, if provided by the log format.
+            if (userAgentFamily != null) {
+                addHits(hitsByUserAgentFamily, userAgentFamily, sampleRate);
+            }
+            if (refererDomain != null) {
+                addHits(hitsByRefererDomain, refererDomain, sampleRate);
+            }
+        }
+
+        private void addHits(Map<String, int[]> hits, String key, int sampleRate) {
+            int[] counter = hits.get(key);
+            if (counter == null) {
+                if (approximateHosts != null) {
+                    return;
+                }
+                counter = new int[1];
+                hits.put(key, counter);
+            }
+            counter[0] += sampleRate;
+        }
+
+        void addHostAddress(long high, long low, int sampleRate) {
+            if (approximateHosts == null) {
+                uniqueHosts.add(high, low);
+            } else {
+                approximateHosts.addHash(IpAddresses.hash(high, low));
+            }
+            if (IpAddresses.isIpv4(high, low)) {
+                addHits(hitsByIpv4Subnet, low & ~0xFFL, sampleRate);
+            } else {
+                addHits(hitsByIpv6Subnet, high & ~0xFFFFL, sampleRate);
+            }
+        }
+
+        private void addHits(LongIntHashMap hits, long network, int sampleRate) {
+            if (approximateHosts == null || hits.get(network) != 0) {
+                hits.add(network, sampleRate);
+            }
+        }
+
+        void addHostName(String name) {
+            if (approximateHosts == null) {
+                uniqueHosts.addName(name);
+            } else {
+                approximateHosts.add(name);
+            }
+        }
+
+        /**
+         * Reserves the growth of the footprint since the previous record against the memory budget.
+         */
+        void account() {
+            int entries = hitsBySection.size() + hitsByMethod.size() + hitsByUserAgentFamily.size()
+                    + hitsByRefererDomain.size();
+            long footprint = WINDOW_BYTES + entries * ENTRY_BYTES + hitsBySecond.length * 4L
+                    + uniqueHosts.memoryFootprint() + hitsByIpv4Subnet.memoryFootprint()
+                    + hitsByIpv6Subnet.memoryFootprint() + sections.memoryFootprint()
+                    + (approximateHosts == null ? 0 : approximateHosts.memoryFootprint());
+            if (footprint != reserved) {
+                MemoryBudget.get().reserve(MemoryBudget.Component.WINDOWS, footprint - reserved);
+                reserved = footprint;
+            }
+        }
     }
 
 }
@@ -0,0 +1,171 @@
+package org.sample.homework.tenant;
+
+import org.sample.homework.alerts.TrafficAlert;
+import org.sample.homework.alerts.TrafficAlertManager;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The alerting state of many tenants, kept in primitive arrays instead of one {@link TrafficAlertManager} per tenant.
+ * <p>
+ * Only the hits of the window frames of the monitor duration are needed to raise alerts, so every tenant owns a ring
+ * of hit counters rather than a buffer of statistics. The rings of all the tenants are laid out back to back in a
+ * single array and share the same cursor: each sweep records the hits of every tenant (see
+ * {@link TenantAlertTable#record(int, int, boolean)}), then evaluates all of them in one pass (see
+ * {@link TenantAlertTable#evaluate(AlertListener)}). The alerts follow the rules of {@link TrafficAlertManager}.
+ */
+public class TenantAlertTable {
+
+    /**
+     * Receives the alerts raised by an evaluation.
+     */
+    @FunctionalInterface
+    public interface AlertListener {
+
+        /**
+         * Receives an alert.
+         *
+         * @param tenant        the index of the tenant
+         * @param type          the type of the alert
+         * @param hitsPerSecond hits per second during the monitor duration
+         * @param estimated     whether the hits are estimated from a sample of the lines
+         */
+        void onAlert(int tenant, TrafficAlert.AlertType type, float hitsPerSecond, boolean estimated);
+    }
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The number of window frames of the monitor duration, i.e. the length of the rings.
+     */
+    private final int buckets;
+
+    /**
+     * The duration in seconds during which stats alerts are computed.
+     */
+    private final int monitorDurationSeconds;
+
+    /**
+     * The rings of hits: the ring of a tenant starts at its index times the number of buckets.
+     */
+    private int[] hits;
+
+    /**
+     * Whether each bucket has been estimated from a sample of the lines, laid out like the hits.
+     */
+    private BitSet sampledBuckets = new BitSet();
+
+    /**
+     * By tenant: the hits of the ring, the number of its sampled buckets and the alert threshold.
+     */
+    private int[] totals = new int[INITIAL_CAPACITY];
+    private int[] sampledCounts = new int[INITIAL_CAPACITY];
+    private int[] thresholds = new int[INITIAL_CAPACITY];
+
+    /**
+     * The tenants with an ongoing high traffic alert.
+     */
+    private final BitSet highTraffic = new BitSet();
+
+    /**
+     * The bucket of the rings recorded by the current sweep.
+     */
+    private int cursor = 0;
+
+    private int size = 0;
+
+    /**
+     * Class constructor.
+     *
+     * @param buckets                number of window frames during the monitor duration, at least 1
+     * @param monitorDurationSeconds duration in seconds during which stats alerts are computed
+     * @throws IllegalArgumentException if the number of buckets is less than 1
+     */
+    public TenantAlertTable(int buckets, int monitorDurationSeconds) {
+        if (buckets < 1) {
+            throw new IllegalArgumentException("Invalid number of buckets: " + buckets);
+        }
+        this.buckets = buckets;
+        this.monitorDurationSeconds = monitorDurationSeconds;
+        this.hits = new int[INITIAL_CAPACITY * buckets];
+    }
+
+    /**
+     * Adds a tenant, whose hits are all 0.
+     *
+     * @param threshold number of requests per second before triggering an alert for this tenant
+     * @return the index of the tenant
+     */
+    public synchronized int add(int threshold) {
+        if (size == thresholds.length) {
+            int capacity = size * 2;
+            hits = Arrays.copyOf(hits, capacity * buckets);
+            totals = Arrays.copyOf(totals, capacity);
+            sampledCounts = Arrays.copyOf(sampledCounts, capacity);
+            thresholds = Arrays.copyOf(thresholds, capacity);
+        }
+        thresholds[size] = threshold;
+        return size++;
+    }
+
+    /**
+     * Returns the number of tenants.
+     *
+     * @return the number of tenants
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Records the hits of the latest window frame of a tenant, replacing the ones of the oldest window frame. This
+     * must be called once per tenant before each evaluation.
+     *
+     * @param tenant  the index of the tenant
+     * @param count   the number of requests of the window frame
+     * @param sampled whether the requests are estimated from a sample of the lines
+     */
+    public synchronized void record(int tenant, int count, boolean sampled) {
+        int bucket = tenant * buckets + cursor;
+        totals[tenant] += count - hits[bucket];
+        hits[bucket] = count;
+        if (sampledBuckets.get(bucket) != sampled) {
+            sampledBuckets.set(bucket, sampled);
+            sampledCounts[tenant] += sampled ? 1 : -1;
+        }
+    }
+
+    /**
+     * Raises the high traffic and recovery alerts of every tenant, then moves on to the next window frame.
+     *
+     * @param listener receives the alerts, not <tt>null</tt>
+     */
+    public synchronized void evaluate(AlertListener listener) {
+        for (int tenant = 0; tenant < size; tenant++) {
+            float hitsPerSecond = (float) totals[tenant] / monitorDurationSeconds;
+            if (highTraffic.get(tenant)) {
+                if (hitsPerSecond < thresholds[tenant]) {
+                    highTraffic.clear(tenant);
+                    listener.onAlert(tenant, TrafficAlert.AlertType.RECOVERED, hitsPerSecond,
+                            sampledCounts[tenant] > 0);
+                }
+            } else if (hitsPerSecond > thresholds[tenant]) {
+                highTraffic.set(tenant);
+                listener.onAlert(tenant, TrafficAlert.AlertType.HIGH_TRAFFIC, hitsPerSecond,
+                        sampledCounts[tenant] > 0);
+            }
+        }
+        cursor = (cursor + 1) % buckets;
+    }
+
+    /**
+     * Returns the tenants which have an ongoing high traffic alert.
+     *
+     * @return a copy of the set of tenant indexes, not <tt>null</tt>
+     */
+    public synchronized BitSet getHighTraffic() {
+        return (BitSet) highTraffic.clone();
+    }
+
+}
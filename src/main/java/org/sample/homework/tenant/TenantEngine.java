@@ -0,0 +1,425 @@
+package org.sample.homework.tenant;
+
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.sample.homework.alerts.TrafficAlert;
+import org.sample.homework.clf.AccessLogRecordProducer;
+import org.sample.homework.clf.LazyAccessLogRecord;
+import org.sample.homework.metrics.MemoryBudget;
+import org.sample.homework.stats.TrafficStatistics;
+import org.sample.homework.stats.TrafficStatisticsManager;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class is responsible for monitoring many tenants (sites) in a single process: every record is routed to the
+ * statistics of its tenant, which is either the log file it has been read from or its virtual host.
+ * <p>
+ * The tenants don't own any thread. A single scheduler thread closes the window frames of every tenant in one sweep per
+ * report interval: the statistics of the tenants are computed by a shared worker pool, a slice of the tenants per
+ * worker, then the alerts of every tenant are evaluated in one pass over a {@link TenantAlertTable}, which holds the
+ * hits of the monitor duration in primitive arrays instead of buffering statistics. Each sweep is published as a
+ * {@link TenantSweep}, and the alerts of the tenants as {@link TrafficAlert}s naming their tenant.
+ * <p>
+ * The records of a tenant are counted in fixed size windows (see {@link TenantWindow}): one for the current window
+ * frame and one for the next, which are swapped and reused by every sweep. The statistics of a tenant are thus reduced
+ * to its counters, the top sections and methods and an estimate of its unique hosts.
+ * <p>
+ * Log files followed as tenants are polled by the worker pool as well (see
+ * {@link TenantEngine#follow(AccessLogRecordProducer)}).
+ * <p>
+ * The statistics of the whole traffic are still computed by a {@link TrafficStatisticsManager} of their own.
+ */
+@Slf4j
+public class TenantEngine implements Closeable {
+
+    /**
+     * What the tenants are.
+     */
+    public enum TenantKey {
+
+        /**
+         * Every followed log file is a tenant (see {@link LazyAccessLogRecord#getSource()}).
+         */
+        FILE,
+
+        /**
+         * Every virtual host is a tenant (see {@link LazyAccessLogRecord#getVirtualHost()}).
+         */
+        VHOST
+    }
+
+    /**
+     * Maximum number of tenants: the records of the next new tenants are only counted in the whole traffic.
+     */
+    public static final int MAX_TENANTS = 1024;
+
+    /**
+     * The delay between checks of the followed files for new content in milliseconds.
+     */
+    private static final long POLL_DELAY_MILLIS = 400;
+
+    private final TenantKey key;
+
+    /**
+     * The length of a window frame.
+     */
+    private final Duration refreshPeriod;
+
+    private final int refreshPeriodSeconds;
+
+    /**
+     * The alert thresholds of the tenants in hits per second, and the threshold of the other tenants.
+     */
+    private final Map<String, Integer> alertThresholds;
+    private final int defaultAlertThreshold;
+
+    /**
+     * The event bus which is used to publish the sweeps and the alerts.
+     */
+    private final EventBus eventBus;
+
+    /**
+     * The clock whose time zone dates traffic alerts.
+     */
+    private final Clock clock;
+
+    private final TenantAlertTable alerts;
+
+    /**
+     * The tenants by name, and in the order they have been seen (their index in the alert table), guarded by this.
+     */
+    private final Map<String, Tenant> tenantsByName = new ConcurrentHashMap<>();
+    private final List<Tenant> tenants = new ArrayList<>();
+
+    /**
+     * The end of the window frame currently open for every tenant, <tt>null</tt> until started, guarded by this.
+     */
+    private Instant windowEnd;
+
+    /**
+     * Whether the maximum number of tenants has been reached and reported.
+     */
+    private volatile boolean full = false;
+
+    private final int parallelism = Runtime.getRuntime().availableProcessors();
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService workers;
+
+    /**
+     * Class constructor.
+     *
+     * @param key                    what the tenants are, not <tt>null</tt>
+     * @param refreshPeriodSeconds   period at which to compute stats summary in seconds
+     * @param monitorDurationSeconds duration in seconds during which stats alerts are computed
+     * @param defaultAlertThreshold  number of requests per second before printing an alert, unless the tenant has a
+     *                               threshold of its own
+     * @param alertThresholds        the thresholds of the tenants by name, not <tt>null</tt>
+     * @param eventBus               the event bus to use to publish the sweeps and the alerts, not <tt>null</tt>
+     */
+    public TenantEngine(@NonNull TenantKey key, int refreshPeriodSeconds, int monitorDurationSeconds,
+                        int defaultAlertThreshold, @NonNull Map<String, Integer> alertThresholds,
+                        @NonNull EventBus eventBus) {
+        this(key, refreshPeriodSeconds, monitorDurationSeconds, defaultAlertThreshold, alertThresholds, eventBus,
+                Clock.systemDefaultZone());
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param key                    what the tenants are, not <tt>null</tt>
+     * @param refreshPeriodSeconds   period at which to compute stats summary in seconds
+     * @param monitorDurationSeconds duration in seconds during which stats alerts are computed
+     * @param defaultAlertThreshold  number of requests per second before printing an alert, unless the tenant has a
+     *                               threshold of its own
+     * @param alertThresholds        the thresholds of the tenants by name, not <tt>null</tt>
+     * @param eventBus               the event bus to use to publish the sweeps and the alerts, not <tt>null</tt>
+     * @param clock                  the clock whose time zone dates traffic alerts, not <tt>null</tt>
+     */
+    public TenantEngine(@NonNull TenantKey key, int refreshPeriodSeconds, int monitorDurationSeconds,
+                        int defaultAlertThreshold, @NonNull Map<String, Integer> alertThresholds,
+                        @NonNull EventBus eventBus, @NonNull Clock clock) {
+        this.key = key;
+        this.refreshPeriod = Duration.ofSeconds(refreshPeriodSeconds);
+        this.refreshPeriodSeconds = refreshPeriodSeconds;
+        this.alertThresholds = alertThresholds;
+        this.defaultAlertThreshold = defaultAlertThreshold;
+        this.eventBus = eventBus;
+        this.clock = clock;
+        this.alerts = new TenantAlertTable(monitorDurationSeconds / refreshPeriodSeconds, monitorDurationSeconds);
+        this.scheduler =
+                Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "tenant-scheduler"));
+        AtomicInteger workerCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(parallelism,
+                runnable -> new Thread(runnable, "tenant-worker-" + workerCount.incrementAndGet()));
+    }
+
+    /**
+     * Starts the timer which closes the window frames of every tenant against the wall clock.
+     */
+    public void start() {
+        Instant now = Instant.now();
+        open(now.minus(TrafficStatisticsManager.DELAY));
+        // Every window frame is closed once the delay following its end is elapsed.
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                sweep();
+            } catch (RuntimeException e) {
+                // An exception would cancel the next sweeps.
+                log.error("Failed to close the window frames of the tenants.", e);
+            }
+        }, 0, refreshPeriod.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Follows a log file whose lines are published by the given producer, polling it on the worker pool instead of
+     * dedicating a thread to it (see {@link AccessLogRecordProducer#poll()}).
+     *
+     * @param producer the producer of the lines of the file, not <tt>null</tt>
+     */
+    public void follow(@NonNull AccessLogRecordProducer producer) {
+        AtomicBoolean polling = new AtomicBoolean();
+        scheduler.scheduleWithFixedDelay(() -> {
+            // The file is only polled by one worker at a time.
+            if (polling.compareAndSet(false, true)) {
+                workers.execute(() -> {
+                    try {
+                        producer.poll();
+                    } catch (IOException | RuntimeException e) {
+                        log.error("Failed to read a followed log file.", e);
+                    } finally {
+                        polling.set(false);
+                    }
+                });
+            }
+        }, 0, POLL_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Handler to get {@link LazyAccessLogRecord}s from the {@link EventBus}, which are routed to their tenant.
+     *
+     * @param record the access log record consumed from the event bus, only valid during this call
+     */
+    @Subscribe
+    public void handleLazyAccessLogRecord(LazyAccessLogRecord record) {
+        String name = key == TenantKey.FILE ? record.getSource() : record.getVirtualHost();
+        if (name == null) {
+            return;
+        }
+        Tenant tenant = tenantsByName.get(name);
+        if (tenant == null) {
+            tenant = addTenant(name);
+            if (tenant == null) {
+                return;
+            }
+        }
+        tenant.add(record);
+    }
+
+    /**
+     * Returns the number of tenants seen so far.
+     *
+     * @return the number of tenants
+     */
+    public synchronized int getTenantCount() {
+        return tenants.size();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        workers.shutdownNow();
+        synchronized (this) {
+            for (Tenant tenant : tenants) {
+                MemoryBudget.get().release(MemoryBudget.Component.WINDOWS, tenant.memoryFootprint());
+            }
+        }
+    }
+
+    /**
+     * Opens the first window frame of every tenant.
+     *
+     * @param end the end of the window frame, not <tt>null</tt>
+     */
+    synchronized void open(Instant end) {
+        windowEnd = end;
+        for (Tenant tenant : tenants) {
+            tenant.open(end);
+        }
+    }
+
+    /**
+     * Closes the current window frame of every tenant, evaluates their alerts and publishes the sweep.
+     */
+    void sweep() {
+        Tenant[] snapshot;
+        Instant end;
+        synchronized (this) {
+            snapshot = tenants.toArray(new Tenant[0]);
+            end = windowEnd;
+            windowEnd = windowEnd.plus(refreshPeriod);
+        }
+        // Every worker closes the window frames of a slice of the tenants.
+        TrafficStatistics[] closed = new TrafficStatistics[snapshot.length];
+        int slices = Math.min(parallelism, snapshot.length);
+        List<Callable<Void>> tasks = new ArrayList<>(slices);
+        for (int slice = 0; slice < slices; slice++) {
+            int first = slice;
+            tasks.add(() -> {
+                for (int i = first; i < snapshot.length; i += slices) {
+                    closed[i] = snapshot[i].close(end, refreshPeriod);
+                }
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> result : workers.invokeAll(tasks)) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            log.error("Failed to close the window frames of the tenants.", e.getCause());
+        }
+
+        // The alerts of every tenant are evaluated in one pass.
+        List<TrafficStatistics> statistics = new ArrayList<>(snapshot.length);
+        for (int i = 0; i < snapshot.length; i++) {
+            TrafficStatistics latest = closed[i];
+            if (latest == null) {
+                // The worker failed.
+                latest = new TrafficStatistics();
+                latest.setWindowStart(end.minus(refreshPeriod));
+                latest.setWindowEnd(end);
+                latest.setTenant(snapshot[i].name);
+            }
+            alerts.record(snapshot[i].index, latest.getTotalRequestCount(), latest.isSampled());
+            statistics.add(latest);
+        }
+        // Alerts are dated by the end of the window frame, in line with the statistics they are computed from.
+        ZonedDateTime time = ZonedDateTime.ofInstant(end, clock.getZone());
+        alerts.evaluate((index, type, hitsPerSecond, estimated) ->
+                eventBus.post(new TrafficAlert(type, hitsPerSecond, time, estimated, snapshot[index].name)));
+        eventBus.post(new TenantSweep(end, statistics, alerts.getHighTraffic()));
+    }
+
+    /**
+     * Adds a tenant, unless there are too many tenants.
+     *
+     * @param name the name of the tenant
+     * @return the tenant, or <tt>null</tt> if the maximum number of tenants is reached
+     */
+    private synchronized Tenant addTenant(String name) {
+        Tenant tenant = tenantsByName.get(name);
+        if (tenant != null) {
+            return tenant;
+        }
+        if (tenants.size() >= MAX_TENANTS) {
+            if (!full) {
+                full = true;
+                log.warn("More than {} tenants, the traffic of {} and of the next new tenants is only counted in the "
+                        + "whole traffic.", MAX_TENANTS, name);
+            }
+            return null;
+        }
+        tenant = new Tenant(name, alerts.add(alertThresholds.getOrDefault(name, defaultAlertThreshold)),
+                refreshPeriodSeconds);
+        if (windowEnd != null) {
+            tenant.open(windowEnd);
+        }
+        MemoryBudget.get().reserve(MemoryBudget.Component.WINDOWS, tenant.memoryFootprint());
+        tenants.add(tenant);
+        tenantsByName.put(name, tenant);
+        return tenant;
+    }
+
+    /**
+     * The state of a tenant: the windows of its current and next window frames, the rest of its state being held by
+     * the alert table.
+     * <p>
+     * Records are added by the producer threads and window frames closed by the workers, under the lock of the tenant.
+     */
+    private static class Tenant {
+
+        private final String name;
+
+        /**
+         * The index of the tenant in the alert table.
+         */
+        private final int index;
+
+        private TenantWindow current;
+        private TenantWindow next;
+
+        /**
+         * The end of the current window frame in epoch milliseconds, {@link Long#MIN_VALUE} until it is opened.
+         */
+        private long end = Long.MIN_VALUE;
+
+        Tenant(String name, int index, int seconds) {
+            this.name = name;
+            this.index = index;
+            this.current = new TenantWindow(seconds);
+            this.next = new TenantWindow(seconds);
+        }
+
+        synchronized void open(Instant windowEnd) {
+            end = windowEnd.toEpochMilli();
+        }
+
+        /**
+         * Adds a record to the window frame it belongs to: records older than the current window frame are counted in
+         * it, and records later than the next one in the next one.
+         */
+        synchronized void add(LazyAccessLogRecord record) {
+            long timestamp = record.getTimestamp();
+            long period = current.getSeconds() * 1000L;
+            TenantWindow window = current;
+            long windowEnd = end == Long.MIN_VALUE ? timestamp + period : end;
+            if (timestamp >= windowEnd) {
+                window = next;
+                windowEnd += period;
+            }
+            // Records out of the window frame wrap around the ring instead of piling up in a single second.
+            int second = (int) Math.floorMod(Math.floorDiv(timestamp - windowEnd + period, 1000L),
+                    (long) current.getSeconds());
+            window.add(record, second);
+        }
+
+        /**
+         * Publishes the current window frame and opens the next one.
+         *
+         * @param windowEnd     the end of the current window frame
+         * @param refreshPeriod the length of a window frame
+         * @return the statistics of the current window frame
+         */
+        synchronized TrafficStatistics close(Instant windowEnd, Duration refreshPeriod) {
+            TrafficStatistics statistics = current.toStatistics(windowEnd, refreshPeriod, name);
+            TenantWindow closed = current;
+            closed.clear();
+            current = next;
+            next = closed;
+            end = windowEnd.plus(refreshPeriod).toEpochMilli();
+            return statistics;
+        }
+
+        long memoryFootprint() {
+            return current.memoryFootprint() + next.memoryFootprint();
+        }
+    }
+
+}
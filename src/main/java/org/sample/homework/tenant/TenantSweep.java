@@ -0,0 +1,32 @@
+package org.sample.homework.tenant;
+
+import lombok.Data;
+import org.sample.homework.stats.TrafficStatistics;
+
+import java.time.Instant;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Holds the statistics of every tenant for a window frame, published once all of them have been computed.
+ */
+@Data
+public class TenantSweep {
+
+    /**
+     * The end of the window frame.
+     */
+    private final Instant windowEnd;
+
+    /**
+     * The statistics of every tenant, in the order the tenants have been seen (see
+     * {@link TrafficStatistics#getTenant()}).
+     */
+    private final List<TrafficStatistics> statistics;
+
+    /**
+     * The tenants which have an ongoing high traffic alert, by index in the statistics.
+     */
+    private final BitSet highTraffic;
+
+}
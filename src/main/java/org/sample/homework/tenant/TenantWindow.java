@@ -0,0 +1,232 @@
+package org.sample.homework.tenant;
+
+import org.sample.homework.clf.LazyAccessLogRecord;
+import org.sample.homework.sketch.HyperLogLog;
+import org.sample.homework.stats.TrafficStatistics;
+import org.sample.homework.stats.TrafficStatisticsManager;
+import org.sample.homework.util.IpAddresses;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * The counters of a window frame of a tenant, of a fixed size whatever the traffic, so that the many tenants of a
+ * {@link TenantEngine} don't each hold the breakdowns of a {@link TrafficStatisticsManager}.
+ * <p>
+ * Only the counters, the hits by status class and by second, the top sections and methods and the unique hosts are
+ * kept: sections and methods are counted in a fixed number of slots (see {@link TopHits}), and hosts in a small
+ * {@link HyperLogLog}, so the unique hosts of a tenant are estimated. A window is cleared and reused once published.
+ */
+class TenantWindow {
+
+    /**
+     * The number of slots the sections and the methods are counted in.
+     */
+    private static final int SECTION_SLOTS = 16;
+    private static final int METHOD_SLOTS = 8;
+
+    /**
+     * The precision of the host sketch: 1 KiB, with a standard error of about 3%.
+     */
+    private static final int HOST_PRECISION = 10;
+
+    private int totalRequestCount;
+    private int validRequestCount;
+    private long bytesTransferred;
+    private int sampleRate = 1;
+
+    /**
+     * Hits by response status class, see {@link TrafficStatistics#getHitsByStatusClass()}.
+     */
+    private final int[] hitsByStatusClass = new int[5];
+
+    /**
+     * Hits by second from the start of the window frame.
+     */
+    private final int[] hitsBySecond;
+
+    private final TopHits sections = new TopHits(SECTION_SLOTS);
+    private final TopHits methods = new TopHits(METHOD_SLOTS);
+    private final HyperLogLog hosts = new HyperLogLog(HOST_PRECISION);
+
+    /**
+     * Class constructor.
+     *
+     * @param seconds the length of the window frame in seconds, at least 1
+     */
+    TenantWindow(int seconds) {
+        this.hitsBySecond = new int[seconds];
+    }
+
+    /**
+     * Adds a record.
+     *
+     * @param record the record, only valid during this call
+     * @param second the second of the window frame the record belongs to
+     */
+    void add(LazyAccessLogRecord record, int second) {
+        int count = record.getSampleRate();
+        sampleRate = Math.max(sampleRate, count);
+        totalRequestCount += count;
+        int status = record.getStatus();
+        if (status >= 200 && status < 300) {
+            validRequestCount += count;
+        }
+        if (status >= 100 && status < 600) {
+            hitsByStatusClass[status / 100 - 1] += count;
+        }
+        bytesTransferred += (long) record.getBytes() * count;
+        hitsBySecond[second] += count;
+        String section = record.getSection();
+        if (section != null) {
+            sections.add(section, count);
+        }
+        String method = record.getMethod();
+        if (method != null) {
+            methods.add(method, count);
+        }
+        if (record.isHostAddress()) {
+            hosts.addHash(IpAddresses.hash(record.getHostAddressHigh(), record.getHostAddressLow()));
+        } else if (record.getHost() != null) {
+            hosts.add(record.getHost());
+        }
+    }
+
+    /**
+     * Returns the length of the window frame in seconds.
+     *
+     * @return the number of seconds
+     */
+    int getSeconds() {
+        return hitsBySecond.length;
+    }
+
+    /**
+     * Creates the statistics of the window frame.
+     *
+     * @param windowEnd     the end of the window frame
+     * @param refreshPeriod the length of the window frame
+     * @param tenant        the name of the tenant
+     * @return the statistics, which don't share any state with this window
+     */
+    TrafficStatistics toStatistics(Instant windowEnd, Duration refreshPeriod, String tenant) {
+        TrafficStatistics statistics = new TrafficStatistics();
+        statistics.setWindowStart(windowEnd.minus(refreshPeriod));
+        statistics.setWindowEnd(windowEnd);
+        statistics.setTenant(tenant);
+        statistics.setTotalRequestCount(totalRequestCount);
+        statistics.setValidRequestCount(validRequestCount);
+        statistics.setBytesTransferred(bytesTransferred);
+        statistics.setSampleRate(sampleRate);
+        System.arraycopy(hitsByStatusClass, 0, statistics.getHitsByStatusClass(), 0, hitsByStatusClass.length);
+        statistics.setHitsBySecond(hitsBySecond.clone());
+        sections.addTop(TrafficStatisticsManager.TOP_HITS, statistics.getHitsBySection());
+        methods.forEach((method, hits) -> statistics.getHitsByMethod().put(method, hits));
+        statistics.setUniqueHosts((int) hosts.estimate());
+        return statistics;
+    }
+
+    /**
+     * Resets every counter, so that the window can be reused for another window frame.
+     */
+    void clear() {
+        totalRequestCount = 0;
+        validRequestCount = 0;
+        bytesTransferred = 0;
+        sampleRate = 1;
+        Arrays.fill(hitsByStatusClass, 0);
+        Arrays.fill(hitsBySecond, 0);
+        sections.clear();
+        methods.clear();
+        hosts.clear();
+    }
+
+    /**
+     * Returns the memory used by the window in bytes (approximately).
+     *
+     * @return the memory used by the counters
+     */
+    long memoryFootprint() {
+        return 64 + hitsByStatusClass.length * 4L + hitsBySecond.length * 4L + sections.memoryFootprint()
+                + methods.memoryFootprint() + hosts.memoryFootprint();
+    }
+
+    /**
+     * The keys with the most hits, counted in a fixed number of slots with the Space-Saving algorithm: a key missing
+     * from the full slots replaces the key with the fewest hits and inherits its count, which overestimates the new key
+     * by at most that count. Every key with more hits than the total divided by the number of slots is kept.
+     */
+    static class TopHits {
+
+        private final String[] keys;
+        private final int[] hits;
+        private int size = 0;
+
+        TopHits(int slots) {
+            this.keys = new String[slots];
+            this.hits = new int[slots];
+        }
+
+        void add(String key, int count) {
+            int min = 0;
+            for (int i = 0; i < size; i++) {
+                if (keys[i].equals(key)) {
+                    hits[i] += count;
+                    return;
+                }
+                if (hits[i] < hits[min]) {
+                    min = i;
+                }
+            }
+            if (size < keys.length) {
+                keys[size] = key;
+                hits[size++] = count;
+            } else {
+                keys[min] = key;
+                hits[min] += count;
+            }
+        }
+
+        /**
+         * Adds the keys with the most hits, in decreasing order.
+         *
+         * @param count the number of keys to add
+         * @param top   the list to fill
+         */
+        void addTop(int count, List<Map.Entry<String, Integer>> top) {
+            boolean[] added = new boolean[size];
+            for (int k = 0; k < Math.min(count, size); k++) {
+                int max = -1;
+                for (int i = 0; i < size; i++) {
+                    if (!added[i] && (max < 0 || hits[i] > hits[max])) {
+                        max = i;
+                    }
+                }
+                added[max] = true;
+                top.add(new AbstractMap.SimpleImmutableEntry<>(keys[max], hits[max]));
+            }
+        }
+
+        void forEach(ObjIntConsumer<String> consumer) {
+            for (int i = 0; i < size; i++) {
+                consumer.accept(keys[i], hits[i]);
+            }
+        }
+
+        void clear() {
+            Arrays.fill(keys, 0, size, null);
+            size = 0;
+        }
+
+        long memoryFootprint() {
+            // The keys are shared with the caches of the parser.
+            return keys.length * 12L;
+        }
+    }
+
+}
@@ -9,8 +9,11 @@ import com.googlecode.lanterna.screen.Screen;
 import com.googlecode.lanterna.screen.TerminalScreen;
 import com.googlecode.lanterna.terminal.DefaultTerminalFactory;
 import com.googlecode.lanterna.terminal.Terminal;
+import lombok.NonNull;
 import org.sample.homework.alerts.TrafficAlert;
+import org.sample.homework.series.MetricSeriesStore;
 import org.sample.homework.stats.TrafficStatistics;
+import org.sample.homework.tenant.TenantSweep;
 
 import java.io.IOException;
 
@@ -22,7 +25,16 @@ public class ConsoleGui {
     /**
      * The main statistics window.
      */
-    private final StatsWindow window = new StatsWindow();
+    private final StatsWindow window;
+
+    /**
+     * Class constructor.
+     *
+     * @param seriesStore the metric series used to draw long trends, not <tt>null</tt>
+     */
+    public ConsoleGui(@NonNull MetricSeriesStore seriesStore) {
+        this.window = new StatsWindow(seriesStore);
+    }
 
     /**
      * Function to receive traffic statistics events from the event bus.
@@ -34,6 +46,16 @@ public class ConsoleGui {
         window.handleTrafficStatistics(statistics);
     }
 
+    /**
+     * Function to receive the statistics of the tenants from the event bus.
+     *
+     * @param sweep the statistics of every tenant
+     */
+    @Subscribe
+    public void handleTenantSweep(TenantSweep sweep) {
+        window.handleTenantSweep(sweep);
+    }
+
     /**
      * Function to receive traffic alerts events from the event bus.
      *
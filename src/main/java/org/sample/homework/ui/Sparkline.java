@@ -0,0 +1,161 @@
+package org.sample.homework.ui;
+
+import com.googlecode.lanterna.TerminalSize;
+import com.googlecode.lanterna.gui2.AbstractComponent;
+import com.googlecode.lanterna.gui2.ComponentRenderer;
+import com.googlecode.lanterna.gui2.TextGUIGraphics;
+
+/**
+ * A one row chart drawing the latest values of a series with block characters, the latest value on the right.
+ * <p>
+ * Values are kept in a fixed-size primitive ring along with the block character they are drawn with, which is only
+ * computed when the value is appended (or when the scale changes). An update hence shifts the chart by one column
+ * without recomputing it, and drawing only copies characters.
+ * <p>
+ * Values may be appended from any thread, but the chart is only redrawn once invalidated, which is left to the GUI
+ * thread.
+ */
+class Sparkline extends AbstractComponent<Sparkline> {
+
+    /**
+     * Block characters from the lowest to the highest non-zero level.
+     */
+    private static final char[] BLOCKS = {'▁', '▂', '▃', '▄', '▅', '▆', '▇', '█'};
+
+    /**
+     * The latest values, a ring of fixed capacity.
+     */
+    private final double[] values;
+
+    /**
+     * The block character of each value, at the same index.
+     */
+    private final char[] glyphs;
+
+    /**
+     * Total number of values appended.
+     */
+    private long count = 0;
+
+    /**
+     * The value drawn with the highest block.
+     */
+    private double scale = 0;
+
+    /**
+     * Class constructor.
+     *
+     * @param capacity the maximum number of values kept, and hence of columns drawn
+     */
+    Sparkline(int capacity) {
+        this.values = new double[capacity];
+        this.glyphs = new char[capacity];
+    }
+
+    /**
+     * Appends a value, shifting the chart by one column once the component is invalidated.
+     *
+     * @param value the value to append, negative values are drawn as zero
+     */
+    synchronized void append(double value) {
+        int index = (int) (count % values.length);
+        double evicted = values[index];
+        values[index] = value;
+        ++count;
+        if (value > scale || (evicted >= scale && evicted > value)) {
+            // The scale changes, all the columns are redrawn.
+            rescale();
+        } else {
+            glyphs[index] = glyph(value, scale);
+        }
+    }
+
+    /**
+     * Replaces all the values.
+     *
+     * @param newValues the new values, from the oldest to the latest
+     */
+    synchronized void setValues(double[] newValues) {
+        count = 0;
+        int from = Math.max(0, newValues.length - values.length);
+        for (int i = from; i < newValues.length; i++) {
+            values[(int) (count++ % values.length)] = newValues[i];
+        }
+        rescale();
+        invalidate();
+    }
+
+    /**
+     * Returns the number of values held.
+     *
+     * @return the number of values held
+     */
+    synchronized int size() {
+        return (int) Math.min(count, values.length);
+    }
+
+    /**
+     * Returns the highest value held.
+     *
+     * @return the highest value held, or 0 if there is none
+     */
+    synchronized double getMax() {
+        return scale;
+    }
+
+    /**
+     * Returns the characters drawn for the given number of columns, the latest value on the right.
+     *
+     * @param columns the number of columns
+     * @return the characters drawn
+     */
+    synchronized char[] render(int columns) {
+        char[] row = new char[columns];
+        for (int column = 0; column < columns; column++) {
+            long sequence = count - columns + column;
+            row[column] = sequence < 0 || sequence < count - values.length
+                    ? ' '
+                    : glyphs[(int) (sequence % values.length)];
+        }
+        return row;
+    }
+
+    private void rescale() {
+        int size = (int) Math.min(count, values.length);
+        scale = 0;
+        for (int i = 0; i < size; i++) {
+            scale = Math.max(scale, values[i]);
+        }
+        for (int i = 0; i < size; i++) {
+            glyphs[i] = glyph(values[i], scale);
+        }
+    }
+
+    /**
+     * Returns the block character of a value: a space for zero, at least the lowest block for any positive value.
+     */
+    private static char glyph(double value, double scale) {
+        if (value <= 0 || scale <= 0) {
+            return ' ';
+        }
+        int level = (int) Math.ceil(value / scale * BLOCKS.length) - 1;
+        return BLOCKS[Math.max(0, Math.min(BLOCKS.length - 1, level))];
+    }
+
+    @Override
+    protected ComponentRenderer<Sparkline> createDefaultRenderer() {
+        return new ComponentRenderer<Sparkline>() {
+
+            @Override
+            public TerminalSize getPreferredSize(Sparkline component) {
+                return new TerminalSize(1, 1);
+            }
+
+            @Override
+            public void drawComponent(TextGUIGraphics graphics, Sparkline component) {
+                graphics.putString(0, 0, new String(component.render(graphics.getSize().getColumns())));
+            }
+        };
+    }
+
+}
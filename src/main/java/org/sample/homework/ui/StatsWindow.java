@@ -4,34 +4,175 @@ import com.googlecode.lanterna.SGR;
 import com.googlecode.lanterna.TerminalSize;
 import com.googlecode.lanterna.TextColor;
 import com.googlecode.lanterna.gui2.*;
+import com.googlecode.lanterna.input.KeyStroke;
+import com.googlecode.lanterna.input.KeyType;
+import lombok.NonNull;
 import org.apache.commons.collections4.queue.CircularFifoQueue;
 import org.apache.commons.io.FileUtils;
 import org.sample.homework.alerts.TrafficAlert;
+import org.sample.homework.metrics.MemoryBudget;
+import org.sample.homework.metrics.PipelineMetrics;
+import org.sample.homework.series.Metric;
+import org.sample.homework.series.MetricSeries;
+import org.sample.homework.series.MetricSeriesStore;
+import org.sample.homework.series.SeriesIterator;
+import org.sample.homework.stats.SectionTrie;
 import org.sample.homework.stats.TrafficStatistics;
+import org.sample.homework.stats.TrafficStatisticsManager;
+import org.sample.homework.tenant.TenantSweep;
 
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static java.util.Map.Entry.comparingByValue;
 import static org.sample.homework.util.DateTimeUtils.toPrettyDuration;
 
 /**
  * Responsible for creating the statistics window.
+ * <p>
+ * The window components are created once and their text is updated in place. Events are received on the publishing
+ * threads, which only record the latest state and schedule a render on the GUI thread: if the terminal is slow,
+ * intermediate states are dropped instead of blocking the publishers.
+ * <p>
+ * The sections can be drilled down with the keyboard: the digit keys show the sub-sections of the numbered section, and
+ * backspace goes back to the parent section. When tenants are monitored (see {@link TenantSweep}), tab and shift+tab
+ * switch the statistics between the whole traffic and every tenant; the trends are always about the whole traffic.
  */
 class StatsWindow extends BasicWindow {
 
+    /**
+     * Maximum number of alerts shown.
+     */
+    private static final int MAX_ALERTS = 20;
+
+    /**
+     * Number of values kept by the trend charts, more than the width of most terminals.
+     */
+    private static final int TREND_CAPACITY = 512;
+
+    /**
+     * Number of rows used by the trends panel, borders included.
+     */
+    private static final int TRENDS_ROWS = 10;
+
+    /**
+     * Number of rows used by the pipeline health panel, borders included.
+     */
+    private static final int HEALTH_ROWS = 5;
+
+    /**
+     * The time span of the long trend chart.
+     */
+    private static final Duration LONG_TREND_DURATION = Duration.ofHours(24);
+
     /**
      * UI main panels.
      */
     private final Panel trafficStatsPanel = new Panel();
     private final Panel trafficAlertsPanel = new Panel();
+    private final Panel trendsPanel = new Panel();
+    private final Panel healthPanel = new Panel();
+
+    /**
+     * Traffic statistics labels, updated in place.
+     */
+    private final Label uptimeLabel = new Label("¤ Monitoring started " + toPrettyDuration(Duration.ZERO));
+    private final Label tenantLabel = new Label("");
+    private final Label totalRequestsLabel = new Label("");
+    private final Label validRequestsLabel = new Label("");
+    private final Label bytesTransferredLabel = new Label("");
+    private final Label uniqueHostsLabel = new Label("");
+    private final Label rateDistributionLabel = new Label("");
+    private final Label hitsBySectionTitle = new Label("\nHits By Section").addStyle(SGR.BOLD);
+    private final Label hitsBySectionLabel = new Label("");
+    private final Label hitsByMethodLabel = new Label("");
+    private final Label hitsBySubnetLabel = new Label("");
+
+    /**
+     * Trend charts and their captions. One value is appended per traffic statistics.
+     */
+    private final Label hitsPerSecondLabel = new Label("Hits/s");
+    private final Sparkline hitsPerSecondChart = new Sparkline(TREND_CAPACITY);
+    private final Label errorRateLabel = new Label("Errors (4xx and 5xx)");
+    private final Sparkline errorRateChart = new Sparkline(TREND_CAPACITY);
+    private final Label bytesPerSecondLabel = new Label("Bytes/s");
+    private final Sparkline bytesPerSecondChart = new Sparkline(TREND_CAPACITY);
+
+    /**
+     * Hits per second over the last 24 hours, computed from the compressed metric series.
+     */
+    private final Label longTrendLabel = new Label("Hits/s, last 24 hours");
+    private final Sparkline longTrendChart = new Sparkline(TREND_CAPACITY);
+
+    /**
+     * Internal counters of the processing pipeline.
+     */
+    private final Label ingestHealthLabel = new Label("");
+    private final Label latencyHealthLabel = new Label("");
+    private final Label memoryHealthLabel = new Label("");
+
+    /**
+     * The series the long trend is computed from.
+     */
+    private final MetricSeriesStore seriesStore;
+
+    /**
+     * The time after which the long trend chart is recomputed, in epoch milliseconds, and the number of columns it has
+     * been computed for. Only used by the GUI thread.
+     */
+    private long longTrendRefreshMillis = Long.MIN_VALUE;
+    private int longTrendColumns = 0;
+
+    /**
+     * Traffic alerts labels, from the oldest to the latest alert, updated in place.
+     */
+    private final Label[] trafficAlertLabels = new Label[MAX_ALERTS];
 
     /**
      * A fixed-size circular buffer holding the latest 20 generated traffic alerts.
      */
-    private final CircularFifoQueue<TrafficAlert> trafficAlerts = new CircularFifoQueue<>(20);
+    private final CircularFifoQueue<TrafficAlert> trafficAlerts = new CircularFifoQueue<>(MAX_ALERTS);
+
+    /**
+     * The latest traffic statistics which haven't been rendered yet, if any.
+     */
+    private final AtomicReference<TrafficStatistics> pendingStatistics = new AtomicReference<>();
+
+    /**
+     * The latest statistics of the tenants which haven't been rendered yet, if any.
+     */
+    private final AtomicReference<TenantSweep> pendingSweep = new AtomicReference<>();
+
+    /**
+     * Whether traffic alerts have been received since the last render.
+     */
+    private final AtomicBoolean pendingAlerts = new AtomicBoolean();
+
+    /**
+     * Whether a render is already scheduled on the GUI thread.
+     */
+    private final AtomicBoolean renderScheduled = new AtomicBoolean();
+
+    /**
+     * The latest rendered traffic statistics, and the section drilled down in them (an empty string for the top level
+     * sections). Only used by the GUI thread.
+     */
+    private TrafficStatistics renderedStatistics;
+    private String drilledSection = "";
+
+    /**
+     * The latest statistics of the whole traffic and of the tenants, and the index of the tenant shown (-1 for the
+     * whole traffic). Only used by the GUI thread.
+     */
+    private TrafficStatistics latestStatistics;
+    private TenantSweep latestSweep;
+    private int selectedTenant = -1;
 
     /**
      * Used to print duration since the monitoring is running.
@@ -39,20 +180,57 @@ class StatsWindow extends BasicWindow {
     private final Instant startedAt = Instant.now();
 
     /**
-     * Default class constructor.
+     * Class constructor.
+     *
+     * @param seriesStore the series the long trend is computed from, not <tt>null</tt>
      */
-    StatsWindow() {
+    StatsWindow(@NonNull MetricSeriesStore seriesStore) {
+        this.seriesStore = seriesStore;
         Panel rootPanel = new Panel();
         Panel mainPanel = new Panel(new LinearLayout(Direction.HORIZONTAL));
         trafficAlertsPanel.setLayoutManager(new LinearLayout());
         mainPanel.addComponent(trafficStatsPanel.withBorder(Borders.singleLine("Traffic Statistics")));
         mainPanel.addComponent(trafficAlertsPanel.withBorder(Borders.singleLine("Traffic Alerts")));
         rootPanel.addComponent(mainPanel);
+        rootPanel.addComponent(trendsPanel.withBorder(Borders.singleLine("Trends")));
+        rootPanel.addComponent(healthPanel.withBorder(Borders.singleLine("Pipeline Health")));
         Panel statusPanel = new Panel();
-        statusPanel.addComponent(new Label("Press '^C' to exit and return to terminal window!"));
+        statusPanel.addComponent(new Label("Press '^C' to exit and return to terminal window, "
+                + "'1'-'" + TrafficStatisticsManager.TOP_HITS + "' to drill down a section and backspace to go back!"));
         rootPanel.addComponent(statusPanel);
         setComponent(rootPanel);
         setHints(Arrays.asList(Hint.FULL_SCREEN, Hint.NO_DECORATIONS));
+
+        trafficStatsPanel.addComponent(uptimeLabel);
+        trafficStatsPanel.addComponent(tenantLabel);
+        trafficStatsPanel.addComponent(new Label("\nSummary").addStyle(SGR.BOLD));
+        trafficStatsPanel.addComponent(totalRequestsLabel);
+        trafficStatsPanel.addComponent(validRequestsLabel);
+        trafficStatsPanel.addComponent(bytesTransferredLabel);
+        trafficStatsPanel.addComponent(uniqueHostsLabel);
+        trafficStatsPanel.addComponent(rateDistributionLabel);
+        trafficStatsPanel.addComponent(hitsBySectionTitle);
+        trafficStatsPanel.addComponent(hitsBySectionLabel);
+        trafficStatsPanel.addComponent(new Label("\nHits By Method").addStyle(SGR.BOLD));
+        trafficStatsPanel.addComponent(hitsByMethodLabel);
+        trafficStatsPanel.addComponent(new Label("\nHits By Subnet").addStyle(SGR.BOLD));
+        trafficStatsPanel.addComponent(hitsBySubnetLabel);
+        for (int i = 0; i < MAX_ALERTS; i++) {
+            trafficAlertLabels[i] = new Label("").addStyle(SGR.BOLD);
+            trafficAlertsPanel.addComponent(trafficAlertLabels[i]);
+        }
+        LayoutData fill = LinearLayout.createLayoutData(LinearLayout.Alignment.Fill);
+        trendsPanel.addComponent(hitsPerSecondLabel);
+        trendsPanel.addComponent(hitsPerSecondChart.setLayoutData(fill));
+        trendsPanel.addComponent(errorRateLabel);
+        trendsPanel.addComponent(errorRateChart.setLayoutData(fill));
+        trendsPanel.addComponent(bytesPerSecondLabel);
+        trendsPanel.addComponent(bytesPerSecondChart.setLayoutData(fill));
+        trendsPanel.addComponent(longTrendLabel);
+        trendsPanel.addComponent(longTrendChart.setLayoutData(fill));
+        healthPanel.addComponent(ingestHealthLabel);
+        healthPanel.addComponent(latencyHealthLabel);
+        healthPanel.addComponent(memoryHealthLabel);
     }
 
     /**
@@ -61,52 +239,341 @@ class StatsWindow extends BasicWindow {
      * @param terminalSize the new terminal size to take into account
      */
     void onTerminalResize(TerminalSize terminalSize) {
-        TerminalSize half = new TerminalSize(terminalSize.getColumns() / 2, terminalSize.getRows() - 3);
+        TerminalSize half = new TerminalSize(terminalSize.getColumns() / 2,
+                Math.max(1, terminalSize.getRows() - 3 - TRENDS_ROWS - HEALTH_ROWS));
         trafficStatsPanel.setPreferredSize(half);
         trafficAlertsPanel.setPreferredSize(half);
+        trendsPanel.setPreferredSize(new TerminalSize(terminalSize.getColumns() - 2, TRENDS_ROWS - 2));
+        healthPanel.setPreferredSize(new TerminalSize(terminalSize.getColumns() - 2, HEALTH_ROWS - 2));
+    }
+
+    /**
+     * Drills down the sections with the digit keys, and goes back up with backspace. This runs on the GUI thread.
+     *
+     * @param key the pressed key
+     * @return whether the key has been handled
+     */
+    @Override
+    public boolean handleInput(KeyStroke key) {
+        if ((key.getKeyType() == KeyType.Tab || key.getKeyType() == KeyType.ReverseTab) && latestSweep != null) {
+            // Cycle through the whole traffic (-1) and every tenant.
+            int choices = latestSweep.getStatistics().size() + 1;
+            int step = key.getKeyType() == KeyType.Tab ? 1 : choices - 1;
+            selectedTenant = (selectedTenant + 1 + step) % choices - 1;
+            drilledSection = "";
+            renderSelection();
+            return true;
+        }
+        SectionTrie trie = renderedStatistics == null ? null : renderedStatistics.getSectionTrie();
+        if (trie == null) {
+            return super.handleInput(key);
+        }
+        if (key.getKeyType() == KeyType.Character && key.getCharacter() >= '1'
+                && key.getCharacter() < '1' + TrafficStatisticsManager.TOP_HITS) {
+            List<Map.Entry<String, Integer>> sections =
+                    trie.getTopSections(drilledSection, TrafficStatisticsManager.TOP_HITS);
+            int index = key.getCharacter() - '1';
+            if (index >= sections.size() || getSectionDepth(drilledSection) + 1 >= trie.getDepth()) {
+                return true;
+            }
+            drilledSection = sections.get(index).getKey();
+        } else if (key.getKeyType() == KeyType.Backspace && !drilledSection.isEmpty()) {
+            drilledSection = drilledSection.substring(0, drilledSection.lastIndexOf('/'));
+        } else {
+            return super.handleInput(key);
+        }
+        renderSections(renderedStatistics);
+        return true;
+    }
+
+    @Override
+    public void setTextGUI(WindowBasedTextGUI textGUI) {
+        super.setTextGUI(textGUI);
+        // Render what has been received before the window was shown.
+        if (textGUI != null) {
+            scheduleRender();
+        }
     }
 
     /**
-     * Prints traffic statistics.
+     * Records traffic statistics to print. Only the latest statistics are printed if several are received before the
+     * GUI thread renders them.
      *
      * @param statistics the statistics summary to print
      */
     void handleTrafficStatistics(TrafficStatistics statistics) {
-        trafficStatsPanel.removeAllComponents();
-        trafficStatsPanel.addComponent(new Label("¤ Monitoring started " +
-                toPrettyDuration(Duration.between(startedAt, Instant.now()))));
-        trafficStatsPanel.addComponent(new Label("\nSummary").addStyle(SGR.BOLD));
-        trafficStatsPanel.addComponent(new Label("Total Requests: " + statistics.getTotalRequestCount()));
-        trafficStatsPanel.addComponent(new Label("2xx Requests: " + statistics.getValidRequestCount()));
-        trafficStatsPanel.addComponent(new Label("Total Bytes Transferred: " +
-                FileUtils.byteCountToDisplaySize(statistics.getBytesTransferred())));
-        trafficStatsPanel.addComponent(new Label("Unique Hosts: " + statistics.getUniqueHosts()));
-        trafficStatsPanel.addComponent(new Label("\nHits By Section").addStyle(SGR.BOLD));
-        statistics.getHitsBySection()
-                .forEach(entry -> trafficStatsPanel.addComponent(new Label(entry.getKey() + " " + entry.getValue())));
-        trafficStatsPanel.addComponent(new Label("\nHits By Method").addStyle(SGR.BOLD));
-        statistics.getHitsByMethod().entrySet().stream().sorted(Collections.reverseOrder(comparingByValue()))
-                .forEach(entry -> trafficStatsPanel.addComponent(new Label(entry.getKey() + " " + entry.getValue())));
+        // Trend values are never dropped, only their rendering is: the charts are invalidated by the GUI thread.
+        double seconds = statistics.getWindowStart() == null || statistics.getWindowEnd() == null
+                ? 1
+                : Math.max(1, Duration.between(statistics.getWindowStart(), statistics.getWindowEnd()).getSeconds());
+        int[] hitsByStatusClass = statistics.getHitsByStatusClass();
+        int errors = hitsByStatusClass[3] + hitsByStatusClass[4];
+        hitsPerSecondChart.append(statistics.getTotalRequestCount() / seconds);
+        errorRateChart.append(statistics.getTotalRequestCount() == 0
+                ? 0
+                : 100.0 * errors / statistics.getTotalRequestCount());
+        bytesPerSecondChart.append(statistics.getBytesTransferred() / seconds);
+        pendingStatistics.set(statistics);
+        scheduleRender();
     }
 
     /**
-     * Prints traffic alerts.
+     * Records the statistics of the tenants to print. Only the latest ones are printed if several are received before
+     * the GUI thread renders them.
+     *
+     * @param sweep the statistics of every tenant
+     */
+    void handleTenantSweep(TenantSweep sweep) {
+        pendingSweep.set(sweep);
+        scheduleRender();
+    }
+
+    /**
+     * Records a traffic alert to print.
      *
      * @param alert the traffic alert to print
      */
     void handleTrafficAlert(TrafficAlert alert) {
-        trafficAlerts.add(alert);
-        trafficAlertsPanel.removeAllComponents();
-        for (TrafficAlert trafficAlert : trafficAlerts) {
-            Label label = new Label(trafficAlert.getMessage()).addStyle(SGR.BOLD);
-            if (trafficAlert.getType() == TrafficAlert.AlertType.HIGH_TRAFFIC) {
+        MemoryBudget budget = MemoryBudget.get();
+        synchronized (trafficAlerts) {
+            if (trafficAlerts.isAtFullCapacity()) {
+                budget.release(MemoryBudget.Component.UI, footprint(trafficAlerts.remove()));
+            }
+            trafficAlerts.add(alert);
+            budget.reserve(MemoryBudget.Component.UI, footprint(alert));
+        }
+        pendingAlerts.set(true);
+        scheduleRender();
+    }
+
+    /**
+     * Schedules a render on the GUI thread, unless one is already scheduled.
+     * <p>
+     * Until the window is shown, the pending state is kept and rendered on the next update.
+     */
+    private void scheduleRender() {
+        TextGUI gui = getTextGUI();
+        if (gui != null && renderScheduled.compareAndSet(false, true)) {
+            try {
+                gui.getGUIThread().invokeLater(this::render);
+            } catch (IllegalStateException e) {
+                // The GUI thread isn't running (yet or anymore), keep the pending state.
+                renderScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Updates the labels with the pending state. This runs on the GUI thread.
+     */
+    private void render() {
+        // Any update received from now on schedules another render.
+        renderScheduled.set(false);
+        TrafficStatistics statistics = pendingStatistics.getAndSet(null);
+        if (statistics != null) {
+            latestStatistics = statistics;
+            // The trend values have been appended by the publisher thread.
+            hitsPerSecondChart.invalidate();
+            errorRateChart.invalidate();
+            bytesPerSecondChart.invalidate();
+        }
+        TenantSweep sweep = pendingSweep.getAndSet(null);
+        if (sweep != null) {
+            latestSweep = sweep;
+        }
+        if (selectedTenant < 0 ? statistics != null : sweep != null) {
+            renderSelection();
+        }
+        if (pendingAlerts.getAndSet(false)) {
+            renderTrafficAlerts();
+        }
+    }
+
+    /**
+     * Renders the statistics of the selected tenant, or of the whole traffic.
+     */
+    private void renderSelection() {
+        if (latestSweep == null) {
+            if (latestStatistics != null) {
+                renderTrafficStatistics(latestStatistics);
+            }
+            return;
+        }
+        int tenants = latestSweep.getStatistics().size();
+        if (selectedTenant < 0) {
+            tenantLabel.setText("Tenant: all " + tenants + " tenants (tab to switch)");
+            if (latestStatistics != null) {
+                renderTrafficStatistics(latestStatistics);
+            }
+            return;
+        }
+        TrafficStatistics statistics = latestSweep.getStatistics().get(selectedTenant);
+        tenantLabel.setText("Tenant: " + statistics.getTenant() + " (" + (selectedTenant + 1) + "/" + tenants + ")"
+                + (latestSweep.getHighTraffic().get(selectedTenant) ? ", high traffic" : ""));
+        renderTrafficStatistics(statistics);
+    }
+
+    private void renderTrafficStatistics(TrafficStatistics statistics) {
+        uptimeLabel.setText("¤ Monitoring started " + toPrettyDuration(Duration.between(startedAt, Instant.now())));
+        totalRequestsLabel.setText("Total Requests: " + statistics.getTotalRequestCount()
+                + (statistics.isSampled() ? " (estimated, 1 line out of " + statistics.getSampleRate() + ")" : ""));
+        validRequestsLabel.setText("2xx Requests: " + statistics.getValidRequestCount());
+        bytesTransferredLabel.setText("Total Bytes Transferred: " +
+                FileUtils.byteCountToDisplaySize(statistics.getBytesTransferred()));
+        uniqueHostsLabel.setText("Unique Hosts: " + statistics.getUniqueHosts()
+                + (statistics.isApproximate() ? " (approximate, memory budget under pressure)" : ""));
+        rateDistributionLabel.setText("Hits/s: peak " + statistics.getPeakHitsPerSecond() + ", p95 "
+                + statistics.getP95HitsPerSecond() + ", min " + statistics.getMinHitsPerSecond());
+        renderedStatistics = statistics;
+        renderSections(statistics);
+        StringBuilder text = new StringBuilder();
+        statistics.getHitsByMethod().entrySet().stream().sorted(Collections.reverseOrder(comparingByValue()))
+                .forEach(entry -> appendLine(text, entry.getKey() + " " + entry.getValue()));
+        hitsByMethodLabel.setText(text.toString());
+        text.setLength(0);
+        statistics.getHitsBySubnet()
+                .forEach(entry -> appendLine(text, entry.getKey() + " " + entry.getValue()));
+        hitsBySubnetLabel.setText(text.toString());
+
+        hitsPerSecondLabel.setText(String.format("Hits/s (max %.1f)", hitsPerSecondChart.getMax()));
+        errorRateLabel.setText(String.format("Errors (4xx and 5xx) (max %.1f%%)", errorRateChart.getMax()));
+        bytesPerSecondLabel.setText("Bytes/s (max " +
+                FileUtils.byteCountToDisplaySize((long) bytesPerSecondChart.getMax()) + ")");
+        if (statistics.getWindowEnd() != null) {
+            renderLongTrend(statistics.getWindowEnd().toEpochMilli());
+        }
+        renderPipelineHealth();
+    }
+
+    /**
+     * Renders the sub-sections of the drilled down section, or the top level sections if the statistics have no
+     * section trie.
+     */
+    private void renderSections(TrafficStatistics statistics) {
+        StringBuilder text = new StringBuilder();
+        SectionTrie trie = statistics.getSectionTrie();
+        if (trie == null) {
+            drilledSection = "";
+            statistics.getHitsBySection()
+                    .forEach(entry -> appendLine(text, entry.getKey() + " " + entry.getValue()));
+            hitsBySectionTitle.setText("\nHits By Section");
+            hitsBySectionLabel.setText(text.toString());
+            return;
+        }
+        if (drilledSection.isEmpty()) {
+            hitsBySectionTitle.setText("\nHits By Section");
+        } else {
+            hitsBySectionTitle.setText("\nHits By Section " + drilledSection + " (" + trie.getHits(drilledSection)
+                    + ")");
+        }
+        List<Map.Entry<String, Integer>> sections =
+                trie.getTopSections(drilledSection, TrafficStatisticsManager.TOP_HITS);
+        for (int i = 0; i < sections.size(); i++) {
+            Map.Entry<String, Integer> entry = sections.get(i);
+            appendLine(text, (i + 1) + ". " + entry.getKey() + " " + entry.getValue());
+        }
+        hitsBySectionLabel.setText(text.toString());
+    }
+
+    /**
+     * Returns the number of segments of a section, 0 for the top level.
+     */
+    private static int getSectionDepth(String section) {
+        int depth = 0;
+        for (int i = 0; i < section.length(); i++) {
+            if (section.charAt(i) == '/') {
+                ++depth;
+            }
+        }
+        return depth;
+    }
+
+    /**
+     * Returns the memory held by a printed alert in bytes (approximately).
+     */
+    private static long footprint(TrafficAlert alert) {
+        return 256 + alert.getMessage().length() * 2L;
+    }
+
+    private void renderPipelineHealth() {
+        PipelineMetrics metrics = PipelineMetrics.get();
+        ingestHealthLabel.setText("Read " + FileUtils.byteCountToDisplaySize(metrics.getBytesRead()) +
+                ", " + metrics.getLinesRead() + " lines, " + metrics.getParseErrors() + " parse errors, " +
+                (metrics.getFilteredLines() > 0 ? metrics.getFilteredLines() + " filtered, " : "") +
+                metrics.getBufferedRecords() + " buffered records" +
+                (metrics.getSampleRate() > 1 ? ", sampling 1 line out of " + metrics.getSampleRate() : ""));
+        latencyHealthLabel.setText(String.format(
+                "Window close %.1f µs (max %.1f µs), alert evaluation %.1f µs (max %.1f µs), lag %.0f ms (max %d ms)",
+                metrics.getTickMeanMicros(), metrics.getTickMaxMicros(),
+                metrics.getAlertEvaluationMeanMicros(), metrics.getAlertEvaluationMaxMicros(),
+                metrics.getRecordLagMeanMillis(), metrics.getRecordLagMaxMillis()));
+        MemoryBudget budget = MemoryBudget.get();
+        StringBuilder memory = new StringBuilder("Memory ")
+                .append(FileUtils.byteCountToDisplaySize(Math.max(0, budget.getUsed())))
+                .append(budget.isLimited() ? " of " + FileUtils.byteCountToDisplaySize(budget.getLimit()) : "")
+                .append(budget.isUnderPressure() ? " (under pressure)" : "").append(':');
+        for (MemoryBudget.Component component : MemoryBudget.Component.values()) {
+            memory.append(component.ordinal() == 0 ? " " : ", ").append(component.getLabel()).append(' ')
+                    .append(FileUtils.byteCountToDisplaySize(Math.max(0, budget.getUsed(component))));
+        }
+        memoryHealthLabel.setText(memory.toString());
+    }
+
+    /**
+     * Recomputes the long trend chart once per column duration, or if its width changed.
+     *
+     * @param now the end of the latest window frame in epoch milliseconds
+     */
+    private void renderLongTrend(long now) {
+        int columns = longTrendChart.getSize().getColumns();
+        if (columns == 0 || (now < longTrendRefreshMillis && columns == longTrendColumns)) {
+            return;
+        }
+        long bucketMillis = Math.max(1000, LONG_TREND_DURATION.toMillis() / columns);
+        long from = now - columns * bucketMillis;
+        double[] hitsPerSecond = new double[columns];
+        MetricSeries series = seriesStore.getSeries(Metric.TOTAL_REQUESTS);
+        // Data points are timestamped with the end of their window frame.
+        SeriesIterator iterator = series.iterator(from + 1, now + 1);
+        while (iterator.next()) {
+            int bucket = (int) Math.min(columns - 1, (iterator.timestamp() - from - 1) / bucketMillis);
+            hitsPerSecond[bucket] += iterator.value();
+        }
+        for (int i = 0; i < columns; i++) {
+            hitsPerSecond[i] /= bucketMillis / 1000.0;
+        }
+        longTrendChart.setValues(hitsPerSecond);
+        longTrendLabel.setText(String.format("Hits/s, last 24 hours, %d s per column (max %.1f)",
+                bucketMillis / 1000, longTrendChart.getMax()));
+        longTrendRefreshMillis = now + bucketMillis;
+        longTrendColumns = columns;
+    }
+
+    private void renderTrafficAlerts() {
+        TrafficAlert[] alerts;
+        synchronized (trafficAlerts) {
+            alerts = trafficAlerts.toArray(new TrafficAlert[0]);
+        }
+        for (int i = 0; i < MAX_ALERTS; i++) {
+            Label label = trafficAlertLabels[i];
+            if (i >= alerts.length) {
+                label.setText("");
+            } else if (alerts[i].getType() == TrafficAlert.AlertType.HIGH_TRAFFIC
+                    || alerts[i].getType() == TrafficAlert.AlertType.BURST) {
                 label.setForegroundColor(TextColor.ANSI.RED);
+                label.setText(alerts[i].getMessage());
             } else {
                 label.setForegroundColor(TextColor.ANSI.GREEN);
-                label.setText(label.getText() + "\n ");
+                label.setText(alerts[i].getMessage() + "\n ");
             }
-            trafficAlertsPanel.addComponent(label);
         }
     }
 
+    private static void appendLine(StringBuilder text, String line) {
+        if (text.length() > 0) {
+            text.append('\n');
+        }
+        text.append(line);
+    }
+
 }
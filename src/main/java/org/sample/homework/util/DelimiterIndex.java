@@ -0,0 +1,159 @@
+package org.sample.homework.util;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * The offsets of the delimiters of a byte range, found 8 bytes at a time with {@link Swar}. A single delimiter is
+ * searched byte by byte on the runtimes which don't read words with a single load (see {@link Swar#WORD_READS}), where
+ * the byte loop is as fast.
+ * <p>
+ * An index is meant to be reused: {@link DelimiterIndex#index(byte[], int, int)} overwrites the offsets of the
+ * previous range and only grows the offset array when a range holds more delimiters than ever before.
+ */
+public class DelimiterIndex {
+
+    /**
+     * The maximum number of delimiters of an index.
+     */
+    public static final int MAX_DELIMITERS = 4;
+
+    /**
+     * The broadcast delimiters, the missing ones repeating the first one. They are kept in fields rather than in an
+     * array so that the JIT keeps them in registers and unrolls the comparisons.
+     */
+    private final long pattern0;
+    private final long pattern1;
+    private final long pattern2;
+    private final long pattern3;
+    private final boolean single;
+
+    /**
+     * The first delimiter, for the byte by byte scan.
+     */
+    private final byte delimiter;
+
+    /**
+     * Whether the range is read 8 bytes at a time.
+     */
+    private final boolean words;
+
+    /**
+     * The offsets of the delimiters found in the last indexed range, in ascending order. Only the first
+     * {@link DelimiterIndex#getSize()} ones are valid.
+     */
+    @Getter
+    private int[] offsets = new int[32];
+
+    /**
+     * The number of delimiters found in the last indexed range.
+     */
+    @Getter
+    private int size;
+
+    /**
+     * Class constructor.
+     *
+     * @param delimiters the bytes to index, not <tt>null</tt>
+     * @throws IllegalArgumentException if there is no delimiter or more than {@link DelimiterIndex#MAX_DELIMITERS}
+     */
+    public DelimiterIndex(@NonNull byte... delimiters) {
+        this(Swar.WORD_READS, delimiters);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param words      whether to read the ranges 8 bytes at a time rather than byte by byte, ignored for more than
+     *                   one delimiter
+     * @param delimiters the bytes to index, not <tt>null</tt>
+     * @throws IllegalArgumentException if there is no delimiter or more than {@link DelimiterIndex#MAX_DELIMITERS}
+     */
+    DelimiterIndex(boolean words, @NonNull byte... delimiters) {
+        if (delimiters.length == 0 || delimiters.length > MAX_DELIMITERS) {
+            throw new IllegalArgumentException("From 1 to " + MAX_DELIMITERS + " delimiters are supported!");
+        }
+        this.pattern0 = Swar.broadcast(delimiters[0]);
+        this.pattern1 = Swar.broadcast(delimiters[Math.min(1, delimiters.length - 1)]);
+        this.pattern2 = Swar.broadcast(delimiters[Math.min(2, delimiters.length - 1)]);
+        this.pattern3 = Swar.broadcast(delimiters[Math.min(3, delimiters.length - 1)]);
+        this.single = delimiters.length == 1;
+        this.delimiter = delimiters[0];
+        // Even assembled byte by byte, a word replaces up to 4 comparisons per byte.
+        this.words = words || !single;
+    }
+
+    /**
+     * Indexes the delimiters of a range, replacing the previous offsets.
+     *
+     * @param buffer the buffer holding the range, not <tt>null</tt>
+     * @param from   the index of the first byte of the range
+     * @param to     the index of the end of the range (exclusive)
+     * @return this index
+     * @throws IndexOutOfBoundsException if the range is not within the buffer
+     */
+    public DelimiterIndex index(@NonNull byte[] buffer, int from, int to) {
+        Swar.checkRange(buffer, from, to);
+        size = 0;
+        if (!words) {
+            return indexBytes(buffer, from, to);
+        }
+        int i = from;
+        if (single) {
+            for (; i <= to - Long.BYTES; i += Long.BYTES) {
+                add(i, Swar.matches(Swar.getLong(buffer, i), pattern0));
+            }
+        } else {
+            for (; i <= to - Long.BYTES; i += Long.BYTES) {
+                add(i, find(Swar.getLong(buffer, i)));
+            }
+        }
+        if (i < to) {
+            // The missing bytes of the last word are zeros, which must not be reported.
+            add(i, find(Swar.getLong(buffer, i, to)) & Swar.tailMask(to - i));
+        }
+        return this;
+    }
+
+    private DelimiterIndex indexBytes(byte[] buffer, int from, int to) {
+        // Locals rather than fields, so that the loop only writes to the offset array.
+        int[] offsets = this.offsets;
+        int size = 0;
+        byte delimiter = this.delimiter;
+        for (int i = from; i < to; i++) {
+            if (buffer[i] == delimiter) {
+                if (size == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, size * 2);
+                }
+                offsets[size++] = i;
+            }
+        }
+        this.offsets = offsets;
+        this.size = size;
+        return this;
+    }
+
+    private long find(long word) {
+        return Swar.matches(word, pattern0) | Swar.matches(word, pattern1) | Swar.matches(word, pattern2)
+                | Swar.matches(word, pattern3);
+    }
+
+    /**
+     * Appends the offsets of the matching bytes of a word, iterating over the set bits only.
+     */
+    private void add(int wordStart, long mask) {
+        if (mask == 0) {
+            return;
+        }
+        if (size + Long.BYTES > offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        do {
+            offsets[size++] = wordStart + (Long.numberOfTrailingZeros(mask) >>> 3);
+            mask &= mask - 1;
+        } while (mask != 0);
+    }
+
+}
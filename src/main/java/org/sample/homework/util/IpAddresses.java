@@ -0,0 +1,230 @@
+package org.sample.homework.util;
+
+import com.google.common.net.InetAddresses;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+
+/**
+ * IP address utilities class.
+ * <p>
+ * Addresses are parsed straight from bytes into two longs, the high and low halves of an IPv6 address, so that they
+ * can be compared, hashed and stored without creating any object. IPv4 addresses are represented as IPv4-mapped IPv6
+ * addresses (<tt>::ffff:a.b.c.d</tt>), so both families share the same keys. The string form is only rendered for
+ * display.
+ */
+@UtilityClass
+public class IpAddresses {
+
+    /**
+     * The prefix of the low half of IPv4-mapped addresses, whose high half is 0.
+     */
+    private static final long IPV4_MAPPED_PREFIX = 0xFFFF_0000_0000L;
+
+    /**
+     * Parses a dotted IPv4 address.
+     *
+     * @param buffer the buffer holding the address, not <tt>null</tt>
+     * @param from   the index of the first byte of the address
+     * @param to     the index of the last byte of the address (exclusive)
+     * @return the address as an unsigned integer, or -1 if the bytes are not an IPv4 address
+     */
+    public static long parseIpv4(@NonNull byte[] buffer, int from, int to) {
+        long address = 0;
+        int octet = 0;
+        int digits = 0;
+        int dots = 0;
+        for (int i = from; i < to; i++) {
+            byte b = buffer[i];
+            if (b >= '0' && b <= '9') {
+                octet = octet * 10 + b - '0';
+                if (++digits > 3 || octet > 255) {
+                    return -1;
+                }
+            } else if (b == '.' && digits > 0 && dots < 3) {
+                address = address << 8 | octet;
+                octet = 0;
+                digits = 0;
+                ++dots;
+            } else {
+                return -1;
+            }
+        }
+        return dots == 3 && digits > 0 ? address << 8 | octet : -1;
+    }
+
+    /**
+     * Parses an IPv4 or IPv6 address. Zone indexes and bracketed addresses are not supported.
+     *
+     * @param buffer  the buffer holding the address, not <tt>null</tt>
+     * @param from    the index of the first byte of the address
+     * @param to      the index of the last byte of the address (exclusive)
+     * @param address receives the high and low halves of the address, IPv4 addresses being mapped, not <tt>null</tt>
+     * @return <tt>true</tt> if the bytes are an IP address, <tt>false</tt> otherwise (such as a host name)
+     */
+    public static boolean parse(@NonNull byte[] buffer, int from, int to, @NonNull long[] address) {
+        long ipv4 = parseIpv4(buffer, from, to);
+        if (ipv4 >= 0) {
+            address[0] = 0;
+            address[1] = IPV4_MAPPED_PREFIX | ipv4;
+            return true;
+        }
+        return parseIpv6(buffer, from, to, address);
+    }
+
+    /**
+     * Parses an IPv6 address: up to 8 hexadecimal groups separated by colons, one run of which may be elided by
+     * <tt>::</tt>, the last two groups possibly written as an IPv4 address.
+     */
+    private static boolean parseIpv6(byte[] buffer, int from, int to, long[] address) {
+        if (to - from < 2) {
+            return false;
+        }
+        // The groups before the elision, and the ones after it, as 128-bit values.
+        long headHigh = 0;
+        long headLow = 0;
+        long tailHigh = 0;
+        long tailLow = 0;
+        int headGroups = 0;
+        int tailGroups = 0;
+        boolean elided = false;
+        int i = from;
+        if (buffer[i] == ':') {
+            if (buffer[i + 1] != ':') {
+                return false;
+            }
+            elided = true;
+            i += 2;
+        }
+        while (i < to) {
+            int start = i;
+            int group = 0;
+            while (i < to && i - start < 4 && hexDigit(buffer[i]) >= 0) {
+                group = group << 4 | hexDigit(buffer[i]);
+                ++i;
+            }
+            int groups = 1;
+            if (i < to && buffer[i] == '.') {
+                // The last two groups are an IPv4 address.
+                long ipv4 = parseIpv4(buffer, start, to);
+                if (ipv4 < 0) {
+                    return false;
+                }
+                group = (int) ipv4;
+                groups = 2;
+                i = to;
+            } else if (i == start) {
+                return false;
+            }
+            if (elided) {
+                tailHigh = tailHigh << 16 * groups | tailLow >>> 64 - 16 * groups;
+                tailLow = tailLow << 16 * groups | (group & 0xFFFF_FFFFL);
+                tailGroups += groups;
+            } else {
+                headHigh = headHigh << 16 * groups | headLow >>> 64 - 16 * groups;
+                headLow = headLow << 16 * groups | (group & 0xFFFF_FFFFL);
+                headGroups += groups;
+            }
+            if (headGroups + tailGroups > 8) {
+                return false;
+            }
+            if (i == to) {
+                break;
+            }
+            if (buffer[i] != ':' || ++i == to) {
+                return false;
+            }
+            if (buffer[i] == ':') {
+                if (elided) {
+                    return false;
+                }
+                elided = true;
+                ++i;
+            }
+        }
+        if (elided ? headGroups + tailGroups == 8 : headGroups != 8) {
+            return false;
+        }
+        // Moves the head groups to the top of the address.
+        int shift = 16 * (8 - headGroups);
+        if (shift >= 64) {
+            headHigh = shift == 128 ? 0 : headLow << shift - 64;
+            headLow = 0;
+        } else if (shift > 0) {
+            headHigh = headHigh << shift | headLow >>> 64 - shift;
+            headLow <<= shift;
+        }
+        address[0] = headHigh | tailHigh;
+        address[1] = headLow | tailLow;
+        return true;
+    }
+
+    private static int hexDigit(byte b) {
+        if (b >= '0' && b <= '9') {
+            return b - '0';
+        }
+        if (b >= 'a' && b <= 'f') {
+            return b - 'a' + 10;
+        }
+        if (b >= 'A' && b <= 'F') {
+            return b - 'A' + 10;
+        }
+        return -1;
+    }
+
+    /**
+     * Tells whether an address is an IPv4 address.
+     *
+     * @param high the high half of the address
+     * @param low  the low half of the address
+     * @return <tt>true</tt> if the address is IPv4-mapped
+     */
+    public static boolean isIpv4(long high, long low) {
+        return high == 0 && (low & 0xFFFF_FFFF_0000_0000L) == IPV4_MAPPED_PREFIX;
+    }
+
+    /**
+     * Hashes an address with the finalizer of MurmurHash3, so that every bit of the address affects every bit of the
+     * hash.
+     *
+     * @param high the high half of the address
+     * @param low  the low half of the address
+     * @return a uniformly distributed hash
+     */
+    public static long hash(long high, long low) {
+        return mix(high ^ mix(low));
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Renders an address, IPv4 addresses in dotted form and IPv6 addresses in the RFC 5952 form.
+     *
+     * @param high the high half of the address
+     * @param low  the low half of the address
+     * @return the address, not <tt>null</tt>
+     */
+    public static String toString(long high, long low) {
+        if (isIpv4(high, low)) {
+            return (low >>> 24 & 0xFF) + "." + (low >>> 16 & 0xFF) + "." + (low >>> 8 & 0xFF) + "." + (low & 0xFF);
+        }
+        byte[] bytes = ByteBuffer.allocate(16).putLong(high).putLong(low).array();
+        try {
+            return InetAddresses.toAddrString(InetAddress.getByAddress(bytes));
+        } catch (UnknownHostException e) {
+            // Never thrown for 16 bytes.
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,153 @@
+package org.sample.homework.util;
+
+/**
+ * An open addressing hash map from <tt>long</tt> keys to <tt>int</tt> counters, which stores both in primitive
+ * arrays instead of boxing them in entries.
+ * <p>
+ * Keys are probed linearly in a table kept at most half full. This class is not thread safe.
+ */
+public class LongIntHashMap {
+
+    /**
+     * Visits the entries of a map.
+     */
+    @FunctionalInterface
+    public interface EntryVisitor {
+
+        /**
+         * Visits an entry.
+         *
+         * @param key   the key
+         * @param value the value
+         */
+        void visit(long key, int value);
+    }
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The keys, 0 marking empty slots: the value of the key 0 is held apart.
+     */
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private int[] values = new int[INITIAL_CAPACITY];
+
+    private boolean hasZeroKey;
+    private int zeroValue;
+
+    /**
+     * The number of keys, 0 excluded.
+     */
+    private int size;
+
+    /**
+     * Adds a number to the value of a key, which is 0 if the key is absent.
+     *
+     * @param key   the key
+     * @param delta the number to add
+     */
+    public void add(long key, int delta) {
+        if (key == 0) {
+            hasZeroKey = true;
+            zeroValue += delta;
+            return;
+        }
+        int mask = keys.length - 1;
+        int slot = slot(key) & mask;
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                values[slot] += delta;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = delta;
+        if (++size * 2 > keys.length) {
+            resize();
+        }
+    }
+
+    /**
+     * Returns the value of a key.
+     *
+     * @param key the key
+     * @return the value, 0 if the key is absent
+     */
+    public int get(long key) {
+        if (key == 0) {
+            return zeroValue;
+        }
+        int mask = keys.length - 1;
+        for (int slot = slot(key) & mask; keys[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the number of keys.
+     *
+     * @return the number of keys
+     */
+    public int size() {
+        return size + (hasZeroKey ? 1 : 0);
+    }
+
+    /**
+     * Returns the memory used by the table in bytes (approximately).
+     *
+     * @return the memory used by the keys and values
+     */
+    public long memoryFootprint() {
+        return keys.length * 12L;
+    }
+
+    /**
+     * Visits every entry, in no particular order.
+     *
+     * @param visitor the visitor
+     */
+    public void forEach(EntryVisitor visitor) {
+        if (hasZeroKey) {
+            visitor.visit(0, zeroValue);
+        }
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0) {
+                visitor.visit(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = slot(oldKeys[i]) & mask;
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ h >>> 32);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("{");
+        forEach((key, value) -> text.append(text.length() > 1 ? ", " : "").append(key).append('=').append(value));
+        return text.append('}').toString();
+    }
+
+}
@@ -0,0 +1,153 @@
+package org.sample.homework.util;
+
+import lombok.experimental.UtilityClass;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * SIMD within a register utilities class.
+ * <p>
+ * Byte arrays are read 8 bytes at a time as little-endian longs, so that the byte at the lowest index is the lowest
+ * byte of the word, and every byte of a word is compared at once with bit tricks instead of one branch per byte.
+ * The masks returned by {@link Swar#matches(long, long)} have the high bit of every matching byte set: the index of
+ * the first match within the word is <tt>Long.numberOfTrailingZeros(mask) >>> 3</tt>.
+ * <p>
+ * Words are read through a little-endian view of the array, which Java 9 and later compile to a single unaligned load.
+ * Java 8 assembles them byte by byte, which makes a word at a time search for a single byte slower than a byte loop:
+ * {@link Swar#indexOf(byte[], int, int, byte)} and {@link DelimiterIndex} only read words for a single byte when
+ * {@link Swar#WORD_READS} is set.
+ */
+@UtilityClass
+public class Swar {
+
+    /**
+     * The low 7 bits of every byte.
+     */
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+
+    private static final long ONES = 0x0101010101010101L;
+
+    /**
+     * Whether words are read with a single load by this runtime, that is from Java 9 on (Java 8 and before report
+     * their specification version as <tt>1.x</tt>).
+     */
+    public static final boolean WORD_READS = !System.getProperty("java.specification.version", "1.8").startsWith("1.");
+
+    /**
+     * Repeats a byte in every byte of a word.
+     *
+     * @param value the byte to repeat
+     * @return the pattern to give to {@link Swar#matches(long, long)}
+     */
+    public static long broadcast(byte value) {
+        return (value & 0xFFL) * ONES;
+    }
+
+    /**
+     * Finds the bytes of a word equal to the byte of a pattern. Unlike the usual "has zero byte" trick, the result is
+     * exact: no carry can propagate from one byte to the next.
+     *
+     * @param word    the bytes to compare
+     * @param pattern the repeated byte to look for, see {@link Swar#broadcast(byte)}
+     * @return the high bit of every matching byte, 0 if none
+     */
+    public static long matches(long word, long pattern) {
+        long x = word ^ pattern;
+        return ~(((x & LOW_BITS) + LOW_BITS) | x | LOW_BITS);
+    }
+
+    /**
+     * Reads 8 bytes as a little-endian long.
+     *
+     * @param buffer the buffer to read from
+     * @param index  the index of the first byte, the buffer must hold 8 bytes from there
+     * @return the word
+     */
+    public static long getLong(byte[] buffer, int index) {
+        // The wrapper doesn't escape, so it isn't even allocated.
+        return ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN).getLong(index);
+    }
+
+    /**
+     * Reads up to 8 bytes as a little-endian long, the missing high bytes being zeros.
+     *
+     * @param buffer the buffer to read from
+     * @param from   the index of the first byte
+     * @param to     the index of the end of the bytes to read (exclusive), at most 8 bytes after <tt>from</tt>
+     * @return the word
+     */
+    public static long getLong(byte[] buffer, int from, int to) {
+        long word = 0;
+        for (int i = to - 1; i >= from; i--) {
+            word = (word << 8) | (buffer[i] & 0xFFL);
+        }
+        return word;
+    }
+
+    /**
+     * Finds the first occurrence of a byte.
+     *
+     * @param buffer the buffer to search, not <tt>null</tt>
+     * @param from   the index to start from
+     * @param to     the index of the end of the range to search (exclusive)
+     * @param value  the byte to look for
+     * @return the index of the first occurrence, -1 if none
+     * @throws IndexOutOfBoundsException if the range is not within the buffer
+     */
+    public static int indexOf(byte[] buffer, int from, int to, byte value) {
+        checkRange(buffer, from, to);
+        return WORD_READS ? wordIndexOf(buffer, from, to, value) : byteIndexOf(buffer, from, to, value);
+    }
+
+    static int byteIndexOf(byte[] buffer, int from, int to, byte value) {
+        for (int i = from; i < to; i++) {
+            if (buffer[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static int wordIndexOf(byte[] buffer, int from, int to, byte value) {
+        long pattern = broadcast(value);
+        int i = from;
+        for (; i <= to - Long.BYTES; i += Long.BYTES) {
+            long mask = matches(getLong(buffer, i), pattern);
+            if (mask != 0) {
+                return i + (Long.numberOfTrailingZeros(mask) >>> 3);
+            }
+        }
+        if (i < to) {
+            // The missing bytes of the last word are zeros, which must not be reported.
+            long mask = matches(getLong(buffer, i, to), pattern) & tailMask(to - i);
+            if (mask != 0) {
+                return i + (Long.numberOfTrailingZeros(mask) >>> 3);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the mask of the first bytes of a word.
+     *
+     * @param length the number of bytes, from 1 to 8
+     * @return a word whose <tt>length</tt> lowest bytes are set
+     */
+    public static long tailMask(int length) {
+        return -1L >>> (64 - (length << 3));
+    }
+
+    /**
+     * Checks that a range is within a buffer, before it is read a word at a time.
+     *
+     * @throws IndexOutOfBoundsException if it is not
+     */
+    public static void checkRange(byte[] buffer, int from, int to) {
+        if (from < 0 || from > to || to > buffer.length) {
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") out of bounds for length "
+                    + buffer.length);
+        }
+    }
+
+}
@@ -0,0 +1,90 @@
+package org.sample.homework.util;
+
+import lombok.experimental.UtilityClass;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Variable-length integer encoding utilities class.
+ * <p>
+ * Values are written 7 bits at a time, least significant group first, the high bit of every byte telling whether
+ * another byte follows. Signed values are zigzag-encoded first so that small negative numbers stay small.
+ */
+@UtilityClass
+public class VarInts {
+
+    /**
+     * Writes an unsigned variable-length long.
+     *
+     * @param buffer the buffer to write to
+     * @param value  the value to write, interpreted as unsigned
+     * @throws java.nio.BufferOverflowException if the buffer is too small
+     */
+    public static void writeUnsigned(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Writes a zigzag-encoded variable-length long.
+     *
+     * @param buffer the buffer to write to
+     * @param value  the value to write
+     * @throws java.nio.BufferOverflowException if the buffer is too small
+     */
+    public static void writeSigned(ByteBuffer buffer, long value) {
+        writeUnsigned(buffer, (value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Reads an unsigned variable-length long.
+     *
+     * @param buffer the buffer to read from
+     * @return the value read
+     * @throws java.nio.BufferUnderflowException if the buffer ends in the middle of the value
+     * @throws IllegalArgumentException          if the value is longer than 64 bits
+     */
+    public static long readUnsigned(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed variable-length integer!");
+    }
+
+    /**
+     * Reads a zigzag-encoded variable-length long.
+     *
+     * @param buffer the buffer to read from
+     * @return the value read
+     * @throws java.nio.BufferUnderflowException if the buffer ends in the middle of the value
+     * @throws IllegalArgumentException          if the value is longer than 64 bits
+     */
+    public static long readSigned(ByteBuffer buffer) {
+        long value = readUnsigned(buffer);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Reads an unsigned variable-length int.
+     *
+     * @param buffer the buffer to read from
+     * @return the value read
+     * @throws IllegalArgumentException if the value doesn't fit in an int
+     */
+    public static int readUnsignedInt(ByteBuffer buffer) {
+        long value = readUnsigned(buffer);
+        if (value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Variable-length integer too large: " + value + '!');
+        }
+        return (int) value;
+    }
+
+}
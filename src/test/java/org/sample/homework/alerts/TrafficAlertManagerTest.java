@@ -6,11 +6,14 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.sample.homework.stats.TrafficStatistics;
 
+import java.time.Clock;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -88,6 +91,41 @@ class TrafficAlertManagerTest {
         assertEquals((float) 1180 / 120, alert.getHitsPerSecond());
     }
 
+    @Test
+    void burstAlertTest_shouldWatchTheBusiestSecondOfEveryWindowFrame() {
+        // GIVEN
+        EventBus bus = new EventBus();
+        List<TrafficAlert> alerts = new ArrayList<>();
+        bus.register(new Object() {
+            @Subscribe
+            public void receiveTrafficAlert(TrafficAlert alert) {
+                alerts.add(alert);
+            }
+        });
+        TrafficAlertManager store = new TrafficAlertManager(12, 100, 120, 50, bus, Clock.systemUTC());
+
+        // WHEN
+        // 10 seconds of 1 hit, then a 1 second burst of 500 hits: far below 100 hits/s on average.
+        store.handleTrafficStatistics(createTrafficStatistics(1, 1, 1, 1, 1, 1, 1, 1, 1, 1));
+        store.handleTrafficStatistics(createTrafficStatistics(1, 1, 1, 500, 1, 1, 1, 1, 1, 1));
+        store.handleTrafficStatistics(createTrafficStatistics(1, 60, 1, 1, 1, 1, 1, 1, 1, 1));
+        store.handleTrafficStatistics(createTrafficStatistics(1, 1, 1, 1, 1, 1, 1, 1, 1, 1));
+
+        // THEN
+        assertEquals(2, alerts.size());
+        assertEquals(TrafficAlert.AlertType.BURST, alerts.get(0).getType());
+        assertEquals(500, alerts.get(0).getHitsPerSecond());
+        assertEquals(TrafficAlert.AlertType.BURST_RECOVERED, alerts.get(1).getType());
+        assertEquals(1, alerts.get(1).getHitsPerSecond());
+        assertFalse(store.isHighTraffic());
+    }
+
+    private static TrafficStatistics createTrafficStatistics(int... hitsBySecond) {
+        TrafficStatistics statistics = createTrafficStatistics(IntStream.of(hitsBySecond).sum());
+        statistics.setHitsBySecond(hitsBySecond);
+        return statistics;
+    }
+
     private static TrafficStatistics createTrafficStatistics(int hits) {
         TrafficStatistics statistics = new TrafficStatistics();
         statistics.setTotalRequestCount(hits);
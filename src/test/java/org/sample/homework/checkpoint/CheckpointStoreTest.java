@@ -0,0 +1,71 @@
+package org.sample.homework.checkpoint;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sample.homework.alerts.TrafficAlertManager;
+import org.sample.homework.reader.FilePosition;
+import org.sample.homework.stats.TrafficStatistics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class CheckpointStoreTest {
+
+    @Test
+    void saveAndLoadTest_nominal(@TempDir Path folder) throws IOException {
+        // GIVEN
+        CheckpointStore store = new CheckpointStore(folder.resolve("checkpoint"));
+        TrafficStatistics first = createTrafficStatistics(Instant.parse("2019-05-09T16:00:00Z"), 120);
+        TrafficStatistics second = createTrafficStatistics(Instant.parse("2019-05-09T16:00:10Z"), 80);
+        Checkpoint expected = new Checkpoint(new FilePosition("(dev=803,ino=42)", 123456),
+                new TrafficAlertManager.Snapshot(Arrays.asList(first, second), 200, true));
+
+        // WHEN
+        store.save(expected);
+        Optional<Checkpoint> result = store.load();
+
+        // THEN
+        assertEquals(Optional.of(expected), result);
+    }
+
+    @Test
+    void loadTest_shouldIgnoreMissingCheckpoint(@TempDir Path folder) throws IOException {
+        assertFalse(new CheckpointStore(folder.resolve("checkpoint")).load().isPresent());
+    }
+
+    @Test
+    void loadTest_shouldIgnoreCorruptedCheckpoint(@TempDir Path folder) throws IOException {
+        // GIVEN
+        Path path = folder.resolve("checkpoint");
+        CheckpointStore store = new CheckpointStore(path);
+        store.save(new Checkpoint(new FilePosition("key", 42),
+                new TrafficAlertManager.Snapshot(Arrays.asList(), 0, false)));
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(path, bytes);
+
+        // WHEN / THEN
+        assertFalse(store.load().isPresent());
+    }
+
+    private static TrafficStatistics createTrafficStatistics(Instant windowStart, int hits) {
+        TrafficStatistics statistics = new TrafficStatistics();
+        statistics.setWindowStart(windowStart);
+        statistics.setWindowEnd(windowStart.plusSeconds(10));
+        statistics.setTotalRequestCount(hits);
+        statistics.setValidRequestCount(hits / 2);
+        statistics.setBytesTransferred(hits * 1000L);
+        statistics.setUniqueHosts(3);
+        statistics.getHitsBySection().add(new AbstractMap.SimpleImmutableEntry<>("/api", hits));
+        statistics.getHitsByMethod().put("GET", hits);
+        return statistics;
+    }
+}
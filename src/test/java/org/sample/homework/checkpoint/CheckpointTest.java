@@ -0,0 +1,93 @@
+package org.sample.homework.checkpoint;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sample.homework.alerts.TrafficAlertManager;
+import org.sample.homework.reader.FilePosition;
+import org.sample.homework.stats.TrafficStatistics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CheckpointTest {
+
+    private static final DateTimeFormatter FORMATTER =
+            DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.ENGLISH).withZone(ZoneOffset.UTC);
+
+    private static final Instant START = Instant.parse("2019-05-09T16:00:00Z");
+
+    /**
+     * Every line of the log file has the same length.
+     */
+    private static final int LINE_LENGTH =
+            ("127.0.0.1 - - [" + FORMATTER.format(START) + "] \"GET /api HTTP/1.0\" 200 1\n").length();
+
+    @Test
+    void catchUpOffsetTest_shouldReplayTheOpenWindowFrame(@TempDir Path folder) throws IOException {
+        // GIVEN a line every second for 30 seconds, checkpointed after 25 seconds with the window frames up to 20.
+        Path logFile = writeLog(folder, 30);
+        Checkpoint checkpoint = checkpoint(logFile, 25 * LINE_LENGTH, START.plusSeconds(20));
+
+        // WHEN
+        long offset = checkpoint.catchUpOffset(logFile);
+
+        // THEN
+        assertEquals(20 * LINE_LENGTH, offset);
+    }
+
+    @Test
+    void catchUpOffsetTest_shouldKeepAnEarlierPosition(@TempDir Path folder) throws IOException {
+        // GIVEN a checkpoint whose position is before the end of its latest window frame.
+        Path logFile = writeLog(folder, 30);
+        Checkpoint checkpoint = checkpoint(logFile, 15 * LINE_LENGTH, START.plusSeconds(20));
+
+        // WHEN
+        long offset = checkpoint.catchUpOffset(logFile);
+
+        // THEN
+        assertEquals(15 * LINE_LENGTH, offset);
+    }
+
+    @Test
+    void catchUpOffsetTest_shouldReadRotatedFileFromItsBeginning(@TempDir Path folder) throws IOException {
+        // GIVEN a checkpoint of another file.
+        Path logFile = writeLog(folder, 30);
+        Checkpoint checkpoint = new Checkpoint(new FilePosition("(dev=803,ino=42)", 25 * LINE_LENGTH),
+                new TrafficAlertManager.Snapshot(Collections.emptyList(), 0, false));
+
+        // WHEN
+        long offset = checkpoint.catchUpOffset(logFile);
+
+        // THEN
+        assertEquals(0, offset);
+    }
+
+    private static Checkpoint checkpoint(Path logFile, long offset, Instant windowEnd) throws IOException {
+        TrafficStatistics statistics = new TrafficStatistics();
+        statistics.setWindowStart(windowEnd.minusSeconds(10));
+        statistics.setWindowEnd(windowEnd);
+        return new Checkpoint(new FilePosition(FilePosition.fileKeyOf(logFile), offset),
+                new TrafficAlertManager.Snapshot(Collections.singletonList(statistics), 10, false));
+    }
+
+    private static Path writeLog(Path folder, int seconds) throws IOException {
+        Path logFile = folder.resolve("access.log");
+        try (BufferedWriter writer = Files.newBufferedWriter(logFile)) {
+            for (int second = 0; second < seconds; second++) {
+                writer.write("127.0.0.1 - - [" + FORMATTER.format(START.plusSeconds(second))
+                        + "] \"GET /api HTTP/1.0\" 200 1\n");
+            }
+        }
+        return logFile;
+    }
+
+}
@@ -0,0 +1,81 @@
+package org.sample.homework.clf;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LazyAccessLogRecordTest {
+
+    private final AccessLogParser parser = new RegexAccessLogParser();
+
+    private final LazyAccessLogRecord record = new LazyAccessLogRecord(StandardCharsets.UTF_8);
+
+    @Test
+    void resetTest_shouldDecodeTheSameFieldsAsTheRegexParser() throws AccessLogParseException {
+        // GIVEN
+        List<String> lines = Arrays.asList(
+                "127.0.0.1 - frank [10/Oct/2000:13:55:36 -0700] \"GET /files/apache_pb.gif HTTP/1.0\" 200 2326",
+                "127.0.0.1 - frank [10/Oct/2000:13:55:36 -0700] \"POST /api HTTP/1.1\" 404 -",
+                "10.0.0.2 ident - [29/Feb/2016:00:00:00 +0130] \"DELETE /a/b/c\" 500 0",
+                "::1 - - [31/Dec/1999:23:59:59 +0000] \"PUT /é/x \" 301 12");
+
+        for (String line : lines) {
+            // WHEN
+            byte[] bytes = ("garbage" + line + "garbage").getBytes(StandardCharsets.UTF_8);
+            record.reset(bytes, 7, bytes.length - 7);
+
+            // THEN
+            assertEquals(parser.parse(line), record.toRecord(), line);
+        }
+    }
+
+    @Test
+    void resetTest_shouldDecodeNumericFieldsAndSection() throws AccessLogParseException {
+        // GIVEN
+        byte[] line = "127.0.0.1 - - [10/Oct/2000:13:55:36 -0700] \"GET /pages/create HTTP/1.0\" 503 12"
+                .getBytes(StandardCharsets.UTF_8);
+
+        // WHEN
+        record.reset(line, 0, line.length);
+
+        // THEN
+        assertEquals(ZonedDateTime.of(2000, 10, 10, 13, 55, 36, 0, ZoneOffset.ofHours(-7)).toInstant().toEpochMilli(),
+                record.getTimestamp());
+        assertEquals(503, record.getStatus());
+        assertEquals(12, record.getBytes());
+        assertEquals("/pages", record.getSection());
+        assertNull(record.getUser());
+        // Repeated strings are decoded once.
+        assertSame(record.getHost(), record.getHost());
+    }
+
+    @Test
+    void resetTest_shouldRejectInvalidLinesWithTheirReason() {
+        assertEquals(AccessLogParseException.Reason.MALFORMED_LINE, reasonOf(""));
+        assertEquals(AccessLogParseException.Reason.MALFORMED_LINE, reasonOf("127.0.0.1 - 200 2326"));
+        assertEquals(AccessLogParseException.Reason.MALFORMED_LINE,
+                reasonOf("127.0.0.1 - - [10/Oct/2000:13:55:36 -0700] \"get /a HTTP/1.0\" 200 1"));
+        assertEquals(AccessLogParseException.Reason.MALFORMED_LINE,
+                reasonOf("127.0.0.1 - - [10/Oct/2000:13:55:36 -0700] \"GET /a HTTP/1.0\" 20 1"));
+        assertEquals(AccessLogParseException.Reason.MALFORMED_LINE,
+                reasonOf("127.0.0.1 - - [10/Oct/2000:13:55:36 -0700] \"GET /a HTTP/1.0\" 200 1 "));
+        assertEquals(AccessLogParseException.Reason.INVALID_DATE,
+                reasonOf("127.0.0.1 - - [10/Foo/2000:13:55:36 -0700] \"GET /a HTTP/1.0\" 200 1"));
+        assertEquals(AccessLogParseException.Reason.INVALID_DATE,
+                reasonOf("127.0.0.1 - - [30/Feb/2000:13:55:36 -0700] \"GET /a HTTP/1.0\" 200 1"));
+        assertEquals(AccessLogParseException.Reason.INVALID_NUMBER,
+                reasonOf("127.0.0.1 - - [10/Oct/2000:13:55:36 -0700] \"GET /a HTTP/1.0\" 200 99999999999"));
+    }
+
+    private AccessLogParseException.Reason reasonOf(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        return assertThrows(AccessLogParseException.class, () -> record.reset(bytes, 0, bytes.length)).getReason();
+    }
+
+}
@@ -0,0 +1,98 @@
+package org.sample.homework.clf;
+
+import org.junit.jupiter.api.Test;
+import org.sample.homework.metrics.PipelineMetrics;
+import org.sample.homework.stats.TrafficStatisticsManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LineFilterTest {
+
+    private static final LogFormat COMMON = LogFormatDetector.forName("common", TrafficStatisticsManager.FIELDS);
+
+    @Test
+    void matchesTest_shouldMatchEveryPredicate() throws AccessLogParseException {
+        assertTrue(drops("path=/health", "10.1.2.3", "GET /health/live", 200));
+        assertFalse(drops("path=/health", "10.1.2.3", "GET /api/health", 200));
+        assertTrue(drops("path=/api,/static/", "10.1.2.3", "GET /static/app.js", 200));
+        assertTrue(drops("method=HEAD,OPTIONS", "10.1.2.3", "OPTIONS /api", 200));
+        assertFalse(drops("method=HEAD", "10.1.2.3", "HEADER /api", 200));
+        assertTrue(drops("status=3xx", "10.1.2.3", "GET /api", 304));
+        assertTrue(drops("status=404,500-503", "10.1.2.3", "GET /api", 502));
+        assertFalse(drops("status=404,500-503", "10.1.2.3", "GET /api", 504));
+        assertTrue(drops("host=10.0.0.0/8", "10.1.2.3", "GET /api", 200));
+        assertFalse(drops("host=10.0.0.0/8", "11.1.2.3", "GET /api", 200));
+        assertTrue(drops("host=192.168.1.7", "192.168.1.7", "GET /api", 200));
+        assertFalse(drops("host=192.168.1.7", "192.168.1.70", "GET /api", 200));
+        assertTrue(drops("host=2001:db8::/32", "2001:db8::1", "GET /api", 200));
+        assertFalse(drops("host=2001:db8::/32", "2001:db9::1", "GET /api", 200));
+        assertTrue(drops("host=lb.example.com", "lb.example.com", "GET /api", 200));
+        assertFalse(drops("host=10.0.0.0/8", "lb.example.com", "GET /api", 200));
+    }
+
+    @Test
+    void matchesTest_shouldCombineAndNegatePredicates() throws AccessLogParseException {
+        // Predicates of a filter must all match.
+        assertTrue(drops("host=10.0.0.0/8 path=/health", "10.1.2.3", "GET /health", 200));
+        assertFalse(drops("host=10.0.0.0/8 path=/health", "10.1.2.3", "GET /api", 200));
+        assertFalse(drops("host=10.0.0.0/8 path=/health", "8.8.8.8", "GET /health", 200));
+        // Negated predicates match the other values.
+        assertTrue(drops("host!=10.0.0.0/8", "8.8.8.8", "GET /api", 200));
+        assertFalse(drops("host!=10.0.0.0/8", "10.1.2.3", "GET /api", 200));
+        assertTrue(drops("path=/admin status!=2xx", "10.1.2.3", "GET /admin", 403));
+        assertFalse(drops("path=/admin status!=2xx", "10.1.2.3", "GET /admin", 200));
+    }
+
+    @Test
+    void scanTest_shouldDropAndCountMatchingLines() throws AccessLogParseException {
+        // GIVEN
+        LineFilter filter = new LineFilter(COMMON, Arrays.asList("path=/health", "method=HEAD"));
+        LazyAccessLogRecord record = new LazyAccessLogRecord(StandardCharsets.UTF_8);
+        long filtered = PipelineMetrics.get().getFilteredLines();
+
+        // WHEN
+        boolean health = scan(filter, record, line("10.1.2.3", "GET /health", 200));
+        boolean head = scan(filter, record, line("10.1.2.3", "HEAD /api", 200));
+        boolean api = scan(filter, record, line("10.1.2.3", "GET /api/user", 200));
+
+        // THEN
+        assertFalse(health);
+        assertFalse(head);
+        assertTrue(api);
+        assertEquals("/api", record.getSection());
+        assertEquals(filtered + 2, PipelineMetrics.get().getFilteredLines());
+        assertEquals(COMMON.getName(), filter.getName());
+    }
+
+    @Test
+    void validateTest_shouldRejectInvalidFilters() {
+        for (String expression : new String[]{"", "path", "path=", "=/api", "size=10", "status=abc", "status=4x",
+                "host=10.0.0.0/33", "host=10.0.0.0/x", "host=lb.example.com/8", "path=/a,,/b"}) {
+            assertThrows(IllegalArgumentException.class, () -> LineFilter.validate(expression), expression);
+        }
+        LineFilter.validate("  host=10.0.0.0/8   path!=/api ");
+    }
+
+    private static boolean drops(String expression, String host, String request, int status)
+            throws AccessLogParseException {
+        LineFilter filter = new LineFilter(COMMON, Collections.singletonList(expression));
+        LazyAccessLogRecord record = new LazyAccessLogRecord(StandardCharsets.UTF_8);
+        return !scan(filter, record, line(host, request, status));
+    }
+
+    private static boolean scan(LineFilter filter, LazyAccessLogRecord record, byte[] line)
+            throws AccessLogParseException {
+        record.reset(line, 0, line.length);
+        return filter.scan(line, 0, line.length, record);
+    }
+
+    private static byte[] line(String host, String request, int status) {
+        return (host + " - - [09/May/2019:16:00:01 +0000] \"" + request + " HTTP/1.0\" " + status + " 100")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,96 @@
+package org.sample.homework.clf;
+
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import org.junit.jupiter.api.Test;
+import org.sample.homework.stats.TrafficStatistics;
+import org.sample.homework.stats.TrafficStatisticsManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadShedderTest {
+
+    private static final long NOW = Instant.parse("2019-05-09T16:00:00Z").toEpochMilli();
+
+    @Test
+    void sampleTest_shouldSampleWhileBehindAndRecover() {
+        // GIVEN
+        AtomicLong clock = new AtomicLong(NOW);
+        LoadShedder shedder = new LoadShedder(Duration.ofSeconds(10), clock::get);
+
+        // WHEN the records are 30 seconds old for 2 seconds
+        shedder.observe(NOW - 30_000);
+        clock.addAndGet(1000);
+        shedder.observe(NOW - 30_000);
+        int firstRate = shedder.getSampleRate();
+        clock.addAndGet(1000);
+        shedder.observe(NOW - 30_000);
+        int secondRate = shedder.getSampleRate();
+        int[] weights = new int[8];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = shedder.sample();
+        }
+        // and then 1 second old for 2 seconds.
+        clock.addAndGet(1000);
+        shedder.observe(clock.get() - 1000);
+        int thirdRate = shedder.getSampleRate();
+        clock.addAndGet(1000);
+        shedder.observe(clock.get() - 1000);
+
+        // THEN
+        assertEquals(2, firstRate);
+        assertEquals(4, secondRate);
+        assertArrayEquals(new int[]{4, 0, 0, 0, 4, 0, 0, 0}, weights);
+        assertEquals(2, thirdRate);
+        assertEquals(1, shedder.getSampleRate());
+        assertEquals(1, shedder.sample());
+    }
+
+    @Test
+    void aggregateTest_shouldScaleSampledRecords() throws AccessLogParseException {
+        // GIVEN
+        EventBus eventBus = new EventBus();
+        TrafficStatisticsManager stats = new TrafficStatisticsManager(10, eventBus);
+        eventBus.register(stats);
+        List<TrafficStatistics> published = new ArrayList<>();
+        eventBus.register(new Object() {
+            @Subscribe
+            public void handleTrafficStatistics(TrafficStatistics statistics) {
+                published.add(statistics);
+            }
+        });
+        stats.advanceTo(Instant.parse("2019-05-09T16:00:00Z"));
+        LazyAccessLogRecord record = new LazyAccessLogRecord(StandardCharsets.UTF_8);
+        byte[] line = "127.0.0.1 - - [09/May/2019:16:00:01 +0000] \"GET /api/user HTTP/1.0\" 200 100"
+                .getBytes(StandardCharsets.UTF_8);
+
+        // WHEN
+        record.reset(line, 0, line.length);
+        eventBus.post(record);
+        record.reset(line, 0, line.length);
+        record.setSampleRate(8);
+        eventBus.post(record);
+        stats.advanceTo(Instant.parse("2019-05-09T16:00:10Z"));
+
+        // THEN
+        assertEquals(1, published.size());
+        TrafficStatistics statistics = published.get(0);
+        assertTrue(statistics.isSampled());
+        assertEquals(8, statistics.getSampleRate());
+        assertEquals(9, statistics.getTotalRequestCount());
+        assertEquals(9, statistics.getValidRequestCount());
+        assertEquals(9, statistics.getHitsByStatusClass()[1]);
+        assertEquals(900, statistics.getBytesTransferred());
+        assertEquals(Integer.valueOf(9), statistics.getHitsBySection().get(0).getValue());
+        assertEquals(Integer.valueOf(9), statistics.getHitsByMethod().get("GET"));
+        assertEquals(1, statistics.getUniqueHosts());
+    }
+
+}
@@ -0,0 +1,141 @@
+package org.sample.homework.clf;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.EnumSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogFormatDetectorTest {
+
+    private static final String COMBINED_LINE = "10.0.0.2 - - [09/May/2019:16:00:39 +0000] \"GET /api/user HTTP/1.1\" "
+            + "200 1234 \"https://www.google.com/search?q=x\" \"Mozilla/5.0 (Macintosh; Intel Mac OS X 10_14_5) "
+            + "AppleWebKit/537.36 (KHTML, like Gecko) Chrome/75.0.3770.100 Safari/537.36\"";
+
+    private static final String COMMON_LINE =
+            "10.0.0.2 - - [09/May/2019:16:00:39 +0000] \"GET /api/user HTTP/1.1\" 200 1234";
+
+    @Test
+    void scanTest_shouldDetectTheCombinedLogFormat() throws AccessLogParseException {
+        // GIVEN
+        LogFormatDetector format = new LogFormatDetector();
+        LazyAccessLogRecord record = new LazyAccessLogRecord(StandardCharsets.UTF_8, format);
+
+        // WHEN
+        reset(record, COMBINED_LINE);
+
+        // THEN
+        assertEquals("Combined Log Format", format.getName());
+        assertEquals("/api", record.getSection());
+        assertEquals(1234, record.getBytes());
+        assertEquals("www.google.com", record.getRefererDomain());
+        assertEquals("Chrome", record.getUserAgentFamily());
+        assertEquals(record.getReferer(), record.toRecord().getReferer());
+        assertEquals(record.getUserAgent(), record.toRecord().getUserAgent());
+        // Once detected, the format is kept.
+        assertThrows(AccessLogParseException.class, () -> reset(record, COMMON_LINE));
+    }
+
+    @Test
+    void scanTest_shouldDetectTheCommonLogFormat() throws AccessLogParseException {
+        // GIVEN
+        LogFormatDetector format = new LogFormatDetector();
+        LazyAccessLogRecord record = new LazyAccessLogRecord(StandardCharsets.UTF_8, format);
+
+        // WHEN
+        reset(record, COMMON_LINE);
+
+        // THEN
+        assertEquals("Common Log Format", format.getName());
+        assertEquals(1234, record.getBytes());
+        assertNull(record.getUserAgentFamily());
+        assertNull(record.getRefererDomain());
+    }
+
+    @Test
+    void scanTest_shouldDetectTheVirtualHostOfTheCombinedLogFormat() throws AccessLogParseException {
+        // GIVEN
+        LogFormatDetector format = new LogFormatDetector();
+        LazyAccessLogRecord record = new LazyAccessLogRecord(StandardCharsets.UTF_8, format);
+
+        // WHEN
+        reset(record, "www.example.com:443 " + COMBINED_LINE);
+
+        // THEN
+        assertEquals("Combined Log Format with virtual host", format.getName());
+        assertEquals("www.example.com", record.getVirtualHost());
+        assertEquals("10.0.0.2", record.getHost());
+        assertEquals("/api", record.getSection());
+        assertEquals("Chrome", record.getUserAgentFamily());
+        // The port is optional.
+        reset(record, "www.example.org " + COMBINED_LINE);
+        assertEquals("www.example.org", record.getVirtualHost());
+    }
+
+    @Test
+    void scanTest_shouldSkipTheQuotedFieldsOutsideOfTheProjection() throws AccessLogParseException {
+        // GIVEN
+        LazyAccessLogRecord record = new LazyAccessLogRecord(StandardCharsets.UTF_8,
+                new CombinedLogFormat(EnumSet.of(AccessLogField.HOST, AccessLogField.ENDPOINT)));
+
+        // WHEN
+        reset(record, COMBINED_LINE);
+
+        // THEN
+        assertEquals("10.0.0.2", record.getHost());
+        assertEquals("/api", record.getSection());
+        assertNull(record.getMethod());
+        assertNull(record.getUserAgent());
+        assertNull(record.getReferer());
+    }
+
+    @Test
+    void primeTest_shouldReadTheW3cDirectivesOfTheFile(@TempDir Path folder) throws IOException,
+            AccessLogParseException {
+        // GIVEN
+        Path logFile = folder.resolve("u_ex190509.log");
+        Files.write(logFile, Arrays.asList(
+                "#Software: Microsoft Internet Information Services 10.0",
+                "#Fields: date time cs-method cs-uri-stem c-ip cs(User-Agent) sc-status",
+                "2019-05-09 16:00:39 GET /a 10.0.0.1 curl/7.64.1 200"));
+        LogFormatDetector format = new LogFormatDetector();
+
+        // WHEN
+        LogFormatDetector.prime(format, logFile);
+
+        // THEN lines can be scanned without the directives.
+        LazyAccessLogRecord record = new LazyAccessLogRecord(StandardCharsets.UTF_8, format);
+        reset(record, "2019-05-09 16:00:40 POST /b/c 10.0.0.2 Googlebot/2.1 503");
+        assertEquals("W3C Extended Log Format", format.getName());
+        assertEquals(Instant.parse("2019-05-09T16:00:40Z").toEpochMilli(), record.getTimestamp());
+        assertEquals("/b", record.getSection());
+        assertEquals("Bot", record.getUserAgentFamily());
+        assertEquals(503, record.getStatus());
+    }
+
+    @Test
+    void extractTest_shouldClassifyUserAgentsAndRefererDomains() {
+        assertEquals("Edge", CommonLogFormatUtils.extractUserAgentFamily("Mozilla/5.0 (Windows NT 10.0; Win64; x64) "
+                + "AppleWebKit/537.36 (KHTML, like Gecko) Chrome/75.0.3770.100 Safari/537.36 Edg/75.0.139.20"));
+        assertEquals("Safari", CommonLogFormatUtils.extractUserAgentFamily("Mozilla/5.0 (iPhone; CPU iPhone OS 12_3 "
+                + "like Mac OS X) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/12.1.1 Mobile/15E148 Safari/604.1"));
+        assertEquals("Other", CommonLogFormatUtils.extractUserAgentFamily("-"));
+        assertEquals("example.com", CommonLogFormatUtils.extractDomain("http://example.com:8080/a?b"));
+        assertEquals("example.com", CommonLogFormatUtils.extractDomain("example.com/a"));
+        assertNull(CommonLogFormatUtils.extractDomain("/relative://x"));
+        assertNull(CommonLogFormatUtils.extractDomain("-"));
+    }
+
+    private static void reset(LazyAccessLogRecord record, String line) throws AccessLogParseException {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        assertTrue(record.reset(bytes, 0, bytes.length));
+    }
+
+}
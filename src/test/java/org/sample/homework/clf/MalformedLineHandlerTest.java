@@ -0,0 +1,63 @@
+package org.sample.homework.clf;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sample.homework.metrics.PipelineMetrics;
+import org.sample.homework.output.DeadLetterWriter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MalformedLineHandlerTest {
+
+    private final AccessLogParser parser = new RegexAccessLogParser();
+
+    @Test
+    void handleTest_shouldCountEveryFailureButLogOncePerInterval() {
+        // GIVEN
+        AtomicLong now = new AtomicLong(42);
+        MalformedLineHandler handler = new MalformedLineHandler(null, now::get);
+        PipelineMetrics metrics = PipelineMetrics.get();
+        long malformed = metrics.getParseErrors(AccessLogParseException.Reason.MALFORMED_LINE);
+
+        // WHEN
+        boolean first = handler.handle("foo", parse("foo"));
+        boolean second = handler.handle("bar", parse("bar"));
+        now.addAndGet(MalformedLineHandler.LOG_INTERVAL_NANOS);
+        boolean third = handler.handle("baz", parse("baz"));
+
+        // THEN
+        assertTrue(first);
+        assertFalse(second);
+        assertTrue(third);
+        assertEquals(malformed + 3, metrics.getParseErrors(AccessLogParseException.Reason.MALFORMED_LINE));
+    }
+
+    @Test
+    void handleTest_shouldQuarantineRejectedLines(@TempDir Path folder) throws IOException {
+        // GIVEN
+        Path quarantine = folder.resolve("rejected.log");
+        DeadLetterWriter deadLetters = new DeadLetterWriter(quarantine);
+        MalformedLineHandler handler = new MalformedLineHandler(deadLetters);
+
+        // WHEN
+        handler.handle("foo", parse("foo"));
+        handler.handle("bar", parse("bar"));
+        deadLetters.close();
+
+        // THEN
+        assertEquals(Arrays.asList("foo", "bar"), Files.readAllLines(quarantine, StandardCharsets.UTF_8));
+        assertEquals(0, deadLetters.getDropped());
+    }
+
+    private AccessLogParseException parse(String line) {
+        return assertThrows(AccessLogParseException.class, () -> parser.parse(line));
+    }
+
+}
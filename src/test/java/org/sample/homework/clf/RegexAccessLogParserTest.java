@@ -6,6 +6,7 @@ import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class RegexAccessLogParserTest {
@@ -46,4 +47,27 @@ class RegexAccessLogParserTest {
         assertThrows(AccessLogParseException.class, () -> parser.parse("127.0.0.1 - 200 2326"));
         assertThrows(AccessLogParseException.class, () -> parser.parse("/files/apache_pb.gif"));
     }
+
+    @Test
+    void parseAccessLogLineTest_shouldGiveTheFailureReasonWithoutStackTrace() {
+        // GIVEN
+        String malformed = "127.0.0.1 - 200 2326";
+        String invalidDate = "127.0.0.1 - frank [10/Foo/2000:13:55:36 -0700] \"GET /a HTTP/1.0\" 200 2326";
+        String invalidNumber = "127.0.0.1 - frank [10/Oct/2000:13:55:36 -0700] \"GET /a HTTP/1.0\" 200 99999999999";
+
+        // WHEN
+        AccessLogParseException malformedException =
+                assertThrows(AccessLogParseException.class, () -> parser.parse(malformed));
+        AccessLogParseException invalidDateException =
+                assertThrows(AccessLogParseException.class, () -> parser.parse(invalidDate));
+        AccessLogParseException invalidNumberException =
+                assertThrows(AccessLogParseException.class, () -> parser.parse(invalidNumber));
+
+        // THEN
+        assertEquals(AccessLogParseException.Reason.MALFORMED_LINE, malformedException.getReason());
+        assertEquals(AccessLogParseException.Reason.INVALID_DATE, invalidDateException.getReason());
+        assertEquals(AccessLogParseException.Reason.INVALID_NUMBER, invalidNumberException.getReason());
+        assertEquals(0, malformedException.getStackTrace().length);
+        assertFalse(malformedException.getMessage().contains(malformed));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,92 @@
+package org.sample.homework.clf;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.EnumSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class W3cExtendedLogFormatTest {
+
+    private static final String FIELDS = "#Fields: date time s-ip cs-method cs-uri-stem cs-uri-query s-port "
+            + "cs-username c-ip cs(User-Agent) cs(Referer) sc-status sc-substatus sc-bytes time-taken";
+
+    @Test
+    void scanTest_shouldMapColumnsFromTheFieldsDirective() throws AccessLogParseException {
+        // GIVEN
+        LazyAccessLogRecord record = new LazyAccessLogRecord(StandardCharsets.UTF_8, new W3cExtendedLogFormat());
+
+        // WHEN
+        boolean software = reset(record, "#Software: Microsoft Internet Information Services 10.0");
+        boolean fields = reset(record, FIELDS);
+        boolean line = reset(record, "2019-05-09 16:00:39 10.0.0.1 GET /pages/create id=1 443 frank 10.0.0.2 "
+                + "Mozilla/5.0+(Windows+NT+10.0;+Win64;+x64;+rv:67.0)+Gecko/20100101+Firefox/67.0 "
+                + "https://www.example.com/home 404 0 2326 15");
+
+        // THEN
+        assertFalse(software);
+        assertFalse(fields);
+        assertTrue(line);
+        assertEquals(Instant.parse("2019-05-09T16:00:39Z").toEpochMilli(), record.getTimestamp());
+        assertEquals("10.0.0.2", record.getHost());
+        assertEquals("frank", record.getUser());
+        assertEquals("GET", record.getMethod());
+        assertEquals("/pages", record.getSection());
+        assertEquals(404, record.getStatus());
+        assertEquals(2326, record.getBytes());
+        assertEquals("Firefox", record.getUserAgentFamily());
+        assertEquals("www.example.com", record.getRefererDomain());
+        assertNull(record.getProtocol());
+    }
+
+    @Test
+    void scanTest_shouldOnlyScanTheProjectedColumns() throws AccessLogParseException {
+        // GIVEN a projection without the user agent and the referer.
+        LazyAccessLogRecord record = new LazyAccessLogRecord(StandardCharsets.UTF_8,
+                new W3cExtendedLogFormat(EnumSet.of(AccessLogField.HOST, AccessLogField.ENDPOINT)));
+        reset(record, "#Fields: date time c-ip cs-uri-stem sc-status cs(User-Agent) cs(Referer)");
+
+        // WHEN the columns following the status are missing.
+        reset(record, "2019-05-09 16:00:39 10.0.0.2 /a/b 200");
+
+        // THEN
+        assertEquals("10.0.0.2", record.getHost());
+        assertEquals("/a", record.getSection());
+        assertEquals(200, record.getStatus());
+        assertEquals(0, record.getBytes());
+        assertNull(record.getMethod());
+        assertNull(record.getUserAgent());
+        assertNull(record.getRefererDomain());
+    }
+
+    @Test
+    void scanTest_shouldRejectInvalidLinesWithTheirReason() throws AccessLogParseException {
+        LazyAccessLogRecord record = new LazyAccessLogRecord(StandardCharsets.UTF_8, new W3cExtendedLogFormat());
+        assertEquals(AccessLogParseException.Reason.MALFORMED_LINE,
+                reasonOf(record, "2019-05-09 16:00:39 GET /a 200"));
+        assertEquals(AccessLogParseException.Reason.MALFORMED_LINE,
+                reasonOf(record, "#Fields: date cs-method cs-uri-stem sc-status"));
+
+        reset(record, "#Fields: date time cs-method cs-uri-stem sc-status sc-bytes");
+        assertEquals(AccessLogParseException.Reason.MALFORMED_LINE, reasonOf(record, "2019-05-09 16:00:39 GET /a 200"));
+        assertEquals(AccessLogParseException.Reason.MALFORMED_LINE,
+                reasonOf(record, "2019-05-09 16:00:39 GET /a 2000 1"));
+        assertEquals(AccessLogParseException.Reason.INVALID_DATE,
+                reasonOf(record, "2019-02-30 16:00:39 GET /a 200 1"));
+        assertEquals(AccessLogParseException.Reason.INVALID_DATE, reasonOf(record, "2019-05-09 24:00:00 GET /a 200 1"));
+        assertEquals(AccessLogParseException.Reason.INVALID_NUMBER,
+                reasonOf(record, "2019-05-09 16:00:39 GET /a 200 99999999999"));
+    }
+
+    private static boolean reset(LazyAccessLogRecord record, String line) throws AccessLogParseException {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        return record.reset(bytes, 0, bytes.length);
+    }
+
+    private static AccessLogParseException.Reason reasonOf(LazyAccessLogRecord record, String line) {
+        return assertThrows(AccessLogParseException.class, () -> reset(record, line)).getReason();
+    }
+
+}
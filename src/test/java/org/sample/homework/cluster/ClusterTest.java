@@ -0,0 +1,217 @@
+package org.sample.homework.cluster;
+
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import org.junit.jupiter.api.Test;
+import org.sample.homework.sketch.HyperLogLog;
+import org.sample.homework.sketch.TopKSketch;
+import org.sample.homework.stats.TrafficStatistics;
+import org.sample.homework.util.VarInts;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClusterTest {
+
+    private static final int PERIOD = 10;
+
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    @Test
+    void aggregateTest_shouldMergePartialsOfEveryAgent() throws Exception {
+        // GIVEN
+        BlockingQueue<TrafficStatistics> published = new LinkedBlockingQueue<>();
+        try (ClusterAggregator aggregator = startAggregator(published, Duration.ofSeconds(30))) {
+            List<ClusterAgent> agents = startAgents(aggregator, 3);
+            try {
+                // WHEN
+                for (int i = 0; i < agents.size(); i++) {
+                    agents.get(i).handleTrafficStatistics(partial(1557417610, i, 100));
+                }
+                TrafficStatistics statistics = published.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+
+                // THEN
+                assertNotNull(statistics);
+                assertEquals(Instant.ofEpochSecond(1557417610), statistics.getWindowEnd());
+                assertEquals(Instant.ofEpochSecond(1557417600), statistics.getWindowStart());
+                assertEquals(300, statistics.getTotalRequestCount());
+                assertEquals(300, statistics.getValidRequestCount());
+                assertEquals(30_000, statistics.getBytesTransferred());
+                assertEquals(240, statistics.getHitsByStatusClass()[1]);
+                assertEquals(60, statistics.getHitsByStatusClass()[4]);
+                assertEquals(Integer.valueOf(300), statistics.getHitsByMethod().get("GET"));
+                // Every agent has its own section, and they all share "/api".
+                assertEquals("/api", statistics.getHitsBySection().get(0).getKey());
+                assertEquals(Integer.valueOf(180), statistics.getHitsBySection().get(0).getValue());
+                assertEquals(4, statistics.getHitsBySection().size());
+                assertEquals("Chrome", statistics.getHitsByUserAgentFamily().get(0).getKey());
+                assertEquals(Integer.valueOf(300), statistics.getHitsByUserAgentFamily().get(0).getValue());
+                // Every agent sees 150 distinct hosts: 50 of its own, and 100 shared ones.
+                assertEquals(250, statistics.getUniqueHosts(), 250 * 0.05);
+            } finally {
+                close(agents);
+            }
+        }
+    }
+
+    @Test
+    void aggregateTest_shouldNotWaitForMissingAgentsAfterLateness() throws Exception {
+        // GIVEN
+        BlockingQueue<TrafficStatistics> published = new LinkedBlockingQueue<>();
+        try (ClusterAggregator aggregator = startAggregator(published, Duration.ofMillis(300))) {
+            List<ClusterAgent> agents = startAgents(aggregator, 2);
+            try {
+                // WHEN
+                agents.get(0).handleTrafficStatistics(partial(1557417610, 0, 100));
+                TrafficStatistics statistics = published.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                agents.get(1).handleTrafficStatistics(partial(1557417610, 1, 100));
+                agents.get(0).handleTrafficStatistics(partial(1557417630, 0, 10));
+                agents.get(1).handleTrafficStatistics(partial(1557417630, 1, 20));
+                TrafficStatistics gap = published.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                TrafficStatistics next = published.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+
+                // THEN
+                assertNotNull(statistics);
+                assertEquals(100, statistics.getTotalRequestCount());
+                // The partial of the slow agent arrived after its bucket was published.
+                assertEquals(1, aggregator.getLatePartials());
+                // No agent reported the window in between.
+                assertNotNull(gap);
+                assertEquals(Instant.ofEpochSecond(1557417620), gap.getWindowEnd());
+                assertEquals(0, gap.getTotalRequestCount());
+                assertNotNull(next);
+                assertEquals(Instant.ofEpochSecond(1557417630), next.getWindowEnd());
+                assertEquals(30, next.getTotalRequestCount());
+            } finally {
+                close(agents);
+            }
+        }
+    }
+
+    @Test
+    void codecTest_shouldRoundTripPartials() {
+        // GIVEN
+        TrafficStatistics partial = partial(1557417610, 1, 100);
+        ByteBuffer buffer = ByteBuffer.allocate(ClusterCodec.MAX_FRAME_SIZE);
+
+        // WHEN
+        ClusterCodec.encodePartial(buffer, partial);
+        buffer.flip();
+        TrafficStatistics decoded = ClusterCodec.decodePartial(buffer);
+
+        // THEN
+        assertFalse(buffer.hasRemaining());
+        assertEquals(partial.getWindowStart(), decoded.getWindowStart());
+        assertEquals(partial, decoded);
+        assertEquals(partial.getSectionSketch().getHits(), decoded.getSectionSketch().getHits());
+        assertEquals(partial.getHostSketch().estimate(), decoded.getHostSketch().estimate());
+    }
+
+    @Test
+    void codecTest_shouldRejectCorruptHitsBySecond() {
+        // GIVEN a partial whose number of seconds is way larger than the frame.
+        ByteBuffer buffer = ByteBuffer.allocate(ClusterCodec.MAX_FRAME_SIZE);
+        ClusterCodec.encodePartial(buffer, partial(1557417610, 1, 100));
+        // Overwrite the empty hits by second, the last field of the frame.
+        buffer.position(buffer.position() - 1);
+        VarInts.writeUnsigned(buffer, Integer.MAX_VALUE);
+        buffer.putInt(0);
+        buffer.flip();
+
+        // WHEN
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> ClusterCodec.decodePartial(buffer));
+
+        // THEN
+        assertEquals("Invalid number of seconds " + Integer.MAX_VALUE + "!", exception.getMessage());
+    }
+
+    private static ClusterAggregator startAggregator(BlockingQueue<TrafficStatistics> published, Duration lateness)
+            throws IOException {
+        EventBus eventBus = new EventBus();
+        eventBus.register(new Object() {
+            @Subscribe
+            public void handleTrafficStatistics(TrafficStatistics statistics) {
+                published.add(statistics);
+            }
+        });
+        ClusterAggregator aggregator = new ClusterAggregator(0, PERIOD, lateness, eventBus);
+        aggregator.start();
+        return aggregator;
+    }
+
+    /**
+     * Starts agents and waits for them to be connected, so that the aggregator waits for their partials.
+     */
+    private static List<ClusterAgent> startAgents(ClusterAggregator aggregator, int count)
+            throws InterruptedException {
+        List<ClusterAgent> agents = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ClusterAgent agent = new ClusterAgent("agent-" + i, "localhost", aggregator.getPort());
+            agent.start();
+            agents.add(agent);
+        }
+        await(() -> aggregator.getConnectedAgents() == count);
+        return agents;
+    }
+
+    private static void close(List<ClusterAgent> agents) throws IOException {
+        for (ClusterAgent agent : agents) {
+            agent.close();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Creates the statistics of an agent: 60% of its requests hit "/api" and the others its own section, from 50
+     * hosts of its own and 100 hosts shared by every agent.
+     */
+    private static TrafficStatistics partial(long windowEnd, int agent, int requests) {
+        TrafficStatistics statistics = new TrafficStatistics();
+        statistics.setWindowStart(Instant.ofEpochSecond(windowEnd - PERIOD));
+        statistics.setWindowEnd(Instant.ofEpochSecond(windowEnd));
+        statistics.setTotalRequestCount(requests);
+        statistics.setValidRequestCount(requests);
+        statistics.setBytesTransferred(requests * 100L);
+        statistics.getHitsByStatusClass()[1] = requests * 4 / 5;
+        statistics.getHitsByStatusClass()[4] = requests / 5;
+        statistics.getHitsByMethod().put("GET", requests);
+        Map<String, Integer> sections = new HashMap<>();
+        sections.put("/api", requests * 3 / 5);
+        sections.put("/agent" + agent, requests * 2 / 5);
+        statistics.setSectionSketch(new TopKSketch(sections, 0));
+        statistics.getHitsBySection().addAll(statistics.getSectionSketch().top(5));
+        statistics.getHitsByUserAgentFamily().add(new AbstractMap.SimpleImmutableEntry<>("Chrome", requests));
+        HyperLogLog hosts = new HyperLogLog();
+        for (int i = 0; i < 50; i++) {
+            hosts.add("10.0." + agent + "." + i);
+        }
+        for (int i = 0; i < 100; i++) {
+            hosts.add("192.168.0." + i);
+        }
+        statistics.setHostSketch(hosts);
+        statistics.setUniqueHosts((int) hosts.estimate());
+        return statistics;
+    }
+
+}
@@ -0,0 +1,236 @@
+package org.sample.homework.history;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sample.homework.alerts.TrafficAlert;
+import org.sample.homework.stats.TrafficStatistics;
+import org.sample.homework.util.VarInts;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistoryTest {
+
+    private static final Instant START = Instant.parse("2019-05-09T16:00:00Z");
+
+    /**
+     * Collects the events returned by a query.
+     */
+    private static class Collector implements HistoryListener {
+
+        private final List<TrafficStatistics> statistics = new ArrayList<>();
+        private final List<TrafficAlert> alerts = new ArrayList<>();
+
+        @Override
+        public void handleTrafficStatistics(TrafficStatistics statistics) {
+            this.statistics.add(statistics);
+        }
+
+        @Override
+        public void handleTrafficAlert(TrafficAlert alert) {
+            alerts.add(alert);
+        }
+    }
+
+    @Test
+    void queryTest_nominal(@TempDir Path folder) throws IOException {
+        // GIVEN 3 hours of statistics every 10 seconds, and an alert at the middle.
+        List<TrafficStatistics> written = new ArrayList<>();
+        try (HistoryWriter writer = new HistoryWriter(folder)) {
+            for (int i = 0; i < 3 * 360; i++) {
+                if (i == 540) {
+                    // Written in time order, within the window frame ending at 5410.
+                    writer.handleTrafficAlert(new TrafficAlert(TrafficAlert.AlertType.HIGH_TRAFFIC, 12.5f,
+                            ZonedDateTime.ofInstant(START.plusSeconds(5401), ZoneId.systemDefault())));
+                }
+                TrafficStatistics statistics = createTrafficStatistics(START.plusSeconds(10L * i), i);
+                writer.handleTrafficStatistics(statistics);
+                written.add(statistics);
+            }
+        }
+
+        // WHEN
+        Collector collector = new Collector();
+        new HistoryReader(folder).query(START.plusSeconds(5000), START.plusSeconds(6000), collector);
+
+        // THEN
+        assertEquals(written.subList(499, 599), collector.statistics);
+        assertEquals(1, collector.alerts.size());
+        assertEquals(TrafficAlert.AlertType.HIGH_TRAFFIC, collector.alerts.get(0).getType());
+        assertEquals(12.5f, collector.alerts.get(0).getHitsPerSecond());
+        assertEquals(START.plusSeconds(5401), collector.alerts.get(0).getTime().toInstant());
+    }
+
+    @Test
+    void writeTest_shouldRecoverFromTornSegment(@TempDir Path folder) throws IOException {
+        // GIVEN a segment whose last event is torn.
+        try (HistoryWriter writer = new HistoryWriter(folder)) {
+            writer.handleTrafficStatistics(createTrafficStatistics(START.plusSeconds(10), 1));
+            writer.handleTrafficStatistics(createTrafficStatistics(START.plusSeconds(20), 2));
+        }
+        Path segment = folder.resolve(HistoryCodec.segmentName(START.toEpochMilli()) + HistoryCodec.SEGMENT_SUFFIX);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        // WHEN
+        TrafficStatistics appended = createTrafficStatistics(START.plusSeconds(30), 3);
+        try (HistoryWriter writer = new HistoryWriter(folder)) {
+            writer.handleTrafficStatistics(appended);
+        }
+
+        // THEN
+        Collector collector = new Collector();
+        new HistoryReader(folder).query(START, START.plusSeconds(3600), collector);
+        assertEquals(2, collector.statistics.size());
+        assertEquals(createTrafficStatistics(START.plusSeconds(10), 1), collector.statistics.get(0));
+        assertEquals(appended, collector.statistics.get(1));
+    }
+
+    @Test
+    void queryTest_shouldKeepOutOfOrderEventsInRange(@TempDir Path folder) throws IOException {
+        // GIVEN an alert dated before the statistics written just before it, and a restart writing past statistics.
+        try (HistoryWriter writer = new HistoryWriter(folder)) {
+            writer.handleTrafficStatistics(createTrafficStatistics(START.plusSeconds(10), 1));
+            writer.handleTrafficStatistics(createTrafficStatistics(START.plusSeconds(20), 2));
+            writer.handleTrafficAlert(new TrafficAlert(TrafficAlert.AlertType.HIGH_TRAFFIC, 12.5f,
+                    ZonedDateTime.ofInstant(START.plusSeconds(25), ZoneId.systemDefault())));
+            writer.handleTrafficStatistics(createTrafficStatistics(START.plusSeconds(30), 3));
+        }
+        try (HistoryWriter writer = new HistoryWriter(folder)) {
+            writer.handleTrafficStatistics(createTrafficStatistics(START, 4));
+            writer.handleTrafficStatistics(createTrafficStatistics(START.plusSeconds(40), 5));
+        }
+
+        // WHEN
+        Collector all = new Collector();
+        new HistoryReader(folder).query(START, START.plusSeconds(3600), all);
+        Collector latest = new Collector();
+        new HistoryReader(folder).query(START.plusSeconds(35), START.plusSeconds(3600), latest);
+
+        // THEN
+        // Events older than the last written one are dated by the last written timestamp.
+        assertEquals(5, all.statistics.size());
+        assertEquals(1, all.alerts.size());
+        assertEquals(START.plusSeconds(30), all.alerts.get(0).getTime().toInstant());
+        assertEquals(4, all.statistics.get(3).getTotalRequestCount());
+        assertEquals(3, latest.statistics.size());
+        assertEquals(3, latest.statistics.get(0).getTotalRequestCount());
+        assertEquals(4, latest.statistics.get(1).getTotalRequestCount());
+        assertEquals(5, latest.statistics.get(2).getTotalRequestCount());
+    }
+
+    @Test
+    void codecTest_shouldDecodeEventsWrittenBeforeTheLaterFields() {
+        // GIVEN statistics encoded before the user agents, referers, subnets, hits per second and status classes.
+        List<String> dictionary = Arrays.asList("/api", "GET");
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        for (long value : new long[]{10_000, 12, 6, 12_000, 3, 1, 0, 12, 1, 1, 12}) {
+            VarInts.writeUnsigned(buffer, value);
+        }
+        buffer.flip();
+
+        // WHEN
+        TrafficStatistics statistics = HistoryCodec.decodeStatistics(buffer, START.toEpochMilli(), dictionary);
+
+        // THEN
+        assertEquals(START.minusSeconds(10), statistics.getWindowStart());
+        assertEquals(12, statistics.getTotalRequestCount());
+        assertEquals(3, statistics.getUniqueHosts());
+        assertEquals(Collections.singletonList(new AbstractMap.SimpleImmutableEntry<>("/api", 12)),
+                statistics.getHitsBySection());
+        assertEquals(Collections.singletonMap("GET", 12), statistics.getHitsByMethod());
+        assertArrayEquals(new int[5], statistics.getHitsByStatusClass());
+    }
+
+    @Test
+    void codecTest_shouldDecodeTheStatusClasses() {
+        // GIVEN
+        TrafficStatistics statistics = createTrafficStatistics(START, 12);
+        statistics.getHitsByStatusClass()[1] = 9;
+        statistics.getHitsByStatusClass()[3] = 2;
+        statistics.getHitsByStatusClass()[4] = 1;
+        List<String> dictionary = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+
+        // WHEN
+        HistoryCodec.encodeStatistics(buffer, statistics, key -> {
+            dictionary.add(key);
+            return dictionary.size() - 1;
+        });
+        buffer.flip();
+        TrafficStatistics decoded =
+                HistoryCodec.decodeStatistics(buffer, statistics.getWindowEnd().toEpochMilli(), dictionary);
+
+        // THEN
+        assertArrayEquals(new int[]{0, 9, 0, 2, 1}, decoded.getHitsByStatusClass());
+        assertEquals(statistics.getHitsBySection(), decoded.getHitsBySection());
+        assertEquals(statistics.getHitsByRefererDomain(), decoded.getHitsByRefererDomain());
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    void codecTest_shouldDecodeWhetherTheAlertIsEstimated() {
+        // GIVEN
+        ZonedDateTime time = ZonedDateTime.ofInstant(START, ZoneId.systemDefault());
+        TrafficAlert alert = new TrafficAlert(TrafficAlert.AlertType.HIGH_TRAFFIC, 12.5f, time, true);
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+
+        // WHEN
+        HistoryCodec.encodeAlert(buffer, alert);
+        buffer.flip();
+        TrafficAlert decoded = HistoryCodec.decodeAlert(buffer, START.toEpochMilli());
+
+        // THEN
+        assertTrue(decoded.isEstimated());
+        assertEquals(alert.getMessage(), decoded.getMessage());
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    void codecTest_shouldDecodeAlertsWrittenBeforeTheEstimatedFlag() {
+        // GIVEN an alert encoded with its type and rate only.
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        buffer.put((byte) TrafficAlert.AlertType.HIGH_TRAFFIC.ordinal());
+        buffer.putFloat(12.5f);
+        buffer.flip();
+
+        // WHEN
+        TrafficAlert decoded = HistoryCodec.decodeAlert(buffer, START.toEpochMilli());
+
+        // THEN
+        assertEquals(TrafficAlert.AlertType.HIGH_TRAFFIC, decoded.getType());
+        assertEquals(12.5f, decoded.getHitsPerSecond());
+        assertFalse(decoded.isEstimated());
+    }
+
+    private static TrafficStatistics createTrafficStatistics(Instant windowStart, int hits) {
+        TrafficStatistics statistics = new TrafficStatistics();
+        statistics.setWindowStart(windowStart);
+        statistics.setWindowEnd(windowStart.plusSeconds(10));
+        statistics.setTotalRequestCount(hits);
+        statistics.setValidRequestCount(hits / 2);
+        statistics.setBytesTransferred(hits * 1000L);
+        statistics.setUniqueHosts(hits % 7);
+        statistics.getHitsBySection().add(new AbstractMap.SimpleImmutableEntry<>("/api", hits));
+        statistics.getHitsBySection().add(new AbstractMap.SimpleImmutableEntry<>("/section" + hits % 13, hits / 2));
+        statistics.getHitsByMethod().put("GET", hits);
+        statistics.getHitsByMethod().put("POST", hits / 3);
+        statistics.getHitsByUserAgentFamily().add(new AbstractMap.SimpleImmutableEntry<>("Chrome", hits / 2));
+        statistics.getHitsByRefererDomain().add(new AbstractMap.SimpleImmutableEntry<>("example.com", hits / 4));
+        return statistics;
+    }
+}
@@ -0,0 +1,80 @@
+package org.sample.homework.loadgen;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sample.homework.clf.AccessLogParseException;
+import org.sample.homework.clf.RegexAccessLogParser;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SyntheticLogWriterTest {
+
+    @Test
+    void targetLinesTest_shouldAddBursts() {
+        // GIVEN 100 lines/s, 5 times more during the first 2 seconds of every 10 seconds.
+        LoadProfile profile = new LoadProfile();
+        profile.setLinesPerSecond(100);
+        profile.setBurstFactor(5);
+        profile.setBurstPeriodSeconds(10);
+        profile.setBurstDurationSeconds(2);
+        SyntheticLogWriter writer = new SyntheticLogWriter(Paths.get("unused"), profile, 1);
+
+        // THEN
+        assertEquals(500, writer.targetLines(1_000_000_000L));
+        assertEquals(1000 + 800, writer.targetLines(10_000_000_000L));
+        assertEquals(1100 + 800 + 400, writer.targetLines(11_000_000_000L));
+    }
+
+    @Test
+    void runTest_shouldWriteParsableLinesAndRotate(@TempDir Path folder) throws IOException, AccessLogParseException {
+        // GIVEN
+        Path file = folder.resolve("access.log");
+        LoadProfile profile = new LoadProfile();
+        profile.setLinesPerSecond(0);
+        profile.setMalformedPercent(10);
+        profile.setRotateEveryLines(1000);
+        SyntheticLogWriter writer = new SyntheticLogWriter(file, profile, 1);
+
+        // WHEN
+        long before = System.nanoTime();
+        writer.run();
+
+        // THEN
+        assertTrue(writer.getRotations() > 0);
+        List<String> lines = Files.readAllLines(file.resolveSibling("access.log.1"));
+        assertEquals(1000, lines.size());
+        RegexAccessLogParser parser = new RegexAccessLogParser();
+        int malformed = 0;
+        for (String line : lines) {
+            if (line.startsWith("malformed")) {
+                ++malformed;
+                continue;
+            }
+            long writeTime = SyntheticLogWriter.writeTimeOf(parser.parse(line).getEndpoint());
+            assertTrue(writeTime >= before && writeTime <= System.nanoTime());
+        }
+        assertTrue(malformed > 50 && malformed < 150, "malformed " + malformed);
+    }
+
+    @Test
+    void writeTimeOfTest_shouldReadTheEndpointBytes() {
+        // GIVEN
+        byte[] line = "\"GET /section1/page2?t=123456789 HTTP/1.1\"".getBytes(StandardCharsets.US_ASCII);
+
+        // THEN
+        assertEquals(123456789L, SyntheticLogWriter.writeTimeOf(line, 5, 32));
+        assertEquals(-42L, SyntheticLogWriter.writeTimeOf("/page?t=-42"));
+        assertEquals(-1L, SyntheticLogWriter.writeTimeOf(line, 5, 22));
+        assertEquals(-1L, SyntheticLogWriter.writeTimeOf("/section1/page2"));
+        assertEquals(-1L, SyntheticLogWriter.writeTimeOf("/page?s=12"));
+        assertEquals(-1L, SyntheticLogWriter.writeTimeOf("/page?t=99999999999999999999"));
+    }
+
+}
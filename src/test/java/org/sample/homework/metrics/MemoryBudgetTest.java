@@ -0,0 +1,63 @@
+package org.sample.homework.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemoryBudgetTest {
+
+    @Test
+    void tryReserveTest_shouldRefuseWhatExceedsTheBudget() {
+        // GIVEN
+        MemoryBudget budget = new MemoryBudget();
+        budget.setLimit(1000);
+
+        // WHEN
+        boolean first = budget.tryReserve(MemoryBudget.Component.DEAD_LETTERS, 700);
+        boolean second = budget.tryReserve(MemoryBudget.Component.DEAD_LETTERS, 400);
+
+        // THEN
+        assertTrue(first);
+        assertFalse(second);
+        assertEquals(700, budget.getUsed());
+        assertEquals(700, budget.getUsed(MemoryBudget.Component.DEAD_LETTERS));
+    }
+
+    @Test
+    void reserveTest_shouldReportPressureUntilReleased() {
+        // GIVEN
+        MemoryBudget budget = new MemoryBudget();
+        budget.setLimit(1000);
+
+        // WHEN
+        budget.reserve(MemoryBudget.Component.WINDOWS, 600);
+        boolean belowRatio = budget.isUnderPressure();
+        budget.reserve(MemoryBudget.Component.ALERTS, 1200);
+        boolean aboveLimit = budget.isUnderPressure();
+        budget.release(MemoryBudget.Component.ALERTS, 1200);
+
+        // THEN
+        assertFalse(belowRatio);
+        assertTrue(aboveLimit);
+        assertFalse(budget.isUnderPressure());
+        assertEquals(600, budget.getUsed());
+        assertEquals(Long.valueOf(600), budget.getUsedByComponent().get("WINDOWS"));
+        assertEquals(Long.valueOf(0), budget.getUsedByComponent().get("ALERTS"));
+    }
+
+    @Test
+    void isUnderPressureTest_shouldNeverBeUnderPressureWithoutBudget() {
+        // GIVEN
+        MemoryBudget budget = new MemoryBudget();
+
+        // WHEN
+        budget.reserve(MemoryBudget.Component.SERIES, Long.MAX_VALUE / 2);
+
+        // THEN
+        assertFalse(budget.isLimited());
+        assertFalse(budget.isUnderPressure());
+        assertTrue(budget.tryReserve(MemoryBudget.Component.SERIES, 1));
+        assertThrows(IllegalArgumentException.class, () -> budget.setLimit(0));
+    }
+
+}
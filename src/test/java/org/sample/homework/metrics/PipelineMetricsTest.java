@@ -0,0 +1,116 @@
+package org.sample.homework.metrics;
+
+import com.google.common.eventbus.EventBus;
+import org.junit.jupiter.api.Test;
+import org.sample.homework.clf.AccessLogRecord;
+import org.sample.homework.stats.TrafficStatisticsManager;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PipelineMetricsTest {
+
+    @Test
+    void timerTest_shouldTrackCountMeanAndMax() {
+        // GIVEN
+        PipelineTimer timer = new PipelineTimer();
+
+        // WHEN
+        timer.record(10);
+        timer.record(30);
+        timer.record(20);
+
+        // THEN
+        assertEquals(3, timer.getCount());
+        assertEquals(60, timer.getTotal());
+        assertEquals(20, timer.getMean(), 1e-9);
+        assertEquals(30, timer.getMax());
+    }
+
+    @Test
+    void statisticsManagerTest_shouldTrackBufferedRecordsTicksAndLag() {
+        // GIVEN
+        PipelineMetrics metrics = PipelineMetrics.get();
+        TrafficStatisticsManager manager = new TrafficStatisticsManager(10, new EventBus());
+        Instant start = Instant.now().minusSeconds(60);
+        long buffered = metrics.getBufferedRecords();
+        long ticks = metrics.getTickTimer().getCount();
+        long lags = metrics.getRecordLagTimer().getCount();
+
+        // WHEN
+        manager.advanceTo(start);
+        for (int i = 0; i < 3; i++) {
+            manager.handleAccessLogRecord(AccessLogRecord.builder()
+                    .dateTime(ZonedDateTime.ofInstant(start.plusSeconds(i), ZoneOffset.UTC))
+                    .method("GET")
+                    .endpoint("/a/b")
+                    .status(200)
+                    .build());
+        }
+        long bufferedBeforeTick = metrics.getBufferedRecords() - buffered;
+        manager.flush();
+
+        // THEN
+        assertEquals(3, bufferedBeforeTick);
+        assertEquals(buffered, metrics.getBufferedRecords());
+        assertEquals(ticks + 1, metrics.getTickTimer().getCount());
+        assertEquals(lags + 3, metrics.getRecordLagTimer().getCount());
+        // Records are a minute old.
+        assertTrue(metrics.getRecordLagMaxMillis() >= 58_000);
+    }
+
+    @Test
+    void statisticsManagerTest_shouldLeaveTheMetricsToTheWholeTraffic() {
+        // GIVEN the statistics manager of a tenant, whose records are also counted in the whole traffic.
+        PipelineMetrics metrics = PipelineMetrics.get();
+        TrafficStatisticsManager manager = new TrafficStatisticsManager(10, new EventBus(), false, 2, "a.example.com");
+        Instant start = Instant.now().minusSeconds(60);
+        long buffered = metrics.getBufferedRecords();
+        long published = metrics.getStatisticsPublished();
+        long ticks = metrics.getTickTimer().getCount();
+        long lags = metrics.getRecordLagTimer().getCount();
+
+        // WHEN
+        manager.advanceTo(start);
+        manager.handleAccessLogRecord(AccessLogRecord.builder()
+                .dateTime(ZonedDateTime.ofInstant(start, ZoneOffset.UTC))
+                .method("GET")
+                .endpoint("/a/b")
+                .status(200)
+                .build());
+        long bufferedBeforeTick = metrics.getBufferedRecords() - buffered;
+        manager.flush();
+
+        // THEN
+        assertEquals(0, bufferedBeforeTick);
+        assertEquals(buffered, metrics.getBufferedRecords());
+        assertEquals(published, metrics.getStatisticsPublished());
+        assertEquals(ticks, metrics.getTickTimer().getCount());
+        assertEquals(lags, metrics.getRecordLagTimer().getCount());
+    }
+
+    @Test
+    void registerMBeanTest_shouldExposeCountersThroughJmx() throws Exception {
+        // GIVEN
+        PipelineMetrics metrics = PipelineMetrics.get();
+        metrics.incrementLinesRead();
+
+        // WHEN
+        metrics.registerMBean();
+        // Registering twice is harmless.
+        metrics.registerMBean();
+
+        // THEN
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        Object linesRead = server.getAttribute(new ObjectName(PipelineMetrics.OBJECT_NAME), "LinesRead");
+        assertEquals(metrics.getLinesRead(), linesRead);
+    }
+
+}
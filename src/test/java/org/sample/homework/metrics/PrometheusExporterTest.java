@@ -0,0 +1,75 @@
+package org.sample.homework.metrics;
+
+import com.google.common.eventbus.EventBus;
+import org.junit.jupiter.api.Test;
+import org.sample.homework.alerts.TrafficAlertManager;
+import org.sample.homework.stats.TrafficStatistics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.AbstractMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrometheusExporterTest {
+
+    @Test
+    void scrapeTest_shouldExposeLatestStatisticsAndAlertState() throws IOException {
+        // GIVEN
+        EventBus eventBus = new EventBus();
+        TrafficAlertManager alertManager = new TrafficAlertManager(12, 1, 120, eventBus);
+        eventBus.register(alertManager);
+        PrometheusExporter exporter = new PrometheusExporter(0, alertManager, new PipelineMetrics());
+        eventBus.register(exporter);
+        exporter.start();
+        try {
+            TrafficStatistics statistics = new TrafficStatistics();
+            statistics.setWindowEnd(Instant.ofEpochSecond(1557417610));
+            statistics.setTotalRequestCount(240);
+            statistics.setBytesTransferred(1024);
+            statistics.getHitsByStatusClass()[1] = 200;
+            statistics.getHitsByStatusClass()[4] = 40;
+            statistics.getHitsBySection().add(new AbstractMap.SimpleImmutableEntry<>("/a\"b", 240));
+            statistics.getHitsByMethod().put("GET", 240);
+
+            // WHEN
+            eventBus.post(statistics);
+            String body = scrape(exporter.getPort());
+
+            // THEN
+            assertTrue(body.contains("\nhomework_window_requests 240\n"), body);
+            assertTrue(body.contains("\nhomework_window_end_timestamp_seconds 1557417610\n"), body);
+            assertTrue(body.contains("\nhomework_window_requests_by_status_class{class=\"5xx\"} 40\n"), body);
+            assertTrue(body.contains("\nhomework_window_requests_by_section{section=\"/a\\\"b\"} 240\n"), body);
+            assertTrue(body.contains("\nhomework_alert_high_traffic 1\n"), body);
+            assertTrue(body.contains("\nhomework_alerts_total{type=\"high_traffic\"} 1\n"), body);
+            assertTrue(body.contains("# TYPE homework_lines_read_total counter\n"), body);
+            // Scrapes are served from the cache.
+            assertSame(exporter.getExposition(), exporter.getExposition());
+        } finally {
+            exporter.close();
+        }
+    }
+
+    private static String scrape(int port) throws IOException {
+        HttpURLConnection connection =
+                (HttpURLConnection) new URL("http://localhost:" + port + PrometheusExporter.PATH).openConnection();
+        assertEquals(200, connection.getResponseCode());
+        assertTrue(connection.getContentType().startsWith("text/plain; version=0.0.4"));
+        try (InputStream in = connection.getInputStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+}
@@ -0,0 +1,51 @@
+package org.sample.homework.output;
+
+import org.junit.jupiter.api.Test;
+import org.sample.homework.alerts.TrafficAlert;
+import org.sample.homework.stats.TrafficStatistics;
+
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.AbstractMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JsonLinesWriterTest {
+
+    @Test
+    void writeTest_nominal() {
+        // GIVEN
+        StringWriter output = new StringWriter();
+        JsonLinesWriter writer = new JsonLinesWriter(output);
+        TrafficStatistics statistics = new TrafficStatistics();
+        statistics.setWindowStart(Instant.parse("2019-05-09T16:00:00Z"));
+        statistics.setWindowEnd(Instant.parse("2019-05-09T16:00:10Z"));
+        statistics.setTotalRequestCount(3);
+        statistics.setValidRequestCount(2);
+        statistics.setBytesTransferred(512);
+        statistics.setUniqueHosts(1);
+        statistics.getHitsByStatusClass()[1] = 2;
+        statistics.getHitsByStatusClass()[3] = 1;
+        statistics.getHitsBySection().add(new AbstractMap.SimpleImmutableEntry<>("/a\"b\\\n", 3));
+        statistics.getHitsByMethod().put("GET", 3);
+        TrafficAlert alert = new TrafficAlert(TrafficAlert.AlertType.HIGH_TRAFFIC, 12.5f,
+                ZonedDateTime.of(2019, 5, 9, 16, 0, 10, 0, ZoneOffset.UTC));
+
+        // WHEN
+        writer.handleTrafficStatistics(statistics);
+        writer.handleTrafficAlert(alert);
+
+        // THEN
+        assertEquals("{\"type\":\"statistics\",\"windowStart\":\"2019-05-09T16:00:00Z\","
+                + "\"windowEnd\":\"2019-05-09T16:00:10Z\",\"totalRequests\":3,\"validRequests\":2,\"bytes\":512,"
+                + "\"uniqueHosts\":1,\"peakHitsPerSecond\":0,\"p95HitsPerSecond\":0,\"minHitsPerSecond\":0,"
+                + "\"statusClasses\":{\"1xx\":0,\"2xx\":2,\"3xx\":0,\"4xx\":1,\"5xx\":0},"
+                + "\"sections\":[{\"section\":\"/a\\\"b\\\\\\u000a\",\"hits\":3}],\"userAgents\":[],\"referers\":[],\"subnets\":[],"
+                + "\"methods\":{\"GET\":3}}\n"
+                + "{\"type\":\"alert\",\"alert\":\"HIGH_TRAFFIC\",\"hitsPerSecond\":12.5,"
+                + "\"time\":\"2019-05-09T16:00:10Z\"}\n", output.toString());
+    }
+
+}
@@ -0,0 +1,93 @@
+package org.sample.homework.reader;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PollingFileWatcherTest {
+
+    @Test
+    void pollTest_shouldResumeFromOffset(@TempDir Path folder) throws IOException {
+        // GIVEN a watcher resumed after the first line.
+        Path file = folder.resolve("access.log");
+        append(file, "first\r\nsecond\nthird");
+        List<String> lines = new ArrayList<>();
+        PollingFileWatcher watcher = new PollingFileWatcher(file.toString(), lines::add, 10, 7);
+
+        // WHEN
+        boolean read = watcher.poll();
+
+        // THEN
+        assertTrue(read);
+        assertEquals(Collections.singletonList("second"), lines);
+        // The incomplete last line is not consumed.
+        assertEquals(14, watcher.getPosition().getOffset());
+        assertEquals(FilePosition.fileKeyOf(file), watcher.getPosition().getFileKey());
+        assertFalse(watcher.poll());
+    }
+
+    @Test
+    void pollTest_shouldFollowRotatedFileFromItsBeginning(@TempDir Path folder) throws IOException {
+        // GIVEN a watcher following the end of a file.
+        Path file = folder.resolve("access.log");
+        append(file, "old\n");
+        List<String> lines = new ArrayList<>();
+        PollingFileWatcher watcher = new PollingFileWatcher(file.toString(), lines::add, 10);
+        watcher.poll();
+
+        // WHEN
+        // The file is moved, written a last incomplete line, and replaced by a new one.
+        append(file, "before rotation\n");
+        Files.move(file, folder.resolve("access.log.1"));
+        append(folder.resolve("access.log.1"), "last");
+        assertTrue(watcher.poll());
+        append(file, "after rotation\n");
+        assertTrue(watcher.poll());
+        assertTrue(watcher.poll());
+
+        // THEN
+        assertEquals(Arrays.asList("before rotation", "last", "after rotation"), lines);
+        assertEquals(FilePosition.fileKeyOf(file), watcher.getPosition().getFileKey());
+        assertEquals(15, watcher.getPosition().getOffset());
+    }
+
+    @Test
+    void pollTest_shouldReadTruncatedFileFromItsBeginning(@TempDir Path folder) throws IOException {
+        // GIVEN
+        Path file = folder.resolve("access.log");
+        append(file, "first\nsecond\n");
+        List<String> lines = new ArrayList<>();
+        PollingFileWatcher watcher = new PollingFileWatcher(file.toString(), lines::add, 10, 0);
+        watcher.poll();
+
+        // WHEN
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(0);
+        }
+        append(file, "third\n");
+        assertTrue(watcher.poll());
+        watcher.poll();
+
+        // THEN
+        assertEquals(Arrays.asList("first", "second", "third"), lines);
+        assertEquals(6, watcher.getPosition().getOffset());
+    }
+
+    private static void append(Path file, String content) throws IOException {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+    }
+
+}
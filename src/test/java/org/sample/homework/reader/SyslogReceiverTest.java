@@ -0,0 +1,90 @@
+package org.sample.homework.reader;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SyslogReceiverTest {
+
+    private static final String LINE =
+            "127.0.0.1 - james [09/May/2018:16:00:39 +0000] \"GET /report HTTP/1.0\" 200 123";
+
+    @Test
+    void payloadTest_shouldStripSyslogHeaders() {
+        assertEquals(LINE, payload("<190>Oct 19 12:00:00 web1 nginx: " + LINE));
+        assertEquals(LINE, payload("<190>Oct  9 12:00:00 web1 nginx[42]: " + LINE));
+        assertEquals(LINE, payload("<190>nginx: " + LINE));
+        assertEquals(LINE, payload("<190>1 2019-05-09T16:00:00.000Z web1 nginx 42 - - " + LINE));
+        assertEquals(LINE, payload("<190>1 2019-05-09T16:00:00Z web1 nginx - ID47 [a@1 b=\"[x\\]\"][c@1] " + LINE));
+        assertEquals("::1 - - [09/May/2018:16:00:39 +0000]", payload("<190>::1 - - [09/May/2018:16:00:39 +0000]"));
+        assertEquals(LINE, payload(LINE));
+    }
+
+    @Test
+    void receiveTest_shouldForwardPayloadsOfDatagramsAndStreams() throws Exception {
+        // GIVEN
+        BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        SyslogReceiver receiver = new SyslogReceiver(lines::add, address, address);
+        Thread thread = new Thread(() -> {
+            try {
+                receiver.start();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        thread.start();
+        try (DatagramSocket udp = new DatagramSocket();
+             Socket tcp = new Socket(InetAddress.getLoopbackAddress(), receiver.getTcpPort())) {
+            // WHEN
+            byte[] datagram = ("<190>Oct 19 12:00:00 web1 nginx: " + LINE + "\n").getBytes(StandardCharsets.UTF_8);
+            udp.send(new DatagramPacket(datagram, datagram.length, InetAddress.getLoopbackAddress(),
+                    receiver.getUdpPort()));
+            String received = lines.poll(10, TimeUnit.SECONDS);
+            String octetCounted = "<190>1 2019-05-09T16:00:00Z web1 nginx - - - " + LINE + " 3";
+            String stream = "<190>Oct 19 12:00:00 web1 nginx: " + LINE + " 1\r\n"
+                    + "<190>Oct 19 12:00:00 web1 nginx: " + LINE + " 2\n"
+                    + octetCounted.length() + " " + octetCounted
+                    + "<190>Oct 19 12:00:00 web1 nginx: " + LINE + " 4";
+            OutputStream out = tcp.getOutputStream();
+            byte[] bytes = stream.getBytes(StandardCharsets.UTF_8);
+            // Messages are split across segments.
+            for (int i = 0; i < bytes.length; i += 50) {
+                out.write(bytes, i, Math.min(50, bytes.length - i));
+                out.flush();
+                Thread.sleep(1);
+            }
+            tcp.shutdownOutput();
+
+            // THEN
+            assertEquals(LINE, received);
+            assertEquals(LINE + " 1", lines.poll(10, TimeUnit.SECONDS));
+            assertEquals(LINE + " 2", lines.poll(10, TimeUnit.SECONDS));
+            assertEquals(LINE + " 3", lines.poll(10, TimeUnit.SECONDS));
+            // The last message isn't terminated but the connection is closed.
+            assertEquals(LINE + " 4", lines.poll(10, TimeUnit.SECONDS));
+        } finally {
+            receiver.close();
+            thread.join(10_000);
+        }
+    }
+
+    private static String payload(String message) {
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        int start = SyslogMessages.payloadStart(bytes, 0, bytes.length);
+        return new String(bytes, start, bytes.length - start, StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,191 @@
+package org.sample.homework.replay;
+
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sample.homework.alerts.TrafficAlert;
+import org.sample.homework.alerts.TrafficAlertManager;
+import org.sample.homework.stats.TrafficStatistics;
+import org.sample.homework.stats.TrafficStatisticsManager;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogReplayerTest {
+
+    private static final DateTimeFormatter FORMATTER =
+            DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.ENGLISH).withZone(ZoneOffset.UTC);
+
+    private static final Instant START = Instant.parse("2019-05-09T16:00:00Z");
+
+    /**
+     * Collects the published events.
+     */
+    private static class Listener {
+
+        private final List<TrafficStatistics> statistics = new ArrayList<>();
+        private final List<TrafficAlert> alerts = new ArrayList<>();
+
+        @Subscribe
+        public void handleTrafficStatistics(TrafficStatistics event) {
+            statistics.add(event);
+        }
+
+        @Subscribe
+        public void handleTrafficAlert(TrafficAlert event) {
+            alerts.add(event);
+        }
+    }
+
+    @Test
+    void replayTest_shouldDriveAlertsFromRecordTimestamps(@TempDir Path folder) throws IOException {
+        // GIVEN 10 minutes of traffic at 5 hits/s with a 3 minute burst at 20 hits/s.
+        Path logFile = folder.resolve("access.log");
+        writeLog(logFile, 600, second -> second >= 120 && second < 300 ? 20 : 5);
+        EventBus eventBus = new EventBus();
+        VirtualClock clock = new VirtualClock(Instant.EPOCH, ZoneOffset.UTC);
+        TrafficStatisticsManager stats = new TrafficStatisticsManager(10, eventBus);
+        TrafficAlertManager alerts = new TrafficAlertManager(12, 10, 120, eventBus, clock);
+        Listener listener = new Listener();
+        eventBus.register(stats);
+        eventBus.register(alerts);
+        eventBus.register(listener);
+
+        // WHEN
+        new LogReplayer(eventBus, stats, clock, 0).replay(logFile, 0);
+        stats.flush();
+
+        // THEN
+        assertEquals(60, listener.statistics.size());
+        assertEquals(START.plusSeconds(600), listener.statistics.get(59).getWindowEnd());
+        assertEquals(2, listener.alerts.size());
+        // 10 hits/s on average over the last 2 minutes is exceeded once more than 40 seconds of the burst are seen.
+        assertEquals(TrafficAlert.AlertType.HIGH_TRAFFIC, listener.alerts.get(0).getType());
+        assertEquals(START.plusSeconds(170), listener.alerts.get(0).getTime().toInstant());
+        // It recovers once the last 2 minutes hold less than 40 seconds of the burst.
+        assertEquals(TrafficAlert.AlertType.RECOVERED, listener.alerts.get(1).getType());
+        assertEquals(START.plusSeconds(390), listener.alerts.get(1).getTime().toInstant());
+    }
+
+    @Test
+    void replayTest_shouldEvaluateWindowFramesAtTheirEndAfterAGap(@TempDir Path folder) throws IOException {
+        // GIVEN 3 minutes of traffic at 20 hits/s, then nothing until a single record 15 minutes after the start.
+        Path logFile = folder.resolve("access.log");
+        writeLog(logFile, 901, second -> second < 180 ? 20 : second == 900 ? 1 : 0);
+        EventBus eventBus = new EventBus();
+        VirtualClock clock = new VirtualClock(Instant.EPOCH, ZoneOffset.UTC);
+        TrafficStatisticsManager stats = new TrafficStatisticsManager(10, eventBus);
+        TrafficAlertManager alerts = new TrafficAlertManager(12, 10, 120, eventBus, clock);
+        Listener listener = new Listener();
+        List<Instant> publicationTimes = new ArrayList<>();
+        eventBus.register(stats);
+        eventBus.register(alerts);
+        eventBus.register(listener);
+        eventBus.register(new Object() {
+            @Subscribe
+            public void handleTrafficStatistics(TrafficStatistics event) {
+                publicationTimes.add(clock.instant());
+            }
+        });
+
+        // WHEN
+        new LogReplayer(eventBus, stats, clock, 0).replay(logFile, 0);
+
+        // THEN
+        // The window frames closed by the last record are published at their end, not at the record time.
+        assertEquals(90, listener.statistics.size());
+        for (int i = 0; i < listener.statistics.size(); i++) {
+            assertEquals(listener.statistics.get(i).getWindowEnd(), publicationTimes.get(i));
+        }
+        assertEquals(START.plusSeconds(900), clock.instant());
+        assertEquals(2, listener.alerts.size());
+        assertEquals(TrafficAlert.AlertType.HIGH_TRAFFIC, listener.alerts.get(0).getType());
+        assertEquals(START.plusSeconds(70), listener.alerts.get(0).getTime().toInstant());
+        // The last 2 minutes hold less than 60 seconds of traffic from the window frame ending at 250.
+        assertEquals(TrafficAlert.AlertType.RECOVERED, listener.alerts.get(1).getType());
+        assertEquals(START.plusSeconds(250), listener.alerts.get(1).getTime().toInstant());
+    }
+
+    @Test
+    void replayTest_shouldHonourSpeed(@TempDir Path folder) throws IOException {
+        // GIVEN 20 seconds of traffic replayed 50 times faster.
+        Path logFile = folder.resolve("access.log");
+        writeLog(logFile, 20, second -> 1);
+        EventBus eventBus = new EventBus();
+        VirtualClock clock = new VirtualClock(Instant.EPOCH, ZoneOffset.UTC);
+        TrafficStatisticsManager stats = new TrafficStatisticsManager(10, eventBus);
+        eventBus.register(stats);
+
+        // WHEN
+        long start = System.nanoTime();
+        new LogReplayer(eventBus, stats, clock, 50).replay(logFile, 0);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // THEN
+        assertTrue(elapsedMillis >= 19 * 1000 / 50, "elapsed " + elapsedMillis);
+        assertEquals(START.plusSeconds(19), clock.instant());
+    }
+
+    @Test
+    void replayTest_shouldCountTopUserAgentsAndReferers(@TempDir Path folder) throws IOException {
+        // GIVEN 10 seconds of Combined Log Format traffic.
+        Path logFile = folder.resolve("access.log");
+        try (BufferedWriter writer = Files.newBufferedWriter(logFile)) {
+            for (int second = 0; second < 10; second++) {
+                String date = FORMATTER.format(START.plusSeconds(second));
+                writer.write("127.0.0.1 - - [" + date + "] \"GET /a HTTP/1.1\" 200 1 \"https://example.com/\" "
+                        + "\"Mozilla/5.0 (X11; Linux x86_64; rv:67.0) Gecko/20100101 Firefox/67.0\"\n");
+                writer.write("127.0.0.1 - - [" + date + "] \"GET /a HTTP/1.1\" 200 1 \"-\" \"curl/7.64.1\"\n");
+                writer.write("127.0.0.1 - - [" + date + "] \"GET /a HTTP/1.1\" 200 1 \"http://other.org/x\" "
+                        + "\"Wget/1.20.3 (linux-gnu)\"\n");
+                writer.write("127.0.0.1 - - [" + date + "] \"GET /a HTTP/1.1\" 200 1 \"-\" \"curl/7.64.1\"\n");
+            }
+        }
+        EventBus eventBus = new EventBus();
+        TrafficStatisticsManager stats = new TrafficStatisticsManager(10, eventBus);
+        Listener listener = new Listener();
+        eventBus.register(stats);
+        eventBus.register(listener);
+
+        // WHEN
+        new LogReplayer(eventBus, stats).replay(logFile, 0);
+        stats.flush();
+
+        // THEN
+        TrafficStatistics statistics = listener.statistics.get(0);
+        assertEquals(40, statistics.getTotalRequestCount());
+        assertEquals(3, statistics.getHitsByUserAgentFamily().size());
+        assertEquals("curl", statistics.getHitsByUserAgentFamily().get(0).getKey());
+        assertEquals(20, statistics.getHitsByUserAgentFamily().get(0).getValue().intValue());
+        assertEquals(2, statistics.getHitsByRefererDomain().size());
+        assertEquals(10, statistics.getHitsByRefererDomain().get(0).getValue().intValue());
+    }
+
+    private interface HitsPerSecond {
+        int of(int second);
+    }
+
+    private static void writeLog(Path logFile, int seconds, HitsPerSecond hitsPerSecond) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(logFile)) {
+            for (int second = 0; second < seconds; second++) {
+                for (int i = 0; i < hitsPerSecond.of(second); i++) {
+                    writer.write("127.0.0.1 - - [" + FORMATTER.format(START.plusSeconds(second))
+                            + "] \"GET /api/" + i + " HTTP/1.0\" 200 " + second + "\n");
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+package org.sample.homework.replay;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LogSeekerTest {
+
+    private static final DateTimeFormatter FORMATTER =
+            DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.ENGLISH).withZone(ZoneOffset.UTC);
+
+    private static final Instant START = Instant.parse("2019-05-09T16:00:00Z");
+
+    @TempDir
+    static Path folder;
+
+    /**
+     * The log file, with 10 lines per second during 10000 seconds and a few malformed lines.
+     */
+    private static Path logFile;
+
+    /**
+     * Offset of the first line of every second.
+     */
+    private static final List<Long> offsets = new ArrayList<>();
+
+    @BeforeAll
+    static void before() throws IOException {
+        logFile = folder.resolve("access.log");
+        long offset = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(logFile)) {
+            for (int second = 0; second < 10_000; second++) {
+                offsets.add(offset);
+                for (int i = 0; i < 10; i++) {
+                    String line = i == 0 && second % 100 == 0 ? "malformed line" : "127.0.0.1 - - ["
+                            + FORMATTER.format(START.plusSeconds(second)) + "] \"GET /api/" + i + " HTTP/1.0\" 200 "
+                            + second;
+                    writer.write(line);
+                    writer.write('\n');
+                    offset += line.length() + 1;
+                }
+            }
+        }
+    }
+
+    @Test
+    void seekTest_nominal() throws IOException {
+        assertEquals(offsets.get(1), LogSeeker.seek(logFile, START.plusSeconds(1)));
+        assertEquals(offsets.get(5001), LogSeeker.seek(logFile, START.plusSeconds(5001)));
+        assertEquals(offsets.get(9999), LogSeeker.seek(logFile, START.plusSeconds(9999)));
+    }
+
+    @Test
+    void seekTest_shouldSkipMalformedLines() throws IOException {
+        // The first line of this second is malformed.
+        assertEquals(offsets.get(7000) + "malformed line\n".length(), LogSeeker.seek(logFile, START.plusSeconds(7000)));
+    }
+
+    @Test
+    void seekTest_outOfRange() throws IOException {
+        // The very first line is malformed.
+        assertEquals("malformed line\n".length(), LogSeeker.seek(logFile, START.minusSeconds(3600)));
+        assertEquals(Files.size(logFile), LogSeeker.seek(logFile, START.plusSeconds(20_000)));
+    }
+}
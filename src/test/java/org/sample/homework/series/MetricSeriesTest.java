@@ -0,0 +1,101 @@
+package org.sample.homework.series;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricSeriesTest {
+
+    private static final long START = 1557417600000L;
+
+    @Test
+    void iteratorTest_shouldDecodeIrregularPoints() {
+        // GIVEN
+        MetricSeries series = new MetricSeries(Duration.ofDays(1), Duration.ofMinutes(10));
+        Random random = new Random(42);
+        int size = 5000;
+        long[] timestamps = new long[size];
+        double[] values = new double[size];
+        long timestamp = START;
+        for (int i = 0; i < size; i++) {
+            // Mix regular ticks, jitter and large gaps.
+            timestamp += i % 100 == 0 ? random.nextInt(1_000_000) : 1000 + random.nextInt(300) - 150;
+            timestamps[i] = timestamp;
+            values[i] = i % 7 == 0 ? random.nextGaussian() * 1e6 : i % 3 == 0 ? values[Math.max(0, i - 1)] : i;
+        }
+        values[1] = Double.NaN;
+        values[2] = -0.0;
+        for (int i = 0; i < size; i++) {
+            series.append(timestamps[i], values[i]);
+        }
+
+        // WHEN
+        SeriesIterator iterator = series.iterator();
+
+        // THEN
+        assertEquals(size, series.size());
+        for (int i = 0; i < size; i++) {
+            assertTrue(iterator.next());
+            assertEquals(timestamps[i], iterator.timestamp());
+            assertEquals(Double.doubleToRawLongBits(values[i]), Double.doubleToRawLongBits(iterator.value()));
+        }
+        assertFalse(iterator.next());
+    }
+
+    @Test
+    void iteratorTest_shouldOnlyReturnPointsWithinRange() {
+        // GIVEN
+        MetricSeries series = new MetricSeries(Duration.ofDays(1), Duration.ofMinutes(1));
+        for (int i = 0; i < 600; i++) {
+            series.append(START + i * 1000L, i);
+        }
+
+        // WHEN
+        SeriesIterator iterator = series.iterator(START + 100_000, START + 250_000);
+
+        // THEN
+        for (int i = 100; i < 250; i++) {
+            assertTrue(iterator.next());
+            assertEquals(START + i * 1000L, iterator.timestamp());
+            assertEquals(i, iterator.value());
+        }
+        assertFalse(iterator.next());
+    }
+
+    @Test
+    void appendTest_shouldDropPointsOutOfRetention() {
+        // GIVEN
+        MetricSeries series = new MetricSeries(Duration.ofHours(1), Duration.ofMinutes(10));
+
+        // WHEN
+        for (int i = 0; i < 3 * 3600; i++) {
+            series.append(START + i * 1000L, 1);
+        }
+
+        // THEN
+        SeriesIterator iterator = series.iterator();
+        assertTrue(iterator.next());
+        assertTrue(iterator.timestamp() >= START + 2 * 3600_000L - 600_000);
+        assertTrue(series.size() <= 3600 + 600);
+    }
+
+    @Test
+    void memoryFootprintTest_dayAtOneSecondResolution() {
+        // GIVEN
+        MetricSeries series = new MetricSeries(Duration.ofDays(1));
+        Random random = new Random(42);
+
+        // WHEN
+        for (int i = 0; i < 86400; i++) {
+            series.append(START + i * 1000L, 100 + random.nextInt(20));
+        }
+
+        // THEN
+        assertEquals(86400, series.size());
+        assertTrue(series.memoryFootprint() < 256 * 1024, "footprint " + series.memoryFootprint());
+    }
+
+}
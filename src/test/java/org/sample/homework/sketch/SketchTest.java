@@ -0,0 +1,93 @@
+package org.sample.homework.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SketchTest {
+
+    @Test
+    void hyperLogLogTest_shouldEstimateMergedCardinalities() {
+        // GIVEN
+        HyperLogLog first = new HyperLogLog();
+        HyperLogLog second = new HyperLogLog();
+        for (int i = 0; i < 60_000; i++) {
+            first.add("host" + i);
+        }
+        for (int i = 40_000; i < 100_000; i++) {
+            second.add("host" + i);
+        }
+
+        // WHEN
+        long firstEstimate = first.estimate();
+        first.merge(second);
+
+        // THEN
+        assertEquals(60_000, firstEstimate, 60_000 * 0.05);
+        assertEquals(100_000, first.estimate(), 100_000 * 0.05);
+        assertEquals(0, new HyperLogLog().estimate());
+        assertThrows(IllegalArgumentException.class, () -> first.merge(new HyperLogLog(10)));
+    }
+
+    @Test
+    void hyperLogLogTest_shouldRoundTripSparseAndDenseSketches() {
+        // GIVEN
+        HyperLogLog sparse = new HyperLogLog();
+        HyperLogLog dense = new HyperLogLog();
+        for (int i = 0; i < 10_000; i++) {
+            if (i < 20) {
+                sparse.add("host" + i);
+            }
+            dense.add("host" + i);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+
+        // WHEN
+        sparse.encode(buffer);
+        int sparseSize = buffer.position();
+        dense.encode(buffer);
+        buffer.flip();
+        HyperLogLog decodedSparse = HyperLogLog.decode(buffer);
+        HyperLogLog decodedDense = HyperLogLog.decode(buffer);
+
+        // THEN
+        assertTrue(sparseSize < 64, "sparse size " + sparseSize);
+        assertFalse(buffer.hasRemaining());
+        assertEquals(20, decodedSparse.estimate());
+        assertEquals(sparse.estimate(), decodedSparse.estimate());
+        assertEquals(dense.estimate(), decodedDense.estimate());
+    }
+
+    @Test
+    void topKSketchTest_shouldMergeTopKeys() {
+        // GIVEN
+        Map<String, int[]> firstHits = new HashMap<>();
+        for (int i = 1; i <= 10; i++) {
+            firstHits.put("/s" + i, new int[]{i * 10});
+        }
+        Map<String, Integer> secondHits = new HashMap<>();
+        secondHits.put("/s1", 200);
+        secondHits.put("/other", 5);
+
+        // WHEN
+        TopKSketch sketch = TopKSketch.of(firstHits, 4);
+        sketch.merge(new TopKSketch(secondHits, 3));
+        List<Map.Entry<String, Integer>> top = sketch.top(3);
+
+        // THEN
+        // The dropped keys of the first sketch had at most 60 hits, the ones of the second sketch at most 3.
+        assertEquals(63, sketch.getThreshold());
+        assertEquals(6, sketch.getHits().size());
+        assertEquals(3, top.size());
+        assertEquals("/s1", top.get(0).getKey());
+        assertEquals(Integer.valueOf(200), top.get(0).getValue());
+        assertEquals("/s10", top.get(1).getKey());
+        assertEquals("/s9", top.get(2).getKey());
+    }
+
+}
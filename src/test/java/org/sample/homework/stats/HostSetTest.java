@@ -0,0 +1,86 @@
+package org.sample.homework.stats;
+
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import org.junit.jupiter.api.Test;
+import org.sample.homework.clf.AccessLogParseException;
+import org.sample.homework.clf.LazyAccessLogRecord;
+import org.sample.homework.sketch.HyperLogLog;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HostSetTest {
+
+    @Test
+    void addTest_shouldCountDistinctHosts() {
+        // GIVEN
+        HostSet hosts = new HostSet();
+
+        // WHEN
+        for (int i = 0; i < 10_000; i++) {
+            hosts.add(0, 0xFFFF_0A00_0000L + i % 5000);
+        }
+        boolean unspecified = hosts.add(0, 0);
+        boolean ipv6 = hosts.add(0x2001_0DB8_0000_0000L, 1);
+        boolean ipv6Again = hosts.add(0x2001_0DB8_0000_0000L, 1);
+        hosts.addName("web1.example.com");
+        hosts.addName("web1.example.com");
+        HyperLogLog sketch = new HyperLogLog();
+        hosts.addTo(sketch);
+
+        // THEN
+        assertTrue(unspecified);
+        assertTrue(ipv6);
+        assertFalse(ipv6Again);
+        assertEquals(5003, hosts.size());
+        assertEquals(5003, sketch.estimate(), 5003 * 0.05);
+    }
+
+    @Test
+    void aggregateTest_shouldPublishTopSubnets() throws AccessLogParseException {
+        // GIVEN
+        EventBus eventBus = new EventBus();
+        TrafficStatisticsManager stats = new TrafficStatisticsManager(10, eventBus, true);
+        eventBus.register(stats);
+        List<TrafficStatistics> published = new ArrayList<>();
+        eventBus.register(new Object() {
+            @Subscribe
+            public void handleTrafficStatistics(TrafficStatistics statistics) {
+                published.add(statistics);
+            }
+        });
+        stats.advanceTo(Instant.parse("2019-05-09T16:00:00Z"));
+        LazyAccessLogRecord record = new LazyAccessLogRecord(StandardCharsets.UTF_8);
+
+        // WHEN
+        for (String host : new String[]{"10.1.2.3", "10.1.2.4", "10.1.2.3", "10.1.3.1", "2001:db8:1:2::1",
+                "2001:db8:1:3::1", "::1", "web1.example.com", "-"}) {
+            byte[] line = (host + " - - [09/May/2019:16:00:01 +0000] \"GET /api HTTP/1.0\" 200 100")
+                    .getBytes(StandardCharsets.UTF_8);
+            record.reset(line, 0, line.length);
+            eventBus.post(record);
+        }
+        stats.advanceTo(Instant.parse("2019-05-09T16:00:10Z"));
+
+        // THEN
+        assertEquals(1, published.size());
+        TrafficStatistics statistics = published.get(0);
+        assertEquals(7, statistics.getUniqueHosts());
+        assertEquals(7, statistics.getHostSketch().estimate(), 1);
+        assertEquals(Arrays.asList(
+                new AbstractMap.SimpleImmutableEntry<>("10.1.2.0/24", 3),
+                new AbstractMap.SimpleImmutableEntry<>("2001:db8:1::/48", 2)),
+                statistics.getHitsBySubnet().subList(0, 2));
+        assertEquals(4, statistics.getHitsBySubnet().size());
+        assertTrue(statistics.getHitsBySubnet().contains(new AbstractMap.SimpleImmutableEntry<>("10.1.3.0/24", 1)));
+        assertTrue(statistics.getHitsBySubnet().contains(new AbstractMap.SimpleImmutableEntry<>("::/48", 1)));
+    }
+
+}
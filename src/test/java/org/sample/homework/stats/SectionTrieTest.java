@@ -0,0 +1,116 @@
+package org.sample.homework.stats;
+
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import org.junit.jupiter.api.Test;
+import org.sample.homework.clf.AccessLogParseException;
+import org.sample.homework.clf.LazyAccessLogRecord;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SectionTrieTest {
+
+    @Test
+    void addTest_shouldCountEveryPrefixDownToTheDepth() {
+        // GIVEN
+        SectionTrie trie = new SectionTrie(2, 64, StandardCharsets.UTF_8);
+        byte[] line = "GET /api/v1/users?id=1 HTTP/1.0".getBytes(StandardCharsets.UTF_8);
+
+        // WHEN
+        trie.add(line, 4, 22, 1);
+        trie.add("/api/v1/orders", 2);
+        trie.add("/api/v2/", 1);
+        trie.add("/api?v=3", 1);
+        trie.add("/", 1);
+        trie.add("/report", 1);
+        trie.add("*", 1);
+
+        // THEN
+        assertEquals(8, trie.getTotalHits());
+        assertEquals(Arrays.asList(entry("/api", 5), entry("/", 1), entry("/report", 1)),
+                sortTies(trie.getTopSections("", 5)));
+        assertEquals(Arrays.asList(entry("/api/v1", 3), entry("/api/v2", 1)), trie.getTopSections("/api", 5));
+        assertEquals(Arrays.asList(entry("/api/v1", 3)), trie.getTopSections("/api", 1));
+        // Segments beyond the depth are not counted.
+        assertTrue(trie.getTopSections("/api/v1", 5).isEmpty());
+        assertEquals(3, trie.getHits("/api/v1"));
+        assertEquals(0, trie.getHits("/api/v3"));
+        assertTrue(trie.getTopSections("/unknown", 5).isEmpty());
+    }
+
+    @Test
+    void addTest_shouldPruneColdSubtrees() {
+        // GIVEN
+        SectionTrie trie = new SectionTrie(3, 16, StandardCharsets.UTF_8);
+
+        // WHEN
+        trie.add("/api/v1/users", 100);
+        trie.add("/static/app.js", 50);
+        for (int i = 0; i < 100; i++) {
+            trie.add("/users/" + i, 1);
+        }
+
+        // THEN
+        assertTrue(trie.getNodeCount() <= 16);
+        assertEquals(250, trie.getTotalHits());
+        // Hot subtrees are kept, and the hits of pruned nodes are still counted by their ancestors.
+        assertEquals(100, trie.getHits("/api/v1/users"));
+        assertEquals(50, trie.getHits("/static/app.js"));
+        assertEquals(100, trie.getHits("/users"));
+        assertEquals(1, trie.getHits("/users/99"));
+        assertEquals(0, trie.getHits("/users/0"));
+    }
+
+    @Test
+    void aggregateTest_shouldPublishSectionTrie() throws AccessLogParseException {
+        // GIVEN
+        EventBus eventBus = new EventBus();
+        TrafficStatisticsManager stats = new TrafficStatisticsManager(10, eventBus, false, 2);
+        eventBus.register(stats);
+        List<TrafficStatistics> published = new ArrayList<>();
+        eventBus.register(new Object() {
+            @Subscribe
+            public void handleTrafficStatistics(TrafficStatistics statistics) {
+                published.add(statistics);
+            }
+        });
+        stats.advanceTo(Instant.parse("2019-05-09T16:00:00Z"));
+        LazyAccessLogRecord record = new LazyAccessLogRecord(StandardCharsets.UTF_8);
+
+        // WHEN
+        for (String path : new String[]{"/api/v1/users", "/api/v2/orders", "/api/v1", "/report"}) {
+            byte[] line = ("127.0.0.1 - - [09/May/2019:16:00:01 +0000] \"GET " + path + " HTTP/1.0\" 200 100")
+                    .getBytes(StandardCharsets.UTF_8);
+            record.reset(line, 0, line.length);
+            eventBus.post(record);
+        }
+        stats.advanceTo(Instant.parse("2019-05-09T16:00:10Z"));
+
+        // THEN
+        assertEquals(1, published.size());
+        TrafficStatistics statistics = published.get(0);
+        assertEquals(Arrays.asList(entry("/api", 3), entry("/report", 1)), statistics.getHitsBySection());
+        SectionTrie trie = statistics.getSectionTrie();
+        assertEquals(statistics.getHitsBySection(), trie.getTopSections("", 5));
+        assertEquals(Arrays.asList(entry("/api/v1", 2), entry("/api/v2", 1)), trie.getTopSections("/api", 5));
+    }
+
+    private static Map.Entry<String, Integer> entry(String section, int hits) {
+        return new AbstractMap.SimpleImmutableEntry<>(section, hits);
+    }
+
+    private static List<Map.Entry<String, Integer>> sortTies(List<Map.Entry<String, Integer>> sections) {
+        List<Map.Entry<String, Integer>> result = new ArrayList<>(sections);
+        result.sort(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+        return result;
+    }
+
+}
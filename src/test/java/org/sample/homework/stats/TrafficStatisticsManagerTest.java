@@ -0,0 +1,204 @@
+package org.sample.homework.stats;
+
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import org.junit.jupiter.api.Test;
+import org.sample.homework.clf.AccessLogParseException;
+import org.sample.homework.clf.LazyAccessLogRecord;
+import org.sample.homework.metrics.MemoryBudget;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrafficStatisticsManagerTest {
+
+    @Test
+    void closeWindowTest_shouldPublishTheDistributionOfTheHitsPerSecond() throws AccessLogParseException {
+        // GIVEN
+        EventBus eventBus = new EventBus();
+        TrafficStatisticsManager stats = new TrafficStatisticsManager(10, eventBus);
+        eventBus.register(stats);
+        List<TrafficStatistics> published = new ArrayList<>();
+        eventBus.register(new Object() {
+            @Subscribe
+            public void handleTrafficStatistics(TrafficStatistics statistics) {
+                published.add(statistics);
+            }
+        });
+        stats.advanceTo(Instant.parse("2019-05-09T16:00:00Z"));
+        LazyAccessLogRecord record = new LazyAccessLogRecord(StandardCharsets.UTF_8);
+
+        // WHEN
+        // One hit every second, and a burst of 40 more hits during the fourth second.
+        for (int second = 0; second < 10; second++) {
+            post(eventBus, record, "16:00:0" + second);
+        }
+        for (int i = 0; i < 40; i++) {
+            post(eventBus, record, "16:00:03");
+        }
+        // A late record wraps around the ring, and a record of the next window frame is kept for it.
+        post(eventBus, record, "15:59:55");
+        post(eventBus, record, "16:00:12");
+        stats.advanceTo(Instant.parse("2019-05-09T16:00:20Z"));
+
+        // THEN
+        assertEquals(2, published.size());
+        TrafficStatistics first = published.get(0);
+        assertArrayEquals(new int[]{1, 1, 1, 41, 1, 2, 1, 1, 1, 1}, first.getHitsBySecond());
+        assertEquals(51, first.getTotalRequestCount());
+        assertEquals(41, first.getPeakHitsPerSecond());
+        assertEquals(41, first.getP95HitsPerSecond());
+        assertEquals(1, first.getMinHitsPerSecond());
+        TrafficStatistics second = published.get(1);
+        assertArrayEquals(new int[]{0, 0, 1, 0, 0, 0, 0, 0, 0, 0}, second.getHitsBySecond());
+        assertEquals(1, second.getPeakHitsPerSecond());
+        // With 10 seconds, the 95th percentile is the busiest second.
+        assertEquals(1, second.getP95HitsPerSecond());
+        assertEquals(0, second.getMinHitsPerSecond());
+    }
+
+    @Test
+    void addTest_shouldApproximateTheWindowFrameUnderMemoryPressure() throws AccessLogParseException {
+        // GIVEN
+        EventBus eventBus = new EventBus();
+        TrafficStatisticsManager stats = new TrafficStatisticsManager(10, eventBus);
+        eventBus.register(stats);
+        List<TrafficStatistics> published = new ArrayList<>();
+        eventBus.register(new Object() {
+            @Subscribe
+            public void handleTrafficStatistics(TrafficStatistics statistics) {
+                published.add(statistics);
+            }
+        });
+        stats.advanceTo(Instant.parse("2019-05-09T16:00:00Z"));
+        LazyAccessLogRecord record = new LazyAccessLogRecord(StandardCharsets.UTF_8);
+        post(eventBus, record, "10.0.0.1", "16:00:01", "/api");
+
+        // WHEN
+        // The open window frame alone exceeds the budget.
+        MemoryBudget.get().setLimit(1);
+        try {
+            post(eventBus, record, "10.0.0.2", "16:00:02", "/images");
+            post(eventBus, record, "10.0.0.3", "16:00:03", "/api");
+            stats.advanceTo(Instant.parse("2019-05-09T16:00:10Z"));
+        } finally {
+            MemoryBudget.get().setLimit(Long.MAX_VALUE);
+        }
+
+        // THEN
+        assertEquals(1, published.size());
+        TrafficStatistics statistics = published.get(0);
+        assertTrue(statistics.isApproximate());
+        assertEquals(3, statistics.getTotalRequestCount());
+        // New sections are no longer tracked, but the known ones still are.
+        assertEquals(1, statistics.getHitsBySection().size());
+        assertEquals("/api", statistics.getHitsBySection().get(0).getKey());
+        assertEquals(2, statistics.getHitsBySection().get(0).getValue());
+        // Unique hosts are estimated from a sketch.
+        assertEquals(3, statistics.getUniqueHosts());
+    }
+
+    @Test
+    void aggregateTest_shouldCountRecordsInTheWindowFrameTheyBelongTo() throws AccessLogParseException {
+        // GIVEN
+        EventBus eventBus = new EventBus();
+        TrafficStatisticsManager stats = new TrafficStatisticsManager(10, eventBus);
+        eventBus.register(stats);
+        List<TrafficStatistics> published = collect(eventBus);
+        stats.advanceTo(Instant.parse("2019-05-09T16:00:00Z"));
+        // The same record is reset with every line.
+        LazyAccessLogRecord record = new LazyAccessLogRecord(StandardCharsets.UTF_8);
+
+        // WHEN
+        // Two records of the current window frame.
+        post(eventBus, record, "10.0.0.1", "16:00:03", "/api");
+        post(eventBus, record, "10.0.0.2", "16:00:04", "/images");
+        // A record of the window frame after next, received ahead of time.
+        post(eventBus, record, "10.0.0.3", "16:00:25", "/upcoming");
+        // A late record, counted in the current window frame.
+        post(eventBus, record, "10.0.0.4", "15:59:55", "/late");
+        stats.advanceTo(Instant.parse("2019-05-09T16:00:10Z"));
+        stats.advanceTo(Instant.parse("2019-05-09T16:00:20Z"));
+        stats.advanceTo(Instant.parse("2019-05-09T16:00:30Z"));
+
+        // THEN
+        assertEquals(3, published.size());
+        TrafficStatistics current = published.get(0);
+        assertEquals(Instant.parse("2019-05-09T16:00:10Z"), current.getWindowEnd());
+        assertEquals(3, current.getTotalRequestCount());
+        assertEquals(3, current.getUniqueHosts());
+        assertEquals(Arrays.asList("/api", "/images", "/late"), sections(current));
+        TrafficStatistics empty = published.get(1);
+        assertEquals(Instant.parse("2019-05-09T16:00:20Z"), empty.getWindowEnd());
+        assertEquals(0, empty.getTotalRequestCount());
+        TrafficStatistics upcoming = published.get(2);
+        assertEquals(Instant.parse("2019-05-09T16:00:30Z"), upcoming.getWindowEnd());
+        assertEquals(1, upcoming.getTotalRequestCount());
+        assertEquals(Collections.singletonList("/upcoming"), sections(upcoming));
+    }
+
+    @Test
+    void flushTest_shouldPublishTheCurrentWindowFrame() throws AccessLogParseException {
+        // GIVEN
+        EventBus eventBus = new EventBus();
+        TrafficStatisticsManager stats = new TrafficStatisticsManager(10, eventBus);
+        eventBus.register(stats);
+        List<TrafficStatistics> published = collect(eventBus);
+        LazyAccessLogRecord record = new LazyAccessLogRecord(StandardCharsets.UTF_8);
+        stats.advanceTo(Instant.parse("2019-05-09T16:00:00Z"));
+        post(eventBus, record, "16:00:01");
+        post(eventBus, record, "16:00:02");
+
+        // WHEN
+        stats.flush();
+
+        // THEN
+        assertEquals(1, published.size());
+        assertEquals(Instant.parse("2019-05-09T16:00:10Z"), published.get(0).getWindowEnd());
+        assertEquals(2, published.get(0).getTotalRequestCount());
+        // The next window frame is open.
+        post(eventBus, record, "16:00:11");
+        stats.flush();
+        assertEquals(2, published.size());
+        assertEquals(Instant.parse("2019-05-09T16:00:20Z"), published.get(1).getWindowEnd());
+        assertEquals(1, published.get(1).getTotalRequestCount());
+    }
+
+    private static List<TrafficStatistics> collect(EventBus eventBus) {
+        List<TrafficStatistics> published = new ArrayList<>();
+        eventBus.register(new Object() {
+            @Subscribe
+            public void handleTrafficStatistics(TrafficStatistics statistics) {
+                published.add(statistics);
+            }
+        });
+        return published;
+    }
+
+    private static List<String> sections(TrafficStatistics statistics) {
+        List<String> sections = new ArrayList<>();
+        statistics.getHitsBySection().forEach(entry -> sections.add(entry.getKey()));
+        sections.sort(null);
+        return sections;
+    }
+
+    private static void post(EventBus eventBus, LazyAccessLogRecord record, String time)
+            throws AccessLogParseException {
+        post(eventBus, record, "10.0.0.1", time, "/api");
+    }
+
+    private static void post(EventBus eventBus, LazyAccessLogRecord record, String host, String time, String path)
+            throws AccessLogParseException {
+        byte[] line = (host + " - - [09/May/2019:" + time + " +0000] \"GET " + path + " HTTP/1.0\" 200 100")
+                .getBytes(StandardCharsets.UTF_8);
+        record.reset(line, 0, line.length);
+        eventBus.post(record);
+    }
+
+}
@@ -0,0 +1,196 @@
+package org.sample.homework.tenant;
+
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import org.junit.jupiter.api.Test;
+import org.sample.homework.alerts.TrafficAlert;
+import org.sample.homework.clf.AccessLogParseException;
+import org.sample.homework.clf.LazyAccessLogRecord;
+import org.sample.homework.clf.VirtualHostCombinedLogFormat;
+import org.sample.homework.stats.TrafficStatistics;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TenantEngineTest {
+
+    private static final String LINE = "%s:443 10.0.0.%d - - [09/May/2019:16:00:01 +0000] \"GET /api/user HTTP/1.1\" "
+            + "200 100 \"-\" \"curl/7.64.1\"";
+
+    @Test
+    void sweepTest_shouldComputeTheStatisticsAndAlertsOfEveryTenant() throws AccessLogParseException {
+        // GIVEN
+        EventBus eventBus = new EventBus();
+        List<TenantSweep> sweeps = new ArrayList<>();
+        List<TrafficAlert> alerts = new ArrayList<>();
+        eventBus.register(new Object() {
+            @Subscribe
+            public void handleTenantSweep(TenantSweep sweep) {
+                sweeps.add(sweep);
+            }
+
+            @Subscribe
+            public void handleTrafficAlert(TrafficAlert alert) {
+                alerts.add(alert);
+            }
+        });
+        LazyAccessLogRecord record =
+                new LazyAccessLogRecord(StandardCharsets.UTF_8, new VirtualHostCombinedLogFormat());
+        try (TenantEngine engine = new TenantEngine(TenantEngine.TenantKey.VHOST, 10, 20, 1,
+                Collections.singletonMap("b.example.com", 5), eventBus)) {
+            engine.open(Instant.parse("2019-05-09T16:00:10Z"));
+
+            // WHEN
+            // a: 30 hits, 1.5 hits/s over the monitor duration. b: 60 hits, 3 hits/s.
+            for (int i = 0; i < 90; i++) {
+                byte[] line = String.format(LINE, i % 3 == 0 ? "a.example.com" : "b.example.com", i % 7)
+                        .getBytes(StandardCharsets.UTF_8);
+                record.reset(line, 0, line.length);
+                engine.handleLazyAccessLogRecord(record);
+            }
+            engine.sweep();
+            engine.sweep();
+            engine.sweep();
+
+            // THEN
+            assertEquals(2, engine.getTenantCount());
+            assertEquals(3, sweeps.size());
+            TenantSweep first = sweeps.get(0);
+            assertEquals(Instant.parse("2019-05-09T16:00:10Z"), first.getWindowEnd());
+            TrafficStatistics a = first.getStatistics().get(0);
+            TrafficStatistics b = first.getStatistics().get(1);
+            assertEquals("a.example.com", a.getTenant());
+            assertEquals(30, a.getTotalRequestCount());
+            assertEquals(7, a.getUniqueHosts());
+            assertEquals("b.example.com", b.getTenant());
+            assertEquals(60, b.getTotalRequestCount());
+            assertTrue(first.getHighTraffic().get(0));
+            assertFalse(first.getHighTraffic().get(1));
+            // The window frames of the next sweeps are empty.
+            assertEquals(Instant.parse("2019-05-09T16:00:20Z"), sweeps.get(1).getWindowEnd());
+            assertEquals(0, sweeps.get(1).getStatistics().get(1).getTotalRequestCount());
+            // a recovers once its hits are out of the monitor duration, b never exceeds its own threshold.
+            assertEquals(2, alerts.size());
+            assertEquals(TrafficAlert.AlertType.HIGH_TRAFFIC, alerts.get(0).getType());
+            assertEquals("a.example.com", alerts.get(0).getTenant());
+            assertEquals(1.5f, alerts.get(0).getHitsPerSecond());
+            assertEquals(Instant.parse("2019-05-09T16:00:10Z"), alerts.get(0).getTime().toInstant());
+            assertEquals(TrafficAlert.AlertType.RECOVERED, alerts.get(1).getType());
+            assertEquals("a.example.com", alerts.get(1).getTenant());
+            assertEquals(Instant.parse("2019-05-09T16:00:30Z"), alerts.get(1).getTime().toInstant());
+            assertTrue(alerts.get(1).getMessage().startsWith("a.example.com: "));
+            assertTrue(sweeps.get(2).getHighTraffic().isEmpty());
+        }
+    }
+
+    @Test
+    void alertTableTest_shouldKeepTheHitsOfTheMonitorDuration() {
+        // GIVEN
+        TenantAlertTable table = new TenantAlertTable(3, 30);
+        List<String> alerts = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            table.add(10);
+        }
+
+        // WHEN
+        // Tenant 42 gets 200 hits per window frame (20 hits/s over 30 s after 3 window frames).
+        for (int sweep = 0; sweep < 6; sweep++) {
+            for (int tenant = 0; tenant < table.size(); tenant++) {
+                table.record(tenant, tenant == 42 && sweep < 3 ? 200 : 1, tenant == 42 && sweep == 1);
+            }
+            int current = sweep;
+            table.evaluate((tenant, type, hitsPerSecond, estimated) ->
+                    alerts.add(current + " " + tenant + " " + type + " " + hitsPerSecond + " " + estimated));
+        }
+
+        // THEN
+        assertEquals(100, table.size());
+        assertEquals("1 42 HIGH_TRAFFIC " + 400f / 30 + " true", alerts.get(0));
+        // The sampled window frame is out of the monitor duration when the traffic recovers.
+        assertEquals("4 42 RECOVERED " + 202f / 30 + " false", alerts.get(1));
+        assertEquals(2, alerts.size());
+        assertTrue(table.getHighTraffic().isEmpty());
+    }
+
+    @Test
+    void sweepTest_shouldCountRecordsInTheWindowFrameTheyBelongTo() throws AccessLogParseException {
+        // GIVEN
+        EventBus eventBus = new EventBus();
+        List<TenantSweep> sweeps = new ArrayList<>();
+        eventBus.register(new Object() {
+            @Subscribe
+            public void handleTenantSweep(TenantSweep sweep) {
+                sweeps.add(sweep);
+            }
+        });
+        LazyAccessLogRecord record =
+                new LazyAccessLogRecord(StandardCharsets.UTF_8, new VirtualHostCombinedLogFormat());
+        try (TenantEngine engine = new TenantEngine(TenantEngine.TenantKey.VHOST, 10, 20, 1000,
+                Collections.emptyMap(), eventBus)) {
+            engine.open(Instant.parse("2019-05-09T16:00:10Z"));
+
+            // WHEN
+            // A late record, two records of the current window frame and one of the next.
+            for (String time : new String[]{"15:59:55", "16:00:01", "16:00:09", "16:00:12"}) {
+                byte[] line = ("a.example.com:443 10.0.0.1 - - [09/May/2019:" + time + " +0000] \"GET /api/user "
+                        + "HTTP/1.1\" 404 100 \"-\" \"curl/7.64.1\"").getBytes(StandardCharsets.UTF_8);
+                record.reset(line, 0, line.length);
+                engine.handleLazyAccessLogRecord(record);
+            }
+            engine.sweep();
+            engine.sweep();
+            engine.sweep();
+
+            // THEN
+            TrafficStatistics first = sweeps.get(0).getStatistics().get(0);
+            assertEquals(3, first.getTotalRequestCount());
+            assertArrayEquals(new int[]{0, 1, 0, 0, 0, 1, 0, 0, 0, 1}, first.getHitsBySecond());
+            assertEquals(3, first.getHitsByStatusClass()[3]);
+            assertEquals(300, first.getBytesTransferred());
+            assertEquals(1, first.getUniqueHosts());
+            assertEquals("/api", first.getHitsBySection().get(0).getKey());
+            assertEquals(3, first.getHitsByMethod().get("GET"));
+            TrafficStatistics second = sweeps.get(1).getStatistics().get(0);
+            assertEquals(Instant.parse("2019-05-09T16:00:20Z"), second.getWindowEnd());
+            assertEquals(1, second.getTotalRequestCount());
+            assertArrayEquals(new int[]{0, 0, 1, 0, 0, 0, 0, 0, 0, 0}, second.getHitsBySecond());
+            // The windows are reused once published.
+            TrafficStatistics third = sweeps.get(2).getStatistics().get(0);
+            assertEquals(0, third.getTotalRequestCount());
+            assertEquals(0, third.getUniqueHosts());
+            assertTrue(third.getHitsBySection().isEmpty());
+        }
+    }
+
+    @Test
+    void topHitsTest_shouldKeepTheHeaviestKeysInAFixedNumberOfSlots() {
+        // GIVEN
+        TenantWindow.TopHits topHits = new TenantWindow.TopHits(4);
+
+        // WHEN
+        // 3 heavy keys among 100 light ones.
+        for (int i = 0; i < 100; i++) {
+            topHits.add("/light" + i, 1);
+            topHits.add("/a", 5);
+            topHits.add("/b", 3);
+            topHits.add("/c", 2);
+        }
+
+        // THEN
+        List<Map.Entry<String, Integer>> top = new ArrayList<>();
+        topHits.addTop(3, top);
+        assertEquals(Arrays.asList("/a", "/b", "/c"), top.stream().map(Map.Entry::getKey).collect(Collectors.toList()));
+        assertEquals(500, top.get(0).getValue());
+        assertEquals(300, top.get(1).getValue());
+        assertEquals(200, top.get(2).getValue());
+    }
+
+}
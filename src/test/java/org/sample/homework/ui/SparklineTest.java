@@ -0,0 +1,42 @@
+package org.sample.homework.ui;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SparklineTest {
+
+    @Test
+    void renderTest_shouldShiftOneColumnPerValue() {
+        // GIVEN
+        Sparkline sparkline = new Sparkline(4);
+
+        // WHEN
+        sparkline.append(0);
+        sparkline.append(4);
+        sparkline.append(8);
+
+        // THEN
+        assertEquals("  ▄█", new String(sparkline.render(4)));
+        assertEquals(" ▄█", new String(sparkline.render(3)));
+        assertEquals("█", new String(sparkline.render(1)));
+    }
+
+    @Test
+    void renderTest_shouldRescaleWhenTheMaximumIsEvicted() {
+        // GIVEN
+        Sparkline sparkline = new Sparkline(3);
+        sparkline.append(8);
+        sparkline.append(2);
+        sparkline.append(4);
+
+        // WHEN the maximum leaves the ring.
+        sparkline.append(1);
+
+        // THEN
+        assertEquals(3, sparkline.size());
+        assertEquals(4, sparkline.getMax());
+        assertEquals("  ▄█▂", new String(sparkline.render(5)));
+    }
+
+}
@@ -0,0 +1,109 @@
+package org.sample.homework.util;
+
+import com.google.common.net.InetAddresses;
+import org.junit.jupiter.api.Test;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IpAddressesTest {
+
+    @Test
+    void parseTest_shouldParseLikeInetAddresses() {
+        String[] valid = {"127.0.0.1", "0.0.0.0", "255.255.255.255", "10.1.2.3", "::", "::1", "1::", "1::8",
+                "2001:db8::1", "2001:DB8:0:0:8:800:200C:417A", "1:2:3:4:5:6:7:8", "1:2:3:4:5:6:7::", "::2:3:4:5:6:7:8",
+                "fe80::1:2", "::ffff:10.1.2.3", "::10.1.2.3", "64:ff9b::192.0.2.33", "1:2:3:4:5:6:1.2.3.4",
+                "ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff"};
+        for (String address : valid) {
+            // GIVEN
+            long[] parsed = new long[2];
+
+            // WHEN
+            boolean result = parse(address, parsed);
+
+            // THEN
+            assertTrue(result, address);
+            InetAddress expected = InetAddresses.forString(address);
+            ByteBuffer bytes = ByteBuffer.wrap(expected.getAddress());
+            if (expected instanceof Inet4Address) {
+                assertEquals(0, parsed[0], address);
+                assertEquals(0xFFFF_0000_0000L | (bytes.getInt() & 0xFFFF_FFFFL), parsed[1], address);
+            } else {
+                assertEquals(bytes.getLong(), parsed[0], address);
+                assertEquals(bytes.getLong(), parsed[1], address);
+            }
+        }
+        assertEquals("2001:db8::8:800:200c:417a", toString("2001:DB8:0:0:8:800:200C:417A"));
+        assertEquals("10.1.2.3", toString("10.1.2.3"));
+        assertEquals("10.1.2.3", toString("::ffff:10.1.2.3"));
+        assertEquals("::a01:203", toString("::10.1.2.3"));
+    }
+
+    @Test
+    void parseTest_shouldRejectHostNamesAndInvalidAddresses() {
+        String[] invalid = {"", "-", "localhost", "web1.example.com", "1.2.3", "1.2.3.4.5", "256.1.1.1", "1..2.3",
+                "1.2.3.4 ", "1234.1.1.1", ":", ":::", ":1", "1:", "1::2::3", "1:2:3:4:5:6:7:8:9", "1:2:3:4:5:6:7:8::",
+                "12345::", "g::1", "fe80::1%eth0", "[::1]", "::1.2.3", "1.2.3.4::", "1:2:3:4:5:6:7:1.2.3.4",
+                "cafe", "beef:"};
+        for (String address : invalid) {
+            assertFalse(parse(address, new long[2]), address);
+        }
+    }
+
+    @Test
+    void hashTest_shouldSpreadAddresses() {
+        // GIVEN
+        int[] buckets = new int[16];
+
+        // WHEN
+        for (int i = 0; i < 1600; i++) {
+            ++buckets[(int) (IpAddresses.hash(0, 0xFFFF_0A00_0000L + i) >>> 60)];
+        }
+
+        // THEN
+        for (int bucket : buckets) {
+            assertTrue(bucket > 50 && bucket < 150, String.valueOf(bucket));
+        }
+    }
+
+    @Test
+    void longIntHashMapTest_shouldCountKeys() {
+        // GIVEN
+        LongIntHashMap map = new LongIntHashMap();
+
+        // WHEN
+        for (long key = 0; key < 1000; key++) {
+            map.add(key * 256, 1);
+            map.add(key * 256, (int) key);
+        }
+        long[] sum = new long[2];
+        map.forEach((key, value) -> {
+            sum[0] += key;
+            sum[1] += value;
+        });
+
+        // THEN
+        assertEquals(1000, map.size());
+        assertEquals(1, map.get(0));
+        assertEquals(43, map.get(42 * 256));
+        assertEquals(0, map.get(1));
+        assertEquals(256L * 999 * 1000 / 2, sum[0]);
+        assertEquals(1000 + 999 * 1000 / 2, sum[1]);
+    }
+
+    private static boolean parse(String address, long[] parsed) {
+        byte[] bytes = ("x" + address + "y").getBytes(StandardCharsets.US_ASCII);
+        return IpAddresses.parse(bytes, 1, bytes.length - 1, parsed);
+    }
+
+    private static String toString(String address) {
+        long[] parsed = new long[2];
+        assertTrue(parse(address, parsed), address);
+        return IpAddresses.toString(parsed[0], parsed[1]);
+    }
+
+}
@@ -0,0 +1,92 @@
+package org.sample.homework.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SwarTest {
+
+    @Test
+    void matchesTest_shouldOnlyReportEqualBytes() {
+        // GIVEN bytes which differ from the pattern by their high bit or by a borrow from the next byte.
+        byte[] bytes = {' ', (byte) 0xA0, 0x21, 0x1F, 0, ' ', (byte) 0xFF, ' '};
+
+        // WHEN
+        long mask = Swar.matches(Swar.getLong(bytes, 0), Swar.broadcast((byte) ' '));
+
+        // THEN
+        assertEquals(0x8000800000000080L, mask);
+    }
+
+    @Test
+    void indexOfTest_shouldFindTheFirstOccurrenceWithinTheRange() {
+        byte[] bytes = "GET /api/user HTTP/1.0\n".getBytes(StandardCharsets.US_ASCII);
+        for (boolean words : new boolean[]{true, false}) {
+            IndexOf indexOf = (from, to, value) -> words ? Swar.wordIndexOf(bytes, from, to, value)
+                    : Swar.byteIndexOf(bytes, from, to, value);
+            assertEquals(3, indexOf.apply(0, bytes.length, (byte) ' '));
+            assertEquals(13, indexOf.apply(4, bytes.length, (byte) ' '));
+            assertEquals(22, indexOf.apply(14, bytes.length, (byte) '\n'));
+            assertEquals(-1, indexOf.apply(14, 22, (byte) '\n'));
+            assertEquals(-1, indexOf.apply(0, 0, (byte) 'G'));
+            // Bytes following the range are never reported.
+            assertEquals(-1, indexOf.apply(0, 3, (byte) ' '));
+        }
+        assertEquals(3, Swar.indexOf(bytes, 0, bytes.length, (byte) ' '));
+        assertThrows(IndexOutOfBoundsException.class, () -> Swar.indexOf(bytes, 0, bytes.length + 1, (byte) ' '));
+    }
+
+    @Test
+    void indexTest_shouldFindTheSameDelimitersAsAByteLoop() {
+        // GIVEN random ranges of random bytes, mostly delimiters and their neighbours.
+        Random random = new Random(42);
+        byte[] alphabet = {' ', '"', '[', ']', '!', '\n', 'a', (byte) 0xA0, (byte) 0xDB, 0};
+        DelimiterIndex index = new DelimiterIndex((byte) ' ', (byte) '"', (byte) '[', (byte) ']');
+        for (int run = 0; run < 1000; run++) {
+            byte[] bytes = new byte[random.nextInt(200)];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = alphabet[random.nextInt(alphabet.length)];
+            }
+            int from = bytes.length == 0 ? 0 : random.nextInt(bytes.length);
+            int to = from + random.nextInt(bytes.length - from + 1);
+
+            // WHEN
+            index.index(bytes, from, to);
+
+            // THEN
+            int[] expected = IntStream.range(from, to)
+                    .filter(i -> bytes[i] == ' ' || bytes[i] == '"' || bytes[i] == '[' || bytes[i] == ']')
+                    .toArray();
+            assertArrayEquals(expected, Arrays.copyOf(index.getOffsets(), index.getSize()));
+        }
+    }
+
+    @Test
+    void indexTest_shouldFindLineFeedsWhateverTheScan() {
+        // GIVEN a range holding more line feeds than the initial offset array.
+        byte[] bytes = new byte[1000];
+        Arrays.fill(bytes, (byte) 'a');
+        for (int i = 3; i < bytes.length; i += 7) {
+            bytes[i] = '\n';
+        }
+        int[] expected = IntStream.range(1, 999).filter(i -> bytes[i] == '\n').toArray();
+        for (boolean words : new boolean[]{true, false}) {
+            // WHEN
+            DelimiterIndex index = new DelimiterIndex(words, (byte) '\n').index(bytes, 1, 999);
+
+            // THEN
+            assertArrayEquals(expected, Arrays.copyOf(index.getOffsets(), index.getSize()));
+        }
+    }
+
+    @FunctionalInterface
+    private interface IndexOf {
+        int apply(int from, int to, byte value);
+    }
+
+}